@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measure the compression of a new report, by a GZIPOutputStream or a ParallelGzipOutputStream, at several levels,
+ * and the decompression of an original report through several sizes of inflater buffer, on a synthetic report
+ * of the FULL schema. The score is the throughput in rows per second; the setup prints the compressed size
+ * of each configuration. Run with e.g. -Djmh.args="GzipCompressionBenchmark -p threads=1,4 -p level=1,6".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GzipCompressionBenchmark {
+    private static final int ROWS = 100000;
+
+    @State(Scope.Benchmark)
+    public static class CompressionState {
+        @Param({"1", "6", "9"})
+        private int level;
+
+        @Param({"1", "2", "4"})
+        private int threads;
+
+        private byte[] csv;
+
+        @Setup
+        public void setUp() throws IOException {
+            csv = new SyntheticInventoryReport(SyntheticInventoryReport.Schema.FULL, ROWS, 64, 1, 42).getCsv();
+            CountingOutputStream compressed = new CountingOutputStream();
+            compress(this, compressed);
+            System.out.printf("%nLevel %d with %d threads: %d bytes compressed into %d (%.1f%%)%n", level, threads,
+                    csv.length, compressed.count, 100.0 * compressed.count / csv.length);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DecompressionState {
+        @Param({"512", "8192", "65536"})
+        private int inflateBufferSize;
+
+        private byte[] gzip;
+        private byte[] buffer = new byte[64 * 1024];
+
+        @Setup
+        public void setUp() throws IOException {
+            gzip = new SyntheticInventoryReport(SyntheticInventoryReport.Schema.FULL, ROWS, 64, 1, 42).getGzip();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long compress(CompressionState state) throws IOException {
+        CountingOutputStream compressed = new CountingOutputStream();
+        compress(state, compressed);
+        return compressed.count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long decompress(DecompressionState state) throws IOException {
+        long total = 0;
+        try (InputStream csvStream = new GZIPInputStream(new ByteArrayInputStream(state.gzip),
+                state.inflateBufferSize)) {
+            int read;
+            while ((read = csvStream.read(state.buffer)) > 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Compress the report as InventoryReportLineWriter does, in chunks of the size Jackson flushes
+     */
+    private static void compress(CompressionState state, OutputStream out) throws IOException {
+        int level = state.level;
+        OutputStream gzip = state.threads > 1
+                ? new ParallelGzipOutputStream(out, level, state.threads, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE)
+                : new InventoryReportLineWriter.LeveledGzipOutputStream(out, 64 * 1024, level);
+        try (OutputStream csvStream = gzip) {
+            for (int offset = 0; offset < state.csv.length; offset += 8000) {
+                csvStream.write(state.csv, offset, Math.min(8000, state.csv.length - offset));
+            }
+        }
+    }
+
+    /**
+     * An OutputStream which discards the compressed bytes, counting them
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This InventoryJobThroughputHarness class measures the throughput of the whole job without an AWS account.
+ * For each dataset size, it serves a synthetic inventory (manifest.json, manifest.checksum and the reports)
+ * from a LocalS3Server, runs ReducedRedundancyLocatorExampleMain on a local[*] Spark master in this JVM,
+ * and reports the wall time, the requests and bytes served, and the peak heap, which is the executor heap
+ * in local mode. The heap held by the stored objects before the run is not counted in the peak.
+ * The wall time includes the start of each Spark context, and the first dataset also loads the classes.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec@throughput-harness
+ * [-Dharness.args="--shards 4,16 --rowsPerShard 100000 --schema FULL -- --compactRows"]
+ * where the arguments after "--" are given to the job, such as --local to compare with the local engine.
+ */
+public class InventoryJobThroughputHarness {
+    private static final String SOURCE_BUCKET = "inventory-source";
+    private static final String DESTINATION_BUCKET = "inventory-destination";
+    private static final String MANIFEST_PREFIX = "example-bucket/example-config/2017-06-01T00-00Z";
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> shardCounts = Arrays.asList(4, 16);
+        int rowsPerShard = 100000;
+        SyntheticInventoryReport.Schema schema = SyntheticInventoryReport.Schema.DEFAULT;
+        int keyLength = 64;
+        int rrsPercent = 1;
+        List<String> jobArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--shards":
+                    shardCounts = new ArrayList<>();
+                    for (String shards : args[++i].split(",")) {
+                        shardCounts.add(Integer.parseInt(shards.trim()));
+                    }
+                    break;
+                case "--rowsPerShard":
+                    rowsPerShard = Integer.parseInt(args[++i]);
+                    break;
+                case "--schema":
+                    schema = SyntheticInventoryReport.Schema.valueOf(args[++i]);
+                    break;
+                case "--keyLength":
+                    keyLength = Integer.parseInt(args[++i]);
+                    break;
+                case "--rrsPercent":
+                    rrsPercent = Integer.parseInt(args[++i]);
+                    break;
+                case "--":
+                    jobArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                    i = args.length;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i] + ", usage: [--shards <n,...>]"
+                            + " [--rowsPerShard <rows>] [--schema MINIMAL|DEFAULT|FULL] [--keyLength <chars>]"
+                            + " [--rrsPercent <percent>] [-- <job arguments>]");
+            }
+        }
+        System.setProperty("spark.master", System.getProperty("spark.master", "local[*]"));
+        System.setProperty("spark.app.name", "InventoryJobThroughputHarness");
+        System.setProperty("spark.ui.enabled", "false");
+
+        List<String> results = new ArrayList<>();
+        for (int shards : shardCounts) {
+            results.add(run(shards, rowsPerShard, schema, keyLength, rrsPercent, jobArgs));
+        }
+        System.out.printf("%n%8s %10s %10s %9s %12s %7s %7s %7s %9s %9s %10s %8s%n", "shards", "rows", "input MB",
+                "wall s", "rows/s", "GETs", "PUTs", "LISTs", "MB out", "MB in", "peak MB", "reports");
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * Run the job once on a new server holding a dataset of the given size
+     * @return String, which is the line of the results of this dataset
+     */
+    private static String run(int shards, int rowsPerShard, SyntheticInventoryReport.Schema schema, int keyLength,
+                              int rrsPercent, List<String> jobArgs) throws Exception {
+        try (LocalS3Server server = new LocalS3Server()) {
+            long inputBytes = 0;
+            InventoryManifest manifest = null;
+            List<InventoryManifest.Locator> locators = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                SyntheticInventoryReport report = new SyntheticInventoryReport(schema, rowsPerShard, keyLength,
+                        rrsPercent, i);
+                InventoryManifest.Locator locator = report.getLocator();
+                locator.setKey(MANIFEST_PREFIX + "/data/" + i + ".csv.gz");
+                manifest = report.getManifest();
+                // The job reads the reports from the bucket named sourceBucket in the manifest
+                server.putObject(manifest.getSourceBucket(), locator.getKey(), report.getGzip());
+                locators.add(locator);
+                inputBytes += report.getGzip().length;
+            }
+            manifest.setLocators(locators);
+            byte[] json = new ObjectMapper().writeValueAsBytes(manifest);
+            server.putObject(SOURCE_BUCKET, MANIFEST_PREFIX + "/manifest.json", json);
+            server.putObject(SOURCE_BUCKET, MANIFEST_PREFIX + "/manifest.checksum",
+                    DigestUtils.md5Hex(json).getBytes(StandardCharsets.UTF_8));
+
+            String outputPrefix = "run-" + shards;
+            List<String> args = new ArrayList<>(Arrays.asList("-i", "s3://" + SOURCE_BUCKET + "/" + MANIFEST_PREFIX,
+                    "-o", "s3://" + DESTINATION_BUCKET + "/" + outputPrefix, "--s3Endpoint", server.getEndpoint()));
+            args.addAll(jobArgs);
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+            AtomicLong peakHeap = new AtomicLong(baselineHeap);
+            Thread sampler = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(HEAP_SAMPLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "heap-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+
+            long start = System.nanoTime();
+            try {
+                ReducedRedundancyLocatorExampleMain.main(args.toArray(new String[0]));
+            } finally {
+                sampler.interrupt();
+                sampler.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long reports = server.listObjects(DESTINATION_BUCKET, outputPrefix + "/").keySet().stream()
+                    .filter(key -> key.endsWith(".csv.gz")).count();
+            long rows = (long) shards * rowsPerShard;
+            return String.format("%8d %10d %10.1f %9.2f %12.0f %7d %7d %7d %9.1f %9.1f %10.1f %8d", shards, rows,
+                    megabytes(inputBytes), seconds, rows / seconds, server.getGetRequests(),
+                    server.getPutRequests(), server.getListRequests(), megabytes(server.getBytesOut()),
+                    megabytes(server.getBytesIn()), megabytes(peakHeap.get() - baselineHeap), reports);
+        }
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
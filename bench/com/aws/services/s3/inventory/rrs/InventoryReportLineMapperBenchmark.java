@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare mapping the lines of an inventory report with one parser per line
+ * against mapping them through a single MappingIterator.
+ * The score is the throughput in rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryReportLineMapperBenchmark {
+    private static final int ROWS = 10000;
+
+    private InventoryReportLineMapper mapper;
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        InventoryManifest manifest = new InventoryManifest();
+        manifest.setFileSchema("Bucket, Key, Versionid, IsLatest, IsDeleteMaker, Size, LastModifiedDate, " +
+                "ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        mapper = new InventoryReportLineMapper(manifest);
+
+        lines = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            lines.add("\"example-bucket\",\"photos/2017/08/" + i + ".jpg\",\"" + Integer.toHexString(i * 31) +
+                    "\",\"true\",\"false\",\"" + (i * 1024L) + "\",\"2017-08-04T12:00:00.000Z\"," +
+                    "\"d41d8cd98f00b204e9800998ecf8427e\",\"" + (i % 100 == 0 ? "REDUCED_REDUNDANCY" : "STANDARD") +
+                    "\",\"false\",\"\"");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<InventoryReportLine> parserPerLine() throws IOException {
+        return mapper.mapInventoryReportLine(lines);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void singleMappingIterator(Blackhole blackhole) throws IOException {
+        try (MappingIterator<InventoryReportLine> rows = mapper.mapInventoryReportLines(lines.iterator())) {
+            while (rows.hasNext()) {
+                blackhole.consume(rows.next());
+            }
+        }
+    }
+}
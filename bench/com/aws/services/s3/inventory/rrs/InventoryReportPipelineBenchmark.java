@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measure each stage of the hot path separately on a synthetic report: the decompression by
+ * InventoryReportRetriever, the parsing by InventoryReportLineMapper with Jackson or its tokenizer, the filtering by
+ * ReducedRedundancyStorageClassFilter or on the raw records, and the CSV serialization and compression
+ * by InventoryReportLineWriter. S3 is replaced by a stub serving and discarding the bytes in memory.
+ * The score is the throughput in rows per second. Run with -prof gc to get the bytes allocated per row
+ * (gc.alloc.rate.norm), e.g. -Djmh.args="InventoryReportPipelineBenchmark -p schema=FULL -prof gc".
+ * The writer allocates one upload part buffer per report, set to the minimum of 5 MB here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryReportPipelineBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"MINIMAL", "DEFAULT", "FULL"})
+    private SyntheticInventoryReport.Schema schema;
+
+    @Param({"64"})
+    private int keyLength;
+
+    @Param({"1"})
+    private int rrsPercent;
+
+    private SyntheticInventoryReport report;
+    private InventoryReportRetriever retriever;
+    private InventoryReportLineMapper mapper;
+    private InventoryReportLineMapper tokenizingMapper;
+    private RawRecordPredicate rawPredicate;
+    private ReducedRedundancyStorageClassFilter filter;
+    private InventoryReportLineWriter writer;
+    private List<InventoryReportLine> lines;
+
+    @Setup
+    public void setUp() throws IOException {
+        report = new SyntheticInventoryReport(schema, ROWS, keyLength, rrsPercent, 42);
+        System.out.printf("%nSynthetic report: %d rows, %.1f bytes per row, %.1f compressed bytes per row%n",
+                ROWS, (double) report.getCsv().length / ROWS, (double) report.getGzip().length / ROWS);
+
+        // A stub which does not record its invocations, unlike a default mock
+        AmazonS3 s3Client = mock(AmazonS3.class, withSettings().stubOnly());
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            S3Object object = new S3Object();
+            object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(report.getGzip()), null));
+            return object;
+        });
+        when(s3Client.putObject(any(PutObjectRequest.class))).thenReturn(null);
+
+        InventoryManifest manifest = report.getManifest();
+        retriever = new InventoryReportRetriever(s3Client, report.getLocator(), manifest);
+        mapper = new InventoryReportLineMapper(manifest);
+        tokenizingMapper = new InventoryReportLineMapper(CsvSchemaFactory.buildSchema(manifest), true);
+        rawPredicate = ReducedRedundancyStorageClassFilter.toRawRecordPredicate(manifest);
+        filter = new ReducedRedundancyStorageClassFilter();
+        TransferSettings transferSettings = new TransferSettings();
+        transferSettings.setUploadPartSize(TransferSettings.MIN_UPLOAD_PART_SIZE);
+        writer = new InventoryReportLineWriter(s3Client, "example-destination", "benchmark", "example-bucket",
+                manifest, transferSettings);
+        lines = parse();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public String decompress() throws IOException {
+        return retriever.getInventoryReportToString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<InventoryReportLine> parse() throws IOException {
+        List<InventoryReportLine> rows = new ArrayList<>(ROWS);
+        mapper.mapInventoryReport(new ByteArrayInputStream(report.getCsv())).forEachRemaining(rows::add);
+        return rows;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tokenize(Blackhole blackhole) throws IOException {
+        try (PushdownInventoryReportLineIterator rows = new PushdownInventoryReportLineIterator(
+                new CsvRecordScanner(new ByteArrayInputStream(report.getCsv())), null, tokenizingMapper)) {
+            while (rows.hasNext()) {
+                blackhole.consume(rows.next());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int filterLines() {
+        int matches = 0;
+        for (InventoryReportLine line : lines) {
+            if (filter.call(line)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void filterRawRecords(Blackhole blackhole) throws IOException {
+        try (PushdownInventoryReportLineIterator matches = new PushdownInventoryReportLineIterator(
+                new CsvRecordScanner(new ByteArrayInputStream(report.getCsv())), rawPredicate, mapper)) {
+            while (matches.hasNext()) {
+                blackhole.consume(matches.next());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void filterRawRecordsTokenized(Blackhole blackhole) throws IOException {
+        try (PushdownInventoryReportLineIterator matches = new PushdownInventoryReportLineIterator(
+                new CsvRecordScanner(new ByteArrayInputStream(report.getCsv())), rawPredicate, tokenizingMapper)) {
+            while (matches.hasNext()) {
+                blackhole.consume(matches.next());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<InventoryManifest.Locator> write() throws IOException {
+        Iterator<InventoryReportLine> rows = lines.iterator();
+        return writer.writeCsvFiles(rows, new OutputFileSettings());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare holding the lines of an inventory report as InventoryReportLine POJOs
+ * against holding them in compact InventoryReportLineBlocks.
+ * The score is the throughput in rows per second. Run with -prof gc to get the bytes allocated per row
+ * (gc.alloc.rate.norm); the bytes retained per row by each representation are printed during the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryReportRowMemoryBenchmark {
+    private static final int ROWS = 10000;
+
+    private InventoryReportLineMapper mapper;
+    private byte[] report;
+
+    @Setup
+    public void setUp() throws IOException {
+        InventoryManifest manifest = new InventoryManifest();
+        manifest.setFileSchema("Bucket, Key, Versionid, IsLatest, IsDeleteMaker, Size, LastModifiedDate, " +
+                "ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        mapper = new InventoryReportLineMapper(manifest);
+
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            content.append("\"example-bucket\",\"photos/2017/08/").append(i).append(".jpg\",\"")
+                    .append(Integer.toHexString(i * 31)).append("\",\"true\",\"false\",\"").append(i * 1024L)
+                    .append("\",\"2017-08-04T12:00:00.000Z\",\"d41d8cd98f00b204e9800998ecf8427e\",\"")
+                    .append(i % 100 == 0 ? "REDUCED_REDUNDANCY" : "STANDARD").append("\",\"false\",\"\"\n");
+        }
+        report = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        long pojoBytes = GraphLayout.parseInstance(pojoRows()).totalSize();
+        long compactBytes = GraphLayout.parseInstance(compactBlocks()).totalSize();
+        System.out.printf("%nRetained bytes per row: InventoryReportLine %.1f, InventoryReportLineBlock %.1f%n",
+                (double) pojoBytes / ROWS, (double) compactBytes / ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<InventoryReportLine> pojoRows() throws IOException {
+        List<InventoryReportLine> rows = new ArrayList<>(ROWS);
+        try (MappingIterator<InventoryReportLine> lines = mapper.mapInventoryReport(new ByteArrayInputStream(report))) {
+            while (lines.hasNext()) {
+                rows.add(lines.next());
+            }
+        }
+        return rows;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<InventoryReportLineBlock> compactBlocks() throws IOException {
+        List<InventoryReportLineBlock> blocks = new ArrayList<>();
+        try (InventoryReportLineBlockIterator iterator = mapper.mapInventoryReportBlocks(
+                new ByteArrayInputStream(report), null, InventoryReportLineBlock.DEFAULT_MAX_ROWS)) {
+            while (iterator.hasNext()) {
+                blocks.add(iterator.next());
+            }
+        }
+        return blocks;
+    }
+}
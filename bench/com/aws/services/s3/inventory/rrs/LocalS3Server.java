@@ -0,0 +1,422 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This LocalS3Server class is an in-memory stand-in of S3 listening on the loopback interface,
+ * for the clients built with the --s3Endpoint option. It serves the calls of the job: GET, ranged GET,
+ * PUT, multipart uploads and the listing of a prefix with path-style URLs, and counts the requests and bytes.
+ * Authentication, versioning and delimiters are ignored.
+ */
+public class LocalS3Server implements Closeable {
+    private static final int MAX_KEYS = 1000;
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NavigableMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong getRequests = new AtomicLong();
+    private final AtomicLong putRequests = new AtomicLong();
+    private final AtomicLong listRequests = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * Start the server on a free port
+     */
+    public LocalS3Server() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-s3-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return String, which is the value of the --s3Endpoint option reaching this server
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Store an object directly, without counting it as a request
+     */
+    public void putObject(String bucketName, String key, byte[] content) {
+        bucket(bucketName).put(key, new StoredObject(content, DigestUtils.md5Hex(content)));
+    }
+
+    /**
+     * @return Map<String, byte[]> of the objects of a bucket under a prefix, by key
+     */
+    public Map<String, byte[]> listObjects(String bucketName, String prefix) {
+        Map<String, byte[]> objects = new HashMap<>();
+        for (Map.Entry<String, StoredObject> entry : bucket(bucketName).tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            objects.put(entry.getKey(), entry.getValue().content);
+        }
+        return objects;
+    }
+
+    public long getGetRequests() {
+        return getRequests.get();
+    }
+
+    /**
+     * @return long, which is the number of PUT, upload part, and initiate or complete multipart upload requests
+     */
+    public long getPutRequests() {
+        return putRequests.get();
+    }
+
+    public long getListRequests() {
+        return listRequests.get();
+    }
+
+    /**
+     * @return long, which is the number of bytes of content received, after the decoding of aws-chunked bodies
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            int slash = path.indexOf('/', 1);
+            String bucketName = slash < 0 ? path.substring(1) : path.substring(1, slash);
+            String key = slash < 0 ? "" : path.substring(slash + 1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (exchange.getRequestMethod()) {
+                case "GET":
+                    if (key.isEmpty()) {
+                        listObjects(exchange, bucketName, query);
+                    } else {
+                        getObject(exchange, bucketName, key, false);
+                    }
+                    break;
+                case "HEAD":
+                    getObject(exchange, bucketName, key, true);
+                    break;
+                case "PUT":
+                    if (query.containsKey("uploadId")) {
+                        uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")));
+                    } else {
+                        putObject(exchange, bucketName, key);
+                    }
+                    break;
+                case "POST":
+                    if (query.containsKey("uploads")) {
+                        initiateMultipartUpload(exchange, bucketName, key);
+                    } else {
+                        completeMultipartUpload(exchange, bucketName, key, query.get("uploadId"));
+                    }
+                    break;
+                case "DELETE":
+                    if (query.containsKey("uploadId")) {
+                        uploads.remove(query.get("uploadId"));
+                    } else {
+                        bucket(bucketName).remove(key);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                default:
+                    sendError(exchange, 405, "MethodNotAllowed", exchange.getRequestMethod());
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "InternalError", String.valueOf(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void getObject(HttpExchange exchange, String bucketName, String key, boolean head) throws IOException {
+        getRequests.incrementAndGet();
+        StoredObject object = bucket(bucketName).get(key);
+        if (object == null) {
+            sendError(exchange, 404, "NoSuchKey", key);
+            return;
+        }
+        int start = 0;
+        int end = object.content.length - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            start = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + end + "/" + object.content.length);
+        }
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+        exchange.getResponseHeaders().set("Last-Modified", rfc822(object.lastModified));
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.content.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        int length = end - start + 1;
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(object.content, start, length);
+        }
+        bytesOut.addAndGet(length);
+    }
+
+    private void putObject(HttpExchange exchange, String bucketName, String key) throws IOException {
+        putRequests.incrementAndGet();
+        byte[] content = readContent(exchange);
+        StoredObject object = new StoredObject(content, DigestUtils.md5Hex(content));
+        bucket(bucketName).put(key, object);
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void initiateMultipartUpload(HttpExchange exchange, String bucketName, String key) throws IOException {
+        putRequests.incrementAndGet();
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentSkipListMap<>());
+        sendXml(exchange, 200, "<InitiateMultipartUploadResult>"
+                + element("Bucket", bucketName) + element("Key", key) + element("UploadId", uploadId)
+                + "</InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(HttpExchange exchange, String uploadId, int partNumber) throws IOException {
+        putRequests.incrementAndGet();
+        NavigableMap<Integer, byte[]> parts = uploads.get(uploadId);
+        if (parts == null) {
+            sendError(exchange, 404, "NoSuchUpload", uploadId);
+            return;
+        }
+        byte[] content = readContent(exchange);
+        parts.put(partNumber, content);
+        exchange.getResponseHeaders().set("ETag", "\"" + DigestUtils.md5Hex(content) + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    /**
+     * Helper function, which joins every part uploaded, in the order of their numbers,
+     * and gives the object the ETag of a multipart object
+     */
+    private void completeMultipartUpload(HttpExchange exchange, String bucketName, String key, String uploadId)
+            throws IOException {
+        putRequests.incrementAndGet();
+        IOUtils.toByteArray(exchange.getRequestBody());
+        NavigableMap<Integer, byte[]> parts = uploadId == null ? null : uploads.remove(uploadId);
+        if (parts == null) {
+            sendError(exchange, 404, "NoSuchUpload", String.valueOf(uploadId));
+            return;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream partDigests = new ByteArrayOutputStream();
+        for (byte[] part : parts.values()) {
+            content.write(part);
+            partDigests.write(DigestUtils.md5(part));
+        }
+        String etag = DigestUtils.md5Hex(partDigests.toByteArray()) + "-" + parts.size();
+        bucket(bucketName).put(key, new StoredObject(content.toByteArray(), etag));
+        sendXml(exchange, 200, "<CompleteMultipartUploadResult>"
+                + element("Location", getEndpoint() + "/" + bucketName + "/" + key)
+                + element("Bucket", bucketName) + element("Key", key) + element("ETag", "\"" + etag + "\"")
+                + "</CompleteMultipartUploadResult>");
+    }
+
+    private void listObjects(HttpExchange exchange, String bucketName, Map<String, String> query)
+            throws IOException {
+        listRequests.incrementAndGet();
+        String prefix = query.getOrDefault("prefix", "");
+        String marker = query.getOrDefault("marker", "");
+        int maxKeys = query.containsKey("max-keys") ? Integer.parseInt(query.get("max-keys")) : MAX_KEYS;
+        boolean urlEncoded = "url".equals(query.get("encoding-type"));
+
+        StringBuilder contents = new StringBuilder();
+        String lastKey = null;
+        boolean truncated = false;
+        int count = 0;
+        for (Map.Entry<String, StoredObject> entry : bucket(bucketName).tailMap(prefix, true).entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            if (key.compareTo(marker) <= 0) {
+                continue;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents>").append(element("Key", urlEncoded ? urlEncode(key) : key))
+                    .append(element("LastModified", iso8601(object.lastModified)))
+                    .append(element("ETag", "\"" + object.etag + "\""))
+                    .append(element("Size", String.valueOf(object.content.length)))
+                    .append(element("StorageClass", "STANDARD")).append("</Contents>");
+            lastKey = key;
+            count++;
+        }
+        sendXml(exchange, 200, "<ListBucketResult>" + element("Name", bucketName)
+                + element("Prefix", urlEncoded ? urlEncode(prefix) : prefix)
+                + element("Marker", urlEncoded ? urlEncode(marker) : marker)
+                + (truncated ? element("NextMarker", urlEncoded ? urlEncode(lastKey) : lastKey) : "")
+                + element("MaxKeys", String.valueOf(maxKeys))
+                + (urlEncoded ? element("EncodingType", "url") : "")
+                + element("IsTruncated", String.valueOf(truncated)) + contents + "</ListBucketResult>");
+    }
+
+    /**
+     * Helper function, which reads the content of a request, decoding the aws-chunked bodies of the signed uploads
+     */
+    private byte[] readContent(HttpExchange exchange) throws IOException {
+        byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (contentSha256 != null && contentSha256.startsWith("STREAMING-")) {
+            body = decodeAwsChunked(body);
+        }
+        bytesIn.addAndGet(body.length);
+        return body;
+    }
+
+    /**
+     * Helper function, which removes the "<size>;chunk-signature=<signature>\r\n" header and the trailing "\r\n"
+     * around each chunk of an aws-chunked body
+     */
+    private static byte[] decodeAwsChunked(byte[] body) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(body.length);
+        int position = 0;
+        while (true) {
+            int headerEnd = position;
+            while (body[headerEnd] != '\r') {
+                headerEnd++;
+            }
+            String header = new String(body, position, headerEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";", 2)[0], 16);
+            if (size == 0) {
+                return content.toByteArray();
+            }
+            content.write(body, headerEnd + 2, size);
+            position = headerEnd + 2 + size + 2;
+        }
+    }
+
+    private NavigableMap<String, StoredObject> bucket(String bucketName) {
+        return buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message)
+            throws IOException {
+        sendXml(exchange, status, "<Error>" + element("Code", code) + element("Message", message) + "</Error>");
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] bytes = (XML_HEADER + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static String element(String name, String value) {
+        return "<" + name + ">" + StringEscapeUtils.escapeXml(value) + "</" + name + ">";
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            String[] nameValue = parameter.split("=", 2);
+            query.put(URLDecoder.decode(nameValue[0], "UTF-8"),
+                    nameValue.length == 1 ? "" : URLDecoder.decode(nameValue[1], "UTF-8"));
+        }
+        return query;
+    }
+
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String iso8601(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    private static String rfc822(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    /**
+     * This StoredObject class holds the content of an object with its ETag
+     */
+    private static class StoredObject {
+        private final byte[] content;
+        private final String etag;
+        private final long lastModified = System.currentTimeMillis();
+
+        StoredObject(byte[] content, String etag) {
+            this.content = content;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This SyntheticInventoryReport class generates inventory reports of any size for the benchmarks,
+ * with the columns of one of the fileSchema variants of an inventory configuration.
+ * The content only depends on the arguments, so that two runs measure the same bytes.
+ */
+public class SyntheticInventoryReport {
+    /**
+     * The fileSchema variants, from the columns always present to every optional field
+     */
+    public enum Schema {
+        MINIMAL("Bucket, Key, StorageClass"),
+        DEFAULT("Bucket, Key, Size, LastModifiedDate, ETag, StorageClass"),
+        FULL("Bucket, Key, Versionid, IsLatest, IsDeleteMaker, Size, LastModifiedDate, ETag, StorageClass, " +
+                "IsMultipartUploaded, ReplicationStatus");
+
+        private final String fileSchema;
+
+        Schema(String fileSchema) {
+            this.fileSchema = fileSchema;
+        }
+
+        public String getFileSchema() {
+            return fileSchema;
+        }
+    }
+
+    private static final String[] STORAGE_CLASSES = {"STANDARD", "STANDARD_IA", "GLACIER"};
+    private final InventoryManifest manifest;
+    private final byte[] csv;
+    private final byte[] gzip;
+    private final int rows;
+
+    /**
+     * @param schema the columns of the report
+     * @param rows the number of lines of the report
+     * @param keyLength the length of the keys, which dominates the size of a line
+     * @param rrsPercent the percentage of lines of the REDUCED_REDUNDANCY storage class, those kept by the filter
+     * @param seed the seed of the random values
+     */
+    public SyntheticInventoryReport(Schema schema, int rows, int keyLength, int rrsPercent, long seed)
+            throws IOException {
+        this.rows = rows;
+        String[] columns = schema.getFileSchema().split("\\s*,\\s*");
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            for (int c = 0; c < columns.length; c++) {
+                content.append(c == 0 ? "\"" : ",\"").append(value(columns[c], i, keyLength, rrsPercent, random))
+                        .append('"');
+            }
+            content.append('\n');
+        }
+        this.csv = content.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(csv);
+        }
+        this.gzip = compressed.toByteArray();
+
+        this.manifest = new InventoryManifest();
+        manifest.setSourceBucket("example-bucket");
+        manifest.setDestinationBucket("arn:aws:s3:::example-inventory");
+        manifest.setVersion("2016-11-30");
+        manifest.setFileFormat("CSV");
+        manifest.setFileSchema(schema.getFileSchema());
+        manifest.setLocators(Collections.singletonList(getLocator()));
+    }
+
+    /**
+     * Helper function, which generates the value of a column of a line
+     */
+    private static String value(String column, int row, int keyLength, int rrsPercent, Random random) {
+        switch (column) {
+            case "Bucket":
+                return "example-bucket";
+            case "Key":
+                StringBuilder key = new StringBuilder("photos/").append(row % 365).append('/');
+                while (key.length() < keyLength - 4) {
+                    key.append((char) ('a' + random.nextInt(26)));
+                }
+                return key.append(".jpg").toString();
+            case "Versionid":
+                return Long.toHexString(random.nextLong());
+            case "IsLatest":
+            case "IsMultipartUploaded":
+                return String.valueOf(random.nextBoolean());
+            case "IsDeleteMaker":
+                return "false";
+            case "Size":
+                return String.valueOf(random.nextInt(64 * 1024 * 1024));
+            case "LastModifiedDate":
+                return String.format("2017-%02d-%02dT%02d:%02d:00.000Z", 1 + random.nextInt(12),
+                        1 + random.nextInt(28), random.nextInt(24), random.nextInt(60));
+            case "ETag":
+                return DigestUtils.md5Hex(String.valueOf(row));
+            case "StorageClass":
+                return random.nextInt(100) < rrsPercent
+                        ? "REDUCED_REDUNDANCY" : STORAGE_CLASSES[random.nextInt(STORAGE_CLASSES.length)];
+            case "ReplicationStatus":
+                return random.nextInt(4) == 0 ? "COMPLETED" : "";
+            default:
+                throw new IllegalArgumentException("Unknown column: " + column);
+        }
+    }
+
+    /**
+     * @return Locator of the gzipped report, with its size and MD5
+     */
+    public InventoryManifest.Locator getLocator() {
+        InventoryManifest.Locator locator = new InventoryManifest.Locator();
+        locator.setKey("example-inventory/data/synthetic.csv.gz");
+        locator.setSize(gzip.length);
+        locator.setMD5checksum(DigestUtils.md5Hex(gzip));
+        return locator;
+    }
+
+    public InventoryManifest getManifest() {
+        return manifest;
+    }
+
+    public byte[] getCsv() {
+        return csv;
+    }
+
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
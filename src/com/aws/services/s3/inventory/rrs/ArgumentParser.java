@@ -11,6 +11,10 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
 /**
  * This ArgumentParser class parses the arguments, and returns a "BucketKey"
  * which represents the bucket names and keys of the source bucket and the output bucket.
@@ -20,13 +24,38 @@ class ArgumentParser {
     private static final String KEY_OUTPUT = "o";
     private static final String longOptInput = "srcS3Uri";
     private static final String longOptOutput = "outputS3UriPrefix";
+    private static final String longOptDownloadPartSize = "downloadPartSize";
+    private static final String longOptDownloadConcurrency = "downloadConcurrency";
+    private static final String longOptUploadPartSize = "uploadPartSize";
+    private static final String longOptReadAheadReports = "readAheadReports";
+    private static final String longOptInflateBufferSize = "inflateBufferSize";
+    private static final String longOptCompressionLevel = "compressionLevel";
+    private static final String longOptCompressionThreads = "compressionThreads";
+    private static final String longOptFilter = "filter";
+    private static final String longOptCompactRows = "compactRows";
+    private static final String longOptCsvTokenizer = "csvTokenizer";
+    private static final String longOptTargetPartitionBytes = "targetPartitionBytes";
+    private static final String longOptTargetFileRows = "targetFileRows";
+    private static final String longOptMaxFileBytes = "maxFileBytes";
+    private static final String longOptDiscoverManifests = "discoverManifests";
+    private static final String longOptManifestConcurrency = "manifestConcurrency";
+    private static final String longOptDiffAgainst = "diffAgainst";
+    private static final String longOptResumable = "resumable";
+    private static final String longOptLocal = "local";
+    private static final String longOptLocalThreads = "localThreads";
+    private static final String longOptMaxConnections = "maxConnections";
+    private static final String longOptConnectionTimeout = "connectionTimeout";
+    private static final String longOptSocketTimeout = "socketTimeout";
+    private static final String longOptMaxErrorRetry = "maxErrorRetry";
+    private static final String longOptSocketBufferSize = "socketBufferSize";
+    private static final String longOptS3Endpoint = "s3Endpoint";
     private final CommandLineParser parser;
     private Options options;
 
     public ArgumentParser() {
         final Option input =
                 new Option(KEY_INPUT, longOptInput, true,
-                        "read in this S3 URI to get inventory manifest files");
+                        "read in this S3 URI to get inventory manifest files, may be repeated");
         final Option output =
                 new Option(KEY_OUTPUT, longOptOutput, true,
                         "write new files back to this output S3 URI prefix");
@@ -35,6 +64,56 @@ class ArgumentParser {
         this.options.addOption(input);
         output.setRequired(true);
         this.options.addOption(output);
+        this.options.addOption(new Option(null, longOptDownloadPartSize, true,
+                "download inventory reports as byte ranges of this many bytes"));
+        this.options.addOption(new Option(null, longOptDownloadConcurrency, true,
+                "download this many byte ranges of an inventory report in parallel"));
+        this.options.addOption(new Option(null, longOptUploadPartSize, true,
+                "upload new inventory reports in parts of this many bytes, at least 5 MB"));
+        this.options.addOption(new Option(null, longOptReadAheadReports, true,
+                "download and filter this many inventory reports of a partition while its new reports are written"));
+        this.options.addOption(new Option(null, longOptInflateBufferSize, true,
+                "decompress inventory reports through a buffer of this many compressed bytes"));
+        this.options.addOption(new Option(null, longOptCompressionLevel, true,
+                "compress new inventory reports at this GZIP level, from 0 to 9"));
+        this.options.addOption(new Option(null, longOptCompressionThreads, true,
+                "compress each new inventory report with this many threads, as blocks of a single GZIP stream"));
+        this.options.addOption(new Option(null, longOptFilter, true,
+                "keep the objects matching this filter expression instead of the REDUCED_REDUNDANCY ones"));
+        this.options.addOption(new Option(null, longOptCompactRows, false,
+                "hold the lines of the inventory reports in compact columnar blocks instead of POJOs"));
+        this.options.addOption(new Option(null, longOptCsvTokenizer, false,
+                "map the lines of the inventory reports with a specialized tokenizer instead of Jackson"));
+        this.options.addOption(new Option(null, longOptTargetPartitionBytes, true,
+                "group the inventory reports into Spark partitions of about this many compressed bytes"));
+        this.options.addOption(new Option(null, longOptTargetFileRows, true,
+                "write new inventory reports of this many lines, coalescing the smaller partitions"));
+        this.options.addOption(new Option(null, longOptMaxFileBytes, true,
+                "start a new inventory report once the current one reaches this many compressed bytes"));
+        this.options.addOption(new Option(null, longOptDiscoverManifests, false,
+                "process every manifest found under the S3 URIs given as input"));
+        this.options.addOption(new Option(null, longOptManifestConcurrency, true,
+                "retrieve this many manifests at the same time on the driver"));
+        this.options.addOption(new Option(null, longOptDiffAgainst, true,
+                "write the objects added, removed or moved to another storage class since this older manifest"));
+        this.options.addOption(new Option(null, longOptResumable, false,
+                "record each inventory report once written, and skip the reports recorded by a previous run"));
+        this.options.addOption(new Option(null, longOptLocal, false,
+                "run the job on a thread pool of this JVM instead of Spark, for inventories of a few reports"));
+        this.options.addOption(new Option(null, longOptLocalThreads, true,
+                "with the local option, download and upload this many inventory reports at the same time"));
+        this.options.addOption(new Option(null, longOptMaxConnections, true,
+                "open at most this many connections to S3 from the driver and from each executor"));
+        this.options.addOption(new Option(null, longOptConnectionTimeout, true,
+                "wait this many milliseconds for a connection to S3 to be established"));
+        this.options.addOption(new Option(null, longOptSocketTimeout, true,
+                "wait this many milliseconds for data on an open connection to S3"));
+        this.options.addOption(new Option(null, longOptMaxErrorRetry, true,
+                "retry a failed S3 request this many times, with exponential backoff"));
+        this.options.addOption(new Option(null, longOptSocketBufferSize, true,
+                "use socket send and receive buffers of this many bytes"));
+        this.options.addOption(new Option(null, longOptS3Endpoint, true,
+                "send the S3 requests to this endpoint, such as a local S3 stand-in, with path-style requests"));
         this.parser = new PosixParser();
     }
 
@@ -49,4 +128,287 @@ class ArgumentParser {
         String outputFilePath = cmd.getOptionValue(KEY_OUTPUT);
         return new BucketKey(inputFilePath, outputFilePath);
     }
+
+    /**
+     * Parse the argument and extract every source location, in batch mode the input option may be repeated.
+     * @param args Arguments in the command line
+     * @return List<BucketKey>, which holds one BucketKey per input S3 URI, all sharing the output location.
+     */
+    public List<BucketKey> parseLocations(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        String outputFilePath = cmd.getOptionValue(KEY_OUTPUT);
+        List<BucketKey> locations = new ArrayList<>();
+        for (String inputFilePath : cmd.getOptionValues(KEY_INPUT)) {
+            locations.add(new BucketKey(inputFilePath, outputFilePath));
+        }
+        return locations;
+    }
+
+    /**
+     * Parse the argument and check if the input S3 URIs are prefixes to search for manifests.
+     * @param args Arguments in the command line
+     * @return boolean, which is true if the discoverManifests option is specified.
+     */
+    public boolean parseDiscoverManifests(String[] args) throws ParseException {
+        return parser.parse(options, args).hasOption(longOptDiscoverManifests);
+    }
+
+    /**
+     * Parse the argument and extract how many manifests the driver retrieves at the same time.
+     * @param args Arguments in the command line
+     * @return int, which is the number of concurrent retrievals.
+     */
+    public int parseManifestConcurrency(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        if (!cmd.hasOption(longOptManifestConcurrency)) {
+            return ManifestBatchRetriever.DEFAULT_CONCURRENCY;
+        }
+        return parsePositiveInt(longOptManifestConcurrency, cmd.getOptionValue(longOptManifestConcurrency));
+    }
+
+    /**
+     * Parse the argument and extract the location of the older snapshot to compare the input with.
+     * @param args Arguments in the command line
+     * @return BucketKey, which holds the location of the older manifest and the output location,
+     * or null if the option is not specified.
+     */
+    public BucketKey parseDiffAgainst(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        if (!cmd.hasOption(longOptDiffAgainst)) {
+            return null;
+        }
+        if (cmd.getOptionValues(KEY_INPUT).length > 1 || cmd.hasOption(longOptDiscoverManifests)) {
+            throw new ParseException("Option " + longOptDiffAgainst + " compares a single input manifest");
+        }
+        return new BucketKey(cmd.getOptionValue(longOptDiffAgainst), cmd.getOptionValue(KEY_OUTPUT));
+    }
+
+    /**
+     * Parse the argument and check if the job records its progress, to be resumed after a failure.
+     * @param args Arguments in the command line
+     * @return boolean, which is true if the resumable option is specified.
+     */
+    public boolean parseResumable(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        if (cmd.hasOption(longOptResumable) && cmd.hasOption(longOptDiffAgainst)) {
+            throw new ParseException("Option " + longOptResumable + " cannot be combined with " + longOptDiffAgainst);
+        }
+        return cmd.hasOption(longOptResumable);
+    }
+
+    /**
+     * Parse the argument and extract how many threads run the job when it runs without Spark.
+     * @param args Arguments in the command line
+     * @return int, which is the number of threads of each stage, the number of processors by default,
+     * or 0 if the local option is not specified.
+     */
+    public int parseLocalThreads(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        if (!cmd.hasOption(longOptLocal)) {
+            if (cmd.hasOption(longOptLocalThreads)) {
+                throw new ParseException("Option " + longOptLocalThreads + " requires the " + longOptLocal
+                        + " option");
+            }
+            return 0;
+        }
+        if (cmd.hasOption(longOptDiffAgainst) || cmd.hasOption(longOptResumable)) {
+            throw new ParseException("Option " + longOptLocal + " cannot be combined with " + longOptDiffAgainst
+                    + " or " + longOptResumable);
+        }
+        if (!cmd.hasOption(longOptLocalThreads)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return parsePositiveInt(longOptLocalThreads, cmd.getOptionValue(longOptLocalThreads));
+    }
+
+    /**
+     * Parse the argument and extract how the inventory reports are transferred.
+     * The options which are not specified keep their default values.
+     * @param args Arguments in the command line
+     * @return TransferSettings, which stores the part size and concurrency of the transfers.
+     */
+    public TransferSettings parseTransferSettings(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        TransferSettings transferSettings = new TransferSettings();
+        if (cmd.hasOption(longOptDownloadPartSize)) {
+            transferSettings.setDownloadPartSize(
+                    parsePositiveLong(longOptDownloadPartSize, cmd.getOptionValue(longOptDownloadPartSize)));
+        }
+        if (cmd.hasOption(longOptDownloadConcurrency)) {
+            transferSettings.setDownloadConcurrency(
+                    parsePositiveInt(longOptDownloadConcurrency, cmd.getOptionValue(longOptDownloadConcurrency)));
+        }
+        if (cmd.hasOption(longOptUploadPartSize)) {
+            int uploadPartSize = parsePositiveInt(longOptUploadPartSize, cmd.getOptionValue(longOptUploadPartSize));
+            if (uploadPartSize < TransferSettings.MIN_UPLOAD_PART_SIZE) {
+                throw new ParseException("Option " + longOptUploadPartSize + " must be at least " +
+                        TransferSettings.MIN_UPLOAD_PART_SIZE + " bytes");
+            }
+            transferSettings.setUploadPartSize(uploadPartSize);
+        }
+        if (cmd.hasOption(longOptReadAheadReports)) {
+            transferSettings.setReadAheadReports(
+                    parsePositiveInt(longOptReadAheadReports, cmd.getOptionValue(longOptReadAheadReports)));
+        }
+        if (cmd.hasOption(longOptInflateBufferSize)) {
+            transferSettings.setInflateBufferSize(
+                    parsePositiveInt(longOptInflateBufferSize, cmd.getOptionValue(longOptInflateBufferSize)));
+        }
+        if (cmd.hasOption(longOptCompressionLevel)) {
+            // 0 stores the content without compressing it
+            String compressionLevel = cmd.getOptionValue(longOptCompressionLevel);
+            int level = compressionLevel.trim().equals("0")
+                    ? 0 : parsePositiveInt(longOptCompressionLevel, compressionLevel);
+            if (level > Deflater.BEST_COMPRESSION) {
+                throw new ParseException("Option " + longOptCompressionLevel + " must be at most " +
+                        Deflater.BEST_COMPRESSION);
+            }
+            transferSettings.setCompressionLevel(level);
+        }
+        if (cmd.hasOption(longOptCompressionThreads)) {
+            transferSettings.setCompressionThreads(
+                    parsePositiveInt(longOptCompressionThreads, cmd.getOptionValue(longOptCompressionThreads)));
+        }
+        return transferSettings;
+    }
+
+    /**
+     * Parse the argument and extract how the S3 clients of the driver and the executors connect to S3.
+     * The options which are not specified keep their default values.
+     * @param args Arguments in the command line
+     * @return S3ClientSettings, which stores the connection pool, timeouts, retries and endpoint of the clients.
+     */
+    public S3ClientSettings parseS3ClientSettings(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        S3ClientSettings s3ClientSettings = new S3ClientSettings();
+        if (cmd.hasOption(longOptMaxConnections)) {
+            s3ClientSettings.setMaxConnections(
+                    parsePositiveInt(longOptMaxConnections, cmd.getOptionValue(longOptMaxConnections)));
+        }
+        if (cmd.hasOption(longOptConnectionTimeout)) {
+            s3ClientSettings.setConnectionTimeout(
+                    parsePositiveInt(longOptConnectionTimeout, cmd.getOptionValue(longOptConnectionTimeout)));
+        }
+        if (cmd.hasOption(longOptSocketTimeout)) {
+            s3ClientSettings.setSocketTimeout(
+                    parsePositiveInt(longOptSocketTimeout, cmd.getOptionValue(longOptSocketTimeout)));
+        }
+        if (cmd.hasOption(longOptMaxErrorRetry)) {
+            // 0 disables the retries
+            String maxErrorRetry = cmd.getOptionValue(longOptMaxErrorRetry);
+            s3ClientSettings.setMaxErrorRetry(maxErrorRetry.trim().equals("0")
+                    ? 0 : parsePositiveInt(longOptMaxErrorRetry, maxErrorRetry));
+        }
+        if (cmd.hasOption(longOptSocketBufferSize)) {
+            s3ClientSettings.setSocketBufferSize(
+                    parsePositiveInt(longOptSocketBufferSize, cmd.getOptionValue(longOptSocketBufferSize)));
+        }
+        if (cmd.hasOption(longOptS3Endpoint)) {
+            String endpoint = cmd.getOptionValue(longOptS3Endpoint);
+            if (endpoint.trim().isEmpty()) {
+                throw new ParseException("Option " + longOptS3Endpoint + " requires a non-empty endpoint");
+            }
+            s3ClientSettings.setEndpoint(endpoint.trim());
+        }
+        return s3ClientSettings;
+    }
+
+    /**
+     * Parse the argument and extract the filter expression applied to the inventory reports.
+     * @param args Arguments in the command line
+     * @return String, which is the filter expression, or null if the option is not specified.
+     */
+    public String parseFilterExpression(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        String filterExpression = cmd.getOptionValue(longOptFilter);
+        if (filterExpression != null && filterExpression.trim().isEmpty()) {
+            throw new ParseException("Option " + longOptFilter + " requires a non-empty expression");
+        }
+        return filterExpression;
+    }
+
+    /**
+     * Parse the argument and check if the lines should be held in compact InventoryReportLineBlocks.
+     * @param args Arguments in the command line
+     * @return boolean, which is true if the compactRows option is specified.
+     */
+    public boolean parseCompactRows(String[] args) throws ParseException {
+        return parser.parse(options, args).hasOption(longOptCompactRows);
+    }
+
+    /**
+     * Parse the argument and check if the lines should be mapped with an InventoryReportLineTokenizer.
+     * @param args Arguments in the command line
+     * @return boolean, which is true if the csvTokenizer option is specified.
+     */
+    public boolean parseCsvTokenizer(String[] args) throws ParseException {
+        return parser.parse(options, args).hasOption(longOptCsvTokenizer);
+    }
+
+    /**
+     * Parse the argument and extract how many bytes of inventory reports each Spark partition should read.
+     * @param args Arguments in the command line
+     * @return long, which is the target bytes per partition, or 0 if the option is not specified.
+     */
+    public long parseTargetPartitionBytes(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        if (!cmd.hasOption(longOptTargetPartitionBytes)) {
+            return 0;
+        }
+        return parsePositiveLong(longOptTargetPartitionBytes, cmd.getOptionValue(longOptTargetPartitionBytes));
+    }
+
+    /**
+     * Parse the argument and extract how large the new inventory reports should be.
+     * The options which are not specified keep their default values.
+     * @param args Arguments in the command line
+     * @return OutputFileSettings, which stores the target lines and the maximum bytes of each new report.
+     */
+    public OutputFileSettings parseOutputFileSettings(String[] args) throws ParseException {
+        final CommandLine cmd = parser.parse(options, args);
+        OutputFileSettings outputFileSettings = new OutputFileSettings();
+        if (cmd.hasOption(longOptTargetFileRows)) {
+            outputFileSettings.setTargetRowsPerFile(
+                    parsePositiveLong(longOptTargetFileRows, cmd.getOptionValue(longOptTargetFileRows)));
+        }
+        if (cmd.hasOption(longOptMaxFileBytes)) {
+            outputFileSettings.setMaxBytesPerFile(
+                    parsePositiveLong(longOptMaxFileBytes, cmd.getOptionValue(longOptMaxFileBytes)));
+        }
+        return outputFileSettings;
+    }
+
+    /**
+     * Helper function, which parses the value of a numeric option
+     * @param option the name of the option, used in the error message
+     * @param value the value of the option
+     * @return long, which is the value of the option
+     * @throws ParseException when the value is not a positive number
+     */
+    private static long parsePositiveLong(String option, String value) throws ParseException {
+        try {
+            long result = Long.parseLong(value.trim());
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ParseException("Option " + option + " requires a positive number but was: " + value);
+    }
+
+    /**
+     * Helper function, which parses the value of a numeric option that must fit in an int
+     * @param option the name of the option, used in the error message
+     * @param value the value of the option
+     * @return int, which is the value of the option
+     * @throws ParseException when the value is not a positive int
+     */
+    private static int parsePositiveInt(String option, String value) throws ParseException {
+        long result = parsePositiveLong(option, value);
+        if (result > Integer.MAX_VALUE) {
+            throw new ParseException("Option " + option + " is too large: " + value);
+        }
+        return (int) result;
+    }
 }
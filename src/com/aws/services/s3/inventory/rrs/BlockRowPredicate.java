@@ -0,0 +1,20 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+
+/**
+ * This BlockRowPredicate interface tests a row of an InventoryReportLineBlock
+ * on its typed columns, without materializing an InventoryReportLine.
+ */
+public interface BlockRowPredicate extends Serializable {
+    /**
+     * @param block the block holding the row
+     * @param row the index of the row in the block
+     * @return true if the row should be kept
+     */
+    boolean test(InventoryReportLineBlock block, int row);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This BooleanColumn class stores a "true"/"false" column, such as IsLatest, as one bit per row.
+ */
+public class BooleanColumn extends CompactColumn {
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMPTY = new byte[0];
+
+    private long[] values = new long[1];
+
+    @Override
+    public void append(CsvRecordScanner record, int field) {
+        if (record.fieldEquals(field, TRUE)) {
+            append(true, false);
+        } else if (record.fieldEquals(field, FALSE)) {
+            append(false, false);
+        } else if (!record.hasField(field) || record.fieldEquals(field, EMPTY)) {
+            append(false, true);
+        } else {
+            throw new IllegalArgumentException("Field " + field + " of the inventory report is not a boolean");
+        }
+    }
+
+    /**
+     * Append a value which is already parsed
+     * @param value the value of the field
+     * @param isMissing true if the field is missing, in which case the value is ignored
+     */
+    public void append(boolean value, boolean isMissing) {
+        if ((rowCount >>> 6) == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        if (isMissing) {
+            markMissing(rowCount);
+        } else if (value) {
+            values[rowCount >>> 6] |= 1L << rowCount;
+        }
+        rowCount++;
+    }
+
+    /**
+     * @param row the index of the row, which must not be missing
+     * @return the value of the row
+     */
+    public boolean getBoolean(int row) {
+        return (values[row >>> 6] & (1L << row)) != 0;
+    }
+
+    @Override
+    public void writeCsv(int row, OutputStream out) throws IOException {
+        if (!isMissing(row)) {
+            byte[] value = getBoolean(row) ? TRUE : FALSE;
+            writeQuoted(out, value, 0, value.length);
+        }
+    }
+
+    @Override
+    public String getString(int row) {
+        return isMissing(row) ? null : Boolean.toString(getBoolean(row));
+    }
+
+    @Override
+    public CompactColumn select(int[] rows, int count) {
+        BooleanColumn selected = new BooleanColumn();
+        for (int i = 0; i < count; i++) {
+            selected.append(getBoolean(rows[i]), isMissing(rows[i]));
+        }
+        return selected;
+    }
+
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        values = Arrays.copyOf(values, Math.max((rowCount + 63) >>> 6, 1));
+    }
+}
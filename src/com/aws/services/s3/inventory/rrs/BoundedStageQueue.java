@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This BoundedStageQueue class hands the elements of one stage of a pipeline to the next one,
+ * such as the filtered lines of the downloaded reports to the threads writing the new reports.
+ * The queue holds at most "capacity" elements, so a fast producer waits for the consumers instead of
+ * buffering the whole inventory in memory. The first failure of any stage stops all the others.
+ */
+public class BoundedStageQueue<T> {
+    private static final long POLL_MILLIS = 100;
+    private static final Object END = new Object();
+    private final BlockingQueue<Object> queue;
+    private final AtomicInteger openProducers;
+    private volatile Throwable failure;
+
+    /**
+     * @param capacity the maximum number of elements waiting in the queue
+     * @param producers the number of producers, the consumers reach the end once all of them are done
+     */
+    public BoundedStageQueue(int capacity, int producers) {
+        if (capacity <= 0 || producers < 0) {
+            throw new IllegalArgumentException("Invalid capacity or producers: " + capacity + ", " + producers);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.openProducers = new AtomicInteger(producers);
+        if (producers == 0) {
+            queue.add(END);
+        }
+    }
+
+    /**
+     * Hand an element to the consumers, waiting while the queue is full
+     * @param element the element
+     * @throws InterruptedException when the producer is interrupted while waiting
+     * @throws PipelineStageException when another stage failed
+     */
+    public void put(T element) throws InterruptedException {
+        while (!queue.offer(element, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Signal that a producer has handed all its elements, whether it succeeded or not
+     */
+    public void producerDone() {
+        if (openProducers.decrementAndGet() == 0) {
+            offerEnd();
+        }
+    }
+
+    /**
+     * Stop every stage, the producers and the consumers then throw a PipelineStageException
+     * @param cause the failure of the stage
+     */
+    public void fail(Throwable cause) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = cause;
+            }
+        }
+        // Free the producers waiting for room, and the elements no consumer will read
+        queue.clear();
+    }
+
+    /**
+     * Stop the producers when the consumers leave before the end, such as when a new report cannot be written
+     */
+    public void close() {
+        fail(new PipelineStageException("The consumers of the stage were closed", null));
+    }
+
+    /**
+     * @return the first failure of a stage, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Build a view consuming the elements, several consumers may read the queue at the same time
+     * @return Iterator which yields the elements until all the producers are done
+     * @throws PipelineStageException from hasNext() when another stage failed
+     */
+    public Iterator<T> consumer() {
+        return new Iterator<T>() {
+            private Object next;
+            private boolean ended;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && !ended) {
+                    checkFailure();
+                    Object element;
+                    try {
+                        element = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new PipelineStageException("Interrupted while waiting for the previous stage", e);
+                    }
+                    if (element == END) {
+                        // A producer may have failed after this consumer checked, and before it added the end
+                        checkFailure();
+                        // Leave the end in the queue for the other consumers
+                        offerEnd();
+                        ended = true;
+                    } else {
+                        next = element;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T element = (T) next;
+                next = null;
+                return element;
+            }
+        };
+    }
+
+    /**
+     * Helper function, which adds the end of the queue once no producer can add any element
+     */
+    private void offerEnd() {
+        try {
+            while (!queue.offer(END, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Helper function, which stops the current stage when another one failed
+     */
+    private void checkFailure() {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new PipelineStageException("Another stage of the pipeline failed", cause);
+        }
+    }
+}
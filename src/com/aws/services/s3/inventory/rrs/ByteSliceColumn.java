@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This ByteSliceColumn class stores the UTF-8 content of a text column, such as Key or ETag,
+ * back to back in a single byte array, with the end offset of each row.
+ * A row is only decoded into a String when it is read with getString().
+ */
+public class ByteSliceColumn extends CompactColumn {
+    private byte[] data = new byte[INITIAL_CAPACITY * 16];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int dataLength;
+
+    @Override
+    public void append(CsvRecordScanner record, int field) {
+        ensureRowCapacity();
+        int bound = record.rawFieldLength(field);
+        int length = 0;
+        if (bound > 0) {
+            if (dataLength + bound > data.length) {
+                data = Arrays.copyOf(data, grow(data.length, dataLength + bound));
+            }
+            length = record.copyField(field, data, dataLength);
+        }
+        if (length == 0) {
+            markMissing(rowCount);
+        }
+        dataLength += length;
+        ends[rowCount++] = dataLength;
+    }
+
+    /**
+     * Append a value which is already decoded
+     * @param value the content of the field, or null if it is missing
+     */
+    public void append(byte[] value) {
+        if (value == null) {
+            appendSlice(null, 0, 0);
+        } else {
+            appendSlice(value, 0, value.length);
+        }
+    }
+
+    @Override
+    public void writeCsv(int row, OutputStream out) throws IOException {
+        if (!isMissing(row)) {
+            writeQuoted(out, data, getOffset(row), getLength(row));
+        }
+    }
+
+    @Override
+    public String getString(int row) {
+        return isMissing(row) ? null : new String(data, getOffset(row), getLength(row), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public CompactColumn select(int[] rows, int count) {
+        ByteSliceColumn selected = new ByteSliceColumn();
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            selected.appendSlice(data, getOffset(row), isMissing(row) ? 0 : getLength(row));
+        }
+        return selected;
+    }
+
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        data = Arrays.copyOf(data, dataLength);
+        ends = Arrays.copyOf(ends, rowCount);
+    }
+
+    /**
+     * @return the array holding the content of all the rows
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @param row the index of the row
+     * @return the offset of the content of the row in getData()
+     */
+    public int getOffset(int row) {
+        return row == 0 ? 0 : ends[row - 1];
+    }
+
+    /**
+     * @param row the index of the row
+     * @return the length in bytes of the content of the row
+     */
+    public int getLength(int row) {
+        return ends[row] - getOffset(row);
+    }
+
+    private void appendSlice(byte[] source, int offset, int length) {
+        ensureRowCapacity();
+        if (length == 0) {
+            markMissing(rowCount);
+        } else {
+            if (dataLength + length > data.length) {
+                data = Arrays.copyOf(data, grow(data.length, dataLength + length));
+            }
+            System.arraycopy(source, offset, data, dataLength, length);
+            dataLength += length;
+        }
+        ends[rowCount++] = dataLength;
+    }
+
+    private void ensureRowCapacity() {
+        if (rowCount == ends.length) {
+            ends = Arrays.copyOf(ends, grow(ends.length, rowCount + 1));
+        }
+    }
+}
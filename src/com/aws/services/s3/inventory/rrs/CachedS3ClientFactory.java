@@ -5,20 +5,38 @@
 package com.aws.services.s3.inventory.rrs;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
 
 /**
  * This CachedS3ClientFactory class provides a serializable wrapper
  * through which to access Amazon S3 instances on Spark workers.
+ * The driver builds its own client from the same factory, so both connect to S3 with the same S3ClientSettings.
+ * The clients come from the S3ClientRegistry, so all the copies of a factory in a JVM share one client.
  */
 public class CachedS3ClientFactory implements SerializableSupplier<AmazonS3> {
+    private final S3ClientSettings settings;
     private transient volatile AmazonS3 client;
 
+    public CachedS3ClientFactory() {
+        this(new S3ClientSettings());
+    }
+
+    public CachedS3ClientFactory(S3ClientSettings settings) {
+        this.settings = settings;
+    }
+
     @Override
     public AmazonS3 get() {
-        if (client == null) {
-            client = new AmazonS3Client();
+        // The client is thread-safe, so the tasks of an executor share a single connection pool.
+        // Two threads may both look it up, but the registry returns them the same client
+        AmazonS3 s3Client = client;
+        if (s3Client == null) {
+            s3Client = S3ClientRegistry.getClient(settings);
+            client = s3Client;
         }
-        return client;
+        return s3Client;
+    }
+
+    public S3ClientSettings getSettings() {
+        return settings;
     }
-}
\ No newline at end of file
+}
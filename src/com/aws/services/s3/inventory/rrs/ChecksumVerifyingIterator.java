@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This ChecksumVerifyingIterator class lazily yields the rows of a streamed inventory report,
+ * either as InventoryReportLine POJOs or as InventoryReportLineBlocks,
+ * and verifies the checksum of the report once the last row has been read.
+ */
+public class ChecksumVerifyingIterator<T> implements Iterator<T>, Closeable {
+    private static final int DRAIN_BUFFER_SIZE = 8192;
+    private final Iterator<T> rows;
+    private final DigestInputStream digestStream;
+    private final Closeable source;
+    private final String expectedChecksum;
+    private final ReportReadMeter<T> meter;
+    private boolean verified;
+
+    /**
+     * @param rows the rows parsed from the decompressed report, closed with the iterator if they are Closeable
+     * @param digestStream the stream of compressed bytes underneath the parser, which computes their MD5
+     * @param source the S3 object the report is read from, closed once the report is consumed
+     * @param expectedChecksum the MD5 specified in the manifest file
+     */
+    public ChecksumVerifyingIterator(Iterator<T> rows, DigestInputStream digestStream,
+                                     Closeable source, String expectedChecksum) {
+        this(rows, digestStream, source, expectedChecksum, null);
+    }
+
+    /**
+     * Same as ChecksumVerifyingIterator(rows, digestStream, source, expectedChecksum), but the time spent in the
+     * iterator and the rows it yields are measured by the meter, which records them when the iterator is closed
+     * @param meter the ReportReadMeter of the streams of the report, or null
+     */
+    ChecksumVerifyingIterator(Iterator<T> rows, DigestInputStream digestStream, Closeable source,
+                              String expectedChecksum, ReportReadMeter<T> meter) {
+        this.rows = rows;
+        this.digestStream = digestStream;
+        this.source = source;
+        this.expectedChecksum = expectedChecksum;
+        this.meter = meter != null && meter.isEnabled() ? meter : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (meter == null) {
+            return hasNextRow();
+        }
+        long start = System.nanoTime();
+        try {
+            return hasNextRow();
+        } finally {
+            meter.addIteratorNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (meter == null) {
+            return rows.next();
+        }
+        long start = System.nanoTime();
+        T row;
+        try {
+            row = rows.next();
+        } finally {
+            meter.addIteratorNanos(System.nanoTime() - start);
+        }
+        meter.countRows(row);
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (meter != null) {
+            meter.record();
+        }
+        try {
+            if (rows instanceof Closeable) {
+                ((Closeable) rows).close();
+            }
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Helper function, which verifies the checksum once the last row has been read
+     */
+    private boolean hasNextRow() {
+        if (rows.hasNext()) {
+            return true;
+        }
+        verifyChecksum();
+        return false;
+    }
+
+    /**
+     * Compare the MD5 of the whole compressed report with the expected one,
+     * and release the S3 object once it is done.
+     * @throws ChecksumMismatchException when the two checksums do not match
+     */
+    private void verifyChecksum() {
+        if (verified) {
+            return;
+        }
+        verified = true;
+        String actualChecksum;
+        try {
+            // The GZIPInputStream may stop reading before the end of the object,
+            // so drain the rest of it to make sure every byte is covered by the MD5
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            while (digestStream.read(buffer) != -1) {
+                // Keep reading until the end of the stream
+            }
+            actualChecksum = Hex.encodeHexString(digestStream.getMessageDigest().digest());
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!actualChecksum.equals(expectedChecksum)) {
+            throw new ChecksumMismatchException(expectedChecksum, actualChecksum);
+        }
+    }
+}
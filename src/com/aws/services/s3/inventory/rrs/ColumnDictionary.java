@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This ColumnDictionary class assigns a small int code, and a single canonical String instance,
+ * to each distinct value of a low-cardinality column such as Bucket, StorageClass or ReplicationStatus.
+ * The dictionary stops growing once it reaches its maximum size, so a column with unexpectedly many
+ * distinct values cannot exhaust the memory of the executor.
+ */
+public class ColumnDictionary implements Serializable {
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final int maxSize;
+    private final List<String> values = new ArrayList<>();
+    // Rebuilt from the values after deserialization, so only the values are shipped
+    private transient Map<String, Integer> codes = new HashMap<>();
+
+    public ColumnDictionary() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ColumnDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Build a dictionary where the given values get the first codes
+     * @param knownValues the values known to appear in the column
+     * @param maxSize the maximum number of values of the dictionary
+     */
+    public ColumnDictionary(List<String> knownValues, int maxSize) {
+        this(maxSize);
+        for (String value : knownValues) {
+            add(value);
+        }
+    }
+
+    /**
+     * @param value a value of the column
+     * @return the canonical instance of the value, or the value itself if it is null or the dictionary is full
+     */
+    public String intern(String value) {
+        int code = add(value);
+        return code < 0 ? value : values.get(code);
+    }
+
+    /**
+     * Get the code of a value, adding the value to the dictionary if it is not in it yet
+     * @param value a value of the column
+     * @return the code of the value, or -1 if the value is null or the dictionary is full
+     */
+    public int add(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (values.size() == maxSize) {
+            return -1;
+        }
+        values.add(value);
+        codes.put(value, values.size() - 1);
+        return values.size() - 1;
+    }
+
+    /**
+     * @param value a value of the column
+     * @return the code of the value, or -1 if it is not in the dictionary
+     */
+    public int getCode(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code the code of a value
+     * @return the canonical instance of the value
+     */
+    public String getValue(int code) {
+        return values.get(code);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        codes = new HashMap<>();
+        for (int code = 0; code < values.size(); code++) {
+            codes.put(values.get(code), code);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This ColumnEqualsPredicate class keeps the records whose field at a given column equals a given value.
+ */
+public class ColumnEqualsPredicate implements RawRecordPredicate {
+    private final int columnIndex;
+    private final byte[] value;
+
+    public ColumnEqualsPredicate(int columnIndex, String value) {
+        this.columnIndex = columnIndex;
+        this.value = value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean test(CsvRecordScanner record) {
+        return record.fieldEquals(columnIndex, value);
+    }
+}
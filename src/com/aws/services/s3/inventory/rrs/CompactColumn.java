@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * This CompactColumn class stores the values of one column of an InventoryReportLineBlock in primitive arrays,
+ * so a block costs a few arrays per column instead of one String per field of every row.
+ * Fields missing from a record, or empty, are tracked in a bitmap.
+ */
+public abstract class CompactColumn implements Serializable {
+    protected static final int INITIAL_CAPACITY = 64;
+    private static final byte QUOTE = '"';
+
+    protected int rowCount;
+    private long[] missing = new long[1];
+
+    /**
+     * Build the column storing a column of the inventory report, according to its name in the fileSchema
+     * @param columnName the name of the column in the fileSchema of the manifest file
+     * @return CompactColumn typed for the content of the column
+     */
+    public static CompactColumn forColumnName(String columnName) {
+        switch (columnName.toLowerCase()) {
+            case "size":
+                return new LongColumn();
+            case "lastmodifieddate":
+                return new TimestampColumn();
+            case "islatest":
+            case "isdeletemaker":
+            case "isdeletemarker":
+            case "ismultipartuploaded":
+                return new BooleanColumn();
+            case "bucket":
+                return new DictionaryColumn(Collections.emptyList());
+            case "storageclass":
+                return new DictionaryColumn(DictionaryColumn.STORAGE_CLASSES);
+            case "replicationstatus":
+                return new DictionaryColumn(DictionaryColumn.REPLICATION_STATUSES);
+            default:
+                return new ByteSliceColumn();
+        }
+    }
+
+    /**
+     * Append the value of a field of a raw CSV record as the last row of the column
+     * @param record the scanner positioned on the record
+     * @param field the index of the field in the record
+     */
+    public abstract void append(CsvRecordScanner record, int field);
+
+    /**
+     * Write the value of a row as a quoted CSV field, or nothing if it is missing
+     * @param row the index of the row
+     * @param out the stream receiving the field
+     * @throws IOException when writing to the stream fails
+     */
+    public abstract void writeCsv(int row, OutputStream out) throws IOException;
+
+    /**
+     * @param row the index of the row
+     * @return the value of the row as it appears in the inventory report, or null if it is missing
+     */
+    public abstract String getString(int row);
+
+    /**
+     * Copy some rows of the column into a new column
+     * @param rows the indexes of the rows to copy, in order
+     * @param count the number of rows to copy
+     * @return CompactColumn of the same type, holding the selected rows
+     */
+    public abstract CompactColumn select(int[] rows, int count);
+
+    /**
+     * Shrink the arrays of the column to the number of rows it holds, once no more rows are appended
+     */
+    public void trimToSize() {
+        missing = Arrays.copyOf(missing, (rowCount + 63) >>> 6);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row the index of the row
+     * @return true if the field is missing or empty in this row
+     */
+    public boolean isMissing(int row) {
+        // The bitmap only grows when a row is marked missing, so the words past its end are all clear
+        return (row >>> 6) < missing.length && (missing[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Mark the row being appended as missing
+     */
+    protected void markMissing(int row) {
+        if ((row >>> 6) >= missing.length) {
+            missing = Arrays.copyOf(missing, Math.max(missing.length * 2, (row >>> 6) + 1));
+        }
+        missing[row >>> 6] |= 1L << row;
+    }
+
+    /**
+     * Helper function, which computes the new capacity of an array holding at least the required number of elements
+     */
+    protected static int grow(int capacity, int required) {
+        return Math.max(Math.max(capacity * 2, required), INITIAL_CAPACITY);
+    }
+
+    /**
+     * Helper function, which writes bytes as a quoted CSV field, escaping the quotes they contain
+     */
+    protected static void writeQuoted(OutputStream out, byte[] data, int offset, int length) throws IOException {
+        out.write(QUOTE);
+        int start = offset;
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] == QUOTE) {
+                out.write(data, start, i + 1 - start);
+                start = i;
+            }
+        }
+        out.write(data, start, offset + length - start);
+        out.write(QUOTE);
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This CsvRecordScanner class splits the CSV content of an inventory report into records
+ * and locates the fields of the current record directly in its byte buffer,
+ * without decoding the record into Strings.
+ * Fields may be quoted with '"', in which case a quote inside the field is escaped as '""'.
+ */
+public class CsvRecordScanner implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte SEPARATOR = ',';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final InputStream inputStream;
+    private byte[] buffer;
+    private int bufferEnd;
+    private boolean endOfStream;
+    private int recordStart;
+    private int recordEnd;
+    private int nextRecordStart;
+    private int[] fieldStarts = new int[16];
+    private int locatedFields;
+    // Where the content of each field ends, and if it holds escaped quotes, once the record is checked well formed
+    private int[] contentEnds = new int[16];
+    private boolean[] escapedFields = new boolean[16];
+    private boolean wellFormed;
+    private char[] chars = new char[256];
+    private long recordCount;
+
+    public CsvRecordScanner(InputStream inputStream) {
+        this(inputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvRecordScanner(InputStream inputStream, int bufferSize) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Move to the next non-empty record of the report
+     * @return false if there is no record left
+     * @throws IOException when reading the report fails
+     */
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            int start = nextRecordStart;
+            int end = findRecordEnd(start);
+            while (end < 0 && !endOfStream) {
+                start = fill(start);
+                end = findRecordEnd(start);
+            }
+            if (end < 0) {
+                // The last record of the report may not be terminated by a line feed
+                if (start == bufferEnd) {
+                    return false;
+                }
+                end = bufferEnd;
+                nextRecordStart = bufferEnd;
+            } else {
+                nextRecordStart = end + 1;
+            }
+            if (end > start && buffer[end - 1] == CARRIAGE_RETURN) {
+                end--;
+            }
+            if (end > start) {
+                recordStart = start;
+                recordEnd = end;
+                locatedFields = 0;
+                wellFormed = false;
+                recordCount++;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of records the scanner has moved to, whether they were kept or not
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the buffer holding the current record
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the offset of the current record in the buffer
+     */
+    public int getRecordStart() {
+        return recordStart;
+    }
+
+    /**
+     * @return the offset right after the current record in the buffer, excluding the line terminator
+     */
+    public int getRecordEnd() {
+        return recordEnd;
+    }
+
+    /**
+     * @param column the index of the field in the record
+     * @return true if the current record has a field at this column
+     */
+    public boolean hasField(int column) {
+        return findFieldStart(column) >= 0;
+    }
+
+    /**
+     * Compare a field of the current record with the given value byte by byte, after removing its quotes
+     * @param column the index of the field in the record, which must exist
+     * @param value the value to compare the field with
+     * @return a negative number, zero, or a positive number as the field is less than, equal to,
+     * or greater than the value
+     */
+    public int compareField(int column, byte[] value) {
+        int fieldStart = findFieldStart(column);
+        boolean quoted = fieldStart < recordEnd && buffer[fieldStart] == QUOTE;
+        int position = quoted ? fieldStart + 1 : fieldStart;
+        for (int i = 0; i < value.length; i++) {
+            int current = nextContentByte(position, quoted);
+            if (current < 0) {
+                return -1;
+            }
+            int difference = current - (value[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+            position += (quoted && buffer[position] == QUOTE) ? 2 : 1;
+        }
+        return nextContentByte(position, quoted) < 0 ? 0 : 1;
+    }
+
+    /**
+     * @param column the index of the field in the record, which must exist
+     * @param prefix the expected beginning of the field
+     * @return true if the field, after removing its quotes, starts with the prefix
+     */
+    public boolean fieldStartsWith(int column, byte[] prefix) {
+        int fieldStart = findFieldStart(column);
+        boolean quoted = fieldStart < recordEnd && buffer[fieldStart] == QUOTE;
+        int position = quoted ? fieldStart + 1 : fieldStart;
+        for (byte expected : prefix) {
+            if (nextContentByte(position, quoted) != (expected & 0xff)) {
+                return false;
+            }
+            position += (quoted && buffer[position] == QUOTE) ? 2 : 1;
+        }
+        return true;
+    }
+
+    /**
+     * Parse a field of the current record as a decimal number, without creating a String
+     * @param column the index of the field in the record
+     * @param defaultValue the value returned when the field is missing, empty or not a number
+     * @return the value of the field
+     */
+    public long fieldAsLong(int column, long defaultValue) {
+        int fieldStart = findFieldStart(column);
+        if (fieldStart < 0) {
+            return defaultValue;
+        }
+        int position = fieldStart;
+        int end = findUnquotedFieldEnd(fieldStart);
+        if (position < end && buffer[position] == QUOTE) {
+            position++;
+            if (end - 1 > position && buffer[end - 1] == QUOTE) {
+                end--;
+            }
+        }
+        boolean negative = position < end && buffer[position] == '-';
+        if (negative) {
+            position++;
+        }
+        if (position == end || end - position > 18) {
+            return defaultValue;
+        }
+        long result = 0;
+        for (; position < end; position++) {
+            int digit = buffer[position] - '0';
+            if (digit < 0 || digit > 9) {
+                return defaultValue;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * @param column the index of the field in the record
+     * @return the length in bytes of the field as it appears in the record, including its quotes,
+     * which bounds the length of its content, or -1 if the record has fewer fields
+     */
+    public int rawFieldLength(int column) {
+        int fieldStart = findFieldStart(column);
+        if (fieldStart < 0) {
+            return -1;
+        }
+        int fieldEnd = fieldStart < recordEnd && buffer[fieldStart] == QUOTE
+                ? skipQuotedField(fieldStart) : findUnquotedFieldEnd(fieldStart);
+        return fieldEnd - fieldStart;
+    }
+
+    /**
+     * Copy the content of a field of the current record, after removing its quotes
+     * @param column the index of the field in the record
+     * @param target the array receiving the content, with room for at least rawFieldLength(column) bytes
+     * @param offset the offset in the target array
+     * @return the number of bytes copied, or -1 if the record has fewer fields
+     */
+    public int copyField(int column, byte[] target, int offset) {
+        int fieldStart = findFieldStart(column);
+        if (fieldStart < 0) {
+            return -1;
+        }
+        boolean quoted = fieldStart < recordEnd && buffer[fieldStart] == QUOTE;
+        int position = quoted ? fieldStart + 1 : fieldStart;
+        int copied = 0;
+        int current;
+        while ((current = nextContentByte(position, quoted)) >= 0) {
+            target[offset + copied++] = (byte) current;
+            position += (quoted && buffer[position] == QUOTE) ? 2 : 1;
+        }
+        return copied;
+    }
+
+    /**
+     * Compare a field of the current record with the given value, after removing its quotes
+     * @param column the index of the field in the record
+     * @param value the expected content of the field
+     * @return true if the field exists and its content equals the value
+     */
+    public boolean fieldEquals(int column, byte[] value) {
+        int fieldStart = findFieldStart(column);
+        if (fieldStart < 0) {
+            return false;
+        }
+        if (fieldStart == recordEnd || buffer[fieldStart] != QUOTE) {
+            int fieldEnd = findUnquotedFieldEnd(fieldStart);
+            return fieldEnd - fieldStart == value.length && regionEquals(fieldStart, value);
+        }
+        int valueIndex = 0;
+        for (int i = fieldStart + 1; i < recordEnd; i++) {
+            byte current = buffer[i];
+            if (current == QUOTE) {
+                if (i + 1 < recordEnd && buffer[i + 1] == QUOTE) {
+                    i++;
+                } else {
+                    return valueIndex == value.length;
+                }
+            }
+            if (valueIndex == value.length || value[valueIndex++] != current) {
+                return false;
+            }
+        }
+        // Unterminated quoted field
+        return false;
+    }
+
+    /**
+     * Check that the current record is made of exactly the given number of fields, each of them either unquoted
+     * without any quote, or quoted from its first to its last byte, as S3 writes the inventory reports.
+     * The fields are located in the same pass, so that fieldAsString does not scan them again.
+     * @param columns the number of columns of the schema
+     * @return true if the record can be decoded field by field, false if it needs a lenient CSV parser
+     */
+    public boolean isWellFormed(int columns) {
+        if (wellFormed) {
+            return locatedFields == columns;
+        }
+        int position = recordStart;
+        int column = 0;
+        while (true) {
+            if (column == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, column * 2);
+            }
+            if (column == contentEnds.length) {
+                contentEnds = Arrays.copyOf(contentEnds, column * 2);
+                escapedFields = Arrays.copyOf(escapedFields, column * 2);
+            }
+            fieldStarts[column] = position;
+            boolean escaped = false;
+            if (position < recordEnd && buffer[position] == QUOTE) {
+                position++;
+                while (position < recordEnd) {
+                    if (buffer[position] == QUOTE) {
+                        if (position + 1 < recordEnd && buffer[position + 1] == QUOTE) {
+                            escaped = true;
+                            position += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                // An unterminated field, or bytes between the closing quote and the separator
+                if (position == recordEnd || (position + 1 < recordEnd && buffer[position + 1] != SEPARATOR)) {
+                    locatedFields = 0;
+                    return false;
+                }
+                contentEnds[column] = position++;
+            } else {
+                while (position < recordEnd && buffer[position] != SEPARATOR) {
+                    if (buffer[position] == QUOTE) {
+                        locatedFields = 0;
+                        return false;
+                    }
+                    position++;
+                }
+                contentEnds[column] = position;
+            }
+            escapedFields[column++] = escaped;
+            if (position == recordEnd) {
+                break;
+            }
+            // Skip the separator
+            position++;
+        }
+        locatedFields = column;
+        wellFormed = true;
+        return column == columns;
+    }
+
+    /**
+     * Decode a field of the current record as a UTF-8 String, after removing its quotes.
+     * This is the only method of the scanner creating a String, for the fields which are actually requested.
+     * @param column the index of the field in the record
+     * @return the content of the field, or null if the record has fewer fields
+     */
+    public String fieldAsString(int column) {
+        if (!wellFormed || column >= locatedFields || escapedFields[column]) {
+            int length = rawFieldLength(column);
+            if (length < 0) {
+                return null;
+            }
+            byte[] content = new byte[length];
+            return new String(content, 0, copyField(column, content, 0), StandardCharsets.UTF_8);
+        }
+        int fieldStart = fieldStarts[column];
+        int contentStart = fieldStart < recordEnd && buffer[fieldStart] == QUOTE ? fieldStart + 1 : fieldStart;
+        return decode(contentStart, contentEnds[column]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Find the offset of a field in the current record
+     * @param column the index of the field in the record
+     * @return the offset of the first byte of the field, or -1 if the record has fewer fields
+     */
+    private int findFieldStart(int column) {
+        if (column < locatedFields) {
+            return fieldStarts[column];
+        }
+        if (locatedFields == 0) {
+            fieldStarts[0] = recordStart;
+            locatedFields = 1;
+        }
+        // The offsets of the fields already located in this record are kept, so each byte is scanned once
+        int position = fieldStarts[locatedFields - 1];
+        while (locatedFields <= column) {
+            if (position < recordEnd && buffer[position] == QUOTE) {
+                position = skipQuotedField(position);
+            } else {
+                position = findUnquotedFieldEnd(position);
+            }
+            if (position >= recordEnd) {
+                return -1;
+            }
+            // Skip the separator
+            position++;
+            if (locatedFields == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldStarts.length * 2);
+            }
+            fieldStarts[locatedFields++] = position;
+        }
+        return position;
+    }
+
+    /**
+     * Read a byte of the content of a field, resolving the escaped quotes of quoted fields
+     * @param position the offset of the byte in the buffer
+     * @param quoted true if the field is quoted
+     * @return the byte as an unsigned value, or -1 at the end of the field
+     */
+    private int nextContentByte(int position, boolean quoted) {
+        if (position >= recordEnd) {
+            return -1;
+        }
+        byte current = buffer[position];
+        if (quoted) {
+            if (current == QUOTE) {
+                return position + 1 < recordEnd && buffer[position + 1] == QUOTE ? QUOTE : -1;
+            }
+        } else if (current == SEPARATOR) {
+            return -1;
+        }
+        return current & 0xff;
+    }
+
+    /**
+     * @return the offset of the separator or the end of the record after a quoted field starting at the given offset
+     */
+    private int skipQuotedField(int fieldStart) {
+        int position = fieldStart + 1;
+        while (position < recordEnd) {
+            if (buffer[position] == QUOTE) {
+                if (position + 1 < recordEnd && buffer[position + 1] == QUOTE) {
+                    position += 2;
+                    continue;
+                }
+                position++;
+                break;
+            }
+            position++;
+        }
+        while (position < recordEnd && buffer[position] != SEPARATOR) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Decode bytes of the buffer as UTF-8, copying them as chars when they are all ASCII,
+     * which avoids creating a CharsetDecoder for each String
+     */
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            byte current = buffer[start + i];
+            if (current < 0) {
+                return new String(buffer, start, length, StandardCharsets.UTF_8);
+            }
+            chars[i] = (char) current;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * @return the offset of the separator or the end of the record after an unquoted field
+     */
+    private int findUnquotedFieldEnd(int fieldStart) {
+        int position = fieldStart;
+        while (position < recordEnd && buffer[position] != SEPARATOR) {
+            position++;
+        }
+        return position;
+    }
+
+    private boolean regionEquals(int offset, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            if (buffer[offset + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the line feed ending the record starting at the given offset, ignoring line feeds inside quotes
+     * @return the offset of the line feed, or -1 if the buffer does not hold the whole record
+     */
+    private int findRecordEnd(int start) {
+        boolean quoted = false;
+        for (int i = start; i < bufferEnd; i++) {
+            byte current = buffer[i];
+            if (current == QUOTE) {
+                quoted = !quoted;
+            } else if (current == LINE_FEED && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read more of the report into the buffer, moving the incomplete record at the given offset
+     * to the beginning of the buffer and growing the buffer if the record does not fit in it
+     * @return the new offset of the incomplete record
+     */
+    private int fill(int start) throws IOException {
+        int remaining = bufferEnd - start;
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        bufferEnd = remaining;
+        int read = inputStream.read(buffer, bufferEnd, buffer.length - bufferEnd);
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            bufferEnd += read;
+        }
+        return 0;
+    }
+}
@@ -28,4 +28,20 @@ public class CsvSchemaFactory {
         }
         return schemaBuilder.build();
     }
+
+    /**
+     * Find the position of a column in the fileSchema of the manifest file, ignoring case
+     * @param inventoryManifest the original manifest of the inventory report
+     * @param columnName the name of the column
+     * @return the index of the column, or -1 if the inventory report does not include it
+     */
+    public static int getColumnIndex(InventoryManifest inventoryManifest, String columnName){
+        String[] columns = inventoryManifest.getFileSchema().trim().split("\\s*,\\s*");
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
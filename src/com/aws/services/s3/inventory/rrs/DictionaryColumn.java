@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This DictionaryColumn class stores a column with a handful of distinct values, such as StorageClass or Bucket,
+ * as one byte code per row, which indexes a ColumnDictionary of the values.
+ * The dictionary starts with the values known to appear in inventory reports, so their codes are the same
+ * in every column, and any other value found in the report is appended to it.
+ * When a block is serialized, each distinct value is written once, followed by the byte codes of the rows.
+ */
+public class DictionaryColumn extends CompactColumn {
+    public static final List<String> STORAGE_CLASSES = Collections.unmodifiableList(Arrays.asList(
+            "STANDARD", "REDUCED_REDUNDANCY", "STANDARD_IA", "GLACIER"));
+    public static final List<String> REPLICATION_STATUSES = Collections.unmodifiableList(Arrays.asList(
+            "PENDING", "COMPLETED", "FAILED", "REPLICA"));
+    private static final int MAX_DICTIONARY_SIZE = 256;
+
+    private final ColumnDictionary dictionary;
+    private byte[] codes = new byte[INITIAL_CAPACITY];
+    private transient List<byte[]> encodedDictionary;
+
+    /**
+     * @param knownValues the values known to appear in the column, which get the first codes
+     */
+    public DictionaryColumn(List<String> knownValues) {
+        this.dictionary = new ColumnDictionary(knownValues, MAX_DICTIONARY_SIZE);
+    }
+
+    @Override
+    public void append(CsvRecordScanner record, int field) {
+        List<byte[]> encoded = getEncodedDictionary();
+        for (int code = 0; code < encoded.size(); code++) {
+            if (record.fieldEquals(field, encoded.get(code))) {
+                append(code);
+                return;
+            }
+        }
+        int bound = record.rawFieldLength(field);
+        byte[] value = new byte[Math.max(bound, 0)];
+        int length = bound > 0 ? record.copyField(field, value, 0) : 0;
+        if (length == 0) {
+            appendMissing();
+        } else {
+            append(new String(value, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Append a value, adding it to the dictionary if it is not in it yet
+     * @param value the value of the field, or null if it is missing
+     */
+    public void append(String value) {
+        if (value == null || value.isEmpty()) {
+            appendMissing();
+            return;
+        }
+        int size = dictionary.size();
+        int code = dictionary.add(value);
+        if (code < 0) {
+            throw new IllegalStateException("More than " + MAX_DICTIONARY_SIZE +
+                    " distinct values in a dictionary encoded column");
+        }
+        if (code == size && encodedDictionary != null) {
+            encodedDictionary.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        append(code);
+    }
+
+    /**
+     * @param row the index of the row, which must not be missing
+     * @return the code of the value of the row
+     */
+    public int getCode(int row) {
+        return codes[row] & 0xff;
+    }
+
+    /**
+     * @param value a value of the column
+     * @return the code of the value, or -1 if it does not appear in the column
+     */
+    public int getCode(String value) {
+        return dictionary.getCode(value);
+    }
+
+    @Override
+    public void writeCsv(int row, OutputStream out) throws IOException {
+        if (!isMissing(row)) {
+            byte[] value = getEncodedDictionary().get(getCode(row));
+            writeQuoted(out, value, 0, value.length);
+        }
+    }
+
+    @Override
+    public String getString(int row) {
+        return isMissing(row) ? null : dictionary.getValue(getCode(row));
+    }
+
+    @Override
+    public CompactColumn select(int[] rows, int count) {
+        DictionaryColumn selected = new DictionaryColumn(Collections.emptyList());
+        for (int code = 0; code < dictionary.size(); code++) {
+            selected.dictionary.add(dictionary.getValue(code));
+        }
+        for (int i = 0; i < count; i++) {
+            if (isMissing(rows[i])) {
+                selected.appendMissing();
+            } else {
+                selected.append(getCode(rows[i]));
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        codes = Arrays.copyOf(codes, rowCount);
+    }
+
+    private void appendMissing() {
+        markMissing(rowCount);
+        append(0);
+    }
+
+    private void append(int code) {
+        if (rowCount == codes.length) {
+            codes = Arrays.copyOf(codes, grow(codes.length, rowCount + 1));
+        }
+        codes[rowCount++] = (byte) code;
+    }
+
+    private List<byte[]> getEncodedDictionary() {
+        if (encodedDictionary == null) {
+            encodedDictionary = new ArrayList<>(dictionary.size());
+            for (int code = 0; code < dictionary.size(); code++) {
+                encodedDictionary.add(dictionary.getValue(code).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return encodedDictionary;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.aws.services.s3.inventory.rrs.FilterExpressionPredicates.Operator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This FilterExpressionParser class compiles a filter expression into a RawRecordPredicate
+ * over the columns of the inventory report, once on the driver. For example:
+ * <pre>
+ * StorageClass = 'STANDARD' AND Size &gt; 1048576 AND LastModifiedDate &lt; '2017-01-01'
+ *     AND NOT (IsLatest = 'true' OR Key STARTS_WITH 'logs/')
+ * </pre>
+ * Columns are compared with a 'quoted' literal byte by byte, or numerically with a number literal.
+ * Keywords are case insensitive, and a quote inside a literal is escaped as ''.
+ */
+public class FilterExpressionParser {
+    private static final String STARTS_WITH = "STARTS_WITH";
+
+    private final String expression;
+    private final InventoryManifest inventoryManifest;
+    private final List<String> tokens;
+    private int position;
+
+    private FilterExpressionParser(String expression, InventoryManifest inventoryManifest) {
+        this.expression = expression;
+        this.inventoryManifest = inventoryManifest;
+        this.tokens = tokenize(expression);
+    }
+
+    /**
+     * Compile a filter expression against the fileSchema of the manifest file
+     * @param expression the filter expression
+     * @param inventoryManifest the original manifest of the inventory report
+     * @return RawRecordPredicate which evaluates the expression on the raw records of the report
+     * @throws InvalidFilterExpressionException when the expression is invalid or refers to an unknown column
+     */
+    public static RawRecordPredicate parse(String expression, InventoryManifest inventoryManifest) {
+        FilterExpressionParser parser = new FilterExpressionParser(expression, inventoryManifest);
+        RawRecordPredicate predicate = parser.parseOr();
+        if (parser.position != parser.tokens.size()) {
+            throw parser.error("unexpected '" + parser.tokens.get(parser.position) + "'");
+        }
+        return predicate;
+    }
+
+    private RawRecordPredicate parseOr() {
+        RawRecordPredicate predicate = parseAnd();
+        while (acceptKeyword("OR")) {
+            predicate = new FilterExpressionPredicates.Or(predicate, parseAnd());
+        }
+        return predicate;
+    }
+
+    private RawRecordPredicate parseAnd() {
+        RawRecordPredicate predicate = parseUnary();
+        while (acceptKeyword("AND")) {
+            predicate = new FilterExpressionPredicates.And(predicate, parseUnary());
+        }
+        return predicate;
+    }
+
+    private RawRecordPredicate parseUnary() {
+        if (acceptKeyword("NOT")) {
+            return new FilterExpressionPredicates.Not(parseUnary());
+        }
+        if (accept("(")) {
+            RawRecordPredicate predicate = parseOr();
+            expect(")");
+            return predicate;
+        }
+        return parseComparison();
+    }
+
+    private RawRecordPredicate parseComparison() {
+        String column = next("a column name");
+        if (!isIdentifier(column)) {
+            throw error("expected a column name but got '" + column + "'");
+        }
+        int columnIndex = CsvSchemaFactory.getColumnIndex(inventoryManifest, column);
+        if (columnIndex < 0) {
+            throw error("column " + column + " is not included in the inventory report");
+        }
+
+        String operatorToken = next("an operator");
+        if (operatorToken.equalsIgnoreCase(STARTS_WITH)) {
+            String literal = next("a literal");
+            if (!isString(literal)) {
+                throw error(STARTS_WITH + " requires a quoted literal but got " + literal);
+            }
+            return new FilterExpressionPredicates.StartsWith(columnIndex, unquote(literal));
+        }
+        Operator operator = Operator.fromSymbol("<>".equals(operatorToken) ? "!=" : operatorToken);
+        if (operator == null) {
+            throw error("expected an operator but got '" + operatorToken + "'");
+        }
+
+        String literal = next("a literal");
+        if (isString(literal)) {
+            return new FilterExpressionPredicates.StringComparison(columnIndex, operator, unquote(literal));
+        }
+        try {
+            return new FilterExpressionPredicates.NumberComparison(columnIndex, operator, Long.parseLong(literal));
+        } catch (NumberFormatException e) {
+            throw error("expected a quoted literal or a number but got " + literal);
+        }
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean accept(String token) {
+        if (position < tokens.size() && tokens.get(position).equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("expected '" + token + "'");
+        }
+    }
+
+    private String next(String expected) {
+        if (position == tokens.size()) {
+            throw error("expected " + expected + " at the end of the expression");
+        }
+        return tokens.get(position++);
+    }
+
+    private InvalidFilterExpressionException error(String reason) {
+        return new InvalidFilterExpressionException(expression, reason);
+    }
+
+    private static boolean isIdentifier(String token) {
+        return Character.isLetter(token.charAt(0)) || token.charAt(0) == '_';
+    }
+
+    private static boolean isString(String token) {
+        return token.charAt(0) == '\'';
+    }
+
+    private static String unquote(String literal) {
+        return literal.substring(1, literal.length() - 1).replace("''", "'");
+    }
+
+    /**
+     * Split the expression into identifiers, 'quoted' literals, numbers, operators and parentheses
+     */
+    private List<String> tokenize(String expression) {
+        List<String> result = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char current = expression.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(current)) {
+                i++;
+                continue;
+            }
+            if (current == '\'') {
+                i++;
+                while (true) {
+                    if (i >= expression.length()) {
+                        throw error("unterminated literal");
+                    }
+                    if (expression.charAt(i) == '\'') {
+                        if (i + 1 < expression.length() && expression.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    i++;
+                }
+            } else if (Character.isLetter(current) || current == '_') {
+                while (i < expression.length() &&
+                        (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+                    i++;
+                }
+            } else if (Character.isDigit(current) || current == '-') {
+                i++;
+                while (i < expression.length() && Character.isDigit(expression.charAt(i))) {
+                    i++;
+                }
+            } else if (current == '<' || current == '>' || current == '!') {
+                i++;
+                if (i < expression.length() && (expression.charAt(i) == '=' || expression.charAt(i) == '>')) {
+                    i++;
+                }
+            } else if (current == '=' || current == '(' || current == ')') {
+                i++;
+            } else {
+                throw error("unexpected character '" + current + "'");
+            }
+            result.add(expression.substring(start, i));
+        }
+        if (result.isEmpty()) {
+            throw error("the expression is empty");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This FilterExpressionPredicates class holds the RawRecordPredicates a filter expression is compiled to.
+ * Every column is resolved to its index in the report on the driver, and every literal is converted
+ * to bytes or to a long up front, so evaluating a record only compares raw bytes and primitives.
+ */
+public final class FilterExpressionPredicates {
+
+    private FilterExpressionPredicates() {
+    }
+
+    /**
+     * The comparison operators of a filter expression
+     */
+    public enum Operator {
+        EQUALS("="), NOT_EQUALS("!="), LESS_THAN("<"), LESS_THAN_OR_EQUALS("<="),
+        GREATER_THAN(">"), GREATER_THAN_OR_EQUALS(">=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * @param comparison the result of comparing the field with the literal
+         * @return true if the comparison satisfies this operator
+         */
+        boolean matches(int comparison) {
+            switch (this) {
+                case EQUALS:
+                    return comparison == 0;
+                case NOT_EQUALS:
+                    return comparison != 0;
+                case LESS_THAN:
+                    return comparison < 0;
+                case LESS_THAN_OR_EQUALS:
+                    return comparison <= 0;
+                case GREATER_THAN:
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+
+        /**
+         * @param symbol the symbol of the operator in the filter expression
+         * @return the operator, or null if the symbol is not an operator
+         */
+        static Operator fromSymbol(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Keep the records matching both predicates
+     */
+    public static final class And implements RawRecordPredicate {
+        private final RawRecordPredicate left;
+        private final RawRecordPredicate right;
+
+        public And(RawRecordPredicate left, RawRecordPredicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(CsvRecordScanner record) {
+            return left.test(record) && right.test(record);
+        }
+    }
+
+    /**
+     * Keep the records matching either predicate
+     */
+    public static final class Or implements RawRecordPredicate {
+        private final RawRecordPredicate left;
+        private final RawRecordPredicate right;
+
+        public Or(RawRecordPredicate left, RawRecordPredicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(CsvRecordScanner record) {
+            return left.test(record) || right.test(record);
+        }
+    }
+
+    /**
+     * Keep the records not matching the predicate
+     */
+    public static final class Not implements RawRecordPredicate {
+        private final RawRecordPredicate predicate;
+
+        public Not(RawRecordPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(CsvRecordScanner record) {
+            return !predicate.test(record);
+        }
+    }
+
+    /**
+     * Compare a column with a String literal, byte by byte.
+     * ISO-8601 dates such as LastModifiedDate compare correctly this way.
+     */
+    public static final class StringComparison implements RawRecordPredicate {
+        private final int columnIndex;
+        private final Operator operator;
+        private final byte[] value;
+
+        public StringComparison(int columnIndex, Operator operator, String value) {
+            this.columnIndex = columnIndex;
+            this.operator = operator;
+            this.value = value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean test(CsvRecordScanner record) {
+            if (operator == Operator.EQUALS) {
+                return record.fieldEquals(columnIndex, value);
+            }
+            return record.hasField(columnIndex) && operator.matches(record.compareField(columnIndex, value));
+        }
+    }
+
+    /**
+     * Compare a numeric column such as Size with a number literal.
+     * Records where the column is missing or not a number never match.
+     */
+    public static final class NumberComparison implements RawRecordPredicate {
+        private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+        private final int columnIndex;
+        private final Operator operator;
+        private final long value;
+
+        public NumberComparison(int columnIndex, Operator operator, long value) {
+            this.columnIndex = columnIndex;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(CsvRecordScanner record) {
+            long fieldValue = record.fieldAsLong(columnIndex, NOT_A_NUMBER);
+            return fieldValue != NOT_A_NUMBER && operator.matches(Long.compare(fieldValue, value));
+        }
+    }
+
+    /**
+     * Keep the records where a column, such as Key, starts with a prefix
+     */
+    public static final class StartsWith implements RawRecordPredicate {
+        private final int columnIndex;
+        private final byte[] prefix;
+
+        public StartsWith(int columnIndex, String prefix) {
+            this.columnIndex = columnIndex;
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean test(CsvRecordScanner record) {
+            return record.hasField(columnIndex) && record.fieldStartsWith(columnIndex, prefix);
+        }
+    }
+}
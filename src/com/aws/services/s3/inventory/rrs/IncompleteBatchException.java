@@ -0,0 +1,22 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.util.List;
+
+/**
+ * The IncompleteBatchException is thrown at the end of a batch when some of its manifests
+ * could not be processed, after the new manifests of the other ones have been written.
+ */
+public class IncompleteBatchException extends RuntimeException{
+    /**
+     * Constructs a new IncompleteBatchException instance.
+     * @param failedSources the S3 URIs of the manifests which were not processed.
+     * @param total the number of manifests of the batch.
+     */
+    public IncompleteBatchException(List<String> failedSources, int total) {
+        super(failedSources.size() + " of " + total + " manifests were not processed: " + failedSources);
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+/**
+ * The InvalidFilterExpressionException is thrown when a filter expression cannot be parsed,
+ * or refers to a column which is not included in the inventory report.
+ */
+public class InvalidFilterExpressionException extends RuntimeException {
+    /**
+     * Constructs a new InvalidFilterExpressionException instance.
+     * @param expression that could not be compiled.
+     * @param reason why it could not be compiled.
+     */
+    public InvalidFilterExpressionException(String expression, String reason) {
+        super("Invalid filter expression [" + expression + "]: " + reason);
+    }
+}
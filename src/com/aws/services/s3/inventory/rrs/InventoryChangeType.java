@@ -0,0 +1,23 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+/**
+ * This InventoryChangeType enum tells how an object version differs between two snapshots of an inventory.
+ * Each type of change is written to its own new manifest, under the output prefix followed by its folder name.
+ */
+public enum InventoryChangeType {
+    ADDED("added"), REMOVED("removed"), STORAGE_CLASS_CHANGED("storageClassChanged");
+
+    private final String folderName;
+
+    InventoryChangeType(String folderName) {
+        this.folderName = folderName;
+    }
+
+    public String getFolderName() {
+        return folderName;
+    }
+}
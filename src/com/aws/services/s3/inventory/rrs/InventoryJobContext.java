@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import java.io.Serializable;
+
+/**
+ * This InventoryJobContext class holds what the Spark workers need to know about the job:
+ * the schema of the inventory reports, where to read and write them, and which lines to keep.
+ * It is built once on the driver and broadcast to the workers, where it is read-only,
+ * instead of every function capturing the whole InventoryManifest and its list of locators.
+ */
+public class InventoryJobContext implements Serializable {
+    private final String sourceBucket;
+    private final CsvSchema schema;
+    private final InventoryReportLineMapper mapper;
+    private final String srcBucket;
+    private final String destBucket;
+    private final String destPrefix;
+    private final TransferSettings transferSettings;
+    private final RawRecordPredicate predicate;
+    private final OutputFileSettings outputFileSettings;
+
+    /**
+     * @param inventoryManifest the original manifest, of which only the source bucket and the schema are kept
+     * @param srcBucket the bucket holding the original manifest, which is part of the keys of the new reports
+     * @param destBucket the bucket receiving the new reports
+     * @param destPrefix the prefix of the keys of the new reports
+     * @param transferSettings how the reports are transferred from and to S3
+     * @param predicate RawRecordPredicate selecting the lines to keep, or null to keep all of them
+     */
+    public InventoryJobContext(InventoryManifest inventoryManifest, String srcBucket, String destBucket,
+                               String destPrefix, TransferSettings transferSettings, RawRecordPredicate predicate) {
+        this(inventoryManifest, srcBucket, destBucket, destPrefix, transferSettings, predicate,
+                new OutputFileSettings());
+    }
+
+    /**
+     * @param inventoryManifest the original manifest, of which only the source bucket and the schema are kept
+     * @param srcBucket the bucket holding the original manifest, which is part of the keys of the new reports
+     * @param destBucket the bucket receiving the new reports
+     * @param destPrefix the prefix of the keys of the new reports
+     * @param transferSettings how the reports are transferred from and to S3
+     * @param predicate RawRecordPredicate selecting the lines to keep, or null to keep all of them
+     * @param outputFileSettings how large the new reports should be
+     */
+    public InventoryJobContext(InventoryManifest inventoryManifest, String srcBucket, String destBucket,
+                               String destPrefix, TransferSettings transferSettings, RawRecordPredicate predicate,
+                               OutputFileSettings outputFileSettings) {
+        this(inventoryManifest, srcBucket, destBucket, destPrefix, transferSettings, predicate, outputFileSettings,
+                false);
+    }
+
+    /**
+     * @param inventoryManifest the original manifest, of which only the source bucket and the schema are kept
+     * @param srcBucket the bucket holding the original manifest, which is part of the keys of the new reports
+     * @param destBucket the bucket receiving the new reports
+     * @param destPrefix the prefix of the keys of the new reports
+     * @param transferSettings how the reports are transferred from and to S3
+     * @param predicate RawRecordPredicate selecting the lines to keep, or null to keep all of them
+     * @param outputFileSettings how large the new reports should be
+     * @param tokenizing true to map the lines with an InventoryReportLineTokenizer instead of Jackson
+     */
+    public InventoryJobContext(InventoryManifest inventoryManifest, String srcBucket, String destBucket,
+                               String destPrefix, TransferSettings transferSettings, RawRecordPredicate predicate,
+                               OutputFileSettings outputFileSettings, boolean tokenizing) {
+        this.sourceBucket = inventoryManifest.getSourceBucket();
+        this.schema = CsvSchemaFactory.buildSchema(inventoryManifest);
+        this.mapper = new InventoryReportLineMapper(schema, tokenizing);
+        this.srcBucket = srcBucket;
+        this.destBucket = destBucket;
+        this.destPrefix = destPrefix;
+        this.transferSettings = transferSettings;
+        this.predicate = predicate;
+        this.outputFileSettings = outputFileSettings;
+    }
+
+    /**
+     * @return the bucket the inventory is for, where the original reports are read from
+     */
+    public String getSourceBucket() {
+        return sourceBucket;
+    }
+
+    public CsvSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return InventoryReportLineMapper built from the schema, shared by all the tasks of a worker
+     */
+    public InventoryReportLineMapper getMapper() {
+        return mapper;
+    }
+
+    public String getSrcBucket() {
+        return srcBucket;
+    }
+
+    public String getDestBucket() {
+        return destBucket;
+    }
+
+    public String getDestPrefix() {
+        return destPrefix;
+    }
+
+    public TransferSettings getTransferSettings() {
+        return transferSettings;
+    }
+
+    public RawRecordPredicate getPredicate() {
+        return predicate;
+    }
+
+    public OutputFileSettings getOutputFileSettings() {
+        return outputFileSettings;
+    }
+}
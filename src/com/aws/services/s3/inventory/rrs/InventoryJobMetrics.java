@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This InventoryJobMetrics class counts the rows and bytes going through each stage of the job,
+ * and holds a LatencyHistogram of the time each stage spent on each report.
+ * It can be updated by several threads at the same time, such as the readers of a PipelinedReportMapper.
+ */
+public class InventoryJobMetrics implements Serializable {
+    /**
+     * The counters of the job
+     */
+    public enum Counter {
+        REPORTS_READ,
+        // Every row of the original reports, including the rows filtered out
+        ROWS_READ,
+        ROWS_KEPT,
+        BYTES_DOWNLOADED,
+        BYTES_DECOMPRESSED,
+        REPORTS_WRITTEN,
+        ROWS_WRITTEN,
+        BYTES_SERIALIZED,
+        BYTES_UPLOADED
+    }
+
+    /**
+     * The stages of the job, timed for each report read or written
+     */
+    public enum Stage {
+        // The time spent waiting for the bytes of the original report
+        DOWNLOAD,
+        CHECKSUM,
+        DECOMPRESS,
+        // The parsing and the filtering of the decompressed rows
+        PARSE,
+        SERIALIZE,
+        COMPRESS,
+        // The time spent sending the parts of the new report, including their MD5
+        UPLOAD
+    }
+
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    public InventoryJobMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void add(Counter counter, long value) {
+        counters.addAndGet(counter.ordinal(), value);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * @param stage the stage of the job
+     * @param nanos the time the stage spent on one report, in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Add the counters and the durations of other metrics to these ones
+     */
+    public void merge(InventoryJobMetrics other) {
+        for (Counter counter : Counter.values()) {
+            add(counter, other.get(counter));
+        }
+        for (Stage stage : Stage.values()) {
+            getHistogram(stage).merge(other.getHistogram(stage));
+        }
+    }
+
+    public void reset() {
+        for (Counter counter : Counter.values()) {
+            counters.set(counter.ordinal(), 0);
+        }
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return true if nothing has been counted nor recorded
+     */
+    public boolean isEmpty() {
+        for (Counter counter : Counter.values()) {
+            if (get(counter) != 0) {
+                return false;
+            }
+        }
+        for (LatencyHistogram histogram : histograms) {
+            if (histogram.getCount() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Map<String, Object> of the counters and the statistics of each stage,
+     * the content of the metrics.json written next to the new manifest
+     */
+    public Map<String, Object> toSummary() {
+        Map<String, Object> counterSummary = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            counterSummary.put(camelCase(counter.name()), get(counter));
+        }
+        counterSummary.put("rowsFilteredOut", get(Counter.ROWS_READ) - get(Counter.ROWS_KEPT));
+        Map<String, Object> stageSummary = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stageSummary.put(camelCase(stage.name()), getHistogram(stage).toSummary());
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("counters", counterSummary);
+        summary.put("stages", stageSummary);
+        return summary;
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryJobMetrics{" + toSummary().get("counters") + "}";
+    }
+
+    /**
+     * Helper function, which names a constant like ROWS_READ as rowsRead
+     */
+    private static String camelCase(String constantName) {
+        StringBuilder name = new StringBuilder();
+        for (String word : constantName.toLowerCase().split("_")) {
+            name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+        return name.toString();
+    }
+}
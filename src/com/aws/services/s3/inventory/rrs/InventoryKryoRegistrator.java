@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.spark.serializer.KryoRegistrator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This InventoryKryoRegistrator class registers the classes of the pipeline with Kryo,
+ * with hand-written serializers for the ones shipped the most:
+ * the manifest and its locators, the InventoryReportLine POJOs, and the S3 client factory.
+ * Enable it with spark.serializer=org.apache.spark.serializer.KryoSerializer
+ * and spark.kryo.registrator=com.aws.services.s3.inventory.rrs.InventoryKryoRegistrator.
+ */
+public class InventoryKryoRegistrator implements KryoRegistrator {
+
+    @Override
+    public void registerClasses(Kryo kryo) {
+        kryo.register(InventoryManifest.class, new InventoryManifestSerializer());
+        kryo.register(InventoryManifest.Locator.class, new LocatorSerializer());
+        kryo.register(InventoryManifest.Locator[].class);
+        kryo.register(InventoryReportLine.class, new InventoryReportLineSerializer());
+        kryo.register(InventoryReportLine[].class);
+        kryo.register(CachedS3ClientFactory.class, new CachedS3ClientFactorySerializer());
+        kryo.register(S3ClientSettings.class);
+        kryo.register(ColumnDictionary.class, new ColumnDictionarySerializer());
+        // Broadcast once per job, and holds Jackson and predicate classes Kryo has no serializer for
+        kryo.register(InventoryJobContext.class, new JavaSerializer());
+        kryo.register(InventoryReportLineBlock.class);
+        kryo.register(InventoryReportLineBlock[].class);
+        kryo.register(CompactColumn[].class);
+        kryo.register(ByteSliceColumn.class);
+        kryo.register(LongColumn.class);
+        kryo.register(TimestampColumn.class);
+        kryo.register(BooleanColumn.class);
+        kryo.register(DictionaryColumn.class);
+        kryo.register(String[].class);
+        kryo.register(ArrayList.class);
+        kryo.register(ObjectVersionKey.class);
+        kryo.register(InventoryChangeType.class);
+        kryo.register(ObjectVersionBloomFilter.class);
+        kryo.register(ObjectVersionBloomFilter[].class);
+        kryo.register(long[].class);
+    }
+
+    /**
+     * Write the MD5 of a locator as 16 bytes when it is a lowercase hex string, as S3 writes it,
+     * and as a String otherwise, so that it is always read back unchanged
+     */
+    static void writeChecksum(Output output, String checksum) {
+        boolean isLowercaseHex = checksum != null && checksum.length() == 32 &&
+                checksum.equals(checksum.toLowerCase());
+        byte[] digest = null;
+        if (isLowercaseHex) {
+            try {
+                digest = Hex.decodeHex(checksum.toCharArray());
+            } catch (DecoderException e) {
+                // Not a hex string, written as a String below
+            }
+        }
+        output.writeBoolean(digest != null);
+        if (digest != null) {
+            output.writeBytes(digest);
+        } else {
+            output.writeString(checksum);
+        }
+    }
+
+    static String readChecksum(Input input) {
+        if (input.readBoolean()) {
+            return Hex.encodeHexString(input.readBytes(16));
+        }
+        return input.readString();
+    }
+
+    /**
+     * Write a locator as its key, its size as a variable length long, and its checksum
+     */
+    public static class LocatorSerializer extends Serializer<InventoryManifest.Locator> {
+        @Override
+        public void write(Kryo kryo, Output output, InventoryManifest.Locator locator) {
+            output.writeString(locator.getKey());
+            output.writeLong(locator.getSize(), true);
+            writeChecksum(output, locator.getMD5checksum());
+        }
+
+        @Override
+        public InventoryManifest.Locator read(Kryo kryo, Input input, Class<InventoryManifest.Locator> type) {
+            InventoryManifest.Locator locator = new InventoryManifest.Locator();
+            locator.setKey(input.readString());
+            locator.setSize(input.readLong(true));
+            locator.setMD5checksum(readChecksum(input));
+            return locator;
+        }
+    }
+
+    /**
+     * Write a manifest and its locators. The keys of the locators share a long common prefix,
+     * so each key is written as the length of the prefix it shares with the previous one, followed by the rest.
+     */
+    public static class InventoryManifestSerializer extends Serializer<InventoryManifest> {
+        @Override
+        public void write(Kryo kryo, Output output, InventoryManifest manifest) {
+            output.writeString(manifest.getSourceBucket());
+            output.writeString(manifest.getDestinationBucket());
+            output.writeString(manifest.getVersion());
+            output.writeString(manifest.getFileFormat());
+            output.writeString(manifest.getFileSchema());
+            List<InventoryManifest.Locator> locators = manifest.getLocators();
+            if (locators == null) {
+                output.writeInt(-1, false);
+                return;
+            }
+            output.writeInt(locators.size(), false);
+            String previousKey = "";
+            for (InventoryManifest.Locator locator : locators) {
+                String key = locator.getKey();
+                int common = 0;
+                if (key != null) {
+                    int maxCommon = Math.min(key.length(), previousKey.length());
+                    while (common < maxCommon && key.charAt(common) == previousKey.charAt(common)) {
+                        common++;
+                    }
+                    previousKey = key;
+                }
+                output.writeInt(common, true);
+                output.writeString(key == null ? null : key.substring(common));
+                output.writeLong(locator.getSize(), true);
+                writeChecksum(output, locator.getMD5checksum());
+            }
+        }
+
+        @Override
+        public InventoryManifest read(Kryo kryo, Input input, Class<InventoryManifest> type) {
+            InventoryManifest manifest = new InventoryManifest();
+            manifest.setSourceBucket(input.readString());
+            manifest.setDestinationBucket(input.readString());
+            manifest.setVersion(input.readString());
+            manifest.setFileFormat(input.readString());
+            manifest.setFileSchema(input.readString());
+            int count = input.readInt(false);
+            if (count < 0) {
+                return manifest;
+            }
+            List<InventoryManifest.Locator> locators = new ArrayList<>(count);
+            String previousKey = "";
+            for (int i = 0; i < count; i++) {
+                int common = input.readInt(true);
+                String suffix = input.readString();
+                InventoryManifest.Locator locator = new InventoryManifest.Locator();
+                if (suffix != null) {
+                    previousKey = previousKey.substring(0, common) + suffix;
+                    locator.setKey(previousKey);
+                }
+                locator.setSize(input.readLong(true));
+                locator.setMD5checksum(readChecksum(input));
+                locators.add(locator);
+            }
+            manifest.setLocators(locators);
+            return manifest;
+        }
+    }
+
+    /**
+     * Write the fields of an InventoryReportLine. Kryo resets its references after each record,
+     * so a StorageClass or ReplicationStatus known to appear in inventory reports is written
+     * as its dictionary code instead of a String.
+     * Bucket is not coded and goes out as a full String on every row: its values are not known in advance,
+     * and a dictionary built along a stream cannot be used, since each record must be readable on its own
+     * for Spark to relocate the serialized records of a stream when it sorts a shuffle.
+     * The InventoryReportLineBlocks of --compactRows code Bucket once per block instead.
+     */
+    public static class InventoryReportLineSerializer extends Serializer<InventoryReportLine> {
+        @Override
+        public void write(Kryo kryo, Output output, InventoryReportLine line) {
+            output.writeString(line.getBucket());
+            output.writeString(line.getKey());
+            output.writeString(line.getVersionId());
+            output.writeString(line.getIsLatest());
+            output.writeString(line.getIsDeleteMaker());
+            output.writeString(line.getSize());
+            output.writeString(line.getLastModifiedDate());
+            output.writeString(line.getEtag());
+            writeCoded(output, line.getStorageClass(), DictionaryColumn.STORAGE_CLASSES);
+            output.writeString(line.getMultiPartUploaded());
+            writeCoded(output, line.getReplicationStatus(), DictionaryColumn.REPLICATION_STATUSES);
+        }
+
+        @Override
+        public InventoryReportLine read(Kryo kryo, Input input, Class<InventoryReportLine> type) {
+            InventoryReportLine line = new InventoryReportLine();
+            line.setBucket(input.readString());
+            line.setKey(input.readString());
+            line.setVersionId(input.readString());
+            line.setIsLatest(input.readString());
+            line.setIsDeleteMaker(input.readString());
+            line.setSize(input.readString());
+            line.setLastModifiedDate(input.readString());
+            line.seteTag(input.readString());
+            line.setStorageClass(readCoded(input, DictionaryColumn.STORAGE_CLASSES));
+            line.setMultiPartUploaded(input.readString());
+            line.setReplicationStatus(readCoded(input, DictionaryColumn.REPLICATION_STATUSES));
+            return line;
+        }
+
+        /**
+         * Write 1 + the index of a known value, or 0 followed by the value itself
+         */
+        private static void writeCoded(Output output, String value, List<String> knownValues) {
+            int code = value == null ? -1 : knownValues.indexOf(value);
+            output.writeInt(code + 1, true);
+            if (code < 0) {
+                output.writeString(value);
+            }
+        }
+
+        private static String readCoded(Input input, List<String> knownValues) {
+            int code = input.readInt(true);
+            return code == 0 ? input.readString() : knownValues.get(code - 1);
+        }
+    }
+
+    /**
+     * The client of the factory is transient, so only its settings are written and a new factory is read
+     */
+    public static class CachedS3ClientFactorySerializer extends Serializer<CachedS3ClientFactory> {
+        @Override
+        public void write(Kryo kryo, Output output, CachedS3ClientFactory factory) {
+            kryo.writeObject(output, factory.getSettings());
+        }
+
+        @Override
+        public CachedS3ClientFactory read(Kryo kryo, Input input, Class<CachedS3ClientFactory> type) {
+            return new CachedS3ClientFactory(kryo.readObject(input, S3ClientSettings.class));
+        }
+    }
+
+    /**
+     * Write the values of a dictionary, its codes are rebuilt when it is read
+     */
+    public static class ColumnDictionarySerializer extends Serializer<ColumnDictionary> {
+        @Override
+        public void write(Kryo kryo, Output output, ColumnDictionary dictionary) {
+            output.writeInt(dictionary.getMaxSize(), true);
+            output.writeInt(dictionary.size(), true);
+            for (int code = 0; code < dictionary.size(); code++) {
+                output.writeString(dictionary.getValue(code));
+            }
+        }
+
+        @Override
+        public ColumnDictionary read(Kryo kryo, Input input, Class<ColumnDictionary> type) {
+            ColumnDictionary dictionary = new ColumnDictionary(input.readInt(true));
+            int size = input.readInt(true);
+            for (int code = 0; code < size; code++) {
+                dictionary.add(input.readString());
+            }
+            return dictionary;
+        }
+    }
+}
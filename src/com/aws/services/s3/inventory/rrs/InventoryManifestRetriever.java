@@ -7,17 +7,26 @@ package com.aws.services.s3.inventory.rrs;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This InventoryManifestRetriever class gets manifest.json and manifest.checksum files from S3,
  * converts them to POJOs, and checks if the manifest.checksum matches the MD5 of the manifest.json file.
+ * Both files are requested at the same time, and manifest.json is hashed and parsed in a single pass over its bytes.
  */
 public class InventoryManifestRetriever {
     private final AmazonS3 s3Client;
@@ -32,18 +41,8 @@ public class InventoryManifestRetriever {
         this.bucketName = bucket;
         this.bucketKeyJson = key + "/manifest.json";
         this.bucketKeyChecksum = key + "/manifest.checksum";
-        this.mapper = new ObjectMapper();
-    }
-
-    /**
-     * Transfer the InputStream to a String representation of the Inventory Report Manifest in JSON format
-     * @param is InputStream of the object from S3
-     * @return String, which is a String representation of the object
-     */
-    private String inputStreamToString(InputStream is) throws IOException {
-        StringWriter writer = new StringWriter();
-        IOUtils.copy(is, writer);
-        return writer.toString();
+        // The stream is drained after parsing, so that the checksum covers any byte after the JSON document
+        this.mapper = new ObjectMapper().configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
     }
 
     /**
@@ -52,25 +51,73 @@ public class InventoryManifestRetriever {
      * @return inventoryManifestStorage InventoryManifest, which stores all the elements of the manifest.json file
      */
     public InventoryManifest getInventoryManifest() throws Exception {
-        // Get manifest.json and transfer it to String
-        GetObjectRequest requestJson = new GetObjectRequest(bucketName, bucketKeyJson);
-        S3Object jsonObject = s3Client.getObject(requestJson);
-        String jsonFile = inputStreamToString(jsonObject.getObjectContent());
-        jsonObject.close();
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "manifest-checksum-" + bucketKeyChecksum);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Get manifest.checksum in the background while manifest.json is downloaded and parsed
+            Future<String> expectedChecksumFuture = executor.submit(this::getExpectedChecksum);
 
-        // Get manifest.checksum and transfer it to String with no whitespace
-        GetObjectRequest requestChecksum = new GetObjectRequest(bucketName, bucketKeyChecksum);
-        S3Object checksumObject = s3Client.getObject(requestChecksum);
-        String expectedChecksum = inputStreamToString(checksumObject.getObjectContent())
-                .replaceAll("\\s","");
-        checksumObject.close();
+            InventoryManifest manifest = null;
+            IOException parseError = null;
+            String actualChecksum;
+            try (S3Object jsonObject = s3Client.getObject(new GetObjectRequest(bucketName, bucketKeyJson))) {
+                DigestInputStream digestStream = new DigestInputStream(jsonObject.getObjectContent(),
+                        DigestUtils.getMd5Digest());
+                try {
+                    manifest = mapper.readValue(digestStream, InventoryManifest.class);
+                } catch (IOException e) {
+                    // A corrupted manifest.json is reported as a checksum mismatch rather than a parse error
+                    parseError = e;
+                }
+                IOUtils.skip(digestStream, Long.MAX_VALUE);
+                actualChecksum = Hex.encodeHexString(digestStream.getMessageDigest().digest());
+            }
 
-        // Compare manifest.json and manifest.checksum's MD5 value
-        String actualChecksum = DigestUtils.md5Hex(jsonFile);
-        if (!actualChecksum.equals(expectedChecksum)) {
-            throw new ChecksumMismatchException (expectedChecksum, actualChecksum);
+            // Compare manifest.json and manifest.checksum's MD5 value
+            String expectedChecksum = awaitExpectedChecksum(expectedChecksumFuture);
+            if (!actualChecksum.equals(expectedChecksum)) {
+                throw new ChecksumMismatchException (expectedChecksum, actualChecksum);
+            }
+            if (parseError != null) {
+                throw parseError;
+            }
+            return manifest;
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        return mapper.readValue(jsonFile, InventoryManifest.class);
+    /**
+     * Get manifest.checksum and transfer it to String with no whitespace
+     * @return String, which is the expected MD5 of manifest.json
+     */
+    private String getExpectedChecksum() throws IOException {
+        try (S3Object checksumObject = s3Client.getObject(new GetObjectRequest(bucketName, bucketKeyChecksum))) {
+            InputStream checksumContent = checksumObject.getObjectContent();
+            return IOUtils.toString(checksumContent, StandardCharsets.UTF_8).replaceAll("\\s", "");
+        }
+    }
+
+    /**
+     * Helper function, which waits for the download of manifest.checksum
+     * @param expectedChecksumFuture the pending download
+     * @return String, which is the expected MD5 of manifest.json
+     * @throws IOException when the download fails or is interrupted
+     */
+    private String awaitExpectedChecksum(Future<String> expectedChecksumFuture) throws IOException {
+        try {
+            return expectedChecksumFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + bucketKeyChecksum);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Failed to download " + bucketKeyChecksum, e.getCause());
+        }
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.spark.util.AccumulatorV2;
+
+/**
+ * This InventoryMetricsAccumulator class gathers the InventoryJobMetrics of the tasks of a job on the driver.
+ * In a task, value() is the metrics of this task only, which the readers and the writers of the task update.
+ * Like any accumulator updated in a transformation, a task run twice, after a failure or a lost partition,
+ * is counted twice.
+ */
+public class InventoryMetricsAccumulator extends AccumulatorV2<InventoryJobMetrics, InventoryJobMetrics> {
+    private final InventoryJobMetrics metrics = new InventoryJobMetrics();
+
+    @Override
+    public boolean isZero() {
+        return metrics.isEmpty();
+    }
+
+    @Override
+    public AccumulatorV2<InventoryJobMetrics, InventoryJobMetrics> copy() {
+        InventoryMetricsAccumulator copy = new InventoryMetricsAccumulator();
+        copy.metrics.merge(metrics);
+        return copy;
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+
+    @Override
+    public void add(InventoryJobMetrics other) {
+        metrics.merge(other);
+    }
+
+    @Override
+    public void merge(AccumulatorV2<InventoryJobMetrics, InventoryJobMetrics> other) {
+        metrics.merge(other.value());
+    }
+
+    @Override
+    public InventoryJobMetrics value() {
+        return metrics;
+    }
+}
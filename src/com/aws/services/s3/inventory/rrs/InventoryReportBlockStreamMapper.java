@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * This InventoryReportBlockStreamMapper class streams the original inventory report
+ * and lazily groups its lines into compact InventoryReportLineBlocks.
+ * When a RawRecordPredicate is given, only the lines matching it are added to the blocks.
+ */
+public class InventoryReportBlockStreamMapper
+        implements FlatMapFunction<InventoryManifest.Locator, InventoryReportLineBlock> {
+    private final Broadcast<CachedS3ClientFactory> s3ClientFactory;
+    private final Broadcast<InventoryJobContext> jobContext;
+    private final InventoryMetricsAccumulator metrics;
+
+    public InventoryReportBlockStreamMapper(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                            Broadcast<InventoryJobContext> jobContext) {
+        this(s3ClientFactory, jobContext, null);
+    }
+
+    /**
+     * @param metrics the accumulator of the rows, bytes and times of the reports, or null not to measure them
+     */
+    public InventoryReportBlockStreamMapper(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                            Broadcast<InventoryJobContext> jobContext,
+                                            InventoryMetricsAccumulator metrics) {
+        this.s3ClientFactory = s3ClientFactory;
+        this.jobContext = jobContext;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Iterator<InventoryReportLineBlock> call(InventoryManifest.Locator locator) throws IOException {
+        InventoryJobContext inventoryJobContext = jobContext.getValue();
+        InventoryReportRetriever reportRetriever =
+                new InventoryReportRetriever(s3ClientFactory.getValue().get(), locator, inventoryJobContext);
+        if (metrics != null) {
+            reportRetriever.setMetrics(metrics.value());
+        }
+        ChecksumVerifyingIterator<InventoryReportLineBlock> inventoryReportBlocks =
+                reportRetriever.getInventoryReportBlocks(inventoryJobContext.getMapper(),
+                        inventoryJobContext.getPredicate(), InventoryReportLineBlock.DEFAULT_MAX_ROWS);
+
+        // Release the S3 connection even if the task fails before the report is fully consumed
+        TaskContext taskContext = TaskContext.get();
+        if (taskContext != null) {
+            taskContext.addTaskCompletionListener(context -> IOUtils.closeQuietly(inventoryReportBlocks));
+        }
+        return inventoryReportBlocks;
+    }
+}
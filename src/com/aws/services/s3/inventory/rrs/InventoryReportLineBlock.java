@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * This InventoryReportLineBlock class is a compact, columnar alternative to a list of InventoryReportLine POJOs.
+ * Each column of the inventory report is stored in a CompactColumn typed after its content:
+ * Size as longs, LastModifiedDate as epoch milliseconds, the Is* flags as bits,
+ * Bucket, StorageClass and ReplicationStatus as dictionary codes, and the other columns, such as Key,
+ * as UTF-8 byte slices. A block is built from the raw CSV records of the report, and written back to CSV
+ * without decoding its fields into Strings.
+ */
+public class InventoryReportLineBlock implements Serializable {
+    public static final int DEFAULT_MAX_ROWS = 4096;
+    private static final byte SEPARATOR = ',';
+    private static final byte LINE_FEED = '\n';
+
+    private final String[] columnNames;
+    private final CompactColumn[] columns;
+    private int rowCount;
+
+    /**
+     * Build an empty block
+     * @param columnNames the names of the columns of the inventory report, in the order of the fileSchema
+     */
+    public InventoryReportLineBlock(String[] columnNames) {
+        this.columnNames = columnNames;
+        this.columns = new CompactColumn[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columns[i] = CompactColumn.forColumnName(columnNames[i]);
+        }
+    }
+
+    private InventoryReportLineBlock(String[] columnNames, CompactColumn[] columns, int rowCount) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Append a raw CSV record of the inventory report as the last row of the block
+     * @param record the scanner positioned on the record
+     */
+    public void appendRecord(CsvRecordScanner record) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].append(record, i);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Keep the rows matching a predicate
+     * @param predicate BlockRowPredicate selecting the rows to keep
+     * @return InventoryReportLineBlock holding the matching rows, or this block if all of them match
+     */
+    public InventoryReportLineBlock filter(BlockRowPredicate predicate) {
+        int[] rows = new int[rowCount];
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (predicate.test(this, row)) {
+                rows[count++] = row;
+            }
+        }
+        if (count == rowCount) {
+            return this;
+        }
+        CompactColumn[] selected = new CompactColumn[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            selected[i] = columns[i].select(rows, count);
+            selected[i].trimToSize();
+        }
+        return new InventoryReportLineBlock(columnNames, selected, count);
+    }
+
+    /**
+     * Write the rows of the block as CSV records, in the order of the columns of the fileSchema
+     * @param out the stream receiving the records
+     * @throws IOException when writing to the stream fails
+     */
+    public void writeCsv(OutputStream out) throws IOException {
+        writeCsv(out, 0, rowCount);
+    }
+
+    /**
+     * Write a range of rows of the block as CSV records, so that a block can be split between two reports
+     * @param out the stream receiving the records
+     * @param fromRow the first row to write
+     * @param toRow the row after the last row to write
+     * @throws IOException when writing to the stream fails
+     */
+    public void writeCsv(OutputStream out, int fromRow, int toRow) throws IOException {
+        for (int row = fromRow; row < toRow; row++) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    out.write(SEPARATOR);
+                }
+                columns[i].writeCsv(row, out);
+            }
+            out.write(LINE_FEED);
+        }
+    }
+
+    /**
+     * Shrink the arrays of the columns to the number of rows of the block, once no more rows are appended
+     */
+    public void trimToSize() {
+        for (CompactColumn column : columns) {
+            column.trimToSize();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * @param index the index of the column in the fileSchema
+     * @return the column
+     */
+    public CompactColumn getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * @param columnName the name of the column, ignoring case
+     * @return the column, or null if the inventory report does not include it
+     */
+    public CompactColumn getColumn(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(columnName)) {
+                return columns[i];
+            }
+        }
+        return null;
+    }
+}
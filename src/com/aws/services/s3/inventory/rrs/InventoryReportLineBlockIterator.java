@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This InventoryReportLineBlockIterator class groups the raw CSV records of an inventory report
+ * into InventoryReportLineBlocks of a bounded number of rows.
+ * When a RawRecordPredicate is given, only the records matching it are added to the blocks.
+ */
+public class InventoryReportLineBlockIterator implements Iterator<InventoryReportLineBlock>, Closeable {
+    private final CsvRecordScanner scanner;
+    private final RawRecordPredicate predicate;
+    private final String[] columnNames;
+    private final int maxRows;
+    private InventoryReportLineBlock nextBlock;
+
+    /**
+     * @param scanner the scanner of the decompressed report
+     * @param predicate RawRecordPredicate selecting the records to keep, or null to keep all of them
+     * @param columnNames the names of the columns of the report, in the order of the fileSchema
+     * @param maxRows the maximum number of rows of each block
+     */
+    public InventoryReportLineBlockIterator(CsvRecordScanner scanner, RawRecordPredicate predicate,
+                                            String[] columnNames, int maxRows) {
+        this.scanner = scanner;
+        this.predicate = predicate;
+        this.columnNames = columnNames;
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextBlock != null) {
+            return true;
+        }
+        InventoryReportLineBlock block = new InventoryReportLineBlock(columnNames);
+        try {
+            while (block.getRowCount() < maxRows && scanner.nextRecord()) {
+                if (predicate == null || predicate.test(scanner)) {
+                    block.appendRecord(scanner);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (block.getRowCount() == 0) {
+            return false;
+        }
+        block.trimToSize();
+        nextBlock = block;
+        return true;
+    }
+
+    @Override
+    public InventoryReportLineBlock next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        InventoryReportLineBlock block = nextBlock;
+        nextBlock = null;
+        return block;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+}
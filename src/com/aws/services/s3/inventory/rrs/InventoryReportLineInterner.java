@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * This InventoryReportLineInterner class makes the InventoryReportLine POJOs of a partition share
+ * one canonical instance of each Bucket, StorageClass and ReplicationStatus value,
+ * instead of each of them holding its own copy parsed from the report.
+ * Besides the heap saved when a partition is cached, Java serialization writes a shared instance
+ * only once per stream, and a short back-reference for every other row referring to it.
+ */
+public class InventoryReportLineInterner {
+    private final ColumnDictionary buckets = new ColumnDictionary();
+    private final ColumnDictionary storageClasses =
+            new ColumnDictionary(DictionaryColumn.STORAGE_CLASSES, ColumnDictionary.DEFAULT_MAX_SIZE);
+    private final ColumnDictionary replicationStatuses =
+            new ColumnDictionary(DictionaryColumn.REPLICATION_STATUSES, ColumnDictionary.DEFAULT_MAX_SIZE);
+
+    /**
+     * Replace the low-cardinality fields of a line by their canonical instances
+     * @param inventoryReportLine the line to update
+     * @return the same line
+     */
+    public InventoryReportLine intern(InventoryReportLine inventoryReportLine) {
+        inventoryReportLine.setBucket(buckets.intern(inventoryReportLine.getBucket()));
+        inventoryReportLine.setStorageClass(storageClasses.intern(inventoryReportLine.getStorageClass()));
+        inventoryReportLine.setReplicationStatus(
+                replicationStatuses.intern(inventoryReportLine.getReplicationStatus()));
+        return inventoryReportLine;
+    }
+
+    /**
+     * Lazily intern each line of an iterator
+     * @param inventoryReportLines the lines to intern
+     * @return Iterator<InventoryReportLine> which yields the interned lines, and closes the lines when closed
+     */
+    public Iterator<InventoryReportLine> internAll(Iterator<InventoryReportLine> inventoryReportLines) {
+        return new InternedIterator(inventoryReportLines);
+    }
+
+    /**
+     * This InternedIterator class interns the lines it yields, and keeps the lines it wraps closeable
+     */
+    private class InternedIterator implements Iterator<InventoryReportLine>, Closeable {
+        private final Iterator<InventoryReportLine> inventoryReportLines;
+
+        InternedIterator(Iterator<InventoryReportLine> inventoryReportLines) {
+            this.inventoryReportLines = inventoryReportLines;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return inventoryReportLines.hasNext();
+        }
+
+        @Override
+        public InventoryReportLine next() {
+            return intern(inventoryReportLines.next());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inventoryReportLines instanceof Closeable) {
+                ((Closeable) inventoryReportLines).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Closeable;
+import java.security.DigestInputStream;
+import java.util.Iterator;
+
+/**
+ * This InventoryReportLineIterator class lazily maps the rows of a streamed inventory report into
+ * InventoryReportLine POJOs, and verifies the checksum of the report once the last row has been read.
+ */
+public class InventoryReportLineIterator extends ChecksumVerifyingIterator<InventoryReportLine> {
+    /**
+     * @param rows the rows parsed from the decompressed report, closed with the iterator if they are Closeable
+     * @param digestStream the stream of compressed bytes underneath the parser, which computes their MD5
+     * @param source the S3 object the report is read from, closed once the report is consumed
+     * @param expectedChecksum the MD5 specified in the manifest file
+     */
+    public InventoryReportLineIterator(Iterator<InventoryReportLine> rows, DigestInputStream digestStream,
+                                       Closeable source, String expectedChecksum) {
+        super(rows, digestStream, source, expectedChecksum);
+    }
+
+    /**
+     * Same as InventoryReportLineIterator(rows, digestStream, source, expectedChecksum), measured by the meter
+     */
+    InventoryReportLineIterator(Iterator<InventoryReportLine> rows, DigestInputStream digestStream,
+                                Closeable source, String expectedChecksum,
+                                ReportReadMeter<InventoryReportLine> meter) {
+        super(rows, digestStream, source, expectedChecksum, meter);
+    }
+}
@@ -5,24 +5,53 @@
 package com.aws.services.s3.inventory.rrs;
 
 import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
- * This InventoryReportLineMapper class maps the inventory report into InventoryReportLine POJOs
+ * This InventoryReportLineMapper class maps the inventory report into InventoryReportLine POJOs,
+ * either with the Jackson CsvMapper or, for the records read by a CsvRecordScanner,
+ * with an InventoryReportLineTokenizer falling back to Jackson on the records it cannot decode.
  */
 public class InventoryReportLineMapper implements Serializable {
     private CsvSchema schema;
+    private boolean tokenizing;
+    private transient ObjectReader reader;
+    private transient InventoryReportLineTokenizer tokenizer;
 
 
-    public InventoryReportLineMapper(InventoryManifest inventoryManifest)
-            throws Exception{
-        this.schema = CsvSchemaFactory.buildSchema(inventoryManifest);
+    public InventoryReportLineMapper(InventoryManifest inventoryManifest) {
+        this(CsvSchemaFactory.buildSchema(inventoryManifest));
+    }
+
+    public InventoryReportLineMapper(CsvSchema schema) {
+        this(schema, false);
+    }
+
+    /**
+     * @param schema the schema of the inventory report
+     * @param tokenizing true to map the records with an InventoryReportLineTokenizer instead of Jackson
+     */
+    public InventoryReportLineMapper(CsvSchema schema, boolean tokenizing) {
+        this.schema = schema;
+        this.tokenizing = tokenizing;
+    }
+
+    /**
+     * @return true if the records are mapped with an InventoryReportLineTokenizer,
+     * in which case the whole report should be read with a CsvRecordScanner
+     */
+    public boolean isTokenizing() {
+        return tokenizing;
     }
 
     /**
@@ -42,4 +71,141 @@ public class InventoryReportLineMapper implements Serializable {
         }
         return inventoryReportLines;
     }
+
+    /**
+     * Lazily map a stream of lines of the inventory report into POJOs,
+     * parsing all of them with a single MappingIterator instead of one parser per line
+     * @param inventoryReportLines the lines of the inventory report, without line terminators
+     * @return MappingIterator<InventoryReportLine> which yields one POJO per line
+     * @throws IOException when the parser cannot be created
+     */
+    public MappingIterator<InventoryReportLine> mapInventoryReportLines(Iterator<String> inventoryReportLines)
+            throws IOException {
+        return getReader().readValues(new LineIteratorReader(inventoryReportLines));
+    }
+
+    /**
+     * Lazily map the decompressed content of an inventory report into POJOs
+     * @param inventoryReport InputStream of the CSV content of the inventory report
+     * @return MappingIterator<InventoryReportLine> which yields one POJO per line
+     * @throws IOException when the parser cannot be created
+     */
+    public MappingIterator<InventoryReportLine> mapInventoryReport(InputStream inventoryReport) throws IOException {
+        return getReader().readValues(inventoryReport);
+    }
+
+    /**
+     * Lazily group the decompressed content of an inventory report into compact InventoryReportLineBlocks
+     * @param inventoryReport InputStream of the CSV content of the inventory report
+     * @param predicate RawRecordPredicate selecting the records to keep, or null to keep all of them
+     * @param maxRows the maximum number of rows of each block
+     * @return InventoryReportLineBlockIterator which yields the blocks of the report
+     */
+    public InventoryReportLineBlockIterator mapInventoryReportBlocks(InputStream inventoryReport,
+                                                                     RawRecordPredicate predicate, int maxRows) {
+        return new InventoryReportLineBlockIterator(new CsvRecordScanner(inventoryReport), predicate,
+                getColumnNames(), maxRows);
+    }
+
+    /**
+     * @return the names of the columns of the inventory report, in the order of the fileSchema
+     */
+    public String[] getColumnNames() {
+        String[] columnNames = new String[schema.size()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = schema.columnName(i);
+        }
+        return columnNames;
+    }
+
+    /**
+     * Map a single CSV record held in a byte buffer into a POJO
+     * @param buffer the buffer holding the record
+     * @param offset the offset of the record in the buffer
+     * @param length the length of the record, excluding the line terminator
+     * @return InventoryReportLine which is the POJO of the record
+     * @throws IOException when mapping with schema fails
+     */
+    public InventoryReportLine mapInventoryReportLine(byte[] buffer, int offset, int length) throws IOException {
+        return getReader().readValue(buffer, offset, length);
+    }
+
+    /**
+     * Map the current record of a scanner into a POJO, decoding its fields straight from the buffer
+     * of the scanner if the mapper is tokenizing and the record is well formed, or with Jackson otherwise
+     * @param scanner the scanner positioned on the record
+     * @return InventoryReportLine which is the POJO of the record
+     * @throws IOException when mapping with schema fails
+     */
+    public InventoryReportLine mapInventoryReportLine(CsvRecordScanner scanner) throws IOException {
+        if (tokenizing) {
+            if (tokenizer == null) {
+                tokenizer = new InventoryReportLineTokenizer(getColumnNames());
+            }
+            InventoryReportLine line = tokenizer.tokenize(scanner);
+            if (line != null) {
+                return line;
+            }
+        }
+        return mapInventoryReportLine(scanner.getBuffer(), scanner.getRecordStart(),
+                scanner.getRecordEnd() - scanner.getRecordStart());
+    }
+
+    /**
+     * Helper function, which builds the ObjectReader only once per mapper,
+     * since it is immutable and can be shared by all the parsers created from it
+     * @return ObjectReader bound to the InventoryReportLine class and the schema of the manifest
+     */
+    private ObjectReader getReader() {
+        if (reader == null) {
+            reader = new CsvMapper().readerFor(InventoryReportLine.class).with(schema);
+        }
+        return reader;
+    }
+
+    /**
+     * A Reader which concatenates lines into a single character stream, separated by line feeds
+     */
+    private static class LineIteratorReader extends Reader {
+        private final Iterator<String> lines;
+        private String currentLine;
+        private int position;
+
+        LineIteratorReader(Iterator<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int copied = 0;
+            while (copied < length) {
+                if (currentLine == null) {
+                    if (!lines.hasNext()) {
+                        break;
+                    }
+                    currentLine = lines.next();
+                    position = 0;
+                }
+                if (position < currentLine.length()) {
+                    int count = Math.min(length - copied, currentLine.length() - position);
+                    currentLine.getChars(position, position + count, buffer, offset + copied);
+                    position += count;
+                    copied += count;
+                } else {
+                    buffer[offset + copied] = '\n';
+                    copied++;
+                    currentLine = null;
+                }
+            }
+            return copied == 0 ? -1 : copied;
+        }
+
+        @Override
+        public void close() {
+            currentLine = null;
+        }
+    }
 }
@@ -16,18 +16,18 @@ import java.util.List;
  */
 public class InventoryReportLineRetriever implements Function<InventoryManifest.Locator, List<String>> {
     private final Broadcast<CachedS3ClientFactory> s3ClientFactory;
-    private final InventoryManifest manifestStorage;
+    private final Broadcast<InventoryJobContext> jobContext;
 
     public InventoryReportLineRetriever(Broadcast<CachedS3ClientFactory> s3ClientFactory,
-                                        InventoryManifest manifest) {
+                                        Broadcast<InventoryJobContext> jobContext) {
         this.s3ClientFactory = s3ClientFactory;
-        this.manifestStorage = manifest;
+        this.jobContext = jobContext;
     }
 
     @Override
     public List<String> call(InventoryManifest.Locator locator) throws IOException {
         InventoryReportRetriever reportRetriever =
-                new InventoryReportRetriever(s3ClientFactory.getValue().get(), locator, manifestStorage);
+                new InventoryReportRetriever(s3ClientFactory.getValue().get(), locator, jobContext.getValue());
         return Arrays.asList(reportRetriever.getInventoryReportToString().split("\n"));
     }
 }
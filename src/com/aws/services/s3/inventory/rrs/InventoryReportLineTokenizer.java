@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+/**
+ * This InventoryReportLineTokenizer class maps the current record of a CsvRecordScanner into an InventoryReportLine
+ * without going through the generic Jackson databind, since S3 writes every inventory report with the same quoting:
+ * one field per column of the fileSchema, each of them quoted, a quote inside a field being escaped as '""'.
+ * A record it cannot decode this way is left to the Jackson CsvMapper, which keeps the job as lenient as before.
+ * InventoryReportLine holds Strings, so the tokenizer decodes every field of the records it maps: only the
+ * RawRecordPredicates, which run on the byte ranges of the scanner before the tokenizer, avoid creating Strings.
+ */
+public class InventoryReportLineTokenizer {
+    /**
+     * The columns of the inventory report, named as the JSON properties of InventoryReportLine
+     */
+    private enum Column {
+        BUCKET("Bucket"),
+        KEY("Key"),
+        VERSION_ID("Versionid"),
+        IS_LATEST("IsLatest"),
+        IS_DELETE_MAKER("IsDeleteMaker"),
+        SIZE("Size"),
+        LAST_MODIFIED_DATE("LastModifiedDate"),
+        E_TAG("ETag"),
+        STORAGE_CLASS("StorageClass"),
+        IS_MULTIPART_UPLOADED("IsMultipartUploaded"),
+        REPLICATION_STATUS("ReplicationStatus");
+
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        static Column forName(String name) {
+            for (Column column : values()) {
+                if (column.name.equals(name)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Column[] columns;
+    private final boolean mapsEveryColumn;
+
+    /**
+     * @param columnNames the names of the columns of the inventory report, in the order of the fileSchema
+     */
+    public InventoryReportLineTokenizer(String[] columnNames) {
+        this.columns = new Column[columnNames.length];
+        boolean mapsEveryColumn = true;
+        for (int i = 0; i < columnNames.length; i++) {
+            columns[i] = Column.forName(columnNames[i]);
+            mapsEveryColumn &= columns[i] != null;
+        }
+        this.mapsEveryColumn = mapsEveryColumn;
+    }
+
+    /**
+     * Decode all the fields of the current record of the scanner straight from its buffer
+     * @param scanner the scanner positioned on the record
+     * @return InventoryReportLine which is the POJO of the record, or null if the record is malformed
+     * or the schema has a column InventoryReportLine does not know, for the caller to fall back to Jackson
+     */
+    public InventoryReportLine tokenize(CsvRecordScanner scanner) {
+        if (!mapsEveryColumn || !scanner.isWellFormed(columns.length)) {
+            return null;
+        }
+        InventoryReportLine line = new InventoryReportLine();
+        for (int i = 0; i < columns.length; i++) {
+            String value = scanner.fieldAsString(i);
+            switch (columns[i]) {
+                case BUCKET:
+                    line.setBucket(value);
+                    break;
+                case KEY:
+                    line.setKey(value);
+                    break;
+                case VERSION_ID:
+                    line.setVersionId(value);
+                    break;
+                case IS_LATEST:
+                    line.setIsLatest(value);
+                    break;
+                case IS_DELETE_MAKER:
+                    line.setIsDeleteMaker(value);
+                    break;
+                case SIZE:
+                    line.setSize(value);
+                    break;
+                case LAST_MODIFIED_DATE:
+                    line.setLastModifiedDate(value);
+                    break;
+                case E_TAG:
+                    line.seteTag(value);
+                    break;
+                case STORAGE_CLASS:
+                    line.setStorageClass(value);
+                    break;
+                case IS_MULTIPART_UPLOADED:
+                    line.setMultiPartUploaded(value);
+                    break;
+                default:
+                    line.setReplicationStatus(value);
+            }
+        }
+        return line;
+    }
+}
@@ -5,18 +5,18 @@
 package com.aws.services.s3.inventory.rrs;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
-import org.apache.commons.codec.digest.DigestUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.zip.GZIPOutputStream;
@@ -26,18 +26,52 @@ import java.util.zip.GZIPOutputStream;
  * and sends it to the S3 bucket
  */
 public class InventoryReportLineWriter implements Serializable {
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final AmazonS3 s3Client;
     private final String bucketName;
+    private final String outputKeyPrefix;
     private String outputInventoryReportKey;
     private CsvSchema schema;
+    private TransferSettings transferSettings;
+    private InventoryJobMetrics metrics;
 
     public InventoryReportLineWriter(AmazonS3 client, String destBucketName, String destPrefix,
                                      String srcBucket, InventoryManifest inventoryManifest) throws IOException{
+        this(client, destBucketName, destPrefix, srcBucket, inventoryManifest, new TransferSettings());
+    }
+
+    public InventoryReportLineWriter(AmazonS3 client, String destBucketName, String destPrefix,
+                                     String srcBucket, InventoryManifest inventoryManifest,
+                                     TransferSettings transferSettings) throws IOException{
+        this(client, destBucketName, destPrefix, srcBucket, CsvSchemaFactory.buildSchema(inventoryManifest),
+                transferSettings);
+    }
+
+    /**
+     * Build a writer from the job context broadcast to the workers, which already holds the schema
+     */
+    public InventoryReportLineWriter(AmazonS3 client, InventoryJobContext jobContext) {
+        this(client, jobContext.getDestBucket(), jobContext.getDestPrefix(), jobContext.getSrcBucket(),
+                jobContext.getSchema(), jobContext.getTransferSettings());
+    }
+
+    private InventoryReportLineWriter(AmazonS3 client, String destBucketName, String destPrefix,
+                                      String srcBucket, CsvSchema schema, TransferSettings transferSettings) {
         this.s3Client = client;
         this.bucketName = destBucketName;
-        String uuid = UUID.randomUUID().toString();
-        this.outputInventoryReportKey = destPrefix + "/" + srcBucket + "/data/" + uuid + ".csv.gz";
-        this.schema = CsvSchemaFactory.buildSchema(inventoryManifest);
+        this.outputKeyPrefix = destPrefix + "/" + srcBucket + "/data/";
+        this.outputInventoryReportKey = newOutputKey();
+        this.schema = schema;
+        this.transferSettings = transferSettings;
+    }
+
+    /**
+     * Measure the reports written by writeCsvFiles and writeCsvBlockFiles from now on: their rows, their bytes,
+     * and the time spent serializing, compressing and uploading each of them
+     * @param metrics where the new reports are recorded, or null not to record them
+     */
+    public void setMetrics(InventoryJobMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
@@ -46,32 +80,279 @@ public class InventoryReportLineWriter implements Serializable {
      * @throws IOException thrown when GZIPOutputStream not created successfully or csvMapper.write() fails
      */
     public InventoryManifest.Locator writeCsvFile(List<InventoryReportLine> inventoryReportLine) throws IOException{
+        return writeCsvFile(inventoryReportLine.iterator());
+    }
+
+    /**
+     * Stream the lines into a new gzipped inventory report, which is uploaded to S3 part by part while it is written,
+     * and returns a locator which includes this inventory report's information
+     * @return Locator which includes the information of this new report
+     * @throws IOException thrown when GZIPOutputStream not created successfully or csvMapper.write() fails
+     */
+    public InventoryManifest.Locator writeCsvFile(Iterator<InventoryReportLine> inventoryReportLines)
+            throws IOException{
+        CsvMapper csvMapper = new CsvMapper();
+        csvMapper.enable(JsonGenerator.Feature.IGNORE_UNKNOWN);
+        MultipartUploadOutputStream uploadStream = new MultipartUploadOutputStream(s3Client, bucketName,
+                outputInventoryReportKey, transferSettings.getUploadPartSize());
+        try {
+            SequenceWriter csvWriter = csvMapper.writer(schema).writeValues(compress(uploadStream));
+            while (inventoryReportLines.hasNext()) {
+                csvWriter.write(inventoryReportLines.next());
+            }
+            // Closing the writer finishes the GZIP stream and completes the upload
+            csvWriter.close();
+        } catch (IOException | RuntimeException e) {
+            uploadStream.abort();
+            throw e;
+        }
+
+        return this.buildLocator(uploadStream.getSize(), uploadStream.getMD5checksum());
+    }
+
+    /**
+     * Stream compact InventoryReportLineBlocks into a new gzipped inventory report, uploaded to S3 part by part
+     * while it is written. The blocks are written in the column order of their own fileSchema,
+     * directly from their bytes, without going through InventoryReportLine POJOs.
+     * @return Locator which includes the information of this new report
+     * @throws IOException thrown when GZIPOutputStream not created successfully or writing a block fails
+     */
+    public InventoryManifest.Locator writeCsvBlocks(Iterator<InventoryReportLineBlock> inventoryReportBlocks)
+            throws IOException{
+        MultipartUploadOutputStream uploadStream = new MultipartUploadOutputStream(s3Client, bucketName,
+                outputInventoryReportKey, transferSettings.getUploadPartSize());
+        try {
+            OutputStream csvStream = new BufferedOutputStream(compress(uploadStream), BUFFER_SIZE);
+            while (inventoryReportBlocks.hasNext()) {
+                inventoryReportBlocks.next().writeCsv(csvStream);
+            }
+            // Closing the stream finishes the GZIP stream and completes the upload
+            csvStream.close();
+        } catch (IOException | RuntimeException e) {
+            uploadStream.abort();
+            throw e;
+        }
+
+        return this.buildLocator(uploadStream.getSize(), uploadStream.getMD5checksum());
+    }
+
+    /**
+     * Stream the lines into as many new gzipped inventory reports as the OutputFileSettings require,
+     * rolling over to a new report whenever the current one is full
+     * @param inventoryReportLines the lines to write
+     * @param outputFileSettings how large each report should be
+     * @return List<Locator> which includes the information of the new reports, empty if there is no line
+     * @throws IOException thrown when GZIPOutputStream not created successfully or csvMapper.write() fails
+     */
+    public List<InventoryManifest.Locator> writeCsvFiles(Iterator<InventoryReportLine> inventoryReportLines,
+                                                         OutputFileSettings outputFileSettings) throws IOException {
+        return writeCsvFiles(inventoryReportLines, outputFileSettings, null);
+    }
+
+    /**
+     * Same as writeCsvFiles(inventoryReportLines, outputFileSettings), but the reports are named after outputName,
+     * so that writing the same lines again overwrites the same objects instead of leaving orphan reports behind
+     * @param inventoryReportLines the lines to write
+     * @param outputFileSettings how large each report should be
+     * @param outputName the base name of the reports, followed by their index, or null for random names
+     * @return List<Locator> which includes the information of the new reports, empty if there is no line
+     * @throws IOException thrown when GZIPOutputStream not created successfully or csvMapper.write() fails
+     */
+    public List<InventoryManifest.Locator> writeCsvFiles(Iterator<InventoryReportLine> inventoryReportLines,
+                                                         OutputFileSettings outputFileSettings, String outputName)
+            throws IOException {
         CsvMapper csvMapper = new CsvMapper();
         csvMapper.enable(JsonGenerator.Feature.IGNORE_UNKNOWN);
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
-        csvMapper.writer(schema).writeValues(gzipOutputStream).writeAll(inventoryReportLine).close();
-        byte[] zipByteArray = byteArrayOutputStream.toByteArray();
+        ObjectWriter objectWriter = csvMapper.writer(schema);
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        while (inventoryReportLines.hasNext()) {
+            String key = outputKey(outputName, locators.size());
+            MultipartUploadOutputStream uploadStream = new MultipartUploadOutputStream(s3Client, bucketName,
+                    key, transferSettings.getUploadPartSize());
+            MeteredOutputStream compressedStream = new MeteredOutputStream(uploadStream);
+            MeteredOutputStream csvStream = new MeteredOutputStream(compress(compressedStream));
+            long rows = 0;
+            long writeNanos = 0;
+            try {
+                SequenceWriter csvWriter = objectWriter.writeValues(csvStream);
+                do {
+                    // Only the writing is timed, not the reading of the next line from the iterator
+                    InventoryReportLine line = inventoryReportLines.next();
+                    long start = System.nanoTime();
+                    csvWriter.write(line);
+                    writeNanos += System.nanoTime() - start;
+                    rows++;
+                } while (inventoryReportLines.hasNext() && !outputFileSettings.isFull(rows, uploadStream.getSize()));
+                long start = System.nanoTime();
+                csvWriter.close();
+                writeNanos += System.nanoTime() - start;
+            } catch (IOException | RuntimeException e) {
+                uploadStream.abort();
+                throw e;
+            }
+            recordReport(rows, writeNanos, csvStream, compressedStream, uploadStream.getSize());
+            locators.add(buildLocator(key, uploadStream.getSize(), uploadStream.getMD5checksum()));
+        }
+        return locators;
+    }
+
+    /**
+     * Stream compact InventoryReportLineBlocks into as many new gzipped inventory reports as the
+     * OutputFileSettings require. A block is split between two reports when the target rows per file is reached
+     * in its middle, while the compressed size is only checked between blocks.
+     * @param inventoryReportBlocks the blocks to write
+     * @param outputFileSettings how large each report should be
+     * @return List<Locator> which includes the information of the new reports, empty if there is no line
+     * @throws IOException thrown when GZIPOutputStream not created successfully or writing a block fails
+     */
+    public List<InventoryManifest.Locator> writeCsvBlockFiles(Iterator<InventoryReportLineBlock> inventoryReportBlocks,
+                                                              OutputFileSettings outputFileSettings)
+            throws IOException {
+        return writeCsvBlockFiles(inventoryReportBlocks, outputFileSettings, null);
+    }
+
+    /**
+     * Same as writeCsvBlockFiles(inventoryReportBlocks, outputFileSettings), but the reports are named after
+     * outputName, so that writing the same blocks again overwrites the same objects
+     * @param inventoryReportBlocks the blocks to write
+     * @param outputFileSettings how large each report should be
+     * @param outputName the base name of the reports, followed by their index, or null for random names
+     * @return List<Locator> which includes the information of the new reports, empty if there is no line
+     * @throws IOException thrown when GZIPOutputStream not created successfully or writing a block fails
+     */
+    public List<InventoryManifest.Locator> writeCsvBlockFiles(Iterator<InventoryReportLineBlock> inventoryReportBlocks,
+                                                              OutputFileSettings outputFileSettings, String outputName)
+            throws IOException {
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        InventoryReportLineBlock block = null;
+        int nextRow = 0;
+        while ((block != null && nextRow < block.getRowCount()) || inventoryReportBlocks.hasNext()) {
+            String key = outputKey(outputName, locators.size());
+            MultipartUploadOutputStream uploadStream = new MultipartUploadOutputStream(s3Client, bucketName,
+                    key, transferSettings.getUploadPartSize());
+            MeteredOutputStream compressedStream = new MeteredOutputStream(uploadStream);
+            MeteredOutputStream gzipStream = new MeteredOutputStream(compress(compressedStream));
+            long rows = 0;
+            long writeNanos = 0;
+            try {
+                OutputStream csvStream = new BufferedOutputStream(gzipStream, BUFFER_SIZE);
+                do {
+                    if (block == null || nextRow == block.getRowCount()) {
+                        block = inventoryReportBlocks.next();
+                        nextRow = 0;
+                    }
+                    int toRow = (int) Math.min(block.getRowCount(), nextRow + outputFileSettings.remainingRows(rows));
+                    long start = System.nanoTime();
+                    block.writeCsv(csvStream, nextRow, toRow);
+                    writeNanos += System.nanoTime() - start;
+                    rows += toRow - nextRow;
+                    nextRow = toRow;
+                } while ((nextRow < block.getRowCount() || inventoryReportBlocks.hasNext())
+                        && !outputFileSettings.isFull(rows, uploadStream.getSize()));
+                long start = System.nanoTime();
+                csvStream.close();
+                writeNanos += System.nanoTime() - start;
+            } catch (IOException | RuntimeException e) {
+                uploadStream.abort();
+                throw e;
+            }
+            recordReport(rows, writeNanos, gzipStream, compressedStream, uploadStream.getSize());
+            locators.add(buildLocator(key, uploadStream.getSize(), uploadStream.getMD5checksum()));
+        }
+        return locators;
+    }
 
-        InputStream zipInputStream = new ByteArrayInputStream(zipByteArray);
-        ObjectMetadata metaData = new ObjectMetadata();
-        metaData.setContentLength(zipByteArray.length);
-        PutObjectRequest request = new PutObjectRequest(bucketName, outputInventoryReportKey, zipInputStream, metaData);
-        s3Client.putObject(request);
+    /**
+     * Helper function, which opens the GZIP stream of a new report as the TransferSettings require:
+     * compressed in the calling thread, or in blocks by several threads, at the given compression level
+     * @param out the stream receiving the compressed report
+     * @return OutputStream which compresses the CSV content of the report, and closes out when it is closed
+     * @throws IOException when the GZIP header cannot be written
+     */
+    private OutputStream compress(OutputStream out) throws IOException {
+        int level = transferSettings.getCompressionLevel();
+        if (transferSettings.getCompressionThreads() > 1) {
+            return new ParallelGzipOutputStream(out, level, transferSettings.getCompressionThreads(),
+                    ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+        }
+        return new LeveledGzipOutputStream(out, BUFFER_SIZE, level);
+    }
 
-        return this.buildLocator(zipByteArray);
+    /**
+     * A GZIPOutputStream compressing at the given level instead of the default one
+     */
+    static class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * Helper function, which records a new report into the metrics, if any
+     * @param rows the number of lines of the report
+     * @param writeNanos the time spent writing the lines and closing the report
+     * @param csvStream the stream of the CSV content, around the compression
+     * @param compressedStream the stream of the compressed content, around the upload
+     * @param size the size in bytes of the report
+     */
+    private void recordReport(long rows, long writeNanos, MeteredOutputStream csvStream,
+                              MeteredOutputStream compressedStream, long size) {
+        if (metrics == null) {
+            return;
+        }
+        metrics.add(InventoryJobMetrics.Counter.REPORTS_WRITTEN, 1);
+        metrics.add(InventoryJobMetrics.Counter.ROWS_WRITTEN, rows);
+        metrics.add(InventoryJobMetrics.Counter.BYTES_SERIALIZED, csvStream.getBytes());
+        metrics.add(InventoryJobMetrics.Counter.BYTES_UPLOADED, size);
+        metrics.record(InventoryJobMetrics.Stage.SERIALIZE, writeNanos - csvStream.getNanos());
+        metrics.record(InventoryJobMetrics.Stage.COMPRESS, csvStream.getNanos() - compressedStream.getNanos());
+        metrics.record(InventoryJobMetrics.Stage.UPLOAD, compressedStream.getNanos());
+    }
+
+    /**
+     * Helper function, which names the reports written by one call
+     * @param outputName the base name of the reports, or null for random names
+     * @param fileIndex the index of the report among the reports of the call
+     * @return String which is the key of the report under the data folder of the output prefix
+     */
+    private String outputKey(String outputName, int fileIndex) {
+        if (outputName == null) {
+            return fileIndex == 0 ? outputInventoryReportKey : newOutputKey();
+        }
+        return outputKeyPrefix + outputName + "-" + fileIndex + ".csv.gz";
+    }
+
+    /**
+     * Helper function, which creates the key of a new report
+     * @return String which is a unique key under the data folder of the output prefix
+     */
+    private String newOutputKey() {
+        return outputKeyPrefix + UUID.randomUUID().toString() + ".csv.gz";
+    }
+
+    /**
+     * Helper function, which creates a new Locator
+     * @param size the size in bytes of the CSV file
+     * @param md5checksum the MD5 of the CSV file
+     * @return Locator which includes the information of the CSV file
+     */
+    private InventoryManifest.Locator buildLocator(long size, String md5checksum){
+        return buildLocator(outputInventoryReportKey, size, md5checksum);
     }
 
     /**
      * Helper function, which creates a new Locator
-     * @param outputInventoryBytes which is byte array
+     * @param key the key of the CSV file
+     * @param size the size in bytes of the CSV file
+     * @param md5checksum the MD5 of the CSV file
      * @return Locator which includes the information of the CSV file
      */
-    private InventoryManifest.Locator buildLocator(byte[] outputInventoryBytes){
+    private InventoryManifest.Locator buildLocator(String key, long size, String md5checksum){
         InventoryManifest.Locator locator = new InventoryManifest.Locator();
-        locator.setKey(outputInventoryReportKey);
-        locator.setSize(outputInventoryBytes.length);
-        locator.setMD5checksum(DigestUtils.md5Hex(outputInventoryBytes));
+        locator.setKey(key);
+        locator.setSize(size);
+        locator.setMD5checksum(md5checksum);
         return locator;
     }
 }
@@ -5,6 +5,7 @@
 package com.aws.services.s3.inventory.rrs;
 
 import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
 
 import java.util.Iterator;
 import java.util.List;
@@ -13,16 +14,15 @@ import java.util.List;
  * This InventoryReportMapper class maps each line of the inventory report to a InventoryReportLine POJO.
  */
 public class InventoryReportMapper implements FlatMapFunction<List<String>, InventoryReportLine> {
-    private final InventoryManifest manifest;
+    private final Broadcast<InventoryJobContext> jobContext;
 
-    public InventoryReportMapper(InventoryManifest inventoryManifest){
-        this.manifest = inventoryManifest;
+    public InventoryReportMapper(Broadcast<InventoryJobContext> jobContext){
+        this.jobContext = jobContext;
     }
 
     @Override
     public Iterator<InventoryReportLine> call(List<String> inventoryReportLine) throws Exception{
-        InventoryReportLineMapper mapper =
-                new InventoryReportLineMapper(manifest);
-        return mapper.mapInventoryReportLine(inventoryReportLine).iterator();
+        // The mapper and its schema are built once on the driver, and shared by every list of the worker
+        return jobContext.getValue().getMapper().mapInventoryReportLines(inventoryReportLine.iterator());
     }
 }
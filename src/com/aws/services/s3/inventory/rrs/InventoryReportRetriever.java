@@ -14,22 +14,58 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.security.DigestInputStream;
+import java.util.Iterator;
 import java.util.zip.GZIPInputStream;
 
 /**
  * This InventoryReportRetriever class gets the inventReport.csv.gz file,
- * verifies its checksum, and transfer it to the String format.
+ * verifies its checksum, and transfer it to the String format or streams it as InventoryReportLine POJOs
+ * or InventoryReportLineBlocks.
  */
 public class InventoryReportRetriever implements Serializable {
     private final AmazonS3 s3Client;
-    private InventoryManifest inventoryManifest;
+    private String sourceBucket;
+    private InventoryReportLineMapper mapper;
     private InventoryManifest.Locator locator;
+    private TransferSettings transferSettings;
+    private InventoryJobMetrics metrics;
 
     public InventoryReportRetriever(AmazonS3 client, InventoryManifest.Locator locator,
                                     InventoryManifest manifest){
+        this(client, locator, manifest, new TransferSettings());
+    }
+
+    public InventoryReportRetriever(AmazonS3 client, InventoryManifest.Locator locator,
+                                    InventoryManifest manifest, TransferSettings transferSettings){
+        this(client, locator, manifest.getSourceBucket(), new InventoryReportLineMapper(manifest), transferSettings);
+    }
+
+    /**
+     * Build a retriever from the job context broadcast to the workers, which already holds the mapper
+     */
+    public InventoryReportRetriever(AmazonS3 client, InventoryManifest.Locator locator,
+                                    InventoryJobContext jobContext){
+        this(client, locator, jobContext.getSourceBucket(), jobContext.getMapper(),
+                jobContext.getTransferSettings());
+    }
+
+    private InventoryReportRetriever(AmazonS3 client, InventoryManifest.Locator locator, String sourceBucket,
+                                     InventoryReportLineMapper mapper, TransferSettings transferSettings){
         this.s3Client = client;
         this.locator = locator;
-        this.inventoryManifest = manifest;
+        this.sourceBucket = sourceBucket;
+        this.mapper = mapper;
+        this.transferSettings = transferSettings;
+    }
+
+    /**
+     * Measure the reports streamed by this retriever from now on: their rows, their bytes, and the time spent
+     * downloading, verifying, decompressing and parsing each of them, recorded when the iterator is closed
+     * @param metrics where the reports are recorded, or null not to measure them
+     */
+    public void setMetrics(InventoryJobMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
@@ -40,7 +76,7 @@ public class InventoryReportRetriever implements Serializable {
      */
     public String getInventoryReportToString() throws IOException {
         String inventReportKey = locator.getKey();
-        String bucketName = inventoryManifest.getSourceBucket();
+        String bucketName = sourceBucket;
 
         try (S3Object s3InventoryReport = s3Client.getObject(
                 new GetObjectRequest(bucketName, inventReportKey))) {
@@ -51,7 +87,108 @@ public class InventoryReportRetriever implements Serializable {
             if (!actualChecksum.equals(expectedChecksum)) {
                 throw new ChecksumMismatchException (expectedChecksum, actualChecksum);
             }
-            return IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(zippedData)));
+            return IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(zippedData),
+                    transferSettings.getInflateBufferSize()));
+        }
+    }
+
+    /**
+     * Get the original inventory report from S3 and stream it through the decompressor into the CSV parser,
+     * so only a buffer of the report is held in memory at any time.
+     * The checksum is computed while the report is read, and verified once the last row has been consumed.
+     * @return InventoryReportLineIterator which lazily yields the rows of the report
+     * @throws IOException when getting object from S3 fails or the report is not in GZIP format
+     */
+    public InventoryReportLineIterator getInventoryReportLines() throws IOException {
+        return getInventoryReportLines(mapper);
+    }
+
+    /**
+     * Same as getInventoryReportLines(), but parses the report with the given mapper
+     * so that it can be shared by all the reports of a partition.
+     * @param mapper InventoryReportLineMapper built from the schema of the manifest
+     * @return InventoryReportLineIterator which lazily yields the rows of the report
+     * @throws IOException when getting object from S3 fails or the report is not in GZIP format
+     */
+    public InventoryReportLineIterator getInventoryReportLines(InventoryReportLineMapper mapper) throws IOException {
+        return getInventoryReportLines(mapper, null);
+    }
+
+    /**
+     * Same as getInventoryReportLines(mapper), but only maps the rows matching the predicate into POJOs.
+     * The predicate is evaluated on the raw CSV records, so the rows filtered out are never decoded.
+     * @param mapper InventoryReportLineMapper built from the schema of the manifest
+     * @param predicate RawRecordPredicate selecting the rows to keep, or null to keep all of them
+     * @return InventoryReportLineIterator which lazily yields the rows of the report matching the predicate
+     * @throws IOException when getting object from S3 fails or the report is not in GZIP format
+     */
+    public InventoryReportLineIterator getInventoryReportLines(InventoryReportLineMapper mapper,
+                                                               RawRecordPredicate predicate) throws IOException {
+        InputStream inventoryReport = openInventoryReport();
+        try {
+            ReportReadMeter<InventoryReportLine> meter = new ReportReadMeter<>(metrics, line -> 1);
+            DigestInputStream digestStream = new DigestInputStream(meter.meterDownload(inventoryReport),
+                    DigestUtils.getMd5Digest());
+            InputStream csvStream = meter.meterDecompression(new GZIPInputStream(meter.meterChecksum(digestStream),
+                    transferSettings.getInflateBufferSize()));
+            Iterator<InventoryReportLine> rows;
+            if (predicate == null && !mapper.isTokenizing()) {
+                rows = mapper.mapInventoryReport(csvStream);
+            } else {
+                CsvRecordScanner scanner = new CsvRecordScanner(csvStream);
+                meter.setScanner(scanner);
+                rows = new PushdownInventoryReportLineIterator(scanner, predicate, mapper);
+            }
+            return new InventoryReportLineIterator(rows, digestStream, inventoryReport, locator.getMD5checksum(),
+                    meter);
+        } catch (IOException | RuntimeException e) {
+            inventoryReport.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Same as getInventoryReportLines(mapper, predicate), but groups the rows matching the predicate
+     * into compact InventoryReportLineBlocks instead of mapping each of them into a POJO.
+     * @param mapper InventoryReportLineMapper built from the schema of the manifest
+     * @param predicate RawRecordPredicate selecting the rows to keep, or null to keep all of them
+     * @param maxRows the maximum number of rows of each block
+     * @return ChecksumVerifyingIterator which lazily yields the blocks of the report
+     * @throws IOException when getting object from S3 fails or the report is not in GZIP format
+     */
+    public ChecksumVerifyingIterator<InventoryReportLineBlock> getInventoryReportBlocks(
+            InventoryReportLineMapper mapper, RawRecordPredicate predicate, int maxRows) throws IOException {
+        InputStream inventoryReport = openInventoryReport();
+        try {
+            ReportReadMeter<InventoryReportLineBlock> meter =
+                    new ReportReadMeter<>(metrics, InventoryReportLineBlock::getRowCount);
+            DigestInputStream digestStream = new DigestInputStream(meter.meterDownload(inventoryReport),
+                    DigestUtils.getMd5Digest());
+            InputStream csvStream = meter.meterDecompression(new GZIPInputStream(meter.meterChecksum(digestStream),
+                    transferSettings.getInflateBufferSize()));
+            CsvRecordScanner scanner = new CsvRecordScanner(csvStream);
+            meter.setScanner(scanner);
+            return new ChecksumVerifyingIterator<>(new InventoryReportLineBlockIterator(scanner, predicate,
+                    mapper.getColumnNames(), maxRows), digestStream, inventoryReport, locator.getMD5checksum(), meter);
+        } catch (IOException | RuntimeException e) {
+            inventoryReport.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the compressed inventory report, either with a single GET
+     * or, for reports larger than one part, with parallel ranged GETs reassembled in order
+     * @return InputStream of the compressed report
+     */
+    private InputStream openInventoryReport() {
+        String inventReportKey = locator.getKey();
+        String bucketName = sourceBucket;
+
+        if (transferSettings.useRangedDownload(locator.getSize())) {
+            return new RangedObjectInputStream(s3Client, bucketName, inventReportKey, locator.getSize(),
+                    transferSettings.getDownloadPartSize(), transferSettings.getDownloadConcurrency());
         }
+        return s3Client.getObject(new GetObjectRequest(bucketName, inventReportKey)).getObjectContent();
     }
 }
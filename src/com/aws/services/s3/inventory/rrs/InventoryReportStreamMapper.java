@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * This InventoryReportStreamMapper class streams the original inventory report
+ * and lazily maps each line of it to a InventoryReportLine POJO.
+ * When a RawRecordPredicate is given, only the lines matching it are mapped.
+ * The Bucket, StorageClass and ReplicationStatus of the lines of a partition share canonical instances.
+ */
+public class InventoryReportStreamMapper implements FlatMapFunction<InventoryManifest.Locator, InventoryReportLine> {
+    private final Broadcast<CachedS3ClientFactory> s3ClientFactory;
+    private final Broadcast<InventoryJobContext> jobContext;
+    private final InventoryMetricsAccumulator metrics;
+    // Each task deserializes its own copy of this function, so the interner is shared by the reports of a partition,
+    // one per thread since a PipelinedReportMapper reads several reports of the partition at the same time
+    private transient ThreadLocal<InventoryReportLineInterner> interner;
+
+    public InventoryReportStreamMapper(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                       Broadcast<InventoryJobContext> jobContext) {
+        this(s3ClientFactory, jobContext, null);
+    }
+
+    /**
+     * @param metrics the accumulator of the rows, bytes and times of the reports, or null not to measure them
+     */
+    public InventoryReportStreamMapper(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                       Broadcast<InventoryJobContext> jobContext,
+                                       InventoryMetricsAccumulator metrics) {
+        this.s3ClientFactory = s3ClientFactory;
+        this.jobContext = jobContext;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Iterator<InventoryReportLine> call(InventoryManifest.Locator locator) throws IOException {
+        InventoryJobContext inventoryJobContext = jobContext.getValue();
+        InventoryReportRetriever reportRetriever =
+                new InventoryReportRetriever(s3ClientFactory.getValue().get(), locator, inventoryJobContext);
+        if (metrics != null) {
+            reportRetriever.setMetrics(metrics.value());
+        }
+        InventoryReportLineIterator inventoryReportLines = reportRetriever.getInventoryReportLines(
+                inventoryJobContext.getMapper(), inventoryJobContext.getPredicate());
+
+        // Release the S3 connection even if the task fails before the report is fully consumed
+        TaskContext taskContext = TaskContext.get();
+        if (taskContext != null) {
+            taskContext.addTaskCompletionListener(context -> IOUtils.closeQuietly(inventoryReportLines));
+        }
+        synchronized (this) {
+            if (interner == null) {
+                interner = ThreadLocal.withInitial(InventoryReportLineInterner::new);
+            }
+        }
+        return interner.get().internAll(inventoryReportLines);
+    }
+}
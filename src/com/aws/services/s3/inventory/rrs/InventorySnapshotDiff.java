@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.spark.Partitioner;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This InventorySnapshotDiff class finds the object versions added, removed, or moved to another storage class
+ * between two snapshots of the inventory of a bucket.
+ * Only the Key, VersionId and StorageClass of each line are shuffled, both snapshots through the same
+ * partitioner so that they are joined without shuffling them again, and the changes stay on the executors.
+ * The full lines of the changed objects are then selected on the map side with one ObjectVersionBloomFilter
+ * of the changes of each partition, so that only these lines and a few false positives are shuffled
+ * to be joined with the changes. The driver only holds the Bloom filters, about 10 bits per change.
+ */
+public final class InventorySnapshotDiff {
+
+    private InventorySnapshotDiff() {
+    }
+
+    /**
+     * Join two snapshots on the Key and VersionId of their lines
+     * @param previousLines the lines of the older snapshot
+     * @param currentLines the lines of the newer snapshot
+     * @param partitioner the partitioner of the join, whose partitions are those of the changes
+     * @return JavaPairRDD holding the type of change of each object version which differs between the snapshots
+     */
+    public static JavaPairRDD<ObjectVersionKey, InventoryChangeType> findChanges(
+            JavaRDD<InventoryReportLine> previousLines, JavaRDD<InventoryReportLine> currentLines,
+            Partitioner partitioner) {
+        JavaPairRDD<ObjectVersionKey, String> previousStorageClasses = projectStorageClasses(previousLines)
+                .partitionBy(partitioner);
+        JavaPairRDD<ObjectVersionKey, String> currentStorageClasses = projectStorageClasses(currentLines)
+                .partitionBy(partitioner);
+        return previousStorageClasses.cogroup(currentStorageClasses, partitioner)
+                .flatMapValues(storageClasses -> {
+                    InventoryChangeType change = compare(storageClasses._1(), storageClasses._2());
+                    return change == null
+                            ? Collections.<InventoryChangeType>emptyList()
+                            : Collections.singletonList(change);
+                });
+    }
+
+    /**
+     * Count the changes of each partition by type
+     * @param changes the changes found by findChanges
+     * @return long[][] holding the number of changes of each partition, indexed by the ordinal of their type
+     */
+    public static long[][] countChanges(JavaPairRDD<ObjectVersionKey, InventoryChangeType> changes) {
+        List<long[]> counts = changes.values().mapPartitions(changeTypes -> {
+            long[] partitionCounts = new long[InventoryChangeType.values().length];
+            while (changeTypes.hasNext()) {
+                partitionCounts[changeTypes.next().ordinal()]++;
+            }
+            return Collections.singletonList(partitionCounts).iterator();
+        }).collect();
+        return counts.toArray(new long[0][]);
+    }
+
+    /**
+     * Build one Bloom filter of the changed object versions of each partition
+     * @param changes the changes found by findChanges
+     * @param counts the number of changes of each partition, as counted by countChanges
+     * @return ObjectVersionBloomFilter[] indexed by partition
+     */
+    public static ObjectVersionBloomFilter[] buildFilters(JavaPairRDD<ObjectVersionKey, InventoryChangeType> changes,
+                                                          long[][] counts) {
+        List<ObjectVersionBloomFilter> filters = changes.keys().mapPartitionsWithIndex((partition, versions) -> {
+            long partitionCount = 0;
+            for (long count : counts[partition]) {
+                partitionCount += count;
+            }
+            ObjectVersionBloomFilter filter = new ObjectVersionBloomFilter(partitionCount,
+                    ObjectVersionBloomFilter.DEFAULT_FALSE_POSITIVE_RATE);
+            versions.forEachRemaining(filter::add);
+            return Collections.singletonList(filter).iterator();
+        }, true).collect();
+        return filters.toArray(new ObjectVersionBloomFilter[0]);
+    }
+
+    /**
+     * Select the full lines of the changed object versions: the line of the newer snapshot for an added
+     * or changed version, the line of the older snapshot for a removed one
+     * @param changes the changes found by findChanges, partitioned by the partitioner
+     * @param previousLines the lines of the older snapshot
+     * @param currentLines the lines of the newer snapshot
+     * @param partitioner the partitioner of the changes
+     * @param filters the Bloom filters of the changes of each partition, built by buildFilters
+     * @return JavaPairRDD holding the type of change of each changed object version, with its line
+     */
+    public static JavaPairRDD<InventoryChangeType, InventoryReportLine> selectChangedLines(
+            JavaPairRDD<ObjectVersionKey, InventoryChangeType> changes, JavaRDD<InventoryReportLine> previousLines,
+            JavaRDD<InventoryReportLine> currentLines, Partitioner partitioner,
+            Broadcast<ObjectVersionBloomFilter[]> filters) {
+        ChangedVersionFilter changedVersionFilter = new ChangedVersionFilter(partitioner, filters);
+        // Each candidate line is tagged with true when it comes from the older snapshot
+        JavaPairRDD<ObjectVersionKey, Tuple2<Boolean, InventoryReportLine>> candidates = previousLines
+                .filter(changedVersionFilter)
+                .mapToPair(line -> new Tuple2<>(ObjectVersionKey.of(line), new Tuple2<>(true, line)))
+                .union(currentLines
+                        .filter(changedVersionFilter)
+                        .mapToPair(line -> new Tuple2<>(ObjectVersionKey.of(line), new Tuple2<>(false, line))));
+        // The changes are already partitioned by the partitioner, so only the candidates are shuffled
+        return changes.join(candidates, partitioner)
+                .values()
+                .filter(change -> (change._1() == InventoryChangeType.REMOVED) == change._2()._1())
+                .mapToPair(change -> new Tuple2<>(change._1(), change._2()._2()));
+    }
+
+    /**
+     * Compare the storage classes of an object version in both snapshots
+     * @param previous the storage classes of the object version in the older snapshot
+     * @param current the storage classes of the object version in the newer snapshot
+     * @return the type of change, or null if the object version did not change
+     */
+    static InventoryChangeType compare(Iterable<String> previous, Iterable<String> current) {
+        Iterator<String> previousIterator = previous.iterator();
+        Iterator<String> currentIterator = current.iterator();
+        if (!previousIterator.hasNext()) {
+            return currentIterator.hasNext() ? InventoryChangeType.ADDED : null;
+        }
+        if (!currentIterator.hasNext()) {
+            return InventoryChangeType.REMOVED;
+        }
+        return Objects.equals(previousIterator.next(), currentIterator.next())
+                ? null : InventoryChangeType.STORAGE_CLASS_CHANGED;
+    }
+
+    private static JavaPairRDD<ObjectVersionKey, String> projectStorageClasses(JavaRDD<InventoryReportLine> lines) {
+        return lines.mapToPair(line -> new Tuple2<>(ObjectVersionKey.of(line), line.getStorageClass()));
+    }
+
+    /**
+     * Keep the lines whose object version may have changed, according to the Bloom filter of the partition
+     * the version belongs to
+     */
+    public static class ChangedVersionFilter implements Function<InventoryReportLine, Boolean> {
+        private final Partitioner partitioner;
+        private final Broadcast<ObjectVersionBloomFilter[]> filters;
+
+        /**
+         * @param partitioner the partitioner of the changes
+         * @param filters the Bloom filters of the changes of each partition, broadcast by the driver
+         */
+        public ChangedVersionFilter(Partitioner partitioner, Broadcast<ObjectVersionBloomFilter[]> filters) {
+            this.partitioner = partitioner;
+            this.filters = filters;
+        }
+
+        @Override
+        public Boolean call(InventoryReportLine line) {
+            ObjectVersionKey version = ObjectVersionKey.of(line);
+            return filters.getValue()[partitioner.getPartition(version)].mightContain(version);
+        }
+    }
+}
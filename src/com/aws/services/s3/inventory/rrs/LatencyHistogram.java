@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This LatencyHistogram class counts durations in buckets of powers of two microseconds,
+ * so that recording one costs a few atomic increments whatever the number of durations.
+ * The percentiles are the upper bounds of their buckets, within a factor of two of the exact values.
+ */
+public class LatencyHistogram implements Serializable {
+    // The last bucket holds everything from 2^38 microseconds, about three days
+    private static final int BUCKETS = 40;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param nanos the duration to record, in nanoseconds
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(duration / 1000));
+        totalNanos.addAndGet(duration);
+        maxNanos.accumulateAndGet(duration, Math::max);
+    }
+
+    /**
+     * Add the durations recorded by another histogram to this one
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+        totalNanos.addAndGet(other.totalNanos.get());
+        maxNanos.accumulateAndGet(other.maxNanos.get(), Math::max);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return long, which is the upper bound in microseconds of the bucket holding the percentile,
+     * at most the longest duration, or 0 without any duration
+     */
+    public long getPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < BUCKETS - 1) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                break;
+            }
+            bucket++;
+        }
+        long upperBound = bucket == 0 ? 0 : (1L << bucket) - 1;
+        return Math.min(upperBound, maxNanos.get() / 1000);
+    }
+
+    /**
+     * @return Map<String, Object> of the count and the main statistics in milliseconds, in the order of the JSON
+     */
+    public Map<String, Object> toSummary() {
+        long count = getCount();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("totalMillis", totalNanos.get() / 1e6);
+        summary.put("meanMillis", count == 0 ? 0.0 : totalNanos.get() / 1e6 / count);
+        summary.put("p50Millis", getPercentileMicros(50) / 1e3);
+        summary.put("p90Millis", getPercentileMicros(90) / 1e3);
+        summary.put("p99Millis", getPercentileMicros(99) / 1e3);
+        summary.put("maxMillis", maxNanos.get() / 1e6);
+        return summary;
+    }
+
+    /**
+     * Helper function, which finds the bucket of a duration: 0 for less than a microsecond,
+     * and n for the durations from 2^(n-1) to 2^n - 1 microseconds
+     */
+    private static int bucket(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This LocalInventoryEngine class runs the same pipeline as the Spark job in a single JVM, for the inventories
+ * whose few reports do not pay for a Spark context. A pool of threads downloads, parses and filters
+ * the original reports, and hands the matching lines through a BoundedStageQueue to a pool of threads
+ * compressing and uploading the new reports, so the memory stays bounded whatever the size of the inventory.
+ */
+public class LocalInventoryEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(LocalInventoryEngine.class);
+    public static final int CHUNK_ROWS = InventoryReportLineBlock.DEFAULT_MAX_ROWS;
+    private final AmazonS3 s3Client;
+    private final int threads;
+    private final int queueCapacity;
+
+    /**
+     * @param client the S3 client, shared by all the threads
+     * @param threads the number of threads of each stage, reading and writing
+     */
+    public LocalInventoryEngine(AmazonS3 client, int threads) {
+        this(client, threads, 2 * threads);
+    }
+
+    /**
+     * @param client the S3 client, shared by all the threads
+     * @param threads the number of threads of each stage, reading and writing
+     * @param queueCapacity the number of chunks of lines waiting between the stages
+     */
+    public LocalInventoryEngine(AmazonS3 client, int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid threads or queue capacity: " + threads + ", "
+                    + queueCapacity);
+        }
+        this.s3Client = client;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Filter the original reports of a manifest and write the matching lines into new reports.
+     * Each writing thread rolls over to a new report as the OutputFileSettings require,
+     * so without any setting the new reports are at most as many as the writing threads.
+     * @param locators the original reports
+     * @param jobContext the settings of the job
+     * @param compactRows true to hold the lines in compact InventoryReportLineBlocks instead of POJOs
+     * @return List<Locator> which includes the information of the new reports
+     * @throws IOException when a report cannot be read or written
+     */
+    public List<InventoryManifest.Locator> run(List<InventoryManifest.Locator> locators,
+                                               InventoryJobContext jobContext, boolean compactRows)
+            throws IOException {
+        return run(locators, jobContext, compactRows, null);
+    }
+
+    /**
+     * Same as run(locators, jobContext, compactRows), measuring the rows, bytes and times of the reports
+     * @param metrics where the original and the new reports are recorded, or null not to measure them
+     */
+    public List<InventoryManifest.Locator> run(List<InventoryManifest.Locator> locators,
+                                               InventoryJobContext jobContext, boolean compactRows,
+                                               InventoryJobMetrics metrics) throws IOException {
+        if (compactRows) {
+            return run(locators, jobContext, metrics, this::readBlocks, (writer, blocks) ->
+                    writer.writeCsvBlockFiles(blocks, jobContext.getOutputFileSettings()));
+        }
+        return run(locators, jobContext, metrics, this::readLines, (writer, lines) ->
+                writer.writeCsvFiles(new ChunkIterator<>(lines), jobContext.getOutputFileSettings()));
+    }
+
+    private <T> List<InventoryManifest.Locator> run(List<InventoryManifest.Locator> locators,
+                                                    InventoryJobContext jobContext, InventoryJobMetrics metrics,
+                                                    ReportReader<T> reader, ReportWriter<T> writer)
+            throws IOException {
+        BoundedStageQueue<T> queue = new BoundedStageQueue<>(queueCapacity, locators.size());
+        // Each stage has its own pool, so that the readers waiting for room never hold the threads of the writers
+        ExecutorService readers = newStagePool("local-inventory-reader");
+        ExecutorService writers = newStagePool("local-inventory-writer");
+        try {
+            // The reading tasks beyond the size of the pool wait in the queue of the executor
+            for (InventoryManifest.Locator locator : locators) {
+                readers.submit(() -> {
+                    try {
+                        reader.read(locator, jobContext, metrics, queue);
+                    } catch (Throwable e) {
+                        queue.fail(e);
+                    } finally {
+                        queue.producerDone();
+                    }
+                });
+            }
+            List<Future<List<InventoryManifest.Locator>>> writtenReports = new ArrayList<>();
+            for (int i = 0; i < Math.min(threads, Math.max(1, locators.size())); i++) {
+                writtenReports.add(writers.submit(() -> {
+                    try {
+                        InventoryReportLineWriter lineWriter = new InventoryReportLineWriter(s3Client, jobContext);
+                        lineWriter.setMetrics(metrics);
+                        return writer.write(lineWriter, queue.consumer());
+                    } catch (Throwable e) {
+                        queue.fail(e);
+                        throw e;
+                    }
+                }));
+            }
+
+            List<InventoryManifest.Locator> newLocators = new ArrayList<>();
+            for (Future<List<InventoryManifest.Locator>> writtenReport : writtenReports) {
+                newLocators.addAll(writtenReport.get());
+            }
+            LOG.info("Wrote " + newLocators.size() + " new inventory reports from " + locators.size()
+                    + " inventory reports with " + threads + " threads per stage");
+            return newLocators;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.close();
+            throw new InterruptedIOException("Interrupted while writing the new inventory reports");
+        } catch (ExecutionException e) {
+            // Report the failure which stopped the pipeline, rather than the stages it stopped
+            throw rethrow(queue.getFailure() != null ? queue.getFailure() : e.getCause());
+        } finally {
+            readers.shutdownNow();
+            writers.shutdownNow();
+        }
+    }
+
+    /**
+     * Helper function, which creates the pool of a stage, whose threads do not prevent the JVM from exiting
+     */
+    private ExecutorService newStagePool(String name) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Download, parse and filter an original report into compact blocks
+     */
+    private void readBlocks(InventoryManifest.Locator locator, InventoryJobContext jobContext,
+                            InventoryJobMetrics metrics, BoundedStageQueue<InventoryReportLineBlock> queue)
+            throws IOException, InterruptedException {
+        InventoryReportRetriever retriever = new InventoryReportRetriever(s3Client, locator, jobContext);
+        retriever.setMetrics(metrics);
+        try (ChecksumVerifyingIterator<InventoryReportLineBlock> blocks = retriever.getInventoryReportBlocks(
+                jobContext.getMapper(), jobContext.getPredicate(), CHUNK_ROWS)) {
+            while (blocks.hasNext()) {
+                queue.put(blocks.next());
+            }
+        }
+    }
+
+    /**
+     * Download, parse and filter an original report into chunks of POJOs, so that the queue is not
+     * synchronized for every line
+     */
+    private void readLines(InventoryManifest.Locator locator, InventoryJobContext jobContext,
+                           InventoryJobMetrics metrics, BoundedStageQueue<List<InventoryReportLine>> queue)
+            throws IOException, InterruptedException {
+        InventoryReportRetriever retriever = new InventoryReportRetriever(s3Client, locator, jobContext);
+        retriever.setMetrics(metrics);
+        try (InventoryReportLineIterator lines = retriever.getInventoryReportLines(jobContext.getMapper(),
+                jobContext.getPredicate())) {
+            List<InventoryReportLine> chunk = new ArrayList<>(CHUNK_ROWS);
+            while (lines.hasNext()) {
+                chunk.add(lines.next());
+                if (chunk.size() == CHUNK_ROWS) {
+                    queue.put(chunk);
+                    chunk = new ArrayList<>(CHUNK_ROWS);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                queue.put(chunk);
+            }
+        }
+    }
+
+    /**
+     * Helper function, which rethrows the failure of a stage with its own type when it can
+     */
+    private static IOException rethrow(Throwable failure) {
+        if (failure instanceof IOException) {
+            return (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IOException(failure);
+    }
+
+    /**
+     * The first stage, which hands the elements of an original report to the queue
+     */
+    private interface ReportReader<T> {
+        void read(InventoryManifest.Locator locator, InventoryJobContext jobContext, InventoryJobMetrics metrics,
+                  BoundedStageQueue<T> queue) throws IOException, InterruptedException;
+    }
+
+    /**
+     * The second stage, which writes the elements of the queue into new reports
+     */
+    private interface ReportWriter<T> {
+        List<InventoryManifest.Locator> write(InventoryReportLineWriter writer, Iterator<T> elements)
+                throws IOException;
+    }
+
+    /**
+     * This ChunkIterator class yields the elements of consecutive chunks
+     */
+    static class ChunkIterator<T> implements Iterator<T> {
+        private final Iterator<? extends List<T>> chunks;
+        private Iterator<T> current = Collections.emptyIterator();
+
+        ChunkIterator(Iterator<? extends List<T>> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && chunks.hasNext()) {
+                current = chunks.next().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
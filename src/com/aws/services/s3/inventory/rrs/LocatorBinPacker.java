@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This LocatorBinPacker class groups the locators of a manifest into partitions of balanced total size,
+ * so that no Spark task gets several of the largest reports while another gets only small ones.
+ * The reports are gzipped, so a report cannot be split between tasks: a report larger than the target
+ * gets a partition of its own, and is downloaded with parallel ranged GETs when downloadConcurrency allows it.
+ */
+public class LocatorBinPacker {
+
+    private LocatorBinPacker() {
+    }
+
+    /**
+     * Pack the locators into partitions of about targetBytesPerPartition bytes each.
+     * Each report larger than the target is given a partition of its own. The other reports are assigned
+     * from the largest to the smallest, each one to the partition holding the fewest bytes so far,
+     * which keeps the largest of these partitions within 4/3 of the optimum.
+     * @param locators the locators of the manifest
+     * @param targetBytesPerPartition the number of bytes of reports each task should read
+     * @return Partitions holding the locators of each partition and a report of their skew
+     */
+    public static Partitions pack(List<InventoryManifest.Locator> locators, long targetBytesPerPartition) {
+        if (targetBytesPerPartition <= 0) {
+            throw new IllegalArgumentException("The target bytes per partition must be positive");
+        }
+        List<InventoryManifest.Locator> sorted = new ArrayList<>(locators);
+        sorted.sort(Comparator.comparingLong(InventoryManifest.Locator::getSize).reversed());
+        int oversizedCount = 0;
+        while (oversizedCount < sorted.size() && sorted.get(oversizedCount).getSize() > targetBytesPerPartition) {
+            oversizedCount++;
+        }
+        List<InventoryManifest.Locator> oversized = sorted.subList(0, oversizedCount);
+        List<InventoryManifest.Locator> others = sorted.subList(oversizedCount, sorted.size());
+
+        long otherBytes = totalBytes(others);
+        int binCount = (int) Math.min(others.size(),
+                Math.max(1, (otherBytes + targetBytesPerPartition - 1) / targetBytesPerPartition));
+        List<Bin> bins = new ArrayList<>(oversizedCount + binCount);
+        for (InventoryManifest.Locator locator : oversized) {
+            Bin bin = new Bin(bins.size());
+            bin.add(locator);
+            bins.add(bin);
+        }
+        PriorityQueue<Bin> lightest = new PriorityQueue<>(Math.max(1, binCount),
+                Comparator.comparingLong((Bin bin) -> bin.bytes).thenComparingInt(bin -> bin.index));
+        for (int i = 0; i < binCount; i++) {
+            Bin bin = new Bin(bins.size());
+            bins.add(bin);
+            lightest.add(bin);
+        }
+        for (InventoryManifest.Locator locator : others) {
+            Bin bin = lightest.poll();
+            bin.add(locator);
+            lightest.add(bin);
+        }
+
+        List<List<InventoryManifest.Locator>> partitions = new ArrayList<>(bins.size());
+        long[] partitionBytes = new long[bins.size()];
+        for (Bin bin : bins) {
+            partitionBytes[partitions.size()] = bin.bytes;
+            partitions.add(bin.locators);
+        }
+        return new Partitions(partitions, partitionBytes, targetBytesPerPartition);
+    }
+
+    /**
+     * @param locators the locators of the manifest
+     * @return the total size in bytes of the compressed reports
+     */
+    public static long totalBytes(List<InventoryManifest.Locator> locators) {
+        long totalBytes = 0;
+        for (InventoryManifest.Locator locator : locators) {
+            totalBytes += locator.getSize();
+        }
+        return totalBytes;
+    }
+
+    private static class Bin {
+        private final int index;
+        private final List<InventoryManifest.Locator> locators = new ArrayList<>();
+        private long bytes;
+
+        Bin(int index) {
+            this.index = index;
+        }
+
+        void add(InventoryManifest.Locator locator) {
+            locators.add(locator);
+            bytes += locator.getSize();
+        }
+    }
+
+    /**
+     * The locators of each partition, with the total bytes of each of them
+     */
+    public static class Partitions {
+        private final List<List<InventoryManifest.Locator>> locators;
+        private final long[] bytes;
+        private final long targetBytesPerPartition;
+
+        Partitions(List<List<InventoryManifest.Locator>> locators, long[] bytes, long targetBytesPerPartition) {
+            this.locators = locators;
+            this.bytes = bytes;
+            this.targetBytesPerPartition = targetBytesPerPartition;
+        }
+
+        /**
+         * @return the locators of each partition, which are never empty
+         */
+        public List<List<InventoryManifest.Locator>> getLocators() {
+            return locators;
+        }
+
+        public int size() {
+            return locators.size();
+        }
+
+        /**
+         * @param partition the index of the partition
+         * @return the total bytes of the reports of the partition
+         */
+        public long getBytes(int partition) {
+            return bytes[partition];
+        }
+
+        /**
+         * @return the ratio between the largest partition and the mean partition, 1 when perfectly balanced
+         */
+        public double getSkew() {
+            if (bytes.length == 0) {
+                return 1;
+            }
+            long total = 0;
+            long max = 0;
+            for (long partitionBytes : bytes) {
+                total += partitionBytes;
+                max = Math.max(max, partitionBytes);
+            }
+            return total == 0 ? 1 : (double) max * bytes.length / total;
+        }
+
+        /**
+         * @return a one line report of the partitions, to be logged by the driver
+         */
+        public String getSkewReport() {
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            long total = 0;
+            int oversized = 0;
+            for (long partitionBytes : bytes) {
+                min = Math.min(min, partitionBytes);
+                max = Math.max(max, partitionBytes);
+                total += partitionBytes;
+            }
+            for (List<InventoryManifest.Locator> partition : locators) {
+                for (InventoryManifest.Locator locator : partition) {
+                    if (locator.getSize() > targetBytesPerPartition) {
+                        oversized++;
+                    }
+                }
+            }
+            return String.format("%d partitions of %d bytes in total, target %d bytes per partition: "
+                            + "min %d, mean %d, max %d bytes, skew (max / mean) %.2f, "
+                            + "%d report(s) larger than the target",
+                    bytes.length, total, targetBytesPerPartition, bytes.length == 0 ? 0 : min,
+                    bytes.length == 0 ? 0 : total / bytes.length, max, getSkew(), oversized);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * This LocatorCheckpoint class records that an original inventory report has been filtered and written,
+ * with the locators of the new reports it produced. It is stored as JSON once the new reports are complete.
+ */
+public class LocatorCheckpoint implements Serializable {
+    /**
+     * The locator of the original inventory report.
+     */
+    private InventoryManifest.Locator inputLocator;
+
+    /**
+     * The locators of the new reports written from the original report, empty if no line matched.
+     */
+    private List<InventoryManifest.Locator> outputLocators;
+
+    public LocatorCheckpoint() {
+    }
+
+    public LocatorCheckpoint(InventoryManifest.Locator inputLocator, List<InventoryManifest.Locator> outputLocators) {
+        this.inputLocator = inputLocator;
+        this.outputLocators = outputLocators;
+    }
+
+    // Getters and setters
+    public InventoryManifest.Locator getInputLocator() {
+        return inputLocator;
+    }
+
+    public void setInputLocator(InventoryManifest.Locator inputLocator) {
+        this.inputLocator = inputLocator;
+    }
+
+    public List<InventoryManifest.Locator> getOutputLocators() {
+        return outputLocators;
+    }
+
+    public void setOutputLocators(List<InventoryManifest.Locator> outputLocators) {
+        this.outputLocators = outputLocators;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+}
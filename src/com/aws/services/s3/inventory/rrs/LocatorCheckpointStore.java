@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This LocatorCheckpointStore class keeps one LocatorCheckpoint per completed original inventory report,
+ * as a JSON object under a prefix of the output bucket, so that a new run of the same job skips those reports.
+ * S3 is used instead of a local directory since the checkpoints are written by the Spark workers
+ * and read back by the driver of the next run.
+ */
+public class LocatorCheckpointStore implements Serializable {
+    private static final String CHECKPOINT_SUFFIX = ".json";
+    private final String bucketName;
+    private final String prefix;
+
+    /**
+     * @param bucketName the bucket holding the checkpoints
+     * @param prefix the prefix of the checkpoints of the job, which identifies the settings of the job
+     */
+    public LocatorCheckpointStore(String bucketName, String prefix) {
+        this.bucketName = bucketName;
+        this.prefix = prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    /**
+     * Record that an original report is complete, once all its new reports are written
+     * @param client the S3 client
+     * @param checkpoint the original report and its new reports
+     * @throws IOException when the checkpoint cannot be serialized
+     */
+    public void save(AmazonS3 client, LocatorCheckpoint checkpoint) throws IOException {
+        byte[] content = new ObjectMapper().writeValueAsBytes(checkpoint);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        client.putObject(new PutObjectRequest(bucketName,
+                checkpointKey(reportId(checkpoint.getInputLocator())),
+                new ByteArrayInputStream(content), metadata));
+    }
+
+    /**
+     * Read every checkpoint of the job, with a bounded number of them downloaded at the same time
+     * @param client the S3 client
+     * @param concurrency the number of checkpoints downloaded at the same time
+     * @return Map<String, LocatorCheckpoint> which maps the reportId() of each completed original report
+     * to its checkpoint
+     * @throws IOException when a checkpoint cannot be read
+     */
+    public Map<String, LocatorCheckpoint> load(AmazonS3 client, int concurrency) throws IOException {
+        List<String> checkpointKeys = new ArrayList<>();
+        ObjectListing listing = client.listObjects(new ListObjectsRequest().withBucketName(bucketName)
+                .withPrefix(prefix));
+        while (true) {
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                if (summary.getKey().endsWith(CHECKPOINT_SUFFIX)) {
+                    checkpointKeys.add(summary.getKey());
+                }
+            }
+            if (!listing.isTruncated()) {
+                break;
+            }
+            listing = client.listNextBatchOfObjects(listing);
+        }
+
+        Map<String, LocatorCheckpoint> checkpoints = new HashMap<>();
+        if (checkpointKeys.isEmpty()) {
+            return checkpoints;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, checkpointKeys.size()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "checkpoint-reader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Future<LocatorCheckpoint>> pendingCheckpoints = new ArrayList<>(checkpointKeys.size());
+            for (String checkpointKey : checkpointKeys) {
+                pendingCheckpoints.add(executor.submit(() -> {
+                    try (S3Object object = client.getObject(bucketName, checkpointKey)) {
+                        return mapper.readValue(object.getObjectContent(), LocatorCheckpoint.class);
+                    }
+                }));
+            }
+            for (Future<LocatorCheckpoint> pendingCheckpoint : pendingCheckpoints) {
+                LocatorCheckpoint checkpoint = pendingCheckpoint.get();
+                checkpoints.put(reportId(checkpoint.getInputLocator()), checkpoint);
+            }
+            return checkpoints;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the checkpoints under " + prefix);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read the checkpoints under " + prefix, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check if an original report has been completed by a previous run
+     * @param checkpoints the checkpoints loaded from the store
+     * @param locator the locator of the original report
+     * @return the checkpoint of the report, or null if the report has to be processed
+     */
+    public static LocatorCheckpoint findCompleted(Map<String, LocatorCheckpoint> checkpoints,
+                                                  InventoryManifest.Locator locator) {
+        LocatorCheckpoint checkpoint = checkpoints.get(reportId(locator));
+        return checkpoint != null && checkpoint.getInputLocator().equals(locator) ? checkpoint : null;
+    }
+
+    /**
+     * Identify an original report by its key as well as its content, since two reports of a manifest
+     * may have the same content, such as empty shards, and must still get their own checkpoints and new reports
+     * @param locator the locator of the original report
+     * @return the MD5 of the key and the MD5 of the original report, in hex
+     */
+    public static String reportId(InventoryManifest.Locator locator) {
+        return DigestUtils.md5Hex(locator.getKey() + "\n" + locator.getMD5checksum());
+    }
+
+    /**
+     * @param reportId the reportId() of the original report
+     * @return the key of the checkpoint of the original report
+     */
+    String checkpointKey(String reportId) {
+        return prefix + reportId + CHECKPOINT_SUFFIX;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * This LongColumn class stores a numeric column, such as Size, as primitive longs,
+ * so it can be compared and summed without parsing a String again.
+ */
+public class LongColumn extends CompactColumn {
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+    private static final byte[] EMPTY = new byte[0];
+
+    private long[] values = new long[INITIAL_CAPACITY];
+    private transient byte[] digits;
+
+    @Override
+    public void append(CsvRecordScanner record, int field) {
+        long value = record.fieldAsLong(field, NOT_A_NUMBER);
+        if (value == NOT_A_NUMBER && record.hasField(field) && !record.fieldEquals(field, EMPTY)) {
+            throw new IllegalArgumentException("Field " + field + " of the inventory report is not a number");
+        }
+        append(value, value == NOT_A_NUMBER);
+    }
+
+    /**
+     * Append a value which is already parsed
+     * @param value the value of the field
+     * @param isMissing true if the field is missing, in which case the value is ignored
+     */
+    public void append(long value, boolean isMissing) {
+        if (rowCount == values.length) {
+            values = Arrays.copyOf(values, grow(values.length, rowCount + 1));
+        }
+        if (isMissing) {
+            markMissing(rowCount);
+        }
+        values[rowCount++] = value;
+    }
+
+    /**
+     * @param row the index of the row, which must not be missing
+     * @return the value of the row
+     */
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public void writeCsv(int row, OutputStream out) throws IOException {
+        if (isMissing(row)) {
+            return;
+        }
+        if (digits == null) {
+            digits = new byte[20];
+        }
+        // Write the decimal digits from the end of the scratch buffer, without creating a String
+        long value = values[row];
+        int position = digits.length;
+        long remaining = Math.abs(value);
+        do {
+            digits[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (value < 0) {
+            digits[--position] = '-';
+        }
+        writeQuoted(out, digits, position, digits.length - position);
+    }
+
+    @Override
+    public String getString(int row) {
+        return isMissing(row) ? null : Long.toString(values[row]);
+    }
+
+    @Override
+    public CompactColumn select(int[] rows, int count) {
+        LongColumn selected = newColumn();
+        for (int i = 0; i < count; i++) {
+            selected.append(values[rows[i]], isMissing(rows[i]));
+        }
+        return selected;
+    }
+
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        values = Arrays.copyOf(values, rowCount);
+    }
+
+    /**
+     * @return an empty column of the same type, used by select()
+     */
+    protected LongColumn newColumn() {
+        return new LongColumn();
+    }
+}
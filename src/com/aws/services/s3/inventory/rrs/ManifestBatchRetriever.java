@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This ManifestBatchRetriever class gets the manifests of a batch of inventories on the driver,
+ * with at most a fixed number of manifests downloaded at the same time.
+ * A manifest which cannot be retrieved does not stop the others: its error is kept in its ManifestResult.
+ */
+public class ManifestBatchRetriever {
+    public static final int DEFAULT_CONCURRENCY = 8;
+    private static final Logger LOG = LoggerFactory.getLogger(ManifestBatchRetriever.class);
+    private static final String MANIFEST_FILE_NAME = "/manifest.json";
+    private final AmazonS3 s3Client;
+    private final int concurrency;
+
+    public ManifestBatchRetriever(AmazonS3 client, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Invalid concurrency: " + concurrency);
+        }
+        this.s3Client = client;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Find every manifest under a prefix, such as all the days of an inventory or all the inventories of a bucket
+     * @param bucketName the bucket holding the inventories
+     * @param prefix the prefix of the keys to search
+     * @return List<String> which is the key of the folder of each manifest.json, in the order of S3 listing
+     */
+    public List<String> discoverManifestKeys(String bucketName, String prefix) {
+        List<String> manifestKeys = new ArrayList<>();
+        ObjectListing listing = s3Client.listObjects(new ListObjectsRequest().withBucketName(bucketName)
+                .withPrefix(prefix));
+        while (true) {
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                if (summary.getKey().endsWith(MANIFEST_FILE_NAME)) {
+                    manifestKeys.add(summary.getKey().substring(0,
+                            summary.getKey().length() - MANIFEST_FILE_NAME.length()));
+                }
+            }
+            if (!listing.isTruncated()) {
+                return manifestKeys;
+            }
+            listing = s3Client.listNextBatchOfObjects(listing);
+        }
+    }
+
+    /**
+     * Retrieve the manifests of the locations concurrently
+     * @param locations the source of each manifest and the destination of its new reports
+     * @return List<ManifestResult> which holds the manifest or the error of each location, in the same order
+     * @throws InterruptedIOException when the driver is interrupted while waiting for the manifests
+     */
+    public List<ManifestResult> retrieveAll(List<BucketKey> locations) throws InterruptedIOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(1, locations.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "manifest-retriever");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Future<InventoryManifest>> pendingManifests = new ArrayList<>(locations.size());
+            for (BucketKey location : locations) {
+                pendingManifests.add(executor.submit(() -> new InventoryManifestRetriever(s3Client,
+                        location.getSrcBucket(), location.getSrcKey()).getInventoryManifest()));
+            }
+            List<ManifestResult> results = new ArrayList<>(locations.size());
+            for (int i = 0; i < locations.size(); i++) {
+                BucketKey location = locations.get(i);
+                ManifestResult result;
+                try {
+                    InventoryManifest manifest = pendingManifests.get(i).get();
+                    result = new ManifestResult(location, manifest, null);
+                    LOG.info("Retrieved the manifest of " + result.getSourceUri() + " with "
+                            + manifest.getLocators().size() + " inventory reports of "
+                            + LocatorBinPacker.totalBytes(manifest.getLocators()) + " bytes");
+                } catch (ExecutionException e) {
+                    result = new ManifestResult(location, null, e.getCause());
+                    LOG.error("Failed to retrieve the manifest of " + result.getSourceUri(), e.getCause());
+                }
+                results.add(result);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrieving the manifests");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The manifest retrieved from a location, or the error which prevented it
+     */
+    public static class ManifestResult {
+        private final BucketKey location;
+        private final InventoryManifest manifest;
+        private final Throwable error;
+
+        ManifestResult(BucketKey location, InventoryManifest manifest, Throwable error) {
+            this.location = location;
+            this.manifest = manifest;
+            this.error = error;
+        }
+
+        public BucketKey getLocation() {
+            return location;
+        }
+
+        /**
+         * @return the manifest, or null if it could not be retrieved
+         */
+        public InventoryManifest getManifest() {
+            return manifest;
+        }
+
+        /**
+         * @return the error which prevented the retrieval, or null if the manifest was retrieved
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public String getSourceUri() {
+            return "s3://" + location.getSrcBucket() + "/" + location.getSrcKey();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.SimpleDateFormat;
@@ -27,6 +28,7 @@ public class ManifestWriter {
     private final InventoryManifest originalManifest;
     private String manifestKey;
     private String checksumKey;
+    private String metricsKey;
 
     public ManifestWriter(AmazonS3 client, String destBucketName, String destPrefix, String srcBucket,
                           InventoryManifest originalManifest){
@@ -35,6 +37,7 @@ public class ManifestWriter {
         String time = this.getTime();
         this.manifestKey = destPrefix + "/" + srcBucket + "/" + time + "/manifest.json";
         this.checksumKey = destPrefix + "/" + srcBucket + "/" + time + "/manifest.checksum";
+        this.metricsKey = destPrefix + "/" + srcBucket + "/" + time + "/metrics.json";
         this.originalManifest = originalManifest;
     }
 
@@ -73,6 +76,22 @@ public class ManifestWriter {
         }
     }
 
+    /**
+     * Write metrics.json to S3, next to manifest.json, with the rows, bytes and times of the job
+     * @param metrics the metrics of the job
+     * @throws IOException thrown when ObjectMapper.write() fails
+     */
+    public void writeMetrics(InventoryJobMetrics metrics) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] bytesJson = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(metrics.toSummary());
+        ObjectMetadata jsonMetaData = new ObjectMetadata();
+        jsonMetaData.setContentLength(bytesJson.length);
+        jsonMetaData.setContentType("application/json");
+        try (InputStream inputStream = new ByteArrayInputStream(bytesJson)) {
+            s3Client.putObject(new PutObjectRequest(bucketName, metricsKey, inputStream, jsonMetaData));
+        }
+    }
+
     /**
      * A helper function which gets the local time
      * @return String in "yyyy-MM-dd'T'HH-mm'Z'" format
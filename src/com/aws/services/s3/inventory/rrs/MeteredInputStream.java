@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This MeteredInputStream class counts the bytes read from a stream and the time spent reading them,
+ * including the time spent by the streams underneath, so that the time of a stage of a chain of streams
+ * is the difference between the times of the two MeteredInputStreams around it.
+ */
+final class MeteredInputStream extends FilterInputStream {
+    private long nanos;
+    private long bytes;
+
+    MeteredInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            int value = in.read();
+            if (value >= 0) {
+                bytes++;
+            }
+            return value;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int count = in.read(buffer, offset, length);
+            if (count > 0) {
+                bytes += count;
+            }
+            return count;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        long start = System.nanoTime();
+        try {
+            long count = in.skip(length);
+            bytes += count;
+            return count;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+}
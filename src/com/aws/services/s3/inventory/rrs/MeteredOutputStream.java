@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This MeteredOutputStream class counts the bytes written to a stream and the time spent writing them,
+ * including the time spent by the streams underneath, such as the upload of a part when the stream is flushed
+ * or closed.
+ */
+final class MeteredOutputStream extends FilterOutputStream {
+    private long nanos;
+    private long bytes;
+
+    MeteredOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.write(value);
+            bytes++;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        // FilterOutputStream would write the bytes one by one
+        long start = System.nanoTime();
+        try {
+            out.write(buffer, offset, length);
+            bytes += length;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.flush();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.close();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This MultipartUploadOutputStream class streams the bytes written to it into an S3 object,
+ * uploading a part every time "partSize" bytes are buffered. Objects smaller than one part
+ * are sent with a single PUT. The size and the MD5 of the object are computed while it is written.
+ */
+public class MultipartUploadOutputStream extends OutputStream {
+    private final AmazonS3 s3Client;
+    private final String bucketName;
+    private final String key;
+    private final byte[] buffer;
+    private final MessageDigest digest;
+    private final List<PartETag> partETags;
+    private int bufferedBytes;
+    private long size;
+    private String uploadId;
+    private String md5checksum;
+    private boolean closed;
+
+    public MultipartUploadOutputStream(AmazonS3 client, String bucketName, String key, int partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("Invalid part size: " + partSize);
+        }
+        this.s3Client = client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.buffer = new byte[partSize];
+        this.digest = DigestUtils.getMd5Digest();
+        this.partETags = new ArrayList<>();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (bufferedBytes == buffer.length) {
+            uploadPart();
+        }
+        buffer[bufferedBytes++] = (byte) b;
+        digest.update((byte) b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        digest.update(bytes, offset, length);
+        size += length;
+        while (length > 0) {
+            if (bufferedBytes == buffer.length) {
+                uploadPart();
+            }
+            int count = Math.min(length, buffer.length - bufferedBytes);
+            System.arraycopy(bytes, offset, buffer, bufferedBytes, count);
+            bufferedBytes += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Send the remaining bytes and complete the upload.
+     * Nothing is sent if the upload has been aborted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (uploadId == null) {
+                ObjectMetadata metaData = new ObjectMetadata();
+                metaData.setContentLength(bufferedBytes);
+                s3Client.putObject(new PutObjectRequest(bucketName, key,
+                        new ByteArrayInputStream(buffer, 0, bufferedBytes), metaData));
+            } else {
+                uploadPart();
+                s3Client.completeMultipartUpload(
+                        new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+            }
+        } catch (RuntimeException e) {
+            abort();
+            throw e;
+        }
+        closed = true;
+        md5checksum = Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Abandon the object, and discard the parts already uploaded
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (uploadId != null) {
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the object
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the MD5 of the object in hex, available once the stream is closed
+     */
+    public String getMD5checksum() {
+        if (md5checksum == null) {
+            throw new IllegalStateException("The upload of " + key + " is not completed");
+        }
+        return md5checksum;
+    }
+
+    /**
+     * Helper function, which uploads the buffered bytes as the next part,
+     * initiating the multipart upload on the first part
+     */
+    private void uploadPart() {
+        if (uploadId == null) {
+            uploadId = s3Client.initiateMultipartUpload(
+                    new InitiateMultipartUploadRequest(bucketName, key)).getUploadId();
+        }
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucketName)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(partETags.size() + 1)
+                .withInputStream(new ByteArrayInputStream(buffer, 0, bufferedBytes))
+                .withPartSize(bufferedBytes);
+        partETags.add(s3Client.uploadPart(request).getPartETag());
+        bufferedBytes = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+
+/**
+ * This ObjectVersionBloomFilter class is a Bloom filter of ObjectVersionKeys, which tells whether an object version
+ * may be in a set using about 10 bits per version of the set for a 1% false positive rate, whatever the length
+ * of its Key. It never answers false for a version of the set, and answers true for a few other versions.
+ */
+public class ObjectVersionBloomFilter implements Serializable {
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final int hashCount;
+
+    /**
+     * @param expectedVersions the number of versions which will be added
+     * @param falsePositiveRate the probability of mightContain() being true for a version which was not added
+     */
+    public ObjectVersionBloomFilter(long expectedVersions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid false positive rate: " + falsePositiveRate);
+        }
+        long versions = Math.max(1, expectedVersions);
+        long bitCount = (long) Math.ceil(-versions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bitCount + 63) >>> 6))];
+        this.hashCount = (int) Math.max(1, Math.round((double) bits.length * 64 / versions * LN2));
+    }
+
+    /**
+     * @param version an object version to add to the set
+     */
+    public void add(ObjectVersionKey version) {
+        long hash1 = hash(version);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        long bitCount = (long) bits.length << 6;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param version an object version
+     * @return false if the version was not added, true if it may have been
+     */
+    public boolean mightContain(ObjectVersionKey version) {
+        long hash1 = hash(version);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        long bitCount = (long) bits.length << 6;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the size of the filter in bytes
+     */
+    public long getSizeInBytes() {
+        return (long) bits.length * 8;
+    }
+
+    /**
+     * Helper function, which hashes the Key and the VersionId of a version into 64 bits,
+     * unlike ObjectVersionKey.hashCode() which only depends on the Key
+     */
+    private static long hash(ObjectVersionKey version) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, version.getKey());
+        hash = hash(hash, version.getVersionId());
+        return mix(hash);
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xff) * 0x100000001b3L;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        // Separate the Key from the VersionId, so that moving characters between them changes the hash
+        return (hash ^ 0xfe) * 0x100000001b3L;
+    }
+
+    /**
+     * Helper function, which spreads the bits of a hash, as the finalizer of MurmurHash3
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
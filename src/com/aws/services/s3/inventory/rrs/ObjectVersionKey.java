@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * This ObjectVersionKey class identifies an object version across two snapshots of an inventory.
+ * Its hash code only depends on the Key, so that all the versions of an object land in the same partition
+ * when the snapshots are partitioned by it.
+ */
+public class ObjectVersionKey implements Serializable {
+    private final String key;
+    private final String versionId;
+
+    /**
+     * @param key the Key of the object
+     * @param versionId the VersionId of the object, or null when the inventory only lists current versions
+     */
+    public ObjectVersionKey(String key, String versionId) {
+        this.key = key;
+        this.versionId = versionId;
+    }
+
+    /**
+     * @param line a line of an inventory report
+     * @return the ObjectVersionKey of the line
+     */
+    public static ObjectVersionKey of(InventoryReportLine line) {
+        return new ObjectVersionKey(line.getKey(), line.getVersionId());
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ObjectVersionKey)) {
+            return false;
+        }
+        ObjectVersionKey other = (ObjectVersionKey) o;
+        return Objects.equals(key, other.key) && Objects.equals(versionId, other.versionId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectVersionKey{" +
+                "key: " + key + ", " +
+                "versionId: " + versionId +
+                '}';
+    }
+}
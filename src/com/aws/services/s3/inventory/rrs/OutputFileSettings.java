@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+
+/**
+ * This OutputFileSettings class stores how large the new inventory reports should be,
+ * so that the readers of the new manifest get evenly sized reports whatever the partitioning of the job.
+ * By default every Spark partition writes a single report.
+ */
+public class OutputFileSettings implements Serializable {
+    public static final long UNLIMITED = 0;
+
+    /**
+     * The number of lines of each new report. A partition holding more lines rolls over to a new report,
+     * and the partitions holding fewer lines are coalesced before they are written. 0 for no limit.
+     */
+    private long targetRowsPerFile = UNLIMITED;
+
+    /**
+     * The compressed size in bytes after which a new report is started, 0 for no limit.
+     * The size is checked between lines, so a report can exceed it by the content buffered by the compressor.
+     */
+    private long maxBytesPerFile = UNLIMITED;
+
+    /**
+     * Check if the report being written is full, and the next line goes to a new report
+     * @param rows the number of lines written to the report
+     * @param bytes the number of compressed bytes written to the report
+     * @return true if either limit is reached
+     */
+    public boolean isFull(long rows, long bytes) {
+        return (targetRowsPerFile != UNLIMITED && rows >= targetRowsPerFile)
+                || (maxBytesPerFile != UNLIMITED && bytes >= maxBytesPerFile);
+    }
+
+    /**
+     * @param rows the number of lines written to the report
+     * @return the number of lines which can still be written to the report before it is full
+     */
+    public long remainingRows(long rows) {
+        return targetRowsPerFile == UNLIMITED ? Long.MAX_VALUE : Math.max(0, targetRowsPerFile - rows);
+    }
+
+    // Getters and setters
+    public long getTargetRowsPerFile() {
+        return targetRowsPerFile;
+    }
+
+    public void setTargetRowsPerFile(long targetRowsPerFile) {
+        this.targetRowsPerFile = targetRowsPerFile;
+    }
+
+    public long getMaxBytesPerFile() {
+        return maxBytesPerFile;
+    }
+
+    public void setMaxBytesPerFile(long maxBytesPerFile) {
+        this.maxBytesPerFile = maxBytesPerFile;
+    }
+
+    @Override
+    public String toString() {
+        return "OutputFileSettings{" +
+                "targetRowsPerFile: " + targetRowsPerFile + ", " +
+                "maxBytesPerFile: " + maxBytesPerFile +
+                '}';
+    }
+}
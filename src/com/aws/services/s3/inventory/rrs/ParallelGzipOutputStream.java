@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This ParallelGzipOutputStream class compresses its content into a single standard GZIP member, like pigz:
+ * the content is cut into blocks compressed by several threads, each block primed with the last 32 KB
+ * of the previous one and ended by a sync flush, so that the compressed blocks are simply concatenated
+ * in order. Any GZIP reader can read the result, which is a little larger than with a single Deflater.
+ * At most twice as many blocks as threads are held in memory at any time.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    // The header of a GZIP member without file name nor modification time, as written by GZIPOutputStream
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream out;
+    private final int level;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final ThreadPoolExecutor executor;
+    private final Deque<Future<byte[]>> pendingBlocks;
+    private final CRC32 crc = new CRC32();
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private long totalLength;
+    private boolean closed;
+
+    /**
+     * @param out the stream receiving the compressed content
+     * @param level the compression level, from 0 to 9, or Deflater.DEFAULT_COMPRESSION
+     * @param threads the number of threads compressing the blocks
+     * @param blockSize the number of bytes of content of each block
+     * @throws IOException when the header cannot be written
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, int threads, int blockSize) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = threads * 2;
+        // The threads stop once idle, even if the stream is abandoned after a failure without being closed
+        this.executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "parallel-gzip");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.pendingBlocks = new ArrayDeque<>(maxPendingBlocks);
+        this.block = new byte[blockSize];
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        crc.update(b);
+        totalLength++;
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        crc.update(buffer, offset, length);
+        totalLength += length;
+        while (length > 0) {
+            int count = Math.min(length, blockSize - blockLength);
+            System.arraycopy(buffer, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Finish the GZIP member and close the underlying stream
+     * @throws IOException when compressing a block or writing to the underlying stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeNextBlock();
+            }
+            // The trailer holds the CRC32 and the length modulo 2^32 of the content, in little endian
+            byte[] trailer = new byte[8];
+            writeInt(trailer, 0, crc.getValue());
+            writeInt(trailer, 4, totalLength);
+            out.write(trailer);
+            out.close();
+        } finally {
+            closed = true;
+            for (Future<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Helper function, which hands the current block over to the threads, once the oldest compressed blocks
+     * are written if too many of them are pending
+     * @param last true for the last block, which ends the deflate stream
+     */
+    private void submitBlock(boolean last) throws IOException {
+        while (pendingBlocks.size() >= maxPendingBlocks) {
+            writeNextBlock();
+        }
+        byte[] content = block;
+        int length = blockLength;
+        byte[] dictionary = previousBlock;
+        pendingBlocks.add(executor.submit(() -> deflate(content, length, dictionary, last)));
+        previousBlock = content;
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+    }
+
+    /**
+     * Helper function, which waits for the oldest pending block and writes it to the underlying stream
+     */
+    private void writeNextBlock() throws IOException {
+        try {
+            out.write(pendingBlocks.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress a block", e.getCause());
+        }
+    }
+
+    /**
+     * Compress a block as raw deflate data, ending on a byte boundary so that the next block can follow it
+     * @param content the content of the block
+     * @param length the number of bytes of content
+     * @param dictionary the content of the previous block, of which the last 32 KB prime the compression, or null
+     * @param last true to end the deflate stream with this block
+     * @return byte[] the compressed block
+     */
+    private byte[] deflate(byte[] content, int length, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(content, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] compressed = new byte[length + (length >> 3) + 64];
+            int compressedLength = 0;
+            while (true) {
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // A sync flush is complete once it leaves room in the output buffer
+                if (last ? deflater.finished() : compressedLength < compressed.length) {
+                    return Arrays.copyOf(compressed, compressedLength);
+                }
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeInt(byte[] target, int offset, long value) {
+        for (int i = 0; i < 4; i++) {
+            target[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+/**
+ * The PipelineStageException is thrown by a stage of a BoundedStageQueue when another stage failed,
+ * or when the queue was closed, so that every stage stops instead of waiting for the others.
+ */
+public class PipelineStageException extends RuntimeException{
+    /**
+     * Constructs a new PipelineStageException instance.
+     * @param message which describes why the stage stopped.
+     * @param cause the failure of the other stage, or null.
+     */
+    public PipelineStageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
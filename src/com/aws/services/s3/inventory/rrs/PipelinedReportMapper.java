@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This PipelinedReportMapper class maps the original reports of a partition with a per-report mapper,
+ * such as InventoryReportStreamMapper, on "readAhead" threads of the task, while the task itself writes
+ * the new reports. The download and parsing of the next reports then overlap with the compression
+ * and upload of the lines already filtered. The lines are handed over in chunks through a BoundedStageQueue,
+ * so a slow upload makes the readers wait instead of buffering the partition in memory.
+ */
+public class PipelinedReportMapper<T> implements FlatMapFunction<Iterator<InventoryManifest.Locator>, T> {
+    public static final long CHUNK_ROWS = InventoryReportLineBlock.DEFAULT_MAX_ROWS;
+    private final FlatMapFunction<InventoryManifest.Locator, T> mapper;
+    private final Function<T, Long> rowCount;
+    private final int readAhead;
+
+    /**
+     * @param mapper the function mapping an original report to its matching lines
+     * @param rowCount the number of lines of an element, to hand the elements over in chunks of CHUNK_ROWS lines
+     * @param readAhead the number of reports read at the same time by each task
+     */
+    public PipelinedReportMapper(FlatMapFunction<InventoryManifest.Locator, T> mapper, Function<T, Long> rowCount,
+                                 int readAhead) {
+        if (readAhead <= 0) {
+            throw new IllegalArgumentException("Invalid read-ahead: " + readAhead);
+        }
+        this.mapper = mapper;
+        this.rowCount = rowCount;
+        this.readAhead = readAhead;
+    }
+
+    @Override
+    public Iterator<T> call(Iterator<InventoryManifest.Locator> locators) throws Exception {
+        List<InventoryManifest.Locator> reports = new ArrayList<>();
+        locators.forEachRemaining(reports::add);
+        BoundedStageQueue<List<T>> queue = new BoundedStageQueue<>(2 * readAhead, reports.size());
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, Math.min(readAhead, reports.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pipelined-report-reader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        for (InventoryManifest.Locator report : reports) {
+            readers.submit(() -> {
+                try {
+                    read(report, queue);
+                } catch (Throwable e) {
+                    queue.fail(e);
+                } finally {
+                    queue.producerDone();
+                }
+            });
+        }
+        // The readers do not wait for the last chunks to be consumed, so they can stop once all the reports are read
+        readers.shutdown();
+
+        // Stop the readers when the task ends before consuming all the lines, such as when it fails
+        TaskContext taskContext = TaskContext.get();
+        if (taskContext != null) {
+            taskContext.addTaskCompletionListener(context -> {
+                queue.close();
+                readers.shutdownNow();
+            });
+        }
+        return new LocalInventoryEngine.ChunkIterator<>(queue.consumer());
+    }
+
+    /**
+     * Helper function, run by a reader, which hands the elements of a report to the queue in chunks
+     */
+    private void read(InventoryManifest.Locator report, BoundedStageQueue<List<T>> queue) throws Exception {
+        Iterator<T> elements = mapper.call(report);
+        try {
+            List<T> chunk = new ArrayList<>();
+            long chunkRows = 0;
+            while (elements.hasNext()) {
+                T element = elements.next();
+                chunk.add(element);
+                chunkRows += rowCount.call(element);
+                if (chunkRows >= CHUNK_ROWS) {
+                    queue.put(chunk);
+                    chunk = new ArrayList<>();
+                    chunkRows = 0;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                queue.put(chunk);
+            }
+        } finally {
+            // Release the S3 connection of the report, the task context is not visible from this thread
+            if (elements instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable) elements);
+            }
+        }
+    }
+}
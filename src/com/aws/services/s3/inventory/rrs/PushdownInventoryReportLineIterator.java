@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This PushdownInventoryReportLineIterator class evaluates a predicate on the raw CSV records of an inventory report,
+ * and only maps the records matching it into InventoryReportLine POJOs.
+ * Without a predicate, it maps every record, for an InventoryReportLineMapper tokenizing the records.
+ */
+public class PushdownInventoryReportLineIterator implements Iterator<InventoryReportLine>, Closeable {
+    private final CsvRecordScanner scanner;
+    private final RawRecordPredicate predicate;
+    private final InventoryReportLineMapper mapper;
+    private InventoryReportLine nextLine;
+
+    /**
+     * @param scanner the scanner of the CSV content of the inventory report
+     * @param predicate RawRecordPredicate selecting the records to map, or null to map all of them
+     * @param mapper InventoryReportLineMapper mapping the selected records
+     */
+    public PushdownInventoryReportLineIterator(CsvRecordScanner scanner, RawRecordPredicate predicate,
+                                               InventoryReportLineMapper mapper) {
+        this.scanner = scanner;
+        this.predicate = predicate;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine != null) {
+            return true;
+        }
+        try {
+            while (scanner.nextRecord()) {
+                if (predicate == null || predicate.test(scanner)) {
+                    nextLine = mapper.mapInventoryReportLine(scanner);
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return false;
+    }
+
+    @Override
+    public InventoryReportLine next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        InventoryReportLine line = nextLine;
+        nextLine = null;
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+}
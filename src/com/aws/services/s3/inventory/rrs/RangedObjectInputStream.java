@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This RangedObjectInputStream class downloads an S3 object as consecutive byte ranges over several connections,
+ * and reassembles them in order, so the content can be consumed while the next parts are still being downloaded.
+ * The next part is only requested once the current one is consumed, so at most "concurrency" parts,
+ * downloading or downloaded, are held in memory at any time. Each stream downloads its parts
+ * on "concurrency" threads of its own, which stop when it is closed.
+ */
+public class RangedObjectInputStream extends InputStream {
+    private final AmazonS3 s3Client;
+    private final String bucketName;
+    private final String key;
+    private final long objectSize;
+    private final long partSize;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pendingParts;
+    private long nextPartStart;
+    private byte[] currentPart;
+    private int position;
+    private boolean closed;
+
+    public RangedObjectInputStream(AmazonS3 client, String bucketName, String key, long objectSize,
+                                   long partSize, int concurrency) {
+        if (partSize <= 0 || partSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid part size: " + partSize);
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Invalid concurrency: " + concurrency);
+        }
+        this.s3Client = client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.objectSize = objectSize;
+        this.partSize = partSize;
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ranged-get-" + key);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingParts = new ArrayDeque<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            requestNextPart();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensurePartAvailable()) {
+            return -1;
+        }
+        return currentPart[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensurePartAvailable()) {
+            return -1;
+        }
+        int count = Math.min(length, currentPart.length - position);
+        System.arraycopy(currentPart, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<byte[]> part : pendingParts) {
+            part.cancel(true);
+        }
+        pendingParts.clear();
+        currentPart = null;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Move to the next downloaded part once the current one is consumed,
+     * requesting a new part in place of the released one to keep the same number of parts in flight
+     * @return false if the end of the object is reached
+     * @throws IOException when the download of a part fails
+     */
+    private boolean ensurePartAvailable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (currentPart == null || position == currentPart.length) {
+            if (currentPart != null) {
+                currentPart = null;
+                requestNextPart();
+            }
+            Future<byte[]> nextPart = pendingParts.poll();
+            if (nextPart == null) {
+                return false;
+            }
+            try {
+                currentPart = nextPart.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + key);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to download a part of " + key, e.getCause());
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Helper function, which submits the download of the next byte range if the object has not been fully requested
+     */
+    private void requestNextPart() {
+        if (nextPartStart >= objectSize) {
+            return;
+        }
+        long start = nextPartStart;
+        long end = Math.min(start + partSize, objectSize) - 1;
+        nextPartStart = end + 1;
+        pendingParts.add(executor.submit(() -> downloadPart(start, end)));
+    }
+
+    /**
+     * Download the byte range [start, end] of the object
+     * @return byte[] the content of the range
+     * @throws IOException when the range cannot be read or is shorter than requested
+     */
+    private byte[] downloadPart(long start, long end) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucketName, key).withRange(start, end);
+        try (S3Object part = s3Client.getObject(request)) {
+            byte[] content = IOUtils.toByteArray(part.getObjectContent());
+            long expectedLength = end - start + 1;
+            if (content.length != expectedLength) {
+                throw new IOException("Expected " + expectedLength + " bytes from " + key + " at offset " + start +
+                        " but got " + content.length);
+            }
+            return content;
+        }
+    }
+}
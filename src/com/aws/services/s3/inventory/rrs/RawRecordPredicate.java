@@ -0,0 +1,19 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+
+/**
+ * This RawRecordPredicate interface filters the records of an inventory report on their raw CSV bytes,
+ * before they are mapped into InventoryReportLine POJOs.
+ */
+public interface RawRecordPredicate extends Serializable {
+    /**
+     * @param record the scanner positioned on the record to test
+     * @return true if the record should be kept
+     */
+    boolean test(CsvRecordScanner record);
+}
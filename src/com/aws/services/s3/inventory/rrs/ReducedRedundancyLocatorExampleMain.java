@@ -5,79 +5,644 @@
 package com.aws.services.s3.inventory.rrs;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.spark.HashPartitioner;
+import org.apache.spark.Partitioner;
 import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function;
 import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.Tuple2;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 /**
  * This ReducedRedundancyLocatorExampleMain class writes new filtered inventory report and its manifest files,
  * and send them to the S3 bucket specified by the args.
+ * Several manifests, such as several days or several source buckets, can be processed by a single Spark job,
+ * which writes one new manifest per original manifest.
  */
 public class ReducedRedundancyLocatorExampleMain {
     private static final Logger LOG = LoggerFactory.getLogger(ReducedRedundancyLocatorExampleMain.class);
     private static final String PARSE_ERROR_MSG = "usage: parse args\n" +
-            " -i <s3://source-bucket/YYYY-MM-DDTHH-MMZ> \n"
-            + " -o <s3://destination-bucket/output-prefix> \n";
+            " -i <s3://source-bucket/YYYY-MM-DDTHH-MMZ> [-i <s3://source-bucket/YYYY-MM-DDTHH-MMZ> ...] \n"
+            + " -o <s3://destination-bucket/output-prefix> \n"
+            + " [--discoverManifests] [--manifestConcurrency <manifests>] [--diffAgainst <s3://older-manifest>] \n"
+            + " [--downloadPartSize <bytes>] [--downloadConcurrency <connections>] [--uploadPartSize <bytes>] \n"
+            + " [--readAheadReports <reports>] [--inflateBufferSize <bytes>] \n"
+            + " [--compressionLevel <0-9>] [--compressionThreads <threads>] \n"
+            + " [--filter <expression>] [--compactRows] [--csvTokenizer] [--targetPartitionBytes <bytes>] \n"
+            + " [--targetFileRows <lines>] [--maxFileBytes <bytes>] [--resumable] \n"
+            + " [--local] [--localThreads <threads>] \n"
+            + " [--maxConnections <connections>] [--connectionTimeout <ms>] [--socketTimeout <ms>] \n"
+            + " [--maxErrorRetry <retries>] [--socketBufferSize <bytes>] [--s3Endpoint <endpoint>] \n";
 
     public static void main(String[] args) throws Exception{
-        String srcBucketName;
-        String scrBucketKey;
-        String destBucketName;
-        String destPrefix;
+        List<BucketKey> locations;
+        boolean discoverManifests;
+        int manifestConcurrency;
+        TransferSettings transferSettings;
+        String filterExpression;
+        boolean compactRows;
+        boolean csvTokenizer;
+        long targetPartitionBytes;
+        OutputFileSettings outputFileSettings;
+        BucketKey previousLocation;
+        boolean resumable;
+        int localThreads;
+        S3ClientSettings s3ClientSettings;
         ArgumentParser argumentParser = new ArgumentParser();
-        AmazonS3 s3Client = new AmazonS3Client();
 
         try {
-            BucketKey location = argumentParser.parseArguments(args);
-            srcBucketName = location.getSrcBucket();
-            scrBucketKey = location.getSrcKey();
-            destBucketName = location.getDestBucket();
-            destPrefix = location.getDestPrefix();
+            locations = argumentParser.parseLocations(args);
+            discoverManifests = argumentParser.parseDiscoverManifests(args);
+            manifestConcurrency = argumentParser.parseManifestConcurrency(args);
+            transferSettings = argumentParser.parseTransferSettings(args);
+            filterExpression = argumentParser.parseFilterExpression(args);
+            compactRows = argumentParser.parseCompactRows(args);
+            csvTokenizer = argumentParser.parseCsvTokenizer(args);
+            targetPartitionBytes = argumentParser.parseTargetPartitionBytes(args);
+            outputFileSettings = argumentParser.parseOutputFileSettings(args);
+            previousLocation = argumentParser.parseDiffAgainst(args);
+            resumable = argumentParser.parseResumable(args);
+            localThreads = argumentParser.parseLocalThreads(args);
+            s3ClientSettings = argumentParser.parseS3ClientSettings(args);
         } catch (ParseException e) {
             LOG.info(PARSE_ERROR_MSG);
             throw new IllegalArgumentException("Parser throw a parse Exception", e);
         }
+        // The driver and the executors build their clients from the same settings
+        CachedS3ClientFactory clientFactory = new CachedS3ClientFactory(s3ClientSettings);
+        AmazonS3 s3Client = clientFactory.get();
 
-        // Obtain the original manifest files
-        InventoryManifestRetriever inventoryManifestRetriever =
-                new InventoryManifestRetriever(s3Client, srcBucketName, scrBucketKey);
-        InventoryManifest manifest = inventoryManifestRetriever.getInventoryManifest();
+        // Obtain the original manifest files, a bounded number of them at the same time
+        ManifestBatchRetriever batchRetriever = new ManifestBatchRetriever(s3Client, manifestConcurrency);
+        if (discoverManifests) {
+            locations = discoverLocations(batchRetriever, locations);
+        }
+        // A single manifest keeps its original output layout and fails the job on any error,
+        // while a batch writes each manifest under the path of its source and reports the manifests it skipped
+        boolean batch = discoverManifests || locations.size() > 1;
+        if (previousLocation != null) {
+            // Compare the older snapshot with the input one, both manifests are retrieved together
+            locations.add(0, previousLocation);
+            List<ManifestBatchRetriever.ManifestResult> snapshots = batchRetriever.retrieveAll(locations);
+            for (ManifestBatchRetriever.ManifestResult snapshot : snapshots) {
+                if (!snapshot.isSuccess()) {
+                    throw snapshot.getError() instanceof Exception
+                            ? (Exception) snapshot.getError() : new IllegalStateException(snapshot.getError());
+                }
+            }
+            writeSnapshotDiff(clientFactory, snapshots.get(0), snapshots.get(1), filterExpression, transferSettings,
+                    outputFileSettings, targetPartitionBytes, csvTokenizer);
+            return;
+        }
+        List<ManifestBatchRetriever.ManifestResult> results = batchRetriever.retrieveAll(locations);
+
+        List<SourceJob> jobs = new ArrayList<>();
+        List<String> failedSources = new ArrayList<>();
+        for (ManifestBatchRetriever.ManifestResult result : results) {
+            Throwable error = result.getError();
+            if (error == null) {
+                try {
+                    jobs.add(new SourceJob(result, buildRecordPredicate(filterExpression, result.getManifest()),
+                            batch));
+                    continue;
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            if (!batch) {
+                throw error instanceof Exception ? (Exception) error : new IllegalStateException(error);
+            }
+            LOG.error("Skipping the manifest of " + result.getSourceUri(), error);
+            failedSources.add(result.getSourceUri());
+        }
+        if (resumable) {
+            // Skip the reports completed by a previous run of the same job, and write the others under keys
+            // derived from their MD5, so that a retried task overwrites its own reports
+            for (SourceJob job : jobs) {
+                job.resume(s3Client, filterExpression, compactRows, outputFileSettings, manifestConcurrency);
+            }
+        }
+
+        List<List<InventoryManifest.Locator>> newLocatorLists;
+        if (localThreads > 0) {
+            // Run the same pipeline on the threads of this JVM, without the cost of a Spark context
+            LocalInventoryEngine engine = new LocalInventoryEngine(s3Client, localThreads);
+            newLocatorLists = new ArrayList<>();
+            for (SourceJob job : jobs) {
+                newLocatorLists.add(engine.run(job.pendingLocators,
+                        job.buildJobContext(transferSettings, outputFileSettings, csvTokenizer), compactRows,
+                        job.metrics));
+            }
+        } else {
+            newLocatorLists = writeWithSpark(clientFactory, jobs, transferSettings, outputFileSettings, targetPartitionBytes,
+                    compactRows, csvTokenizer, resumable);
+        }
+
+        // Generate new manifest files including new locators, and send them back to S3
+        for (int i = 0; i < jobs.size(); i++) {
+            SourceJob job = jobs.get(i);
+            List<InventoryManifest.Locator> newLocatorList = new ArrayList<>(job.resumedLocators);
+            newLocatorList.addAll(newLocatorLists.get(i));
+            ManifestWriter manifestWriter = new ManifestWriter(s3Client, job.location.getDestBucket(),
+                    job.location.getDestPrefix(), job.outputSourcePath, job.manifest);
+            manifestWriter.writeManifest(newLocatorList);
+            // The metrics only cover the reports of this run, not the ones resumed from a previous run
+            manifestWriter.writeMetrics(job.metrics);
+            LOG.info("Wrote " + newLocatorList.size() + " new inventory reports for the "
+                    + job.manifest.getLocators().size() + " inventory reports of " + job.sourceUri + ", "
+                    + job.metrics);
+        }
+
+        if (!failedSources.isEmpty()) {
+            throw new IncompleteBatchException(failedSources, results.size());
+        }
+    }
+
+    /**
+     * Filter and write the inventory reports of every manifest with Spark
+     * @param s3ClientFactory the factory of the S3 clients, broadcast to the workers
+     * @param jobs the manifests
+     * @param transferSettings how the reports are transferred from and to S3
+     * @param outputFileSettings how large the new reports should be
+     * @param targetPartitionBytes the number of bytes of reports each partition should read, 0 for the default
+     * @param compactRows true to hold the lines in compact InventoryReportLineBlocks instead of POJOs
+     * @param csvTokenizer true to map the lines with an InventoryReportLineTokenizer instead of Jackson
+     * @param resumable true to record each original report once written, and write it on its own
+     * @return the locators of the new reports of each manifest, in the order of the manifests
+     */
+    private static List<List<InventoryManifest.Locator>> writeWithSpark(CachedS3ClientFactory s3ClientFactory,
+                                                                        List<SourceJob> jobs,
+                                                                        TransferSettings transferSettings,
+                                                                        OutputFileSettings outputFileSettings,
+                                                                        long targetPartitionBytes,
+                                                                        boolean compactRows, boolean csvTokenizer,
+                                                                        boolean resumable) {
+        JavaSparkContext sc = createSparkContext();
+        Broadcast<CachedS3ClientFactory> clientFactory = sc.broadcast(s3ClientFactory);
+
+        // Balance the compressed bytes of the inventory reports between the partitions, one partition per bin,
+        // by default spreading them over the default parallelism of the cluster.
+        // Each partition only holds the reports of one manifest, so that it writes reports of a single schema
+        if (targetPartitionBytes == 0) {
+            List<List<InventoryManifest.Locator>> locatorLists = new ArrayList<>();
+            for (SourceJob job : jobs) {
+                locatorLists.add(job.pendingLocators);
+            }
+            targetPartitionBytes = defaultTargetPartitionBytes(sc, locatorLists);
+        }
+        List<JavaRDD<InventoryManifest.Locator>> locatorRDDs = new ArrayList<>();
+        List<Broadcast<InventoryJobContext>> jobContexts = new ArrayList<>();
+        List<InventoryMetricsAccumulator> jobMetrics = new ArrayList<>();
+        for (SourceJob job : jobs) {
+            locatorRDDs.add(partitionLocators(sc, job.pendingLocators, targetPartitionBytes, job.sourceUri));
+
+            // Build the schema and the output settings once, and broadcast them instead of the whole manifest
+            jobContexts.add(sc.broadcast(job.buildJobContext(transferSettings, outputFileSettings, csvTokenizer)));
+
+            InventoryMetricsAccumulator metrics = new InventoryMetricsAccumulator();
+            sc.sc().register(metrics, "Inventory metrics of " + job.sourceUri);
+            jobMetrics.add(metrics);
+        }
+
+        // Stream the inventory report, filter each line on its raw fields,
+        // parse the matching lines to POJOs, and write new csv file to S3.
+        // The RDDs of all the manifests are run by a single job
+        List<List<InventoryManifest.Locator>> newLocatorLists;
+        long targetRowsPerFile = outputFileSettings.getTargetRowsPerFile();
+        if (jobs.isEmpty()) {
+            newLocatorLists = new ArrayList<>();
+        } else if (resumable) {
+            // Each report is written and recorded on its own, so the partitions are not coalesced
+            List<JavaRDD<InventoryManifest.Locator>> newLocatorRDDs = new ArrayList<>();
+            for (int i = 0; i < jobs.size(); i++) {
+                SourceJob job = jobs.get(i);
+                newLocatorRDDs.add(locatorRDDs.get(i).flatMap(new WriteCheckpointedInventoryReportFunc(
+                        clientFactory, jobContexts.get(i), job.checkpointStore, job.runTag, compactRows,
+                        jobMetrics.get(i))));
+            }
+            newLocatorLists = collectNewLocators(sc, newLocatorRDDs);
+        } else if (compactRows) {
+            // Hold the matching lines in compact columnar blocks, written back without any POJO
+            newLocatorLists = writeNewInventoryReports(sc, locatorRDDs, jobContexts, jobMetrics,
+                    (jobContext, metrics) -> new InventoryReportBlockStreamMapper(clientFactory, jobContext, metrics),
+                    (jobContext, metrics) -> new WriteNewInventoryReportBlocksFunc(clientFactory, jobContext, metrics),
+                    block -> (long) block.getRowCount(), targetRowsPerFile, transferSettings.getReadAheadReports());
+        } else {
+            newLocatorLists = writeNewInventoryReports(sc, locatorRDDs, jobContexts, jobMetrics,
+                    (jobContext, metrics) -> new InventoryReportStreamMapper(clientFactory, jobContext, metrics),
+                    (jobContext, metrics) -> new WriteNewInventoryReportFunc(clientFactory, jobContext, metrics),
+                    line -> 1L, targetRowsPerFile, transferSettings.getReadAheadReports());
+        }
+        for (int i = 0; i < jobs.size(); i++) {
+            jobs.get(i).metrics.merge(jobMetrics.get(i).value());
+        }
+        sc.close();
+        return newLocatorLists;
+    }
+
+    /**
+     * Create the Spark context, serializing the data and the broadcast variables with Kryo
+     * unless spark-submit configures otherwise
+     * @return JavaSparkContext of the job
+     */
+    private static JavaSparkContext createSparkContext() {
+        SparkConf sparkConf = new SparkConf();
+        sparkConf.setIfMissing("spark.serializer", KryoSerializer.class.getName());
+        sparkConf.setIfMissing("spark.kryo.registrator", InventoryKryoRegistrator.class.getName());
+        return new JavaSparkContext(sparkConf);
+    }
+
+    /**
+     * @param sc the Spark context
+     * @param locatorLists the locators of the reports of each manifest processed by the job
+     * @return the bytes per partition spreading the inventory reports over the default parallelism of the cluster
+     */
+    private static long defaultTargetPartitionBytes(JavaSparkContext sc,
+                                                    List<List<InventoryManifest.Locator>> locatorLists) {
+        long totalBytes = 0;
+        for (List<InventoryManifest.Locator> locators : locatorLists) {
+            totalBytes += LocatorBinPacker.totalBytes(locators);
+        }
+        return Math.max(1, (totalBytes + sc.defaultParallelism() - 1) / sc.defaultParallelism());
+    }
+
+    /**
+     * Bin-pack the locators of a manifest into partitions of balanced bytes, one partition per bin
+     * @param sc the Spark context
+     * @param locators the locators of the inventory reports of the manifest
+     * @param targetPartitionBytes the number of bytes of reports each partition should read
+     * @param sourceUri the location of the manifest, for the log
+     * @return JavaRDD of the locators of the manifest
+     */
+    private static JavaRDD<InventoryManifest.Locator> partitionLocators(JavaSparkContext sc,
+                                                                        List<InventoryManifest.Locator> locators,
+                                                                        long targetPartitionBytes, String sourceUri) {
+        LocatorBinPacker.Partitions partitions = LocatorBinPacker.pack(locators, targetPartitionBytes);
+        LOG.info("Partitioned the inventory reports of " + sourceUri + ": " + partitions.getSkewReport());
+        return sc.parallelize(partitions.getLocators(), Math.max(1, partitions.size())).flatMap(List::iterator);
+    }
+
+    /**
+     * Write the objects added, removed, or moved to another storage class between two snapshots of an inventory,
+     * each type of change as a new manifest under the output prefix followed by the folder of the change.
+     * The added and changed objects are written as they are in the newer snapshot,
+     * the removed ones as they were in the older snapshot.
+     * @param s3ClientFactory the factory of the S3 clients, whose client writes the new manifests
+     * @param previous the older snapshot
+     * @param current the newer snapshot
+     * @param filterExpression the filter expression restricting both snapshots, or null to compare all the objects
+     * @param transferSettings how the reports are transferred from and to S3
+     * @param outputFileSettings how large the new reports should be
+     * @param targetPartitionBytes the number of bytes of reports each partition should read, 0 for the default
+     * @param csvTokenizer true to map the lines with an InventoryReportLineTokenizer instead of Jackson
+     */
+    private static void writeSnapshotDiff(CachedS3ClientFactory s3ClientFactory,
+                                          ManifestBatchRetriever.ManifestResult previous,
+                                          ManifestBatchRetriever.ManifestResult current, String filterExpression,
+                                          TransferSettings transferSettings, OutputFileSettings outputFileSettings,
+                                          long targetPartitionBytes, boolean csvTokenizer) throws IOException {
+        AmazonS3 s3Client = s3ClientFactory.get();
+        InventoryManifest previousManifest = previous.getManifest();
+        InventoryManifest currentManifest = current.getManifest();
+        for (InventoryManifest manifest : Arrays.asList(previousManifest, currentManifest)) {
+            if (!StringUtils.containsIgnoreCase(manifest.getFileSchema(), "storageClass")) {
+                throw new StorageClassNotIncludedException();
+            }
+        }
+        RawRecordPredicate previousPredicate = filterExpression == null
+                ? null : FilterExpressionParser.parse(filterExpression, previousManifest);
+        RawRecordPredicate currentPredicate = filterExpression == null
+                ? null : FilterExpressionParser.parse(filterExpression, currentManifest);
+
+        JavaSparkContext sc = createSparkContext();
+        Broadcast<CachedS3ClientFactory> clientFactory = sc.broadcast(s3ClientFactory);
+        if (targetPartitionBytes == 0) {
+            targetPartitionBytes = defaultTargetPartitionBytes(sc,
+                    Arrays.asList(previousManifest.getLocators(), currentManifest.getLocators()));
+        }
+
+        // The new reports of each type of change are written under their own prefix
+        BucketKey location = current.getLocation();
+        String srcBucketName = location.getSrcBucket();
+        Map<InventoryChangeType, Broadcast<InventoryJobContext>> jobContexts = new EnumMap<>(InventoryChangeType.class);
+        for (InventoryChangeType changeType : InventoryChangeType.values()) {
+            boolean removed = changeType == InventoryChangeType.REMOVED;
+            jobContexts.put(changeType, sc.broadcast(new InventoryJobContext(
+                    removed ? previousManifest : currentManifest, srcBucketName, location.getDestBucket(),
+                    location.getDestPrefix() + "/" + changeType.getFolderName(), transferSettings,
+                    removed ? previousPredicate : currentPredicate, outputFileSettings, csvTokenizer)));
+        }
+        Broadcast<InventoryJobContext> previousContext = jobContexts.get(InventoryChangeType.REMOVED);
+        Broadcast<InventoryJobContext> currentContext = jobContexts.get(InventoryChangeType.ADDED);
+        JavaRDD<InventoryReportLine> previousLines =
+                partitionLocators(sc, previousManifest.getLocators(), targetPartitionBytes, previous.getSourceUri())
+                        .flatMap(new InventoryReportStreamMapper(clientFactory, previousContext));
+        JavaRDD<InventoryReportLine> currentLines =
+                partitionLocators(sc, currentManifest.getLocators(), targetPartitionBytes, current.getSourceUri())
+                        .flatMap(new InventoryReportStreamMapper(clientFactory, currentContext));
+        // Both snapshots are read twice, to find the changes and then to select their lines, but downloaded once
+        previousLines.persist(StorageLevel.MEMORY_AND_DISK_SER());
+        currentLines.persist(StorageLevel.MEMORY_AND_DISK_SER());
+
+        // Join the Key, VersionId and StorageClass of both snapshots, keeping the changes on the executors
+        Partitioner partitioner = new HashPartitioner(
+                Math.max(previousLines.getNumPartitions(), currentLines.getNumPartitions()));
+        JavaPairRDD<ObjectVersionKey, InventoryChangeType> changes =
+                InventorySnapshotDiff.findChanges(previousLines, currentLines, partitioner)
+                        .persist(StorageLevel.MEMORY_AND_DISK_SER());
+        long[][] partitionCounts = InventorySnapshotDiff.countChanges(changes);
+        Map<InventoryChangeType, Long> changeCounts = new EnumMap<>(InventoryChangeType.class);
+        for (InventoryChangeType changeType : InventoryChangeType.values()) {
+            long changeCount = 0;
+            for (long[] counts : partitionCounts) {
+                changeCount += counts[changeType.ordinal()];
+            }
+            changeCounts.put(changeType, changeCount);
+        }
+        LOG.info("Object versions changed from " + previous.getSourceUri() + " to " + current.getSourceUri()
+                + ": " + changeCounts);
+
+        // Select the lines of the changed versions through a Bloom filter of the changes of each partition
+        Broadcast<ObjectVersionBloomFilter[]> filters =
+                sc.broadcast(InventorySnapshotDiff.buildFilters(changes, partitionCounts));
+        JavaPairRDD<InventoryChangeType, InventoryReportLine> changedLinesByType =
+                InventorySnapshotDiff.selectChangedLines(changes, previousLines, currentLines, partitioner, filters)
+                        .persist(StorageLevel.MEMORY_AND_DISK_SER());
+
+        // Write the persisted lines of each type of change under its own prefix
+        List<JavaRDD<Tuple2<InventoryChangeType, InventoryManifest.Locator>>> newLocatorRDDs = new ArrayList<>();
+        for (InventoryChangeType changeType : InventoryChangeType.values()) {
+            JavaRDD<InventoryReportLine> changedLines =
+                    changedLinesByType.filter(change -> change._1() == changeType).values();
+            // The number of lines of each change is already known, so the partitions are coalesced without counting
+            long targetRowsPerFile = outputFileSettings.getTargetRowsPerFile();
+            if (targetRowsPerFile != OutputFileSettings.UNLIMITED) {
+                long fileCount =
+                        Math.max(1, (changeCounts.get(changeType) + targetRowsPerFile - 1) / targetRowsPerFile);
+                if (fileCount < changedLines.getNumPartitions()) {
+                    changedLines = changedLines.coalesce((int) fileCount);
+                }
+            }
+            newLocatorRDDs.add(changedLines
+                    .mapPartitions(new WriteNewInventoryReportFunc(clientFactory, jobContexts.get(changeType)))
+                    .map(locator -> new Tuple2<>(changeType, locator)));
+        }
+        List<Tuple2<InventoryChangeType, InventoryManifest.Locator>> newLocators =
+                sc.union(newLocatorRDDs.get(0), newLocatorRDDs.subList(1, newLocatorRDDs.size())).collect();
+        changedLinesByType.unpersist();
+        filters.destroy();
+        changes.unpersist();
+        currentLines.unpersist();
+        previousLines.unpersist();
+
+        // Generate one new manifest per type of change, and send them back to S3
+        for (InventoryChangeType changeType : InventoryChangeType.values()) {
+            List<InventoryManifest.Locator> newLocatorList = new ArrayList<>();
+            for (Tuple2<InventoryChangeType, InventoryManifest.Locator> newLocator : newLocators) {
+                if (newLocator._1() == changeType) {
+                    newLocatorList.add(newLocator._2());
+                }
+            }
+            new ManifestWriter(s3Client, location.getDestBucket(),
+                    location.getDestPrefix() + "/" + changeType.getFolderName(), srcBucketName,
+                    changeType == InventoryChangeType.REMOVED ? previousManifest : currentManifest)
+                    .writeManifest(newLocatorList);
+        }
+        sc.close();
+    }
+
+    /**
+     * Replace the input locations by the locations of every manifest found under them
+     * @param batchRetriever the retriever listing the manifests
+     * @param prefixes the input locations, used as prefixes
+     * @return List<BucketKey> which holds the location of each manifest, sharing the output location
+     */
+    private static List<BucketKey> discoverLocations(ManifestBatchRetriever batchRetriever, List<BucketKey> prefixes) {
+        List<BucketKey> locations = new ArrayList<>();
+        for (BucketKey prefix : prefixes) {
+            String outputUri = "s3://" + prefix.getDestBucket() + "/" + prefix.getDestPrefix();
+            List<String> manifestKeys = batchRetriever.discoverManifestKeys(prefix.getSrcBucket(),
+                    prefix.getSrcKey() == null ? "" : prefix.getSrcKey());
+            LOG.info("Found " + manifestKeys.size() + " manifests under s3://" + prefix.getSrcBucket() + "/"
+                    + StringUtils.defaultString(prefix.getSrcKey()));
+            for (String manifestKey : manifestKeys) {
+                locations.add(new BucketKey("s3://" + prefix.getSrcBucket() + "/" + manifestKey, outputUri));
+            }
+        }
+        return locations;
+    }
 
-        // Check if the inventory report includes the StorageClass column
+    /**
+     * Compile the filter expression against the schema of the report once, on the driver.
+     * Without an expression, keep the objects of the REDUCED_REDUNDANCY storage class,
+     * which requires the inventory report to include the StorageClass column
+     * @param filterExpression the filter expression, or null
+     * @param manifest the manifest of the inventory reports
+     * @return RawRecordPredicate which selects the lines to keep
+     */
+    private static RawRecordPredicate buildRecordPredicate(String filterExpression, InventoryManifest manifest) {
+        if (filterExpression != null) {
+            return FilterExpressionParser.parse(filterExpression, manifest);
+        }
         String fileSchema = manifest.getFileSchema();
         String filterColumn = "storageClass";
         if (!StringUtils.containsIgnoreCase(fileSchema, filterColumn)) {
             throw new StorageClassNotIncludedException();
         }
+        return ReducedRedundancyStorageClassFilter.toRawRecordPredicate(manifest);
+    }
 
-        //Create Spark Context
-        SparkConf sparkConf = new SparkConf();
-        JavaSparkContext sc = new JavaSparkContext(sparkConf);
-        Broadcast<CachedS3ClientFactory> clientFactory = sc.broadcast(new CachedS3ClientFactory());
-
-        // Get the inventory report, split it into lines, parse each line to a POJO,
-        // Filter, and write new csv file to S3
-        JavaRDD<InventoryManifest.Locator> locatorRDD = sc.parallelize(manifest.getLocators());
-        List<InventoryManifest.Locator> newLocatorList = locatorRDD
-                .map(new InventoryReportLineRetriever(clientFactory, manifest))
-                .flatMap(new InventoryReportMapper(manifest))
-                .filter(new ReducedRedundancyStorageClassFilter())
-                .mapPartitions(new WriteNewInventoryReportFunc(clientFactory, srcBucketName, manifest,
-                        destBucketName, destPrefix))
-                .collect();
+    /**
+     * Filter and write the inventory reports of every manifest in a single Spark job
+     * @param sc the Spark context
+     * @param locatorRDDs the locators of each manifest
+     * @param jobContexts the broadcast job context of each manifest
+     * @param jobMetrics the accumulator of the metrics of each manifest
+     * @param mapperFactory builds the function streaming the matching lines of a report for a job context
+     * @param writerFactory builds the function writing the lines of a partition for a job context
+     * @param rowCount the number of lines of an element
+     * @param targetRowsPerFile the number of lines of each new report, or OutputFileSettings.UNLIMITED
+     * @param readAhead the number of reports each task reads while it writes, 0 to read them one by one
+     * @return the locators of the new reports of each manifest, in the order of the manifests
+     */
+    private static <T> List<List<InventoryManifest.Locator>> writeNewInventoryReports(
+            JavaSparkContext sc, List<JavaRDD<InventoryManifest.Locator>> locatorRDDs,
+            List<Broadcast<InventoryJobContext>> jobContexts, List<InventoryMetricsAccumulator> jobMetrics,
+            BiFunction<Broadcast<InventoryJobContext>, InventoryMetricsAccumulator,
+                    FlatMapFunction<InventoryManifest.Locator, T>> mapperFactory,
+            BiFunction<Broadcast<InventoryJobContext>, InventoryMetricsAccumulator,
+                    FlatMapFunction<Iterator<T>, InventoryManifest.Locator>> writerFactory,
+            Function<T, Long> rowCount, long targetRowsPerFile, int readAhead) {
+        List<JavaRDD<T>> filteredRDDs = new ArrayList<>();
+        for (int i = 0; i < locatorRDDs.size(); i++) {
+            FlatMapFunction<InventoryManifest.Locator, T> mapper = mapperFactory.apply(jobContexts.get(i),
+                    jobMetrics.get(i));
+            // With read-ahead, the next reports of a partition are downloaded while the task writes the current lines
+            filteredRDDs.add(readAhead == 0
+                    ? locatorRDDs.get(i).flatMap(mapper)
+                    : locatorRDDs.get(i).mapPartitions(new PipelinedReportMapper<>(mapper, rowCount, readAhead)));
+        }
+        List<JavaRDD<T>> coalescedRDDs = coalesceToTargetRows(sc, filteredRDDs, rowCount, targetRowsPerFile);
 
-        // Generate new manifest files including new locators, and send them back to S3
-        new ManifestWriter(s3Client, destBucketName, destPrefix, srcBucketName, manifest)
-                .writeManifest(newLocatorList);
+        List<JavaRDD<InventoryManifest.Locator>> newLocatorRDDs = new ArrayList<>();
+        for (int i = 0; i < coalescedRDDs.size(); i++) {
+            newLocatorRDDs.add(coalescedRDDs.get(i).mapPartitions(writerFactory.apply(jobContexts.get(i),
+                    jobMetrics.get(i))));
+        }
+        List<List<InventoryManifest.Locator>> newLocatorLists = collectNewLocators(sc, newLocatorRDDs);
+        for (JavaRDD<T> filteredRDD : filteredRDDs) {
+            filteredRDD.unpersist();
+        }
+        return newLocatorLists;
+    }
 
-        sc.close();
+    /**
+     * Run the RDDs writing the new reports of every manifest, tagging the new locators with the index
+     * of their manifest, so that a single collect returns all of them
+     * @param sc the Spark context
+     * @param newLocatorRDDs the locators of the new reports of each manifest
+     * @return the locators of the new reports of each manifest, in the order of the manifests
+     */
+    private static List<List<InventoryManifest.Locator>> collectNewLocators(
+            JavaSparkContext sc, List<JavaRDD<InventoryManifest.Locator>> newLocatorRDDs) {
+        List<JavaRDD<Tuple2<Integer, InventoryManifest.Locator>>> taggedRDDs = new ArrayList<>();
+        for (int i = 0; i < newLocatorRDDs.size(); i++) {
+            final int index = i;
+            taggedRDDs.add(newLocatorRDDs.get(i).map(locator -> new Tuple2<>(index, locator)));
+        }
+        List<Tuple2<Integer, InventoryManifest.Locator>> newLocators =
+                sc.union(taggedRDDs.get(0), taggedRDDs.subList(1, taggedRDDs.size())).collect();
+
+        List<List<InventoryManifest.Locator>> newLocatorLists = new ArrayList<>();
+        for (int i = 0; i < newLocatorRDDs.size(); i++) {
+            newLocatorLists.add(new ArrayList<>());
+        }
+        for (Tuple2<Integer, InventoryManifest.Locator> newLocator : newLocators) {
+            newLocatorLists.get(newLocator._1()).add(newLocator._2());
+        }
+        return newLocatorLists;
+    }
+
+    /**
+     * Coalesce the partitions holding fewer lines than the target of a new report, so that a selective filter
+     * does not leave thousands of tiny reports. The matching lines are counted first, and kept serialized
+     * in memory or on disk meanwhile, instead of downloading and filtering the original reports twice.
+     * The partitions holding more lines than the target roll over to several reports when they are written.
+     * The lines of every manifest are counted by a single job, and each manifest is coalesced on its own.
+     * @param sc the Spark context
+     * @param rdds the matching lines of each manifest, as POJOs or blocks
+     * @param rowCount the number of lines of an element of the RDD
+     * @param targetRowsPerFile the number of lines of each new report, or OutputFileSettings.UNLIMITED
+     * @return the coalesced RDDs, or the RDDs themselves when there is no target or no partition to coalesce
+     */
+    private static <T> List<JavaRDD<T>> coalesceToTargetRows(JavaSparkContext sc, List<JavaRDD<T>> rdds,
+                                                             Function<T, Long> rowCount, long targetRowsPerFile) {
+        if (targetRowsPerFile == OutputFileSettings.UNLIMITED) {
+            return rdds;
+        }
+        List<JavaPairRDD<Integer, Long>> rowCounts = new ArrayList<>();
+        for (int i = 0; i < rdds.size(); i++) {
+            final int index = i;
+            rdds.get(i).persist(StorageLevel.MEMORY_AND_DISK_SER());
+            rowCounts.add(rdds.get(i).map(rowCount).mapToPair(rows -> new Tuple2<>(index, rows)));
+        }
+        Map<Integer, Long> totalRows = sc.union(rowCounts.get(0), rowCounts.subList(1, rowCounts.size()))
+                .reduceByKey(Long::sum)
+                .collectAsMap();
+
+        List<JavaRDD<T>> coalescedRDDs = new ArrayList<>();
+        for (int i = 0; i < rdds.size(); i++) {
+            JavaRDD<T> rdd = rdds.get(i);
+            long rows = totalRows.containsKey(i) ? totalRows.get(i) : 0;
+            long fileCount = Math.max(1, (rows + targetRowsPerFile - 1) / targetRowsPerFile);
+            LOG.info(rows + " lines match, for about " + fileCount + " new inventory reports of "
+                    + targetRowsPerFile + " lines from " + rdd.getNumPartitions() + " partitions");
+            coalescedRDDs.add(fileCount >= rdd.getNumPartitions() ? rdd : rdd.coalesce((int) fileCount));
+        }
+        return coalescedRDDs;
+    }
+
+    /**
+     * A manifest of the batch, with where its new reports are written
+     */
+    private static class SourceJob {
+        private final String sourceUri;
+        private final BucketKey location;
+        private final InventoryManifest manifest;
+        private final RawRecordPredicate recordPredicate;
+        private final String outputSourcePath;
+        private List<InventoryManifest.Locator> pendingLocators;
+        private List<InventoryManifest.Locator> resumedLocators = new ArrayList<>();
+        private LocatorCheckpointStore checkpointStore;
+        private String runTag;
+        private final InventoryJobMetrics metrics = new InventoryJobMetrics();
+
+        SourceJob(ManifestBatchRetriever.ManifestResult result, RawRecordPredicate recordPredicate, boolean batch) {
+            this.sourceUri = result.getSourceUri();
+            this.location = result.getLocation();
+            this.manifest = result.getManifest();
+            this.recordPredicate = recordPredicate;
+            // The manifests of a batch may share their bucket, so their new reports are kept apart by their key
+            this.outputSourcePath = batch
+                    ? location.getSrcBucket() + "/" + location.getSrcKey()
+                    : location.getSrcBucket();
+            this.pendingLocators = manifest.getLocators();
+        }
+
+        /**
+         * Build the settings of the job shared by the threads or the workers writing its reports
+         */
+        InventoryJobContext buildJobContext(TransferSettings transferSettings, OutputFileSettings outputFileSettings,
+                                            boolean csvTokenizer) {
+            return new InventoryJobContext(manifest, outputSourcePath, location.getDestBucket(),
+                    location.getDestPrefix(), transferSettings, recordPredicate, outputFileSettings, csvTokenizer);
+        }
+
+        /**
+         * Load the checkpoints of a previous run with the same settings, and only keep the reports it did not
+         * complete. The checkpoints are kept under a prefix identifying the settings, since changing them
+         * changes the content of the new reports.
+         */
+        void resume(AmazonS3 s3Client, String filterExpression, boolean compactRows,
+                    OutputFileSettings outputFileSettings, int concurrency) throws IOException {
+            String runId = DigestUtils.md5Hex(StringUtils.join(Arrays.asList(sourceUri, manifest.getFileSchema(),
+                    StringUtils.defaultString(filterExpression), compactRows, outputFileSettings), '\n'));
+            runTag = runId.substring(0, 8);
+            checkpointStore = new LocatorCheckpointStore(location.getDestBucket(),
+                    location.getDestPrefix() + "/" + outputSourcePath + "/checkpoints/" + runId);
+            Map<String, LocatorCheckpoint> checkpoints = checkpointStore.load(s3Client, concurrency);
+
+            pendingLocators = new ArrayList<>();
+            for (InventoryManifest.Locator locator : manifest.getLocators()) {
+                LocatorCheckpoint checkpoint = LocatorCheckpointStore.findCompleted(checkpoints, locator);
+                if (checkpoint == null) {
+                    pendingLocators.add(locator);
+                } else {
+                    resumedLocators.addAll(checkpoint.getOutputLocators());
+                }
+            }
+            LOG.info("Skipping " + (manifest.getLocators().size() - pendingLocators.size()) + " of the "
+                    + manifest.getLocators().size() + " inventory reports of " + sourceUri
+                    + " completed by a previous run");
+        }
     }
 }
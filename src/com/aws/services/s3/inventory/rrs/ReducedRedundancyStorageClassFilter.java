@@ -8,11 +8,47 @@ import org.apache.spark.api.java.function.Function;
 
 /**
  * This ReducedRedundancyStorageClassFilter class filters out the objects not belonging to
- * the "REDUCED_REDUNDANCY" storage class.
+ * the "REDUCED_REDUNDANCY" storage class, either as InventoryReportLine POJOs
+ * or as rows of compact InventoryReportLineBlocks.
  */
-public class ReducedRedundancyStorageClassFilter implements Function<InventoryReportLine, Boolean> {
+public class ReducedRedundancyStorageClassFilter implements Function<InventoryReportLine, Boolean>,
+        BlockRowPredicate {
+    private static final String STORAGE_CLASS_COLUMN = "StorageClass";
+    private static final String REDUCED_REDUNDANCY = "REDUCED_REDUNDANCY";
+    private static final int REDUCED_REDUNDANCY_CODE = DictionaryColumn.STORAGE_CLASSES.indexOf(REDUCED_REDUNDANCY);
+
     @Override
     public Boolean call(InventoryReportLine inventoryReportLine) {
-        return inventoryReportLine.getStorageClass().equals("REDUCED_REDUNDANCY");
+        return inventoryReportLine.getStorageClass().equals(REDUCED_REDUNDANCY);
+    }
+
+    /**
+     * Compare the dictionary code of the StorageClass of a row, since REDUCED_REDUNDANCY has the same code
+     * in every block
+     * @throws StorageClassNotIncludedException when the inventory report does not include the StorageClass column
+     */
+    @Override
+    public boolean test(InventoryReportLineBlock block, int row) {
+        CompactColumn storageClass = block.getColumn(STORAGE_CLASS_COLUMN);
+        if (storageClass == null) {
+            throw new StorageClassNotIncludedException();
+        }
+        return !storageClass.isMissing(row)
+                && ((DictionaryColumn) storageClass).getCode(row) == REDUCED_REDUNDANCY_CODE;
+    }
+
+    /**
+     * Build the same filter as a predicate on the raw StorageClass field of the inventory report,
+     * so the records can be filtered before they are mapped into POJOs
+     * @param inventoryManifest the original manifest of the inventory report
+     * @return RawRecordPredicate testing the StorageClass column
+     * @throws StorageClassNotIncludedException when the inventory report does not include the StorageClass column
+     */
+    public static RawRecordPredicate toRawRecordPredicate(InventoryManifest inventoryManifest) {
+        int columnIndex = CsvSchemaFactory.getColumnIndex(inventoryManifest, STORAGE_CLASS_COLUMN);
+        if (columnIndex < 0) {
+            throw new StorageClassNotIncludedException();
+        }
+        return new ColumnEqualsPredicate(columnIndex, REDUCED_REDUNDANCY);
     }
 }
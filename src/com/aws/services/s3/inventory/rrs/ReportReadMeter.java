@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.InputStream;
+import java.util.function.ToIntFunction;
+
+/**
+ * This ReportReadMeter class measures the reading of one original report by a ChecksumVerifyingIterator,
+ * through MeteredInputStreams around the downloaded, the checksummed and the decompressed bytes,
+ * and records it into the InventoryJobMetrics once the report is closed.
+ * Without metrics, its streams are the streams it is given and the iterator is not timed.
+ */
+final class ReportReadMeter<T> {
+    private final InventoryJobMetrics metrics;
+    private final ToIntFunction<? super T> rowCount;
+    private MeteredInputStream downloadStream;
+    private MeteredInputStream checksumStream;
+    private MeteredInputStream csvStream;
+    private CsvRecordScanner scanner;
+    private long iteratorNanos;
+    private long rowsKept;
+    private boolean recorded;
+
+    /**
+     * @param metrics where the report is recorded, or null not to measure it
+     * @param rowCount the number of rows of an element yielded by the iterator
+     */
+    ReportReadMeter(InventoryJobMetrics metrics, ToIntFunction<? super T> rowCount) {
+        this.metrics = metrics;
+        this.rowCount = rowCount;
+    }
+
+    boolean isEnabled() {
+        return metrics != null;
+    }
+
+    /**
+     * @param compressedStream the compressed bytes of the report, as they are downloaded
+     */
+    InputStream meterDownload(InputStream compressedStream) {
+        return isEnabled() ? (downloadStream = new MeteredInputStream(compressedStream)) : compressedStream;
+    }
+
+    /**
+     * @param digestStream the compressed bytes of the report, once their MD5 is computed
+     */
+    InputStream meterChecksum(InputStream digestStream) {
+        return isEnabled() ? (checksumStream = new MeteredInputStream(digestStream)) : digestStream;
+    }
+
+    /**
+     * @param decompressedStream the CSV content of the report
+     */
+    InputStream meterDecompression(InputStream decompressedStream) {
+        return isEnabled() ? (csvStream = new MeteredInputStream(decompressedStream)) : decompressedStream;
+    }
+
+    /**
+     * @param scanner the scanner of the CSV content, which counts the rows before they are filtered
+     */
+    void setScanner(CsvRecordScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * @param nanos the time spent in one call of the iterator, which includes reading the streams
+     */
+    void addIteratorNanos(long nanos) {
+        iteratorNanos += nanos;
+    }
+
+    void countRows(T element) {
+        rowsKept += rowCount.applyAsInt(element);
+    }
+
+    /**
+     * Record the report into the metrics, once, whether it has been fully read or not
+     */
+    void record() {
+        if (!isEnabled() || recorded) {
+            return;
+        }
+        recorded = true;
+        metrics.add(InventoryJobMetrics.Counter.REPORTS_READ, 1);
+        metrics.add(InventoryJobMetrics.Counter.ROWS_READ, scanner == null ? rowsKept : scanner.getRecordCount());
+        metrics.add(InventoryJobMetrics.Counter.ROWS_KEPT, rowsKept);
+        metrics.add(InventoryJobMetrics.Counter.BYTES_DOWNLOADED, downloadStream.getBytes());
+        metrics.add(InventoryJobMetrics.Counter.BYTES_DECOMPRESSED, csvStream.getBytes());
+        metrics.record(InventoryJobMetrics.Stage.DOWNLOAD, downloadStream.getNanos());
+        metrics.record(InventoryJobMetrics.Stage.CHECKSUM, checksumStream.getNanos() - downloadStream.getNanos());
+        metrics.record(InventoryJobMetrics.Stage.DECOMPRESS, csvStream.getNanos() - checksumStream.getNanos());
+        metrics.record(InventoryJobMetrics.Stage.PARSE, iteratorNanos - csvStream.getNanos());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.services.s3.AmazonS3;
+import org.apache.commons.lang.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * This S3ClientRegistry class holds one S3 client per S3ClientSettings for the whole JVM.
+ * Every task of an executor, and every deserialized copy of a CachedS3ClientFactory, then shares
+ * the same connection pool instead of building its own. The clients are shut down when the JVM exits.
+ */
+final class S3ClientRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(S3ClientRegistry.class);
+    private static final ConcurrentMap<S3ClientSettings, AmazonS3> CLIENTS = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(S3ClientRegistry::shutdownAll, "s3-client-registry"));
+    }
+
+    private S3ClientRegistry() {
+    }
+
+    /**
+     * @param settings the settings of the client
+     * @return AmazonS3 which is the client of these settings, built by the first caller only
+     */
+    static AmazonS3 getClient(S3ClientSettings settings) {
+        return getClient(settings, S3ClientSettings::buildClient);
+    }
+
+    /**
+     * Same as getClient(settings), with the function building a new client
+     */
+    static AmazonS3 getClient(S3ClientSettings settings, Function<S3ClientSettings, AmazonS3> clientBuilder) {
+        AmazonS3 client = CLIENTS.get(settings);
+        if (client != null) {
+            return client;
+        }
+        // The map blocks the other callers of the same settings until the client is built,
+        // and the settings are copied so that a later change of the caller's settings does not change the key
+        return CLIENTS.computeIfAbsent((S3ClientSettings) SerializationUtils.clone(settings), clientBuilder);
+    }
+
+    /**
+     * Shut down the connection pools of all the clients, and forget them
+     */
+    static void shutdownAll() {
+        List<S3ClientSettings> settingsList = new ArrayList<>(CLIENTS.keySet());
+        for (S3ClientSettings settings : settingsList) {
+            AmazonS3 client = CLIENTS.remove(settings);
+            if (!(client instanceof AmazonWebServiceClient)) {
+                continue;
+            }
+            try {
+                ((AmazonWebServiceClient) client).shutdown();
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to shut down the S3 client of " + settings, e);
+            }
+        }
+    }
+}
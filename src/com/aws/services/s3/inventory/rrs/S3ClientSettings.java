@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.S3ClientOptions;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.io.Serializable;
+
+/**
+ * This S3ClientSettings class stores how the S3 clients of the driver and of the Spark workers connect to S3,
+ * and is shipped to the workers inside the CachedS3ClientFactory.
+ * The options which are not specified keep the defaults of the SDK, except for TCP keep-alive.
+ */
+public class S3ClientSettings implements Serializable {
+    public static final int DEFAULT_MAX_CONNECTIONS = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    public static final int DEFAULT_CONNECTION_TIMEOUT = ClientConfiguration.DEFAULT_CONNECTION_TIMEOUT;
+    public static final int DEFAULT_SOCKET_TIMEOUT = ClientConfiguration.DEFAULT_SOCKET_TIMEOUT;
+    public static final int DEFAULT_MAX_ERROR_RETRY = PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY;
+
+    /**
+     * The maximum number of open HTTP connections of a client, shared by all the tasks of an executor.
+     */
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    /**
+     * The time in milliseconds to wait for a connection to be established.
+     */
+    private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+
+    /**
+     * The time in milliseconds to wait for data on an established connection.
+     */
+    private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+
+    /**
+     * The number of times a failed request is retried, with the exponential backoff of the SDK.
+     */
+    private int maxErrorRetry = DEFAULT_MAX_ERROR_RETRY;
+
+    /**
+     * The size in bytes of the send and receive buffers of the sockets, 0 to keep the defaults of the OS.
+     */
+    private int socketBufferSize;
+
+    /**
+     * Whether the connections send TCP keep-alive packets, so that idle pooled connections are not dropped.
+     */
+    private boolean tcpKeepAlive = true;
+
+    /**
+     * The endpoint of the clients, such as a local S3 stand-in, or null for the endpoint of AWS.
+     * A custom endpoint is addressed with path-style requests, since it rarely resolves bucket subdomains.
+     */
+    private String endpoint;
+
+    /**
+     * @return ClientConfiguration of the SDK holding these settings
+     */
+    public ClientConfiguration toClientConfiguration() {
+        ClientConfiguration clientConfiguration = new ClientConfiguration();
+        clientConfiguration.setMaxConnections(maxConnections);
+        clientConfiguration.setConnectionTimeout(connectionTimeout);
+        clientConfiguration.setSocketTimeout(socketTimeout);
+        clientConfiguration.setRetryPolicy(PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(
+                maxErrorRetry));
+        clientConfiguration.setUseTcpKeepAlive(tcpKeepAlive);
+        if (socketBufferSize > 0) {
+            clientConfiguration.setSocketBufferSizeHints(socketBufferSize, socketBufferSize);
+        }
+        return clientConfiguration;
+    }
+
+    /**
+     * @return AmazonS3 client built from these settings
+     */
+    public AmazonS3 buildClient() {
+        AmazonS3Client client = new AmazonS3Client(new AnonymousFallbackCredentialsProvider(),
+                toClientConfiguration());
+        if (endpoint != null) {
+            client.setEndpoint(endpoint);
+            client.setS3ClientOptions(S3ClientOptions.builder().setPathStyleAccess(true).build());
+        }
+        return client;
+    }
+
+    // Getters and setters
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getMaxErrorRetry() {
+        return maxErrorRetry;
+    }
+
+    public void setMaxErrorRetry(int maxErrorRetry) {
+        this.maxErrorRetry = maxErrorRetry;
+    }
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    public void setSocketBufferSize(int socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return "S3ClientSettings{" +
+                "maxConnections: " + maxConnections + ", " +
+                "connectionTimeout: " + connectionTimeout + ", " +
+                "socketTimeout: " + socketTimeout + ", " +
+                "maxErrorRetry: " + maxErrorRetry + ", " +
+                "socketBufferSize: " + socketBufferSize + ", " +
+                "tcpKeepAlive: " + tcpKeepAlive + ", " +
+                "endpoint: " + endpoint +
+                '}';
+    }
+
+    /**
+     * This AnonymousFallbackCredentialsProvider class looks for credentials as the default constructor
+     * of AmazonS3Client does, and sends anonymous requests when none is found
+     */
+    private static class AnonymousFallbackCredentialsProvider implements AWSCredentialsProvider {
+        private final AWSCredentialsProvider credentialsProvider = new DefaultAWSCredentialsProviderChain();
+
+        @Override
+        public AWSCredentials getCredentials() {
+            try {
+                return credentialsProvider.getCredentials();
+            } catch (AmazonClientException e) {
+                return new AnonymousAWSCredentials();
+            }
+        }
+
+        @Override
+        public void refresh() {
+            credentialsProvider.refresh();
+        }
+    }
+}
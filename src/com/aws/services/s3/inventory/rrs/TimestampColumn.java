@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * This TimestampColumn class stores an ISO-8601 date column, such as LastModifiedDate,
+ * as milliseconds since the epoch. The timestamps written by S3, like 2017-08-04T12:00:00.000Z,
+ * are parsed directly from the bytes of the record, and written back in the same format.
+ * Any other value, such as a timestamp of another precision or an invalid date, is kept as raw bytes
+ * and written back unchanged, as the POJO path would.
+ */
+public class TimestampColumn extends LongColumn {
+    static final long NOT_A_TIMESTAMP = Long.MIN_VALUE;
+    private static final int TIMESTAMP_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSSZ".length();
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // Created with the first value not in the S3 format, with a missing row for each value stored as milliseconds
+    private ByteSliceColumn rawValues;
+    private transient byte[] scratch;
+
+    @Override
+    public void append(CsvRecordScanner record, int field) {
+        int bound = record.rawFieldLength(field);
+        if (bound <= 0) {
+            append(0L, true);
+            return;
+        }
+        if (scratch == null || scratch.length < bound) {
+            scratch = new byte[Math.max(bound, TIMESTAMP_LENGTH)];
+        }
+        int length = record.copyField(field, scratch, 0);
+        if (length == 0) {
+            append(0L, true);
+            return;
+        }
+        long epochMillis = parseTimestamp(scratch, length);
+        if (epochMillis != NOT_A_TIMESTAMP) {
+            append(epochMillis, false);
+            return;
+        }
+        if (rawValues == null) {
+            rawValues = new ByteSliceColumn();
+            for (int i = 0; i < rowCount; i++) {
+                rawValues.append((byte[]) null);
+            }
+        }
+        rawValues.append(Arrays.copyOf(scratch, length));
+        super.append(NOT_A_TIMESTAMP, false);
+    }
+
+    @Override
+    public void append(long value, boolean isMissing) {
+        if (rawValues != null) {
+            rawValues.append((byte[]) null);
+        }
+        super.append(value, isMissing);
+    }
+
+    /**
+     * @param row the index of the row, which must not be missing
+     * @return the timestamp of the row in milliseconds since the epoch
+     * @throws java.time.format.DateTimeParseException when the row is kept as raw bytes
+     * and is not an ISO-8601 timestamp
+     */
+    public long getEpochMillis(int row) {
+        if (isRaw(row)) {
+            return Instant.parse(rawValues.getString(row)).toEpochMilli();
+        }
+        return getLong(row);
+    }
+
+    /**
+     * @param row the index of the row
+     * @return true if the row is not in the S3 format and is kept as raw bytes, getLong() being NOT_A_TIMESTAMP
+     */
+    public boolean isRaw(int row) {
+        return rawValues != null && !rawValues.isMissing(row);
+    }
+
+    @Override
+    public void writeCsv(int row, OutputStream out) throws IOException {
+        if (isMissing(row)) {
+            return;
+        }
+        if (isRaw(row)) {
+            rawValues.writeCsv(row, out);
+            return;
+        }
+        if (scratch == null || scratch.length < TIMESTAMP_LENGTH) {
+            scratch = new byte[TIMESTAMP_LENGTH];
+        }
+        formatTimestamp(getLong(row), scratch);
+        writeQuoted(out, scratch, 0, TIMESTAMP_LENGTH);
+    }
+
+    @Override
+    public String getString(int row) {
+        if (isMissing(row)) {
+            return null;
+        }
+        if (isRaw(row)) {
+            return rawValues.getString(row);
+        }
+        byte[] formatted = new byte[TIMESTAMP_LENGTH];
+        formatTimestamp(getLong(row), formatted);
+        return new String(formatted, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public CompactColumn select(int[] rows, int count) {
+        TimestampColumn selected = (TimestampColumn) super.select(rows, count);
+        if (rawValues != null) {
+            selected.rawValues = (ByteSliceColumn) rawValues.select(rows, count);
+        }
+        return selected;
+    }
+
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        if (rawValues != null) {
+            rawValues.trimToSize();
+        }
+    }
+
+    @Override
+    protected LongColumn newColumn() {
+        return new TimestampColumn();
+    }
+
+    /**
+     * Parse a timestamp in the yyyy-MM-ddTHH:mm:ss.SSSZ format written by S3, the only one formatTimestamp()
+     * writes back unchanged
+     * @param bytes the content of the field
+     * @param length the length of the field
+     * @return the timestamp in milliseconds since the epoch, or NOT_A_TIMESTAMP if the field is not a valid
+     * timestamp in this exact format
+     */
+    static long parseTimestamp(byte[] bytes, int length) {
+        if (length == TIMESTAMP_LENGTH && bytes[4] == '-' && bytes[7] == '-' && bytes[10] == 'T' &&
+                bytes[13] == ':' && bytes[16] == ':' && bytes[19] == '.' && bytes[23] == 'Z') {
+            int year = digits(bytes, 0, 4);
+            int month = digits(bytes, 5, 2);
+            int day = digits(bytes, 8, 2);
+            int hour = digits(bytes, 11, 2);
+            int minute = digits(bytes, 14, 2);
+            int second = digits(bytes, 17, 2);
+            int millis = digits(bytes, 20, 3);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31 &&
+                    hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60 &&
+                    millis >= 0) {
+                long epochDay;
+                try {
+                    epochDay = LocalDate.of(year, month, day).toEpochDay();
+                } catch (DateTimeException e) {
+                    // A day the month does not have, such as February 29 of a common year
+                    return NOT_A_TIMESTAMP;
+                }
+                return epochDay * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000 + millis;
+            }
+        }
+        return NOT_A_TIMESTAMP;
+    }
+
+    /**
+     * Format a timestamp as yyyy-MM-ddTHH:mm:ss.SSSZ
+     * @param epochMillis the timestamp in milliseconds since the epoch
+     * @param target the array receiving the formatted timestamp, of at least 24 bytes
+     */
+    static void formatTimestamp(long epochMillis, byte[] target) {
+        long epochDay = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(epochMillis, MILLIS_PER_DAY);
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        putDigits(target, 0, 4, date.getYear());
+        target[4] = '-';
+        putDigits(target, 5, 2, date.getMonthValue());
+        target[7] = '-';
+        putDigits(target, 8, 2, date.getDayOfMonth());
+        target[10] = 'T';
+        putDigits(target, 11, 2, millisOfDay / 3600000);
+        target[13] = ':';
+        putDigits(target, 14, 2, millisOfDay / 60000 % 60);
+        target[16] = ':';
+        putDigits(target, 17, 2, millisOfDay / 1000 % 60);
+        target[19] = '.';
+        putDigits(target, 20, 3, millisOfDay % 1000);
+        target[23] = 'Z';
+    }
+
+    /**
+     * @return the value of the decimal digits, or -1 if one of the bytes is not a digit
+     */
+    private static int digits(byte[] bytes, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void putDigits(byte[] target, int offset, int count, int value) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import java.io.Serializable;
+import java.util.zip.Deflater;
+
+/**
+ * This TransferSettings class stores how the inventory reports are transferred from and to S3,
+ * including how they are decompressed and compressed, and is shipped to the Spark workers
+ * along with the functions using it.
+ */
+public class TransferSettings implements Serializable {
+    public static final long DEFAULT_DOWNLOAD_PART_SIZE = 8L * 1024 * 1024;
+    public static final int DEFAULT_DOWNLOAD_CONCURRENCY = 1;
+    public static final int DEFAULT_UPLOAD_PART_SIZE = 16 * 1024 * 1024;
+    public static final int MIN_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
+    public static final int DEFAULT_READ_AHEAD_REPORTS = 0;
+    public static final int DEFAULT_INFLATE_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    public static final int DEFAULT_COMPRESSION_THREADS = 1;
+
+    /**
+     * The size in bytes of each byte range requested when downloading a report with ranged GETs.
+     */
+    private long downloadPartSize = DEFAULT_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The number of byte ranges of a report downloaded in parallel, 1 to download it with a single GET.
+     */
+    private int downloadConcurrency = DEFAULT_DOWNLOAD_CONCURRENCY;
+
+    /**
+     * The size in bytes of each part of a multipart upload, S3 requires at least 5 MB.
+     * Reports smaller than one part are uploaded with a single PUT.
+     */
+    private int uploadPartSize = DEFAULT_UPLOAD_PART_SIZE;
+
+    /**
+     * The number of reports of a partition downloaded and parsed by background threads of the task
+     * while the task writes the new reports, 0 to read the reports one by one in the task itself.
+     */
+    private int readAheadReports = DEFAULT_READ_AHEAD_REPORTS;
+
+    /**
+     * The size in bytes of the buffer of compressed bytes the GZIPInputStream fills from the downloaded report,
+     * instead of its default of 512 bytes which calls the native Inflater for every few lines.
+     */
+    private int inflateBufferSize = DEFAULT_INFLATE_BUFFER_SIZE;
+
+    /**
+     * The GZIP compression level of the new reports, from 0 (stored) to 9 (smallest),
+     * or Deflater.DEFAULT_COMPRESSION for the zlib default, which is 6.
+     */
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+
+    /**
+     * The number of threads compressing each new report with a ParallelGzipOutputStream,
+     * 1 to compress it with a GZIPOutputStream in the thread writing it.
+     */
+    private int compressionThreads = DEFAULT_COMPRESSION_THREADS;
+
+    /**
+     * Check if a report of the given size should be downloaded with parallel ranged GETs
+     * @param objectSize the size in bytes of the report
+     * @return true if the report spans more than one part and more than one connection is allowed
+     */
+    public boolean useRangedDownload(long objectSize) {
+        return downloadConcurrency > 1 && objectSize > downloadPartSize;
+    }
+
+    // Getters and setters
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    public void setDownloadPartSize(long downloadPartSize) {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    public int getDownloadConcurrency() {
+        return downloadConcurrency;
+    }
+
+    public void setDownloadConcurrency(int downloadConcurrency) {
+        this.downloadConcurrency = downloadConcurrency;
+    }
+
+    public int getUploadPartSize() {
+        return uploadPartSize;
+    }
+
+    public void setUploadPartSize(int uploadPartSize) {
+        this.uploadPartSize = uploadPartSize;
+    }
+
+    public int getReadAheadReports() {
+        return readAheadReports;
+    }
+
+    public void setReadAheadReports(int readAheadReports) {
+        this.readAheadReports = readAheadReports;
+    }
+
+    public int getInflateBufferSize() {
+        return inflateBufferSize;
+    }
+
+    public void setInflateBufferSize(int inflateBufferSize) {
+        this.inflateBufferSize = inflateBufferSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferSettings{" +
+                "downloadPartSize: " + downloadPartSize + ", " +
+                "downloadConcurrency: " + downloadConcurrency + ", " +
+                "uploadPartSize: " + uploadPartSize + ", " +
+                "readAheadReports: " + readAheadReports + ", " +
+                "inflateBufferSize: " + inflateBufferSize + ", " +
+                "compressionLevel: " + compressionLevel + ", " +
+                "compressionThreads: " + compressionThreads +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This WriteCheckpointedInventoryReportFunc class filters one original inventory report into new reports
+ * named after the key and the MD5 of the original report, and records a LocatorCheckpoint once they are complete.
+ * A retried task, or a new run of the same job, overwrites the same objects instead of leaving orphan reports.
+ */
+public class WriteCheckpointedInventoryReportFunc
+        implements FlatMapFunction<InventoryManifest.Locator, InventoryManifest.Locator> {
+    private final Broadcast<CachedS3ClientFactory> s3ClientFactory;
+    private final Broadcast<InventoryJobContext> jobContext;
+    private final LocatorCheckpointStore checkpointStore;
+    private final String runTag;
+    private final boolean compactRows;
+    private final InventoryMetricsAccumulator metrics;
+
+    /**
+     * @param s3ClientFactory the factory of the S3 clients of the workers
+     * @param jobContext the settings of the job
+     * @param checkpointStore where the checkpoints of the job are recorded
+     * @param runTag a short identifier of the settings of the job, part of the names of the new reports
+     * @param compactRows true to hold the lines in compact InventoryReportLineBlocks instead of POJOs
+     * @param metrics the accumulator of the rows, bytes and times of the reports
+     */
+    public WriteCheckpointedInventoryReportFunc(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                                Broadcast<InventoryJobContext> jobContext,
+                                                LocatorCheckpointStore checkpointStore, String runTag,
+                                                boolean compactRows, InventoryMetricsAccumulator metrics) {
+        this.s3ClientFactory = s3ClientFactory;
+        this.jobContext = jobContext;
+        this.checkpointStore = checkpointStore;
+        this.runTag = runTag;
+        this.compactRows = compactRows;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Iterator<InventoryManifest.Locator> call(InventoryManifest.Locator locator) throws IOException {
+        InventoryJobContext inventoryJobContext = jobContext.getValue();
+        AmazonS3 s3Client = s3ClientFactory.getValue().get();
+        InventoryReportRetriever reportRetriever = new InventoryReportRetriever(s3Client, locator, inventoryJobContext);
+        InventoryReportLineWriter scvWriter = new InventoryReportLineWriter(s3Client, inventoryJobContext);
+        reportRetriever.setMetrics(metrics.value());
+        scvWriter.setMetrics(metrics.value());
+        String outputName = LocatorCheckpointStore.reportId(locator) + "-" + runTag;
+
+        // The checksum of the original report is verified once it is fully read, before the checkpoint is recorded
+        List<InventoryManifest.Locator> newLocators;
+        if (compactRows) {
+            try (ChecksumVerifyingIterator<InventoryReportLineBlock> inventoryReportBlocks =
+                         reportRetriever.getInventoryReportBlocks(inventoryJobContext.getMapper(),
+                                 inventoryJobContext.getPredicate(), InventoryReportLineBlock.DEFAULT_MAX_ROWS)) {
+                newLocators = scvWriter.writeCsvBlockFiles(inventoryReportBlocks,
+                        inventoryJobContext.getOutputFileSettings(), outputName);
+            }
+        } else {
+            try (InventoryReportLineIterator inventoryReportLines = reportRetriever.getInventoryReportLines(
+                    inventoryJobContext.getMapper(), inventoryJobContext.getPredicate())) {
+                newLocators = scvWriter.writeCsvFiles(inventoryReportLines,
+                        inventoryJobContext.getOutputFileSettings(), outputName);
+            }
+        }
+        checkpointStore.save(s3Client, new LocatorCheckpoint(locator, newLocators));
+        return newLocators.iterator();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * This WriteNewInventoryReportBlocksFunc class writes the compact blocks of a partition into new inventory reports
+ * and sends them back to the S3 bucket.
+ */
+public class WriteNewInventoryReportBlocksFunc implements
+        FlatMapFunction<Iterator<InventoryReportLineBlock>, InventoryManifest.Locator> {
+    private final Broadcast<CachedS3ClientFactory> s3ClientFactory;
+    private final Broadcast<InventoryJobContext> jobContext;
+    private final InventoryMetricsAccumulator metrics;
+
+    public WriteNewInventoryReportBlocksFunc(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                             Broadcast<InventoryJobContext> jobContext) {
+        this(s3ClientFactory, jobContext, null);
+    }
+
+    /**
+     * @param metrics the accumulator of the rows, bytes and times of the new reports, or null not to measure them
+     */
+    public WriteNewInventoryReportBlocksFunc(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                             Broadcast<InventoryJobContext> jobContext,
+                                             InventoryMetricsAccumulator metrics) {
+        this.s3ClientFactory = s3ClientFactory;
+        this.jobContext = jobContext;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Iterator<InventoryManifest.Locator> call(Iterator<InventoryReportLineBlock> inventoryReport)
+            throws IOException {
+        // The blocks are never empty, so an empty iterator means the partition has no line left after filtering
+        if (!inventoryReport.hasNext()){
+            return Collections.emptyIterator();
+        }
+        InventoryJobContext inventoryJobContext = jobContext.getValue();
+        InventoryReportLineWriter scvWriter =
+                new InventoryReportLineWriter(s3ClientFactory.getValue().get(), inventoryJobContext);
+        if (metrics != null) {
+            scvWriter.setMetrics(metrics.value());
+        }
+        // A partition holding more lines than the target of the OutputFileSettings rolls over to several reports
+        return scvWriter.writeCsvBlockFiles(inventoryReport, inventoryJobContext.getOutputFileSettings()).iterator();
+    }
+}
@@ -4,33 +4,37 @@
 
 package com.aws.services.s3.inventory.rrs;
 
-import org.apache.commons.collections.IteratorUtils;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.broadcast.Broadcast;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
 
 /**
- * This WriteNewInventoryReportFunc class writes the new inventory report and sends it back to the S3 bucket.
+ * This WriteNewInventoryReportFunc class writes the new inventory reports of a partition
+ * and sends them back to the S3 bucket.
  */
 public class WriteNewInventoryReportFunc implements
         FlatMapFunction<Iterator<InventoryReportLine>, InventoryManifest.Locator> {
     private final Broadcast<CachedS3ClientFactory> s3ClientFactory;
-    private final InventoryManifest manifestStorage;
-    private final String destBucket;
-    private final String destPrefix;
-    private final String srcBucket;
+    private final Broadcast<InventoryJobContext> jobContext;
+    private final InventoryMetricsAccumulator metrics;
 
-    public WriteNewInventoryReportFunc(Broadcast<CachedS3ClientFactory> s3ClientFactory, String srcBucket,
-                                       InventoryManifest manifestStorage, String destBucket, String destPrefix) {
+    public WriteNewInventoryReportFunc(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                       Broadcast<InventoryJobContext> jobContext) {
+        this(s3ClientFactory, jobContext, null);
+    }
+
+    /**
+     * @param metrics the accumulator of the rows, bytes and times of the new reports, or null not to measure them
+     */
+    public WriteNewInventoryReportFunc(Broadcast<CachedS3ClientFactory> s3ClientFactory,
+                                       Broadcast<InventoryJobContext> jobContext,
+                                       InventoryMetricsAccumulator metrics) {
         this.s3ClientFactory = s3ClientFactory;
-        this.manifestStorage = manifestStorage;
-        this.srcBucket = srcBucket;
-        this.destBucket = destBucket;
-        this.destPrefix = destPrefix;
+        this.jobContext = jobContext;
+        this.metrics = metrics;
     }
 
     @Override
@@ -40,9 +44,13 @@ public class WriteNewInventoryReportFunc implements
         if (!inventoryReport.hasNext()){
             return Collections.emptyIterator();
         }
-        List<InventoryReportLine> inventoryReportLineList = IteratorUtils.toList(inventoryReport);
-        InventoryReportLineWriter scvWriter = new InventoryReportLineWriter(s3ClientFactory.getValue().get(),
-                destBucket, destPrefix, srcBucket, manifestStorage);
-        return Collections.singletonList(scvWriter.writeCsvFile(inventoryReportLineList)).iterator();
+        InventoryJobContext inventoryJobContext = jobContext.getValue();
+        InventoryReportLineWriter scvWriter =
+                new InventoryReportLineWriter(s3ClientFactory.getValue().get(), inventoryJobContext);
+        if (metrics != null) {
+            scvWriter.setMetrics(metrics.value());
+        }
+        // A partition holding more lines than the target of the OutputFileSettings rolls over to several reports
+        return scvWriter.writeCsvFiles(inventoryReport, inventoryJobContext.getOutputFileSettings()).iterator();
     }
 }
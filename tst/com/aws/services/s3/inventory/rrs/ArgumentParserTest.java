@@ -8,6 +8,8 @@ import org.apache.commons.cli.ParseException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -32,6 +34,178 @@ public class ArgumentParserTest {
         assertThat(result.getDestPrefix(), is("<destPathTest>"));
     }
 
+    @Test
+    public void parseTransferSettingsSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--downloadPartSize", "1048576", "--downloadConcurrency", "8", "--readAheadReports", "2"};
+        TransferSettings result = argumentParser.parseTransferSettings(args);
+        assertThat(result.getDownloadPartSize(), is(1048576L));
+        assertThat(result.getDownloadConcurrency(), is(8));
+        assertThat(result.getReadAheadReports(), is(2));
+    }
+
+    @Test
+    public void parseTransferSettingsDefault() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>"};
+        TransferSettings result = argumentParser.parseTransferSettings(args);
+        assertThat(result.getDownloadPartSize(), is(TransferSettings.DEFAULT_DOWNLOAD_PART_SIZE));
+        assertThat(result.getDownloadConcurrency(), is(TransferSettings.DEFAULT_DOWNLOAD_CONCURRENCY));
+        assertThat(result.getReadAheadReports(), is(TransferSettings.DEFAULT_READ_AHEAD_REPORTS));
+        assertThat(result.getInflateBufferSize(), is(TransferSettings.DEFAULT_INFLATE_BUFFER_SIZE));
+        assertThat(result.getCompressionLevel(), is(TransferSettings.DEFAULT_COMPRESSION_LEVEL));
+        assertThat(result.getCompressionThreads(), is(TransferSettings.DEFAULT_COMPRESSION_THREADS));
+    }
+
+    @Test
+    public void parseCompressionSettingsSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--inflateBufferSize", "262144", "--compressionLevel", "0", "--compressionThreads", "4"};
+        TransferSettings result = argumentParser.parseTransferSettings(args);
+        assertThat(result.getInflateBufferSize(), is(262144));
+        assertThat(result.getCompressionLevel(), is(0));
+        assertThat(result.getCompressionThreads(), is(4));
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseCompressionLevelTooHigh() throws Exception {
+        String[] args = {"-i", "testInput", "-o", "testOutput", "--compressionLevel", "10"};
+        argumentParser.parseTransferSettings(args);
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseTransferSettingsInvalidNumber() throws Exception {
+        String[] args = {"-i", "testInput", "-o", "testOutput", "--downloadConcurrency", "-1"};
+        argumentParser.parseTransferSettings(args);
+    }
+
+    @Test
+    public void parseFilterExpressionSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--filter", "StorageClass = 'STANDARD' AND Size > 1024"};
+        assertThat(argumentParser.parseFilterExpression(args), is("StorageClass = 'STANDARD' AND Size > 1024"));
+    }
+
+    @Test
+    public void parseFilterExpressionDefault() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>"};
+        assertThat(argumentParser.parseFilterExpression(args), is((String) null));
+    }
+
+    @Test
+    public void parseTargetPartitionBytesSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--targetPartitionBytes", "268435456"};
+        assertThat(argumentParser.parseTargetPartitionBytes(args), is(268435456L));
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseTargetPartitionBytesNotPositive() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--targetPartitionBytes", "0"};
+        argumentParser.parseTargetPartitionBytes(args);
+    }
+
+    @Test
+    public void parseOutputFileSettingsSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--targetFileRows", "1000000", "--maxFileBytes", "134217728"};
+        OutputFileSettings outputFileSettings = argumentParser.parseOutputFileSettings(args);
+        assertThat(outputFileSettings.getTargetRowsPerFile(), is(1000000L));
+        assertThat(outputFileSettings.getMaxBytesPerFile(), is(134217728L));
+    }
+
+    @Test
+    public void parseOutputFileSettingsDefault() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>"};
+        OutputFileSettings outputFileSettings = argumentParser.parseOutputFileSettings(args);
+        assertThat(outputFileSettings.getTargetRowsPerFile(), is(OutputFileSettings.UNLIMITED));
+        assertThat(outputFileSettings.getMaxBytesPerFile(), is(OutputFileSettings.UNLIMITED));
+    }
+
+    @Test
+    public void parseLocationsRepeatedInputSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest1>/<srcKeyTest1>", "-i", "s3://<srcBucketTest2>/<srcKeyTest2>",
+                "-o", "s3://<destBucketTest>/<destPathTest>", "--manifestConcurrency", "4"};
+        List<BucketKey> locations = argumentParser.parseLocations(args);
+        assertThat(locations.size(), is(2));
+        assertThat(locations.get(0).getSrcBucket(), is("<srcBucketTest1>"));
+        assertThat(locations.get(1).getSrcBucket(), is("<srcBucketTest2>"));
+        assertThat(locations.get(1).getSrcKey(), is("<srcKeyTest2>"));
+        assertThat(locations.get(1).getDestBucket(), is("<destBucketTest>"));
+        assertThat(argumentParser.parseManifestConcurrency(args), is(4));
+        assertThat(argumentParser.parseDiscoverManifests(args), is(false));
+    }
+
+    @Test
+    public void parseDiffAgainstSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest2>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--diffAgainst", "s3://<srcBucketTest>/<srcKeyTest1>"};
+        BucketKey previousLocation = argumentParser.parseDiffAgainst(args);
+        assertThat(previousLocation.getSrcKey(), is("<srcKeyTest1>"));
+        assertThat(previousLocation.getDestPrefix(), is("<destPathTest>"));
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseDiffAgainstSeveralInputs() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest2>", "-i", "s3://<srcBucketTest>/<srcKeyTest3>",
+                "-o", "s3://<destBucketTest>/<destPathTest>", "--diffAgainst", "s3://<srcBucketTest>/<srcKeyTest1>"};
+        argumentParser.parseDiffAgainst(args);
+    }
+
+    @Test
+    public void parseResumableSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--resumable"};
+        assertThat(argumentParser.parseResumable(args), is(true));
+        assertThat(argumentParser.parseResumable(new String[]{"-i", "s3://<srcBucketTest>/<srcKeyTest>",
+                "-o", "s3://<destBucketTest>/<destPathTest>"}), is(false));
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseResumableWithDiff() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest2>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--diffAgainst", "s3://<srcBucketTest>/<srcKeyTest1>", "--resumable"};
+        argumentParser.parseResumable(args);
+    }
+
+    @Test
+    public void parseLocalThreadsSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--local", "--localThreads", "6"};
+        assertThat(argumentParser.parseLocalThreads(args), is(6));
+        assertThat(argumentParser.parseLocalThreads(new String[]{"-i", "s3://<srcBucketTest>/<srcKeyTest>",
+                "-o", "s3://<destBucketTest>/<destPathTest>", "--local"}),
+                is(Runtime.getRuntime().availableProcessors()));
+        assertThat(argumentParser.parseLocalThreads(new String[]{"-i", "s3://<srcBucketTest>/<srcKeyTest>",
+                "-o", "s3://<destBucketTest>/<destPathTest>"}), is(0));
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseLocalThreadsWithoutLocal() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--localThreads", "6"};
+        argumentParser.parseLocalThreads(args);
+    }
+
+    @Test
+    public void parseS3ClientSettingsSuccess() throws Exception {
+        String[] args = {"-i", "s3://<srcBucketTest>/<srcKeyTest>", "-o", "s3://<destBucketTest>/<destPathTest>",
+                "--maxConnections", "256", "--socketTimeout", "120000", "--maxErrorRetry", "0",
+                "--s3Endpoint", "http://localhost:9000"};
+        S3ClientSettings result = argumentParser.parseS3ClientSettings(args);
+        assertThat(result.getMaxConnections(), is(256));
+        assertThat(result.getSocketTimeout(), is(120000));
+        assertThat(result.getMaxErrorRetry(), is(0));
+        assertThat(result.getEndpoint(), is("http://localhost:9000"));
+        assertThat(result.getConnectionTimeout(), is(S3ClientSettings.DEFAULT_CONNECTION_TIMEOUT));
+    }
+
+    @Test (expected = ParseException.class)
+    public void parseS3ClientSettingsInvalidNumber() throws Exception {
+        String[] args = {"-i", "testInput", "-o", "testOutput", "--maxConnections", "0"};
+        argumentParser.parseS3ClientSettings(args);
+    }
+
     @Test (expected = ParseException.class)
     public void parseArgumentUnrecognizedOption() throws Exception{
         String[] args = {"-i", "testInput", "-x", "testOutput"};
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test on handing the elements of a stage to the next one through a bounded queue
+ */
+public class BoundedStageQueueTest {
+
+    @Test
+    public void severalProducersAndConsumersSuccess() throws Exception {
+        BoundedStageQueue<Integer> queue = new BoundedStageQueue<>(2, 3);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            for (int producer = 0; producer < 3; producer++) {
+                final int first = producer * 100;
+                executor.submit(() -> {
+                    try {
+                        for (int i = first; i < first + 100; i++) {
+                            queue.put(i);
+                        }
+                    } finally {
+                        queue.producerDone();
+                    }
+                    return null;
+                });
+            }
+            List<Future<List<Integer>>> consumed = new ArrayList<>();
+            for (int consumer = 0; consumer < 2; consumer++) {
+                consumed.add(executor.submit(() -> {
+                    List<Integer> elements = new ArrayList<>();
+                    queue.consumer().forEachRemaining(elements::add);
+                    return elements;
+                }));
+            }
+
+            List<Integer> elements = new ArrayList<>();
+            for (Future<List<Integer>> consumer : consumed) {
+                elements.addAll(consumer.get(10, TimeUnit.SECONDS));
+            }
+            Collections.sort(elements);
+            assertThat(elements.size(), is(300));
+            for (int i = 0; i < elements.size(); i++) {
+                assertThat(elements.get(i), is(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void noProducerSuccess() {
+        assertThat(new BoundedStageQueue<Integer>(1, 0).consumer().hasNext(), is(false));
+    }
+
+    @Test
+    public void failureStopsTheConsumers() {
+        BoundedStageQueue<Integer> queue = new BoundedStageQueue<>(2, 1);
+        IOException failure = new IOException("download failed");
+        queue.fail(failure);
+
+        Iterator<Integer> consumer = queue.consumer();
+        try {
+            consumer.hasNext();
+            fail("The consumer should stop when a producer fails");
+        } catch (PipelineStageException e) {
+            assertThat(e.getCause(), is((Throwable) failure));
+        }
+        assertThat(queue.getFailure(), is((Throwable) failure));
+    }
+
+    @Test
+    public void closeReleasesTheBlockedProducer() throws Exception {
+        BoundedStageQueue<Integer> queue = new BoundedStageQueue<>(1, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The second element waits for room, since no consumer reads the queue
+            Future<?> producer = executor.submit(() -> {
+                queue.put(1);
+                queue.put(2);
+                return null;
+            });
+            Thread.sleep(200);
+            assertThat(producer.isDone(), is(false));
+
+            queue.close();
+            try {
+                producer.get(10, TimeUnit.SECONDS);
+                fail("The producer should stop when the queue is closed");
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(PipelineStageException.class));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void queueInvalidCapacity() {
+        new BoundedStageQueue<Integer>(0, 1);
+    }
+}
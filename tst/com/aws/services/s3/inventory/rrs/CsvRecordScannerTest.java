@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on splitting the CSV content of an inventory report into records and matching their raw fields.
+ */
+public class CsvRecordScannerTest {
+    private static final byte[] REDUCED_REDUNDANCY = "REDUCED_REDUNDANCY".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void scanRecordsSuccess() throws Exception {
+        String content = "\"bucket\",\"key1\",\"REDUCED_REDUNDANCY\"\n" +
+                "\"bucket\",\"key,with\"\"quotes\"\"\",\"STANDARD\"\r\n" +
+                "\n" +
+                "bucket,\"key\nwith line feed\",REDUCED_REDUNDANCY";
+        // A tiny buffer makes the records straddle refills and forces the buffer to grow
+        CsvRecordScanner scanner = scanner(content, 8);
+
+        List<String> records = new ArrayList<>();
+        List<Boolean> matches = new ArrayList<>();
+        while (scanner.nextRecord()) {
+            records.add(new String(scanner.getBuffer(), scanner.getRecordStart(),
+                    scanner.getRecordEnd() - scanner.getRecordStart(), StandardCharsets.UTF_8));
+            matches.add(scanner.fieldEquals(2, REDUCED_REDUNDANCY));
+        }
+
+        assertThat(records, contains(
+                "\"bucket\",\"key1\",\"REDUCED_REDUNDANCY\"",
+                "\"bucket\",\"key,with\"\"quotes\"\"\",\"STANDARD\"",
+                "bucket,\"key\nwith line feed\",REDUCED_REDUNDANCY"));
+        assertThat(matches, contains(true, false, true));
+    }
+
+    @Test
+    public void fieldEqualsWithEscapedQuotes() throws Exception {
+        CsvRecordScanner scanner = scanner("\"a\"\"b\",\"\",c\n", CsvRecordScanner.DEFAULT_BUFFER_SIZE);
+        assertThat(scanner.nextRecord(), is(true));
+        assertThat(scanner.fieldEquals(0, "a\"b".getBytes(StandardCharsets.UTF_8)), is(true));
+        assertThat(scanner.fieldEquals(0, "a\"".getBytes(StandardCharsets.UTF_8)), is(false));
+        assertThat(scanner.fieldEquals(1, new byte[0]), is(true));
+        assertThat(scanner.fieldEquals(2, "c".getBytes(StandardCharsets.UTF_8)), is(true));
+        assertThat(scanner.fieldEquals(3, "c".getBytes(StandardCharsets.UTF_8)), is(false));
+        assertThat(scanner.nextRecord(), is(false));
+    }
+
+    @Test
+    public void fieldAsStringSuccess() throws Exception {
+        CsvRecordScanner scanner = scanner("\"a\"\"b\",\"\u00e9t\u00e9\",,plain\n",
+                CsvRecordScanner.DEFAULT_BUFFER_SIZE);
+        assertThat(scanner.nextRecord(), is(true));
+        assertThat(scanner.fieldAsString(0), is("a\"b"));
+        assertThat(scanner.fieldAsString(1), is("\u00e9t\u00e9"));
+        assertThat(scanner.fieldAsString(2), is(""));
+        assertThat(scanner.fieldAsString(3), is("plain"));
+        assertThat(scanner.fieldAsString(4), is((String) null));
+        assertThat(scanner.isWellFormed(4), is(true));
+        assertThat(scanner.isWellFormed(3), is(false));
+        assertThat(scanner.isWellFormed(5), is(false));
+    }
+
+    @Test
+    public void isWellFormedWithStrayQuotes() throws Exception {
+        CsvRecordScanner scanner = scanner("\"a\"b,c\na\"b\",c\n\"a\",\"\"\n", CsvRecordScanner.DEFAULT_BUFFER_SIZE);
+        assertThat(scanner.nextRecord(), is(true));
+        assertThat(scanner.isWellFormed(2), is(false));
+        assertThat(scanner.nextRecord(), is(true));
+        assertThat(scanner.isWellFormed(2), is(false));
+        assertThat(scanner.nextRecord(), is(true));
+        assertThat(scanner.isWellFormed(2), is(true));
+    }
+
+    private CsvRecordScanner scanner(String content, int bufferSize) {
+        return new CsvRecordScanner(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+}
@@ -7,6 +7,7 @@ package com.aws.services.s3.inventory.rrs;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.samePropertyValuesAs;
 import static org.junit.Assert.assertThat;
 
@@ -31,4 +32,14 @@ public class CsvSchemaFactoryTest {
         // Use samePropertyValuesAs to compare the values of two CsvSchema objects
         assertThat(testCsvSchema, samePropertyValuesAs(expected));
     }
+
+    @Test
+    public void getColumnIndexSuccess() {
+        InventoryManifest testManifestStorage = new InventoryManifest();
+        testManifestStorage.setFileSchema("Bucket, Key, Size, StorageClass");
+
+        assertThat(CsvSchemaFactory.getColumnIndex(testManifestStorage, "Bucket"), is(0));
+        assertThat(CsvSchemaFactory.getColumnIndex(testManifestStorage, "storageClass"), is(3));
+        assertThat(CsvSchemaFactory.getColumnIndex(testManifestStorage, "ReplicationStatus"), is(-1));
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on compiling filter expressions and evaluating them on the raw records of an inventory report
+ */
+public class FilterExpressionParserTest {
+    private static final String REPORT =
+            "\"bucket\",\"logs/a\",\"2048\",\"STANDARD\",\"2016-12-31T10:00:00.000Z\"\n" +
+            "\"bucket\",\"data/b\",\"4096\",\"STANDARD\",\"2017-03-01T10:00:00.000Z\"\n" +
+            "\"bucket\",\"data/c\",\"12\",\"REDUCED_REDUNDANCY\",\"2016-06-01T10:00:00.000Z\"\n" +
+            "\"bucket\",\"data/it's\",\"\",\"GLACIER\",\"2017-01-01T00:00:00.000Z\"\n";
+    private InventoryManifest manifest;
+
+    @Before
+    public void setUp() {
+        manifest = new InventoryManifest();
+        manifest.setFileSchema("Bucket, Key, Size, StorageClass, LastModifiedDate");
+    }
+
+    @Test
+    public void parseComparisonsSuccess() throws Exception {
+        assertThat(matchingKeys("StorageClass = 'STANDARD'"), contains("logs/a", "data/b"));
+        assertThat(matchingKeys("storageclass <> 'STANDARD'"), contains("data/c", "data/it's"));
+        assertThat(matchingKeys("Size > 1024"), contains("logs/a", "data/b"));
+        assertThat(matchingKeys("Size <= 2048"), contains("logs/a", "data/c"));
+        assertThat(matchingKeys("LastModifiedDate < '2017-01-01'"), contains("logs/a", "data/c"));
+        assertThat(matchingKeys("Key STARTS_WITH 'data/'"), contains("data/b", "data/c", "data/it's"));
+        assertThat(matchingKeys("Key = 'data/it''s'"), contains("data/it's"));
+    }
+
+    @Test
+    public void parseBooleanOperatorsSuccess() throws Exception {
+        assertThat(matchingKeys("StorageClass = 'STANDARD' AND NOT Key starts_with 'logs/'"),
+                contains("data/b"));
+        assertThat(matchingKeys("StorageClass = 'GLACIER' OR Size < 100 AND Key STARTS_WITH 'data/'"),
+                contains("data/c", "data/it's"));
+        assertThat(matchingKeys("(StorageClass = 'GLACIER' OR Size < 100) AND NOT (Size >= 10)"),
+                contains("data/it's"));
+    }
+
+    @Test (expected = InvalidFilterExpressionException.class)
+    public void parseUnknownColumn() {
+        FilterExpressionParser.parse("ReplicationStatus = 'COMPLETED'", manifest);
+    }
+
+    @Test (expected = InvalidFilterExpressionException.class)
+    public void parseMissingParenthesis() {
+        FilterExpressionParser.parse("(Size > 10 AND Key STARTS_WITH 'a'", manifest);
+    }
+
+    @Test (expected = InvalidFilterExpressionException.class)
+    public void parseUnterminatedLiteral() {
+        FilterExpressionParser.parse("StorageClass = 'STANDARD", manifest);
+    }
+
+    @Test (expected = InvalidFilterExpressionException.class)
+    public void parseTrailingTokens() {
+        FilterExpressionParser.parse("Size > 10 Size", manifest);
+    }
+
+    private List<String> matchingKeys(String expression) throws Exception {
+        RawRecordPredicate predicate = FilterExpressionParser.parse(expression, manifest);
+        CsvRecordScanner scanner = new CsvRecordScanner(
+                new ByteArrayInputStream(REPORT.getBytes(StandardCharsets.UTF_8)));
+        List<String> keys = new ArrayList<>();
+        while (scanner.nextRecord()) {
+            if (predicate.test(scanner)) {
+                byte[] buffer = scanner.getBuffer();
+                String record = new String(buffer, scanner.getRecordStart(),
+                        scanner.getRecordEnd() - scanner.getRecordStart(), StandardCharsets.UTF_8);
+                keys.add(record.split("\",\"")[1]);
+            }
+        }
+        return keys;
+    }
+}
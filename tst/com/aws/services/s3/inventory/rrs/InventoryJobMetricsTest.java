@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.spark.util.AccumulatorV2;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Testing on the counters and the latency histograms of a job, and on gathering them in an accumulator
+ */
+public class InventoryJobMetricsTest {
+    @Test
+    public void histogramPercentilesSuccess() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(50000000);
+        }
+
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getTotalNanos(), is(90L * 100000 + 10L * 50000000));
+        assertThat(histogram.getMaxNanos(), is(50000000L));
+        // 100 microseconds fall in the bucket from 64 to 127 microseconds
+        assertThat(histogram.getPercentileMicros(50), is(127L));
+        assertThat(histogram.getPercentileMicros(90), is(127L));
+        // The upper bound of the bucket is capped by the longest duration
+        assertThat(histogram.getPercentileMicros(99), is(50000L));
+        assertThat(histogram.getPercentileMicros(100), is(50000L));
+    }
+
+    @Test
+    public void histogramEmptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getPercentileMicros(99), is(0L));
+        assertThat(histogram.toSummary().get("meanMillis"), is(0.0));
+
+        histogram.record(-5);
+        assertThat(histogram.getCount(), is(1L));
+        assertThat(histogram.getTotalNanos(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogramInvalidPercentile() {
+        new LatencyHistogram().getPercentileMicros(101);
+    }
+
+    @Test
+    public void mergeAndResetSuccess() {
+        InventoryJobMetrics metrics = new InventoryJobMetrics();
+        metrics.add(InventoryJobMetrics.Counter.ROWS_READ, 5);
+        metrics.record(InventoryJobMetrics.Stage.PARSE, 1000);
+        InventoryJobMetrics other = new InventoryJobMetrics();
+        other.add(InventoryJobMetrics.Counter.ROWS_READ, 7);
+        other.add(InventoryJobMetrics.Counter.ROWS_KEPT, 2);
+        other.record(InventoryJobMetrics.Stage.PARSE, 3000);
+
+        metrics.merge(other);
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_READ), is(12L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_KEPT), is(2L));
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.PARSE).getCount(), is(2L));
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.PARSE).getTotalNanos(), is(4000L));
+        assertThat(metrics.isEmpty(), is(false));
+
+        metrics.reset();
+        assertThat(metrics.isEmpty(), is(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void summarySuccess() {
+        InventoryJobMetrics metrics = new InventoryJobMetrics();
+        metrics.add(InventoryJobMetrics.Counter.ROWS_READ, 10);
+        metrics.add(InventoryJobMetrics.Counter.ROWS_KEPT, 4);
+
+        Map<String, Object> summary = metrics.toSummary();
+        Map<String, Object> counters = (Map<String, Object>) summary.get("counters");
+        Map<String, Object> stages = (Map<String, Object>) summary.get("stages");
+        assertThat(counters.get("rowsRead"), is(10L));
+        assertThat(counters.get("bytesDownloaded"), is(0L));
+        assertThat(counters.get("rowsFilteredOut"), is(6L));
+        assertThat(stages.keySet().iterator().next(), is("download"));
+        assertThat(stages.size(), is(InventoryJobMetrics.Stage.values().length));
+    }
+
+    @Test
+    public void accumulatorSuccess() {
+        InventoryMetricsAccumulator accumulator = new InventoryMetricsAccumulator();
+        assertThat(accumulator.isZero(), is(true));
+
+        AccumulatorV2<InventoryJobMetrics, InventoryJobMetrics> task = accumulator.copyAndReset();
+        task.value().add(InventoryJobMetrics.Counter.REPORTS_READ, 1);
+        task.value().record(InventoryJobMetrics.Stage.DOWNLOAD, 2000);
+        assertThat(accumulator.isZero(), is(true));
+
+        accumulator.merge(task);
+        accumulator.merge(task.copy());
+        assertThat(accumulator.value().get(InventoryJobMetrics.Counter.REPORTS_READ), is(2L));
+        assertThat(accumulator.value().getHistogram(InventoryJobMetrics.Stage.DOWNLOAD).getCount(), is(2L));
+        assertThat(task.value().get(InventoryJobMetrics.Counter.REPORTS_READ), is(1L));
+    }
+}
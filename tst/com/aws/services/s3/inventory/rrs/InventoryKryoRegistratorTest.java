@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.JavaSerializer;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.serializer.SerializationStream;
+import org.apache.spark.serializer.SerializerInstance;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.collection.Iterator;
+import scala.reflect.ClassTag$;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on serializing the classes of the pipeline with the Kryo registrator,
+ * compared with the Java serialization they used before
+ */
+public class InventoryKryoRegistratorTest {
+    private static final Logger LOG = LoggerFactory.getLogger(InventoryKryoRegistratorTest.class);
+    private static final int LOCATORS = 5000;
+    private static final int LINES = 5000;
+    private static final int ROUNDS = 20;
+
+    private SerializerInstance kryo;
+    private SerializerInstance java;
+
+    @Before
+    public void setUp() {
+        SparkConf conf = new SparkConf()
+                .set("spark.kryo.registrator", InventoryKryoRegistrator.class.getName())
+                .set("spark.kryo.registrationRequired", "true");
+        kryo = new KryoSerializer(conf).newInstance();
+        java = new JavaSerializer(conf).newInstance();
+    }
+
+    @Test
+    public void serializeManifestSuccess() {
+        InventoryManifest manifest = buildManifest();
+
+        ByteBuffer kryoBytes = serialize(kryo, manifest);
+        ByteBuffer javaBytes = serialize(java, manifest);
+        long kryoNanos = timeDeserialize(kryo, kryoBytes);
+        long javaNanos = timeDeserialize(java, javaBytes);
+        LOG.info("Manifest with {} locators: Java {} bytes, {} us to deserialize; Kryo {} bytes, {} us to deserialize",
+                LOCATORS, javaBytes.remaining(), javaNanos / 1000, kryoBytes.remaining(), kryoNanos / 1000);
+
+        assertThat(kryoBytes.remaining(), lessThan(javaBytes.remaining() / 2));
+        assertThat(deserialize(kryo, kryoBytes), is((Object) manifest));
+    }
+
+    @Test
+    public void serializeInventoryReportLineSuccess() {
+        InventoryReportLine line = buildLine(1);
+        line.setReplicationStatus("NOT_A_KNOWN_STATUS");
+
+        ByteBuffer kryoBytes = serialize(kryo, line);
+        ByteBuffer javaBytes = serialize(java, line);
+        LOG.info("InventoryReportLine: Java {} bytes, Kryo {} bytes", javaBytes.remaining(), kryoBytes.remaining());
+
+        assertThat(kryoBytes.remaining(), lessThan(javaBytes.remaining() / 3));
+        assertThat(deserialize(kryo, kryoBytes), is((Object) line));
+    }
+
+    @Test
+    public void serializeInventoryReportLineStreamSuccess() {
+        List<InventoryReportLine> lines = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add(buildLine(i));
+        }
+
+        // Each line is a record of a stream, as when Spark caches or shuffles a partition
+        byte[] kryoBytes = serializeStream(kryo, lines);
+        byte[] javaBytes = serializeStream(java, lines);
+        long kryoNanos = timeDeserializeStream(kryo, kryoBytes);
+        long javaNanos = timeDeserializeStream(java, javaBytes);
+        LOG.info("{} InventoryReportLines: Java {} bytes, {} us to deserialize; Kryo {} bytes, {} us to deserialize",
+                LINES, javaBytes.length, javaNanos / 1000, kryoBytes.length, kryoNanos / 1000);
+
+        assertThat(kryoBytes.length, lessThan(javaBytes.length));
+        assertThat(deserializeStream(kryo, kryoBytes), is(lines));
+    }
+
+    @Test
+    public void serializeClientFactorySuccess() {
+        assertThat(deserialize(kryo, serialize(kryo, new CachedS3ClientFactory())),
+                instanceOf(CachedS3ClientFactory.class));
+    }
+
+    @Test
+    public void serializeClientFactorySettingsSuccess() {
+        S3ClientSettings settings = new S3ClientSettings();
+        settings.setMaxConnections(200);
+        settings.setEndpoint("http://localhost:9000");
+        CachedS3ClientFactory factory = (CachedS3ClientFactory) deserialize(kryo,
+                serialize(kryo, new CachedS3ClientFactory(settings)));
+        assertThat(factory.getSettings().getMaxConnections(), is(200));
+        assertThat(factory.getSettings().getEndpoint(), is("http://localhost:9000"));
+    }
+
+    @Test
+    public void serializeJobContextSuccess() throws Exception {
+        InventoryManifest manifest = buildManifest();
+        InventoryJobContext jobContext = new InventoryJobContext(manifest, "srcBucket", "destBucket", "destPrefix",
+                new TransferSettings(), ReducedRedundancyStorageClassFilter.toRawRecordPredicate(manifest));
+
+        // The context does not hold the locators, so it stays small however many reports the manifest lists
+        ByteBuffer kryoBytes = serialize(kryo, jobContext);
+        assertThat(kryoBytes.remaining(), lessThan(serialize(kryo, manifest).remaining() / 10));
+
+        InventoryJobContext copy = (InventoryJobContext) deserialize(kryo, kryoBytes);
+        assertThat(copy.getSourceBucket(), is("example-source-bucket"));
+        assertThat(copy.getDestPrefix(), is("destPrefix"));
+        List<InventoryReportLine> lines = copy.getMapper()
+                .mapInventoryReportLines(Collections.singletonList("b,k,1,2017-08-04T12:00:00.000Z,GLACIER")
+                        .iterator()).readAll();
+        assertThat(lines.get(0).getStorageClass(), is("GLACIER"));
+    }
+
+    /**
+     * Build a line as the mapper and the interner do: only Bucket, StorageClass and ReplicationStatus
+     * share their instances between lines
+     */
+    private InventoryReportLine buildLine(int index) {
+        InventoryReportLine line = new InventoryReportLine();
+        line.setBucket("example-bucket");
+        line.setKey("photos/2017/08/" + index + ".jpg");
+        line.setIsLatest(new String("true"));
+        line.setSize(Integer.toString(1024 + index));
+        line.setLastModifiedDate(String.format("2017-08-04T12:%02d:%02d.000Z", index / 60 % 60, index % 60));
+        line.seteTag(String.format("%032x", index * 1000003L));
+        line.setStorageClass("REDUCED_REDUNDANCY");
+        line.setReplicationStatus("COMPLETED");
+        return line;
+    }
+
+    private InventoryManifest buildManifest() {
+        InventoryManifest manifest = new InventoryManifest();
+        manifest.setSourceBucket("example-source-bucket");
+        manifest.setDestinationBucket("arn:aws:s3:::example-inventory-bucket");
+        manifest.setVersion("2016-11-30");
+        manifest.setFileFormat("CSV");
+        manifest.setFileSchema("Bucket, Key, Size, LastModifiedDate, StorageClass");
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        for (int i = 0; i < LOCATORS; i++) {
+            InventoryManifest.Locator locator = new InventoryManifest.Locator();
+            locator.setKey("example-source-bucket/daily-inventory/data/" +
+                    String.format("%08x-4b1c-4d2a-9f4e-3c2d1e0f%04x", i * 7919, i) + ".csv.gz");
+            locator.setSize(1000000L + i);
+            locator.setMD5checksum(String.format("%032x", i * 1000003L));
+            locators.add(locator);
+        }
+        // A checksum which is not lowercase hex is kept as a String
+        locators.get(0).setMD5checksum("NOT-A-HEX-CHECKSUM");
+        manifest.setLocators(locators);
+        return manifest;
+    }
+
+    private static ByteBuffer serialize(SerializerInstance serializer, Object value) {
+        return serializer.serialize(value, ClassTag$.MODULE$.apply(Object.class));
+    }
+
+    private static Object deserialize(SerializerInstance serializer, ByteBuffer bytes) {
+        return serializer.deserialize(bytes.duplicate(), ClassTag$.MODULE$.apply(Object.class));
+    }
+
+    private static byte[] serializeStream(SerializerInstance serializer, List<?> records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SerializationStream stream = serializer.serializeStream(out);
+        for (Object record : records) {
+            stream.writeObject(record, ClassTag$.MODULE$.apply(Object.class));
+        }
+        stream.close();
+        return out.toByteArray();
+    }
+
+    private static List<Object> deserializeStream(SerializerInstance serializer, byte[] bytes) {
+        List<Object> records = new ArrayList<>();
+        Iterator<Object> iterator = serializer.deserializeStream(new ByteArrayInputStream(bytes)).asIterator();
+        while (iterator.hasNext()) {
+            records.add(iterator.next());
+        }
+        return records;
+    }
+
+    /**
+     * @return the average time in nanoseconds to deserialize the records of a stream, after a few warm-up rounds
+     */
+    private static long timeDeserializeStream(SerializerInstance serializer, byte[] bytes) {
+        for (int i = 0; i < ROUNDS; i++) {
+            deserializeStream(serializer, bytes);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            deserializeStream(serializer, bytes);
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    /**
+     * @return the average time in nanoseconds to deserialize the bytes, after a few warm-up rounds
+     */
+    private static long timeDeserialize(SerializerInstance serializer, ByteBuffer bytes) {
+        for (int i = 0; i < ROUNDS; i++) {
+            deserialize(serializer, bytes);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            deserialize(serializer, bytes);
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+}
@@ -23,7 +23,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -70,17 +72,20 @@ public class InventoryManifestRetrieverTest {
         when(mockS3ChecksumObject.getObjectContent()).thenReturn(new S3ObjectInputStream(
                 new ByteArrayInputStream(expectedChecksumBytes), null));
 
-        when(mockS3Client.getObject(getObjectRequestCaptor.capture()))
-                .thenReturn(mockS3JsonObject)
-                .thenReturn(mockS3ChecksumObject);
+        stubManifestObjects();
         InventoryManifest result = retriever.getInventoryManifest();
         assertThat(result, is(expectedManifest));
 
+        // Both files are requested concurrently, in any order
         List<GetObjectRequest> request = getObjectRequestCaptor.getAllValues();
-        assertThat(request.get(0).getBucketName(), is("testBucketName"));
-        assertThat(request.get(0).getKey(), is("testBucketKey/manifest.json"));
-        assertThat(request.get(1).getBucketName(), is("testBucketName"));
-        assertThat(request.get(1).getKey(), is("testBucketKey/manifest.checksum"));
+        assertThat(request.size(), is(2));
+        Set<String> requestedKeys = new HashSet<>();
+        for (GetObjectRequest eachRequest : request) {
+            assertThat(eachRequest.getBucketName(), is("testBucketName"));
+            requestedKeys.add(eachRequest.getKey());
+        }
+        assertThat(requestedKeys, is(new HashSet<>(Arrays.asList(
+                "testBucketKey/manifest.json", "testBucketKey/manifest.checksum"))));
     }
 
     @Test (expected = ChecksumMismatchException.class)
@@ -96,12 +101,32 @@ public class InventoryManifestRetrieverTest {
         byte[] expectedChecksumBytes = expectedChecksum.getBytes(StandardCharsets.UTF_8);
         when(mockS3ChecksumObject.getObjectContent()).thenReturn(new S3ObjectInputStream(
                 new ByteArrayInputStream(expectedChecksumBytes), null));
-        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).
-                thenReturn(mockS3JsonObject)
-                .thenReturn(mockS3ChecksumObject);
+        stubManifestObjects();
         retriever.getInventoryManifest();
     }
 
+    @Test (expected = ChecksumMismatchException.class)
+    public void getInventoryManifestCorruptedJson() throws Exception {
+        byte[] corruptedManifestBytes = "{\"sourceBucket\" : ".getBytes(StandardCharsets.UTF_8);
+        when(mockS3JsonObject.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream(corruptedManifestBytes), null));
+        when(mockS3ChecksumObject.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream("a6121a6a788be627a68d7e9def9f6968".getBytes(StandardCharsets.UTF_8)), null));
+        stubManifestObjects();
+        retriever.getInventoryManifest();
+    }
+
+    /**
+     * Return manifest.json or manifest.checksum according to the requested key,
+     * since the retriever requests them from different threads
+     */
+    private void stubManifestObjects() {
+        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            return request.getKey().endsWith("manifest.json") ? mockS3JsonObject : mockS3ChecksumObject;
+        });
+    }
+
     /**
      * Build a sample InventoryManifest object for testing purpose
      */
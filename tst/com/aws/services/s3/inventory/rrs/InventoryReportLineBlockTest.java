@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on holding the lines of an inventory report in a compact InventoryReportLineBlock
+ */
+public class InventoryReportLineBlockTest {
+    private static final String[] COLUMN_NAMES = {"Bucket", "Key", "IsLatest", "Size", "LastModifiedDate",
+            "StorageClass", "ReplicationStatus"};
+    private static final String REPORT =
+            "\"bucket\",\"a \"\"quoted\"\" key\",\"true\",\"2048\",\"2017-08-04T12:00:00.000Z\",\"STANDARD\",\"\"\n" +
+            "\"bucket\",\"b\",\"false\",\"12\",\"1969-12-31T23:59:59.999Z\",\"REDUCED_REDUNDANCY\",\"COMPLETED\"\n" +
+            "\"bucket\",\"c\",\"\",\"\",\"\",\"DEEP_ARCHIVE\",\"FAILED\"\n";
+    private InventoryReportLineBlock block;
+
+    @Before
+    public void setUp() throws Exception {
+        block = new InventoryReportLineBlock(COLUMN_NAMES);
+        CsvRecordScanner scanner = new CsvRecordScanner(
+                new ByteArrayInputStream(REPORT.getBytes(StandardCharsets.UTF_8)), 16);
+        while (scanner.nextRecord()) {
+            block.appendRecord(scanner);
+        }
+        block.trimToSize();
+    }
+
+    @Test
+    public void typedColumnsSuccess() {
+        assertThat(block.getRowCount(), is(3));
+        assertThat(block.getColumn("key").getString(0), is("a \"quoted\" key"));
+        assertThat(((BooleanColumn) block.getColumn("IsLatest")).getBoolean(0), is(true));
+        assertThat(((BooleanColumn) block.getColumn("IsLatest")).getBoolean(1), is(false));
+        assertThat(block.getColumn("IsLatest").isMissing(2), is(true));
+        assertThat(((LongColumn) block.getColumn("Size")).getLong(0), is(2048L));
+        assertThat(block.getColumn("Size").getString(2), is(nullValue()));
+        assertThat(((TimestampColumn) block.getColumn("LastModifiedDate")).getEpochMillis(0), is(1501848000000L));
+        assertThat(((TimestampColumn) block.getColumn("LastModifiedDate")).getEpochMillis(1), is(-1L));
+        assertThat(((DictionaryColumn) block.getColumn("StorageClass")).getCode(1),
+                is(DictionaryColumn.STORAGE_CLASSES.indexOf("REDUCED_REDUNDANCY")));
+        assertThat(block.getColumn("StorageClass").getString(2), is("DEEP_ARCHIVE"));
+        assertThat(block.getColumn("ReplicationStatus").isMissing(0), is(true));
+        assertThat(block.getColumn("VersionId"), is(nullValue()));
+    }
+
+    @Test
+    public void writeCsvSuccess() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        block.writeCsv(out);
+        String expected = REPORT.replace("\"\"\n", "\n").replace(",\"\"", ",");
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(expected));
+    }
+
+    @Test
+    public void readUntrimmedBlockSuccess() throws Exception {
+        // 100 rows, none of them missing a field, so the bitmaps of the missing fields never grow
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            report.append(REPORT.split("\n")[1]).append('\n');
+        }
+        InventoryReportLineBlock untrimmed = new InventoryReportLineBlock(COLUMN_NAMES);
+        CsvRecordScanner scanner = new CsvRecordScanner(
+                new ByteArrayInputStream(report.toString().getBytes(StandardCharsets.UTF_8)));
+        while (scanner.nextRecord()) {
+            untrimmed.appendRecord(scanner);
+        }
+
+        assertThat(untrimmed.getColumn("ReplicationStatus").getString(99), is("COMPLETED"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        untrimmed.writeCsv(out);
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(report.toString()));
+        assertThat(untrimmed.filter(new ReducedRedundancyStorageClassFilter()).getRowCount(), is(100));
+    }
+
+    @Test
+    public void filterSuccess() throws Exception {
+        InventoryReportLineBlock filtered = block.filter(new ReducedRedundancyStorageClassFilter());
+        assertThat(filtered.getRowCount(), is(1));
+        assertThat(filtered.getColumn("Key").getString(0), is("b"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filtered.writeCsv(out);
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(REPORT.split("\n")[1] + "\n"));
+    }
+
+    @Test
+    public void parseTimestampOfAnotherFormat() {
+        byte[] timestamp = "2017-08-04T12:00:00Z".getBytes(StandardCharsets.US_ASCII);
+        assertThat(TimestampColumn.parseTimestamp(timestamp, timestamp.length), is(TimestampColumn.NOT_A_TIMESTAMP));
+        byte[] invalidDate = "2017-02-29T12:00:00.000Z".getBytes(StandardCharsets.US_ASCII);
+        assertThat(TimestampColumn.parseTimestamp(invalidDate, invalidDate.length),
+                is(TimestampColumn.NOT_A_TIMESTAMP));
+    }
+
+    @Test
+    public void writeCsvKeepsTimestampsOfAnotherFormat() throws Exception {
+        String report = "\"2017-08-04T12:00:00.000Z\"\n\"2017-08-04T12:00:00Z\"\n\"2017-04-31T00:00:00.000Z\"\n" +
+                "\"\"\n\"2017-08-04T12:00:00.123456Z\"\n";
+        InventoryReportLineBlock dates = new InventoryReportLineBlock(new String[] {"LastModifiedDate"});
+        CsvRecordScanner scanner = new CsvRecordScanner(
+                new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)));
+        while (scanner.nextRecord()) {
+            dates.appendRecord(scanner);
+        }
+        dates.trimToSize();
+
+        TimestampColumn column = (TimestampColumn) dates.getColumn("LastModifiedDate");
+        assertThat(column.isRaw(0), is(false));
+        assertThat(column.isRaw(1), is(true));
+        assertThat(column.getEpochMillis(1), is(1501848000000L));
+        assertThat(column.getString(2), is("2017-04-31T00:00:00.000Z"));
+        assertThat(column.isMissing(3), is(true));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dates.writeCsv(out);
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(report.replace("\"\"\n", "\n")));
+
+        InventoryReportLineBlock selected = dates.filter((block, row) -> row > 0);
+        assertThat(selected.getColumn("LastModifiedDate").getString(0), is("2017-08-04T12:00:00Z"));
+        assertThat(selected.getColumn("LastModifiedDate").getString(3), is("2017-08-04T12:00:00.123456Z"));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void appendInvalidSize() throws Exception {
+        InventoryReportLineBlock sizes = new InventoryReportLineBlock(new String[] {"Size"});
+        CsvRecordScanner scanner = new CsvRecordScanner(
+                new ByteArrayInputStream("\"12kB\"\n".getBytes(StandardCharsets.UTF_8)));
+        scanner.nextRecord();
+        sizes.appendRecord(scanner);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on sharing the low-cardinality values of the lines of a partition
+ */
+public class InventoryReportLineInternerTest {
+    private static final int ROWS = 1000;
+
+    @Test
+    public void internLinesSuccess() throws Exception {
+        ArrayList<InventoryReportLine> parsed = parseLines();
+        ArrayList<InventoryReportLine> interned = parseLines();
+        InventoryReportLineInterner interner = new InventoryReportLineInterner();
+        for (InventoryReportLine line : interned) {
+            interner.intern(line);
+        }
+
+        assertThat(interned, is(parsed));
+        assertThat(interned.get(1).getBucket(), sameInstance(interned.get(ROWS - 1).getBucket()));
+        assertThat(interned.get(1).getStorageClass(), sameInstance(interned.get(ROWS - 1).getStorageClass()));
+
+        // The shared instances are written once, and referenced by a short handle in every other row
+        int parsedSize = SerializationUtils.serialize(parsed).length;
+        int internedSize = SerializationUtils.serialize(interned).length;
+        assertThat(internedSize, lessThan(parsedSize * 3 / 4));
+    }
+
+    @Test
+    public void serializeBlockDictionarySuccess() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            content.append("\"example-bucket\",\"").append(i % 2 == 0 ? "STANDARD" : "ONEZONE_IA").append("\"\n");
+        }
+        Iterator<InventoryReportLineBlock> blocks = new InventoryReportLineBlockIterator(new CsvRecordScanner(
+                new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8))), null,
+                new String[] {"Bucket", "StorageClass"}, ROWS);
+        InventoryReportLineBlock original = blocks.next();
+
+        byte[] serialized = SerializationUtils.serialize(original);
+        InventoryReportLineBlock copy = (InventoryReportLineBlock) SerializationUtils.deserialize(serialized);
+
+        // One byte code per row and value, the distinct values are only written once
+        assertThat(serialized.length, lessThan(ROWS * 2 + 2048));
+        assertThat(copy.getColumn("Bucket").getString(ROWS - 1), is("example-bucket"));
+        assertThat(copy.getColumn("StorageClass").getString(ROWS - 1), is("ONEZONE_IA"));
+        assertThat(((DictionaryColumn) copy.getColumn("StorageClass")).getCode("ONEZONE_IA"),
+                is(DictionaryColumn.STORAGE_CLASSES.size()));
+    }
+
+    private ArrayList<InventoryReportLine> parseLines() throws Exception {
+        InventoryManifest manifest = new InventoryManifest();
+        manifest.setFileSchema("Bucket, Key, StorageClass, ReplicationStatus");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            content.append("example-bucket,").append(i).append(",STANDARD,COMPLETED\n");
+        }
+        ArrayList<InventoryReportLine> lines = new ArrayList<>();
+        Iterator<InventoryReportLine> iterator = new InventoryReportLineMapper(manifest)
+                .mapInventoryReport(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)));
+        while (iterator.hasNext()) {
+            lines.add(iterator.next());
+        }
+        return lines;
+    }
+}
@@ -7,11 +7,15 @@ package com.aws.services.s3.inventory.rrs;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -81,6 +85,38 @@ public class InventoryReportLineMapperTest {
         assertThat(testInventoryReportLine, is(expectedInventoryReportLine));
     }
 
+    @Test
+    public void mapInventoryReportLinesSuccess() throws Exception{
+        testManifest.setFileSchema("Bucket, Key, Versionid, IsLatest, IsDeleteMaker, Size, LastModifiedDate," +
+                "ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        testLines.add(testInventoryReportLine("testBucket1", "testKey1", "testVersionId1", "testIsLatest1",
+                "testIsDeleteMaker1", "testSize1", "testLastModifiedDate1", "testETag1", "testStorage1",
+                "testMultiPartUploaded1", "testReplicationStatus1"));
+        testLines.add(testInventoryReportLine("testBucket2", "\"test,Key2\"", "testVersionId2", "testIsLatest2",
+                "testIsDeleteMaker2", "testSize2", "testLastModifiedDate2", "testETag2", "testStorage2",
+                "testMultiPartUploaded2", "testReplicationStatus2"));
+
+        mapper = new InventoryReportLineMapper(testManifest);
+        testInventoryReportLine = mapper.mapInventoryReportLines(testLines.iterator()).readAll();
+
+        expectedInventoryReportLine.add(buildInventoryReport("testBucket1", "testKey1", "testVersionId1",
+                "testIsLatest1", "testIsDeleteMaker1", "testSize1", "testLastModifiedDate1", "testETag1",
+                "testStorage1", "testMultiPartUploaded1", "testReplicationStatus1"));
+        expectedInventoryReportLine.add(buildInventoryReport("testBucket2", "test,Key2", "testVersionId2",
+                "testIsLatest2", "testIsDeleteMaker2", "testSize2", "testLastModifiedDate2", "testETag2",
+                "testStorage2", "testMultiPartUploaded2", "testReplicationStatus2"));
+        assertThat(testInventoryReportLine, is(expectedInventoryReportLine));
+    }
+
+    @Test (expected = IOException.class)
+    public void mapInventoryReportLinesSchemaMismatch() throws Exception{
+        testManifest.setFileSchema("Bucket, Key, Size");
+        testLines.add("testBucket1, testKey1, testSize1");
+        testLines.add("testBucket2, testKey2, testSize2, testStorage2");
+        mapper = new InventoryReportLineMapper(testManifest);
+        mapper.mapInventoryReportLines(testLines.iterator()).readAll();
+    }
+
     @Test (expected = IOException.class)
     public void mapInventoryReportLineSchemaMismatch() throws Exception{
         testManifest.setFileSchema("Bucket, Key, Size");
@@ -89,6 +125,50 @@ public class InventoryReportLineMapperTest {
         testInventoryReportLine = mapper.mapInventoryReportLine(testLines);
     }
 
+    @Test
+    public void mapInventoryReportLineTokenizingSuccess() throws Exception{
+        testManifest.setFileSchema("Bucket, Key, Versionid, IsLatest, IsDeleteMaker, Size, LastModifiedDate," +
+                "ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        testLines.add(testInventoryReportLine("\"testBucket1\"", "\"testKey1\"", "\"\"", "\"true\"", "\"false\"",
+                "\"1024\"", "\"2017-06-01T00:00:00.000Z\"", "\"testETag1\"", "\"REDUCED_REDUNDANCY\"", "\"false\"",
+                "\"\""));
+        testLines.add(testInventoryReportLine("testBucket2", "\"test,\"\"Key\"\"\n\u00e9\"", "", "true", "false", "0",
+                "testLastModifiedDate2", "testETag2", "STANDARD", "true", "COMPLETED"));
+        // Missing the last two columns, which only Jackson maps, into nulls
+        testLines.add("testBucket3,testKey3,,true,false,5,testLastModifiedDate3,testETag3,STANDARD");
+        String content = String.join("\n", testLines) + "\n";
+
+        InventoryReportLineMapper jacksonMapper = new InventoryReportLineMapper(
+                CsvSchemaFactory.buildSchema(testManifest), false);
+        mapper = new InventoryReportLineMapper(CsvSchemaFactory.buildSchema(testManifest), true);
+        InventoryReportLineTokenizer tokenizer = new InventoryReportLineTokenizer(mapper.getColumnNames());
+        CsvRecordScanner jacksonScanner = scanner(content);
+        CsvRecordScanner tokenizingScanner = scanner(content);
+        List<Boolean> tokenized = new ArrayList<>();
+        while (jacksonScanner.nextRecord()) {
+            assertThat(tokenizingScanner.nextRecord(), is(true));
+            tokenized.add(tokenizer.tokenize(tokenizingScanner) != null);
+            assertThat(mapper.mapInventoryReportLine(tokenizingScanner),
+                    is(jacksonMapper.mapInventoryReportLine(jacksonScanner)));
+        }
+        assertThat(tokenizingScanner.nextRecord(), is(false));
+        assertThat(tokenized, is(Arrays.asList(true, true, false)));
+
+        tokenizingScanner = scanner(content);
+        tokenizingScanner.nextRecord();
+        assertThat(mapper.mapInventoryReportLine(tokenizingScanner), is(buildInventoryReport("testBucket1",
+                "testKey1", "", "true", "false", "1024", "2017-06-01T00:00:00.000Z", "testETag1",
+                "REDUCED_REDUNDANCY", "false", "")));
+    }
+
+    @Test
+    public void tokenizeUnknownColumn() throws Exception{
+        InventoryReportLineTokenizer tokenizer = new InventoryReportLineTokenizer(new String[]{"Bucket", "Owner"});
+        CsvRecordScanner scanner = scanner("\"testBucket\",\"testOwner\"\n");
+        assertThat(scanner.nextRecord(), is(true));
+        assertThat(tokenizer.tokenize(scanner), is(nullValue()));
+    }
+
     private String testInventoryReportLine(
             String bucket, String key, String version, String isLatest, String isDeleteMaker, String size,
             String date, String eTag, String storage, String multiPartUploaded, String status) {
@@ -113,4 +193,8 @@ public class InventoryReportLineMapperTest {
         line.setReplicationStatus(replicationStatus);
         return line;
     }
+
+    private CsvRecordScanner scanner(String content) {
+        return new CsvRecordScanner(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
 }
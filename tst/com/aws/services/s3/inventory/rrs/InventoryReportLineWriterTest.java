@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -89,6 +90,183 @@ public class InventoryReportLineWriterTest {
         assertThat(testLocator, is(expectedLocator));
     }
 
+    @Test
+    public void writeBlocksToCsvSuccess() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key, Size, StorageClass");
+        String testReport = "\"testBucket1\",\"testKey1\",\"1024\",\"STANDARD\"\n" +
+                "\"testBucket2\",\"testKey2\",\"2048\",\"REDUCED_REDUNDANCY\"\n";
+        InventoryReportLineBlockIterator testBlocks = new InventoryReportLineMapper(testInventoryManifest)
+                .mapInventoryReportBlocks(new ByteArrayInputStream(testReport.getBytes()), null, 1);
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+        InventoryManifest.Locator testLocator = testCsvWriter.writeCsvBlocks(testBlocks);
+        PutObjectRequest request = putObjectRequestCaptor.getValue();
+
+        byte[] actualByteArray = IOUtils.toByteArray(request.getInputStream());
+        String actualInventoryReportString = IOUtils.toString(new GZIPInputStream(
+                new ByteArrayInputStream(actualByteArray)));
+        assertThat(actualInventoryReportString, is(testReport));
+        assertThat(testLocator.getSize(), is((long) actualByteArray.length));
+        assertThat(testLocator.getMD5checksum(), is(DigestUtils.md5Hex(actualByteArray)));
+    }
+
+    @Test
+    public void writeCsvFilesRollOverSuccess() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key, Size, StorageClass");
+        List<InventoryReportLine> testLines = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            InventoryReportLine line = new InventoryReportLine();
+            line.setBucket("testBucket");
+            line.setKey("testKey" + i);
+            line.setSize(String.valueOf(i));
+            line.setStorageClass("STANDARD");
+            testLines.add(line);
+        }
+        OutputFileSettings outputFileSettings = new OutputFileSettings();
+        outputFileSettings.setTargetRowsPerFile(2);
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        List<InventoryManifest.Locator> testLocators =
+                testCsvWriter.writeCsvFiles(testLines.iterator(), outputFileSettings);
+
+        assertThat(testLocators.size(), is(3));
+        List<String> reports = readReports(putObjectRequestCaptor.getAllValues(), testLocators);
+        assertThat(reports.get(0), is("testBucket,testKey0,0,STANDARD\ntestBucket,testKey1,1,STANDARD\n"));
+        assertThat(reports.get(1), is("testBucket,testKey2,2,STANDARD\ntestBucket,testKey3,3,STANDARD\n"));
+        assertThat(reports.get(2), is("testBucket,testKey4,4,STANDARD\n"));
+    }
+
+    @Test
+    public void writeCsvBlockFilesSplitBlockSuccess() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key");
+        String testReport = "\"testBucket\",\"testKey0\"\n\"testBucket\",\"testKey1\"\n" +
+                "\"testBucket\",\"testKey2\"\n\"testBucket\",\"testKey3\"\n\"testBucket\",\"testKey4\"\n";
+        // Blocks of 3 rows written into reports of 2 rows
+        InventoryReportLineBlockIterator testBlocks = new InventoryReportLineMapper(testInventoryManifest)
+                .mapInventoryReportBlocks(new ByteArrayInputStream(testReport.getBytes()), null, 3);
+        OutputFileSettings outputFileSettings = new OutputFileSettings();
+        outputFileSettings.setTargetRowsPerFile(2);
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        List<InventoryManifest.Locator> testLocators = testCsvWriter.writeCsvBlockFiles(testBlocks, outputFileSettings);
+
+        assertThat(testLocators.size(), is(3));
+        List<String> reports = readReports(putObjectRequestCaptor.getAllValues(), testLocators);
+        assertThat(reports.get(0), is("\"testBucket\",\"testKey0\"\n\"testBucket\",\"testKey1\"\n"));
+        assertThat(reports.get(1), is("\"testBucket\",\"testKey2\"\n\"testBucket\",\"testKey3\"\n"));
+        assertThat(reports.get(2), is("\"testBucket\",\"testKey4\"\n"));
+    }
+
+    @Test
+    public void writeCsvFilesWithoutLimitSuccess() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key, Versionid, IsLatest, " +
+                "IsDeleteMaker, Size, LastModifiedDate, ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        List<InventoryManifest.Locator> testLocators = testCsvWriter.writeCsvFiles(
+                buildInventoryReportStorgaeList().iterator(), new OutputFileSettings());
+
+        assertThat(testLocators.size(), is(1));
+        assertThat(testCsvWriter.writeCsvFiles(new ArrayList<InventoryReportLine>().iterator(),
+                new OutputFileSettings()).size(), is(0));
+    }
+
+    @Test
+    public void writeCsvFilesNamedSuccess() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key, Versionid, IsLatest, " +
+                "IsDeleteMaker, Size, LastModifiedDate, ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        OutputFileSettings outputFileSettings = new OutputFileSettings();
+        outputFileSettings.setTargetRowsPerFile(1);
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        // Writing the same lines again, as a retried task does, overwrites the same reports
+        List<InventoryManifest.Locator> testLocators = testCsvWriter.writeCsvFiles(
+                buildInventoryReportStorgaeList().iterator(), outputFileSettings, "inputMD5-run");
+        List<InventoryManifest.Locator> retriedLocators = new InventoryReportLineWriter(mockS3Client,
+                "testDestBucketName", "testDestPrefix", "testSrcBucket", testInventoryManifest)
+                .writeCsvFiles(buildInventoryReportStorgaeList().iterator(), outputFileSettings, "inputMD5-run");
+
+        assertThat(testLocators.size(), is(2));
+        assertThat(testLocators.get(0).getKey(), is("testDestPrefix/testSrcBucket/data/inputMD5-run-0.csv.gz"));
+        assertThat(testLocators.get(1).getKey(), is("testDestPrefix/testSrcBucket/data/inputMD5-run-1.csv.gz"));
+        assertThat(retriedLocators, is(testLocators));
+    }
+
+    @Test
+    public void writeCsvFilesParallelCompressionSuccess() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key, Versionid, IsLatest, " +
+                "IsDeleteMaker, Size, LastModifiedDate, ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        TransferSettings transferSettings = new TransferSettings();
+        transferSettings.setCompressionLevel(Deflater.BEST_COMPRESSION);
+        transferSettings.setCompressionThreads(2);
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        InventoryReportLineWriter parallelCsvWriter = new InventoryReportLineWriter(mockS3Client,
+                "testDestBucketName", "testDestPrefix", "testSrcBucket", testInventoryManifest, transferSettings);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        List<InventoryManifest.Locator> testLocators = testCsvWriter.writeCsvFiles(
+                buildInventoryReportStorgaeList().iterator(), new OutputFileSettings());
+        testLocators.addAll(parallelCsvWriter.writeCsvFiles(buildInventoryReportStorgaeList().iterator(),
+                new OutputFileSettings()));
+
+        List<String> reports = readReports(putObjectRequestCaptor.getAllValues(), testLocators);
+        assertThat(reports.size(), is(2));
+        assertThat(reports.get(1), is(reports.get(0)));
+    }
+
+    @Test
+    public void writeCsvFilesRecordsMetrics() throws IOException{
+        InventoryManifest testInventoryManifest = buildInventoryManifest("Bucket, Key, Versionid, IsLatest, " +
+                "IsDeleteMaker, Size, LastModifiedDate, ETag, StorageClass, IsMultipartUploaded, ReplicationStatus");
+        OutputFileSettings outputFileSettings = new OutputFileSettings();
+        outputFileSettings.setTargetRowsPerFile(1);
+        InventoryReportLineWriter testCsvWriter = new InventoryReportLineWriter(mockS3Client, "testDestBucketName",
+                "testDestPrefix", "testSrcBucket", testInventoryManifest);
+        InventoryJobMetrics metrics = new InventoryJobMetrics();
+        testCsvWriter.setMetrics(metrics);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        List<InventoryManifest.Locator> testLocators = testCsvWriter.writeCsvFiles(
+                buildInventoryReportStorgaeList().iterator(), outputFileSettings);
+
+        List<String> reports = readReports(putObjectRequestCaptor.getAllValues(), testLocators);
+        assertThat(metrics.get(InventoryJobMetrics.Counter.REPORTS_WRITTEN), is(2L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_WRITTEN), is(2L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.BYTES_SERIALIZED),
+                is((long) (reports.get(0).length() + reports.get(1).length())));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.BYTES_UPLOADED),
+                is(testLocators.get(0).getSize() + testLocators.get(1).getSize()));
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.SERIALIZE).getCount(), is(2L));
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.COMPRESS).getCount(), is(2L));
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.UPLOAD).getCount(), is(2L));
+    }
+
+    /**
+     * Decompress the reports sent to S3, checking that each of them matches its locator
+     */
+    private List<String> readReports(List<PutObjectRequest> requests, List<InventoryManifest.Locator> locators)
+            throws IOException {
+        assertThat(requests.size(), is(locators.size()));
+        List<String> reports = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            byte[] actualByteArray = IOUtils.toByteArray(requests.get(i).getInputStream());
+            assertThat(requests.get(i).getKey(), is(locators.get(i).getKey()));
+            assertThat(locators.get(i).getMD5checksum(), is(DigestUtils.md5Hex(actualByteArray)));
+            reports.add(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(actualByteArray))));
+        }
+        return reports;
+    }
+
     private InventoryManifest buildInventoryManifest(String testFileSchema){
         InventoryManifest testManifestStorage = new InventoryManifest();
         testManifestStorage.setSourceBucket("testSrcBucket");
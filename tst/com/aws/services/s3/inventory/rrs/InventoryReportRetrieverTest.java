@@ -8,6 +8,7 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -17,11 +18,14 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 /**
@@ -85,6 +89,156 @@ public class InventoryReportRetrieverTest {
         reportRetriever.getInventoryReportToString();
     }
 
+    @Test
+    public void getInventoryReportLinesSuccess() throws Exception {
+        String inventoryReportString = "REDUCED_REDUNDANCY,1\nSTANDARD,2\n";
+        byte[] inventoryReportBytes = inventReportBytes(inventoryReportString);
+        testLocator.setMD5checksum(DigestUtils.md5Hex(inventoryReportBytes));
+        testManifest.setFileSchema("StorageClass, Size");
+        reportRetriever = new InventoryReportRetriever(mockS3Client, testLocator, testManifest);
+
+        when(mockS3Object.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream(inventoryReportBytes), null));
+        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).thenReturn(mockS3Object);
+
+        List<InventoryReportLine> result = new ArrayList<>();
+        reportRetriever.getInventoryReportLines().forEachRemaining(result::add);
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).getStorageClass(), is("REDUCED_REDUNDANCY"));
+        assertThat(result.get(0).getSize(), is("1"));
+        assertThat(result.get(1).getStorageClass(), is("STANDARD"));
+        assertThat(result.get(1).getSize(), is("2"));
+
+        GetObjectRequest request = getObjectRequestCaptor.getValue();
+        assertThat(request.getBucketName(), is("testBucket"));
+        assertThat(request.getKey(), is("testInventReportKey"));
+    }
+
+    @Test
+    public void getInventoryReportLinesWithPushdownSuccess() throws Exception {
+        String inventoryReportString = "\"testBucket\",\"testKey1\",\"REDUCED_REDUNDANCY\"\n" +
+                "\"testBucket\",\"testKey2\",\"STANDARD\"\n" +
+                "\"testBucket\",\"testKey3\",\"REDUCED_REDUNDANCY\"\n";
+        byte[] inventoryReportBytes = inventReportBytes(inventoryReportString);
+        testLocator.setMD5checksum(DigestUtils.md5Hex(inventoryReportBytes));
+        testManifest.setFileSchema("Bucket, Key, StorageClass");
+        reportRetriever = new InventoryReportRetriever(mockS3Client, testLocator, testManifest);
+
+        when(mockS3Object.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream(inventoryReportBytes), null));
+        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).thenReturn(mockS3Object);
+
+        List<InventoryReportLine> result = new ArrayList<>();
+        reportRetriever.getInventoryReportLines(new InventoryReportLineMapper(testManifest),
+                ReducedRedundancyStorageClassFilter.toRawRecordPredicate(testManifest))
+                .forEachRemaining(result::add);
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).getKey(), is("testKey1"));
+        assertThat(result.get(1).getKey(), is("testKey3"));
+        assertThat(result.get(1).getStorageClass(), is("REDUCED_REDUNDANCY"));
+    }
+
+    @Test (expected = ChecksumMismatchException.class)
+    public void getInventoryReportLinesMD5Mismatch() throws Exception {
+        testLocator.setMD5checksum("badChecksum");
+        testManifest.setFileSchema("StorageClass, Size");
+        reportRetriever = new InventoryReportRetriever(mockS3Client, testLocator, testManifest);
+
+        byte[] inventoryReportBytes = inventReportBytes("REDUCED_REDUNDANCY,1\n");
+        when(mockS3Object.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream(inventoryReportBytes), null));
+        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).thenReturn(mockS3Object);
+
+        InventoryReportLineIterator lines = reportRetriever.getInventoryReportLines();
+        while (lines.hasNext()) {
+            lines.next();
+        }
+    }
+
+    @Test
+    public void getInventoryReportLinesWithRangedDownloadSuccess() throws Exception {
+        StringBuilder inventoryReport = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            inventoryReport.append(i % 10 == 0 ? "REDUCED_REDUNDANCY," : "STANDARD,").append(i).append('\n');
+        }
+        byte[] inventoryReportBytes = inventReportBytes(inventoryReport.toString());
+        testLocator.setSize(inventoryReportBytes.length);
+        testLocator.setMD5checksum(DigestUtils.md5Hex(inventoryReportBytes));
+        testManifest.setFileSchema("StorageClass, Size");
+        TransferSettings transferSettings = new TransferSettings();
+        transferSettings.setDownloadPartSize(100);
+        transferSettings.setDownloadConcurrency(4);
+        reportRetriever = new InventoryReportRetriever(mockS3Client, testLocator, testManifest, transferSettings);
+
+        when(mockS3Client.getObject(any(GetObjectRequest.class))).thenAnswer(
+                invocation -> RangedObjectInputStreamTest.rangeOf(inventoryReportBytes, invocation.getArgument(0)));
+
+        List<InventoryReportLine> result = new ArrayList<>();
+        reportRetriever.getInventoryReportLines().forEachRemaining(result::add);
+        assertThat(result.size(), is(1000));
+        assertThat(result.get(10).getStorageClass(), is("REDUCED_REDUNDANCY"));
+        assertThat(result.get(999).getSize(), is("999"));
+    }
+
+    @Test
+    public void getInventoryReportLinesRecordsMetrics() throws Exception {
+        String inventoryReportString = "\"testBucket\",\"testKey1\",\"REDUCED_REDUNDANCY\"\n" +
+                "\"testBucket\",\"testKey2\",\"STANDARD\"\n" +
+                "\"testBucket\",\"testKey3\",\"REDUCED_REDUNDANCY\"\n";
+        byte[] inventoryReportBytes = inventReportBytes(inventoryReportString);
+        testLocator.setMD5checksum(DigestUtils.md5Hex(inventoryReportBytes));
+        testManifest.setFileSchema("Bucket, Key, StorageClass");
+        reportRetriever = new InventoryReportRetriever(mockS3Client, testLocator, testManifest);
+        InventoryJobMetrics metrics = new InventoryJobMetrics();
+        reportRetriever.setMetrics(metrics);
+
+        when(mockS3Object.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream(inventoryReportBytes), null));
+        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).thenReturn(mockS3Object);
+
+        List<InventoryReportLine> result = new ArrayList<>();
+        reportRetriever.getInventoryReportLines(new InventoryReportLineMapper(testManifest),
+                ReducedRedundancyStorageClassFilter.toRawRecordPredicate(testManifest))
+                .forEachRemaining(result::add);
+        assertThat(result.size(), is(2));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.REPORTS_READ), is(1L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_READ), is(3L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_KEPT), is(2L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.BYTES_DOWNLOADED), is((long) inventoryReportBytes.length));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.BYTES_DECOMPRESSED),
+                is((long) inventoryReportString.length()));
+        for (InventoryJobMetrics.Stage stage : Arrays.asList(InventoryJobMetrics.Stage.DOWNLOAD,
+                InventoryJobMetrics.Stage.CHECKSUM, InventoryJobMetrics.Stage.DECOMPRESS,
+                InventoryJobMetrics.Stage.PARSE)) {
+            assertThat(metrics.getHistogram(stage).getCount(), is(1L));
+        }
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.UPLOAD).getCount(), is(0L));
+    }
+
+    @Test
+    public void getInventoryReportBlocksRecordsMetrics() throws Exception {
+        String inventoryReportString = "REDUCED_REDUNDANCY,1\nSTANDARD,2\nSTANDARD,3\n";
+        byte[] inventoryReportBytes = inventReportBytes(inventoryReportString);
+        testLocator.setMD5checksum(DigestUtils.md5Hex(inventoryReportBytes));
+        testManifest.setFileSchema("StorageClass, Size");
+        reportRetriever = new InventoryReportRetriever(mockS3Client, testLocator, testManifest);
+        InventoryJobMetrics metrics = new InventoryJobMetrics();
+        reportRetriever.setMetrics(metrics);
+
+        when(mockS3Object.getObjectContent()).thenReturn(new S3ObjectInputStream(
+                new ByteArrayInputStream(inventoryReportBytes), null));
+        when(mockS3Client.getObject(getObjectRequestCaptor.capture())).thenReturn(mockS3Object);
+
+        try (ChecksumVerifyingIterator<InventoryReportLineBlock> blocks = reportRetriever.getInventoryReportBlocks(
+                new InventoryReportLineMapper(testManifest), null, 2)) {
+            blocks.forEachRemaining(block -> { });
+        }
+        assertThat(metrics.get(InventoryJobMetrics.Counter.REPORTS_READ), is(1L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_READ), is(3L));
+        assertThat(metrics.get(InventoryJobMetrics.Counter.ROWS_KEPT), is(3L));
+        assertThat(metrics.getHistogram(InventoryJobMetrics.Stage.PARSE).getCount(), is(1L));
+    }
+
     private InventoryManifest.Locator testLocator() {
         InventoryManifest.Locator testLocator = new InventoryManifest.Locator();
         testLocator.setKey("testInventReportKey");
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.spark.HashPartitioner;
+import org.apache.spark.broadcast.Broadcast;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test on comparing two snapshots of an inventory
+ */
+public class InventorySnapshotDiffTest {
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Test
+    public void compareSuccess() {
+        assertThat(InventorySnapshotDiff.compare(NONE, Arrays.asList("STANDARD")), is(InventoryChangeType.ADDED));
+        assertThat(InventorySnapshotDiff.compare(Arrays.asList("STANDARD"), NONE), is(InventoryChangeType.REMOVED));
+        assertThat(InventorySnapshotDiff.compare(Arrays.asList("STANDARD"), Arrays.asList("GLACIER")),
+                is(InventoryChangeType.STORAGE_CLASS_CHANGED));
+        assertThat(InventorySnapshotDiff.compare(Arrays.asList("STANDARD"), Arrays.asList("STANDARD")),
+                is(nullValue()));
+        assertThat(InventorySnapshotDiff.compare(NONE, NONE), is(nullValue()));
+    }
+
+    @Test
+    public void objectVersionKeySuccess() {
+        ObjectVersionKey version1 = new ObjectVersionKey("photos/a.jpg", "v1");
+        ObjectVersionKey version2 = new ObjectVersionKey("photos/a.jpg", "v2");
+
+        assertThat(version1, is(new ObjectVersionKey("photos/a.jpg", "v1")));
+        assertThat(version1, is(not(version2)));
+        // All the versions of a key are joined in the same partition
+        assertThat(version1.hashCode(), is(version2.hashCode()));
+        assertThat(new ObjectVersionKey("photos/a.jpg", null), is(new ObjectVersionKey("photos/a.jpg", null)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changedVersionFilterSuccess() {
+        HashPartitioner partitioner = new HashPartitioner(2);
+        ObjectVersionBloomFilter[] filters = {
+                new ObjectVersionBloomFilter(1, ObjectVersionBloomFilter.DEFAULT_FALSE_POSITIVE_RATE),
+                new ObjectVersionBloomFilter(1, ObjectVersionBloomFilter.DEFAULT_FALSE_POSITIVE_RATE)};
+        ObjectVersionKey changed = ObjectVersionKey.of(line("changed"));
+        filters[partitioner.getPartition(changed)].add(changed);
+        Broadcast<ObjectVersionBloomFilter[]> filtersBroadcast = mock(Broadcast.class);
+        when(filtersBroadcast.getValue()).thenReturn(filters);
+
+        InventorySnapshotDiff.ChangedVersionFilter filter =
+                new InventorySnapshotDiff.ChangedVersionFilter(partitioner, filtersBroadcast);
+
+        assertThat(filter.call(line("changed")), is(true));
+        // A filter is only asked about the versions of its own partition
+        ObjectVersionBloomFilter[] swapped = {filters[1], filters[0]};
+        when(filtersBroadcast.getValue()).thenReturn(swapped);
+        assertThat(filter.call(line("changed")), is(false));
+    }
+
+    private static InventoryReportLine line(String key) {
+        InventoryReportLine line = new InventoryReportLine();
+        line.setBucket("testBucket");
+        line.setKey(key);
+        line.setStorageClass("STANDARD");
+        return line;
+    }
+}
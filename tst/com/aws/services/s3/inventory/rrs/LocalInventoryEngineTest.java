@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test on running the pipeline on a local thread pool
+ */
+public class LocalInventoryEngineTest {
+    private final Map<String, byte[]> reports = new HashMap<>();
+    private final List<String> writtenLines = Collections.synchronizedList(new ArrayList<>());
+
+    @Mock
+    private AmazonS3 mockS3Client;
+
+    @Before
+    public void init() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(mockS3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            S3Object object = new S3Object();
+            object.setObjectContent(new S3ObjectInputStream(
+                    new ByteArrayInputStream(reports.get(request.getKey())), null));
+            return object;
+        });
+        when(mockS3Client.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            String report = IOUtils.toString(new GZIPInputStream(request.getInputStream()));
+            for (String line : report.split("\n")) {
+                if (!line.isEmpty()) {
+                    writtenLines.add(line);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Test
+    public void runLinesSuccess() throws IOException {
+        runSuccess(false);
+    }
+
+    @Test
+    public void runBlocksSuccess() throws IOException {
+        runSuccess(true);
+    }
+
+    @Test (expected = ChecksumMismatchException.class)
+    public void runCorruptedReport() throws IOException {
+        InventoryManifest manifest = manifest();
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            locators.add(report("report" + i, "\"testBucket\",\"key" + i + "\",\"REDUCED_REDUNDANCY\"\n"));
+        }
+        locators.get(2).setMD5checksum("badChecksum");
+        new LocalInventoryEngine(mockS3Client, 2, 1).run(locators, jobContext(manifest), false);
+    }
+
+    private void runSuccess(boolean compactRows) throws IOException {
+        InventoryManifest manifest = manifest();
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        List<String> expectedLines = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            StringBuilder report = new StringBuilder();
+            for (int j = 0; j < 1000; j++) {
+                String storageClass = j % 3 == 0 ? "REDUCED_REDUNDANCY" : "STANDARD";
+                report.append("\"testBucket\",\"key").append(i).append('-').append(j).append("\",\"")
+                        .append(storageClass).append("\"\n");
+                if (j % 3 == 0) {
+                    expectedLines.add("testBucket,key" + i + "-" + j + ",REDUCED_REDUNDANCY");
+                }
+            }
+            locators.add(report("report" + i, report.toString()));
+        }
+
+        // A queue of a single chunk makes the readers wait for the writers
+        List<InventoryManifest.Locator> newLocators =
+                new LocalInventoryEngine(mockS3Client, 3, 1).run(locators, jobContext(manifest), compactRows);
+
+        assertThat(newLocators.size() <= 3, is(true));
+        List<String> actualLines = new ArrayList<>();
+        for (String line : writtenLines) {
+            actualLines.add(line.replace("\"", ""));
+        }
+        Collections.sort(actualLines);
+        Collections.sort(expectedLines);
+        assertThat(actualLines, is(expectedLines));
+    }
+
+    private InventoryManifest.Locator report(String key, String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(content.getBytes());
+        }
+        reports.put(key, bytes.toByteArray());
+        InventoryManifest.Locator locator = new InventoryManifest.Locator();
+        locator.setKey(key);
+        locator.setSize(bytes.size());
+        locator.setMD5checksum(DigestUtils.md5Hex(bytes.toByteArray()));
+        return locator;
+    }
+
+    private static InventoryJobContext jobContext(InventoryManifest manifest) {
+        return new InventoryJobContext(manifest, "testSrcBucket", "testDestBucket", "testDestPrefix",
+                new TransferSettings(), ReducedRedundancyStorageClassFilter.toRawRecordPredicate(manifest));
+    }
+
+    private static InventoryManifest manifest() {
+        InventoryManifest manifest = new InventoryManifest();
+        manifest.setSourceBucket("testSrcBucket");
+        manifest.setDestinationBucket("testDestBucket");
+        manifest.setVersion("testVersion");
+        manifest.setFileFormat("CSV");
+        manifest.setFileSchema("Bucket, Key, StorageClass");
+        manifest.setLocators(Collections.emptyList());
+        return manifest;
+    }
+}
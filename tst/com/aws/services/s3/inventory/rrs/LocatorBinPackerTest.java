@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on balancing the bytes of the inventory reports between the partitions
+ */
+public class LocatorBinPackerTest {
+
+    @Test
+    public void packBalancedSuccess() {
+        List<InventoryManifest.Locator> locators = buildLocators(90, 70, 60, 50, 40, 30, 30, 20, 10);
+
+        LocatorBinPacker.Partitions partitions = LocatorBinPacker.pack(locators, 100);
+
+        assertThat(partitions.size(), is(4));
+        assertThat(partitions.getSkew(), lessThan(1.2));
+        // Every locator is assigned to exactly one partition
+        List<InventoryManifest.Locator> assigned = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < partitions.size(); i++) {
+            assigned.addAll(partitions.getLocators().get(i));
+            total += partitions.getBytes(i);
+        }
+        assertThat(new HashSet<>(assigned), is(new HashSet<>(locators)));
+        assertThat(assigned.size(), is(locators.size()));
+        assertThat(total, is(400L));
+    }
+
+    @Test
+    public void packOversizedReportAloneSuccess() {
+        List<InventoryManifest.Locator> locators = buildLocators(1000, 10, 10, 10, 10);
+
+        LocatorBinPacker.Partitions partitions = LocatorBinPacker.pack(locators, 100);
+
+        assertThat(partitions.getLocators().get(0), is(locators.subList(0, 1)));
+        assertThat(partitions.getBytes(0), is(1000L));
+        assertThat(partitions.getSkewReport(), containsString("1 report(s) larger than the target"));
+    }
+
+    @Test
+    public void packOversizedReportsApartFromSmallReportsSuccess() {
+        List<InventoryManifest.Locator> locators = buildLocators(300, 200, 60, 50, 40, 30, 20);
+
+        LocatorBinPacker.Partitions partitions = LocatorBinPacker.pack(locators, 100);
+
+        assertThat(partitions.size(), is(4));
+        assertThat(partitions.getLocators().get(0), is(locators.subList(0, 1)));
+        assertThat(partitions.getLocators().get(1), is(locators.subList(1, 2)));
+        assertThat(partitions.getBytes(2) + partitions.getBytes(3), is(200L));
+        assertThat(partitions.getSkewReport(), containsString("2 report(s) larger than the target"));
+    }
+
+    @Test
+    public void packNeverMorePartitionsThanReportsSuccess() {
+        LocatorBinPacker.Partitions partitions = LocatorBinPacker.pack(buildLocators(500, 500), 1);
+
+        assertThat(partitions.size(), is(2));
+        assertThat(partitions.getSkew(), is(1.0));
+    }
+
+    @Test
+    public void packEmptyManifestSuccess() {
+        LocatorBinPacker.Partitions partitions = LocatorBinPacker.pack(new ArrayList<>(), 100);
+
+        assertThat(partitions.size(), is(0));
+        assertThat(partitions.getSkew(), is(1.0));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void packNotPositiveTarget() {
+        LocatorBinPacker.pack(buildLocators(10), 0);
+    }
+
+    private static List<InventoryManifest.Locator> buildLocators(long... sizes) {
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            InventoryManifest.Locator locator = new InventoryManifest.Locator();
+            locator.setKey("data/report-" + i + ".csv.gz");
+            locator.setSize(sizes[i]);
+            locator.setMD5checksum("checksum" + i);
+            locators.add(locator);
+        }
+        return locators;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test on recording and reading back the checkpoints of a resumable job
+ */
+public class LocatorCheckpointStoreTest {
+    @Captor
+    ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor;
+
+    @Mock
+    private AmazonS3 mockS3Client;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void saveAndLoadSuccess() throws Exception {
+        LocatorCheckpointStore store = new LocatorCheckpointStore("testDestBucket", "testDestPrefix/checkpoints/run");
+        LocatorCheckpoint checkpoint = new LocatorCheckpoint(locator("original.csv.gz", "inputMD5"),
+                Arrays.asList(locator("new-0.csv.gz", "outputMD5-0"), locator("new-1.csv.gz", "outputMD5-1")));
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+
+        store.save(mockS3Client, checkpoint);
+        PutObjectRequest request = putObjectRequestCaptor.getValue();
+        assertThat(request.getBucketName(), is("testDestBucket"));
+        String reportId = LocatorCheckpointStore.reportId(checkpoint.getInputLocator());
+        assertThat(request.getKey(), is("testDestPrefix/checkpoints/run/" + reportId + ".json"));
+
+        // The listing may hold objects which are not checkpoints, such as an upload in progress
+        byte[] content = IOUtils.toByteArray(request.getInputStream());
+        when(mockS3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(
+                listing(request.getKey(), "testDestPrefix/checkpoints/run/_temporary"));
+        when(mockS3Client.getObject(eq("testDestBucket"), eq(request.getKey()))).thenAnswer(invocation -> {
+            S3Object object = new S3Object();
+            object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null));
+            return object;
+        });
+        Map<String, LocatorCheckpoint> checkpoints = store.load(mockS3Client, 4);
+
+        assertThat(checkpoints.size(), is(1));
+        assertThat(checkpoints.get(reportId), is(checkpoint));
+        assertThat(LocatorCheckpointStore.findCompleted(checkpoints, locator("original.csv.gz", "inputMD5")),
+                is(checkpoint));
+    }
+
+    @Test
+    public void findCompletedDifferentReport() {
+        LocatorCheckpoint checkpoint = new LocatorCheckpoint(locator("original.csv.gz", "inputMD5"),
+                Collections.emptyList());
+        Map<String, LocatorCheckpoint> checkpoints = Collections.singletonMap(
+                LocatorCheckpointStore.reportId(checkpoint.getInputLocator()), checkpoint);
+
+        // A report is only skipped when its key and size match the checkpoint as well as its MD5
+        assertThat(LocatorCheckpointStore.findCompleted(checkpoints, locator("other.csv.gz", "inputMD5")),
+                is(nullValue()));
+        assertThat(LocatorCheckpointStore.findCompleted(checkpoints, locator("original.csv.gz", "otherMD5")),
+                is(nullValue()));
+    }
+
+    @Test
+    public void reportIdOfSameContentSuccess() {
+        // Two empty shards have the same MD5, but must not share their checkpoint nor their new reports
+        assertThat(LocatorCheckpointStore.reportId(locator("data/shard-0.csv.gz", "emptyMD5")),
+                is(not(LocatorCheckpointStore.reportId(locator("data/shard-1.csv.gz", "emptyMD5")))));
+        assertThat(LocatorCheckpointStore.reportId(locator("data/shard-0.csv.gz", "emptyMD5")),
+                is(LocatorCheckpointStore.reportId(locator("data/shard-0.csv.gz", "emptyMD5"))));
+    }
+
+    @Test
+    public void loadWithoutCheckpointSuccess() throws Exception {
+        when(mockS3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(listing());
+
+        assertThat(new LocatorCheckpointStore("testDestBucket", "testDestPrefix/checkpoints/run/")
+                .load(mockS3Client, 4).isEmpty(), is(true));
+    }
+
+    private static ObjectListing listing(String... keys) {
+        ObjectListing listing = new ObjectListing();
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            listing.getObjectSummaries().add(summary);
+        }
+        return listing;
+    }
+
+    private static InventoryManifest.Locator locator(String key, String md5) {
+        InventoryManifest.Locator locator = new InventoryManifest.Locator();
+        locator.setKey(key);
+        locator.setSize(1024);
+        locator.setMD5checksum(md5);
+        return locator;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test on retrieving the manifests of a batch
+ */
+public class ManifestBatchRetrieverTest {
+    private static final String OUTPUT_URI = "s3://testDestBucket/testDestPrefix";
+
+    @Mock
+    private AmazonS3 mockS3Client;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void discoverManifestKeysSuccess() {
+        ObjectListing firstPage = listing(true, "inventory/bucket1/config/2017-08-21T08-00Z/manifest.json",
+                "inventory/bucket1/config/2017-08-21T08-00Z/manifest.checksum",
+                "inventory/bucket1/config/data/a.csv.gz");
+        ObjectListing secondPage = listing(false, "inventory/bucket2/config/2017-08-22T08-00Z/manifest.json");
+        when(mockS3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(firstPage);
+        when(mockS3Client.listNextBatchOfObjects(firstPage)).thenReturn(secondPage);
+
+        List<String> manifestKeys = new ManifestBatchRetriever(mockS3Client, 2)
+                .discoverManifestKeys("testSrcBucket", "inventory/");
+
+        assertThat(manifestKeys, is(Arrays.asList("inventory/bucket1/config/2017-08-21T08-00Z",
+                "inventory/bucket2/config/2017-08-22T08-00Z")));
+    }
+
+    @Test
+    public void retrieveAllWithFailureSuccess() throws Exception {
+        byte[] manifestBytes = new ObjectMapper().writeValueAsBytes(manifest());
+        String checksum = DigestUtils.md5Hex(manifestBytes);
+        when(mockS3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            if (request.getKey().startsWith("missing/")) {
+                throw new AmazonS3Exception("The specified key does not exist.");
+            }
+            byte[] content = request.getKey().endsWith("manifest.json")
+                    ? manifestBytes : checksum.getBytes(StandardCharsets.UTF_8);
+            S3Object object = new S3Object();
+            object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null));
+            return object;
+        });
+        List<BucketKey> locations = Arrays.asList(
+                new BucketKey("s3://testSrcBucket/day1", OUTPUT_URI),
+                new BucketKey("s3://testSrcBucket/missing/day2", OUTPUT_URI),
+                new BucketKey("s3://testSrcBucket/day3", OUTPUT_URI));
+
+        List<ManifestBatchRetriever.ManifestResult> results =
+                new ManifestBatchRetriever(mockS3Client, 2).retrieveAll(locations);
+
+        // The results keep the order of the locations, and a failure does not stop the other manifests
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(0).getManifest(), is(manifest()));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(results.get(1).getError(), instanceOf(AmazonS3Exception.class));
+        assertThat(results.get(1).getSourceUri(), is("s3://testSrcBucket/missing/day2"));
+        assertThat(results.get(2).getLocation(), is(locations.get(2)));
+        assertThat(results.get(2).isSuccess(), is(true));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void retrieverInvalidConcurrency() {
+        new ManifestBatchRetriever(mockS3Client, 0);
+    }
+
+    private static ObjectListing listing(boolean truncated, String... keys) {
+        ObjectListing listing = new ObjectListing();
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            listing.getObjectSummaries().add(summary);
+        }
+        listing.setTruncated(truncated);
+        return listing;
+    }
+
+    private static InventoryManifest manifest() {
+        InventoryManifest manifest = new InventoryManifest();
+        manifest.setSourceBucket("testSrc");
+        manifest.setDestinationBucket("testDest");
+        manifest.setVersion("testVersion");
+        manifest.setFileFormat("CSV");
+        manifest.setFileSchema("Bucket, Key, StorageClass");
+        InventoryManifest.Locator locator = new InventoryManifest.Locator();
+        locator.setKey("testInventReportKey");
+        locator.setSize(1024);
+        locator.setMD5checksum("testMD5Checksum");
+        manifest.setLocators(Collections.singletonList(locator));
+        return manifest;
+    }
+}
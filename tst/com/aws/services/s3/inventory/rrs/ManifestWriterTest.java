@@ -6,6 +6,8 @@ package com.aws.services.s3.inventory.rrs;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.aws.services.s3.inventory.rrs.InventoryManifest.Locator;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
@@ -115,4 +117,31 @@ public class ManifestWriterTest {
         assertThat(actualChecksumByteArray, is(expectedChecksum.getBytes()));
         assertThat((int)requestList.get(1).getMetadata().getContentLength(), is(expectedChecksum.getBytes().length));
     }
+
+    @Test
+    public void writeMetricsNextToManifest() throws IOException{
+        InventoryManifest testManifest = new InventoryManifest();
+        testManifest.setSourceBucket("testSrcBucket");
+        InventoryJobMetrics metrics = new InventoryJobMetrics();
+        metrics.add(InventoryJobMetrics.Counter.ROWS_READ, 10);
+        metrics.add(InventoryJobMetrics.Counter.ROWS_KEPT, 3);
+        metrics.record(InventoryJobMetrics.Stage.UPLOAD, 5000000);
+
+        ManifestWriter testManifestWriter = new ManifestWriter(mockS3Client, "testDestBucketName", "testDestPrefix",
+                "testSrcBucket", testManifest);
+        when(mockS3Client.putObject(putObjectRequestCaptor.capture())).thenReturn(null);
+        testManifestWriter.writeManifest(new ArrayList<>());
+        testManifestWriter.writeMetrics(metrics);
+        List<PutObjectRequest> requestList = putObjectRequestCaptor.getAllValues();
+
+        String manifestKey = requestList.get(0).getKey();
+        assertThat(requestList.get(2).getBucketName(), is("testDestBucketName"));
+        assertThat(requestList.get(2).getKey(),
+                is(manifestKey.substring(0, manifestKey.lastIndexOf('/')) + "/metrics.json"));
+        JsonNode json = new ObjectMapper().readTree(requestList.get(2).getInputStream());
+        assertThat(json.get("counters").get("rowsRead").asLong(), is(10L));
+        assertThat(json.get("counters").get("rowsFilteredOut").asLong(), is(7L));
+        assertThat(json.get("stages").get("upload").get("count").asLong(), is(1L));
+        assertThat(json.get("stages").get("upload").get("maxMillis").asDouble(), is(5.0));
+    }
 }
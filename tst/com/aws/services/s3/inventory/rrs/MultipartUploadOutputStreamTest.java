@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test on streaming an object to S3 with a single PUT or a multipart upload.
+ */
+public class MultipartUploadOutputStreamTest {
+    private final String testBucketName = "testBucketName";
+    private final String testKey = "testKey";
+
+    @Captor
+    ArgumentCaptor<PutObjectRequest> putObjectRequestCaptor;
+
+    @Captor
+    ArgumentCaptor<CompleteMultipartUploadRequest> completeRequestCaptor;
+
+    @Mock
+    private AmazonS3 mockS3Client;
+
+    private byte[] testContent;
+    private ByteArrayOutputStream uploadedParts;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        testContent = new byte[2500];
+        new Random(42).nextBytes(testContent);
+        uploadedParts = new ByteArrayOutputStream();
+
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("testUploadId");
+        when(mockS3Client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class)))
+                .thenReturn(initiateResult);
+        when(mockS3Client.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            IOUtils.copy(request.getInputStream(), uploadedParts);
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("testETag" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    @Test
+    public void writeMultipartSuccess() throws Exception {
+        MultipartUploadOutputStream outputStream =
+                new MultipartUploadOutputStream(mockS3Client, testBucketName, testKey, 1000);
+        outputStream.write(testContent, 0, 700);
+        outputStream.write(testContent[700]);
+        outputStream.write(testContent, 701, testContent.length - 701);
+        outputStream.close();
+
+        assertThat(uploadedParts.toByteArray(), is(testContent));
+        verify(mockS3Client).completeMultipartUpload(completeRequestCaptor.capture());
+        CompleteMultipartUploadRequest request = completeRequestCaptor.getValue();
+        assertThat(request.getUploadId(), is("testUploadId"));
+        assertThat(request.getPartETags().size(), is(3));
+        assertThat(request.getPartETags().get(2).getETag(), is("testETag3"));
+        assertThat(outputStream.getSize(), is((long) testContent.length));
+        assertThat(outputStream.getMD5checksum(), is(DigestUtils.md5Hex(testContent)));
+        verify(mockS3Client, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void writeSinglePutSuccess() throws Exception {
+        MultipartUploadOutputStream outputStream =
+                new MultipartUploadOutputStream(mockS3Client, testBucketName, testKey, 4096);
+        outputStream.write(testContent);
+        outputStream.close();
+
+        verify(mockS3Client).putObject(putObjectRequestCaptor.capture());
+        PutObjectRequest request = putObjectRequestCaptor.getValue();
+        assertThat(request.getBucketName(), is(testBucketName));
+        assertThat(request.getKey(), is(testKey));
+        assertThat(IOUtils.toByteArray(request.getInputStream()), is(testContent));
+        assertThat(request.getMetadata().getContentLength(), is((long) testContent.length));
+        assertThat(outputStream.getMD5checksum(), is(DigestUtils.md5Hex(testContent)));
+        verify(mockS3Client, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void completeFailureAbortsUpload() throws Exception {
+        when(mockS3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenThrow(new AmazonClientException("testException"));
+        MultipartUploadOutputStream outputStream =
+                new MultipartUploadOutputStream(mockS3Client, testBucketName, testKey, 1000);
+        outputStream.write(testContent);
+        try {
+            outputStream.close();
+            fail("Expected the upload to fail");
+        } catch (AmazonClientException e) {
+            verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        }
+    }
+}
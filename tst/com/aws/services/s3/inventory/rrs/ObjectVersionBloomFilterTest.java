@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on the Bloom filter of the changed object versions
+ */
+public class ObjectVersionBloomFilterTest {
+
+    @Test
+    public void mightContainSuccess() {
+        ObjectVersionBloomFilter filter = new ObjectVersionBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(new ObjectVersionKey("photos/" + i + ".jpg", i % 2 == 0 ? null : "v" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertThat(filter.mightContain(new ObjectVersionKey("photos/" + i + ".jpg", i % 2 == 0 ? null : "v" + i)),
+                    is(true));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(new ObjectVersionKey("videos/" + i + ".mp4", null))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives, lessThan(200));
+        // About 10 bits per version
+        assertThat(filter.getSizeInBytes(), lessThan(10000 * 10 / 8 + 64L));
+    }
+
+    @Test
+    public void versionIdSuccess() {
+        ObjectVersionBloomFilter filter = new ObjectVersionBloomFilter(1, 0.01);
+        filter.add(new ObjectVersionKey("photos/a.jpg", "v1"));
+
+        assertThat(filter.mightContain(new ObjectVersionKey("photos/a.jpg", "v1")), is(true));
+        assertThat(filter.mightContain(new ObjectVersionKey("photos/a.jpg", "v2")), is(false));
+        assertThat(filter.mightContain(new ObjectVersionKey("photos/a.jpg", null)), is(false));
+        assertThat(filter.mightContain(new ObjectVersionKey("photos/a.jpgv", "1")), is(false));
+    }
+
+    @Test
+    public void emptyFilterSuccess() {
+        ObjectVersionBloomFilter filter = new ObjectVersionBloomFilter(0, 0.01);
+        assertThat(filter.mightContain(new ObjectVersionKey("photos/a.jpg", null)), is(false));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void invalidFalsePositiveRate() {
+        new ObjectVersionBloomFilter(100, 1);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on compressing a report in blocks with several threads into a single standard GZIP stream.
+ */
+public class ParallelGzipOutputStreamTest {
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    @Test
+    public void compressSuccess() throws Exception {
+        // Many blocks of repetitive lines, written in chunks which straddle the blocks
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            content.append("\"bucket\",\"logs/2017/06/").append(random.nextInt(100000))
+                    .append(".gz\",\"").append(random.nextInt(1 << 20)).append("\",\"STANDARD\"\n");
+        }
+        byte[] csv = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream gzip = new ParallelGzipOutputStream(compressed, Deflater.DEFAULT_COMPRESSION, 4,
+                BLOCK_SIZE)) {
+            int offset = 0;
+            while (offset < csv.length) {
+                int length = Math.min(csv.length - offset, 1 + random.nextInt(10000));
+                gzip.write(csv, offset, length);
+                offset += length;
+            }
+            gzip.write('\n');
+        }
+
+        assertThat(decompress(compressed.toByteArray()), is(content.append('\n').toString()));
+        // Priming each block with the end of the previous one keeps the ratio close to a single Deflater
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(sequential)) {
+            gzip.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat((double) compressed.size(), lessThan(sequential.size() * 1.05));
+    }
+
+    @Test
+    public void compressEmptySuccess() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressed, Deflater.BEST_SPEED, 2, BLOCK_SIZE).close();
+        assertThat(decompress(compressed.toByteArray()), is(""));
+    }
+
+    @Test
+    public void compressExactBlocksWithoutCompression() throws Exception {
+        byte[] content = new byte[BLOCK_SIZE * 3];
+        new Random(7).nextBytes(content);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream gzip = new ParallelGzipOutputStream(compressed, Deflater.NO_COMPRESSION, 3, BLOCK_SIZE)) {
+            gzip.write(content);
+        }
+        byte[] decompressed = IOUtils.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(compressed.toByteArray())));
+        assertThat(decompressed, is(content));
+    }
+
+    @Test (expected = IOException.class)
+    public void writeAfterClose() throws Exception {
+        OutputStream gzip = new ParallelGzipOutputStream(new ByteArrayOutputStream(), Deflater.DEFAULT_COMPRESSION,
+                2, BLOCK_SIZE);
+        gzip.close();
+        gzip.write(1);
+    }
+
+    private String decompress(byte[] compressed) throws IOException {
+        return IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test on reading the reports of a partition ahead of the task writing them
+ */
+public class PipelinedReportMapperTest {
+
+    @Test
+    public void readAheadSuccess() throws Exception {
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        List<String> expectedLines = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            locators.add(locator("report" + i));
+            for (int j = 0; j < 10000; j++) {
+                expectedLines.add("report" + i + "-" + j);
+            }
+        }
+        PipelinedReportMapper<String> mapper = new PipelinedReportMapper<>(locator -> {
+            List<String> lines = new ArrayList<>();
+            for (int j = 0; j < 10000; j++) {
+                lines.add(locator.getKey() + "-" + j);
+            }
+            return lines.iterator();
+        }, line -> 1L, 2);
+
+        List<String> actualLines = new ArrayList<>();
+        mapper.call(locators.iterator()).forEachRemaining(actualLines::add);
+
+        // The reports are read at the same time, so their lines are interleaved
+        Collections.sort(actualLines);
+        Collections.sort(expectedLines);
+        assertThat(actualLines, is(expectedLines));
+    }
+
+    @Test
+    public void readAheadFailure() throws Exception {
+        List<InventoryManifest.Locator> locators = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            locators.add(locator("report" + i));
+        }
+        PipelinedReportMapper<String> mapper = new PipelinedReportMapper<>(locator -> {
+            if (locator.getKey().equals("report1")) {
+                throw new IOException("download failed");
+            }
+            return Collections.singletonList(locator.getKey()).iterator();
+        }, line -> 1L, 2);
+
+        Iterator<String> lines = mapper.call(locators.iterator());
+        try {
+            lines.forEachRemaining(line -> { });
+            fail("The task should fail when a report cannot be read");
+        } catch (PipelineStageException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+    }
+
+    @Test
+    public void readAheadEmptyPartition() throws Exception {
+        PipelinedReportMapper<String> mapper =
+                new PipelinedReportMapper<>(locator -> Collections.emptyIterator(), line -> 1L, 2);
+        assertThat(mapper.call(Collections.emptyIterator()).hasNext(), is(false));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void invalidReadAhead() {
+        new PipelinedReportMapper<String>(locator -> Collections.emptyIterator(), line -> 1L, 0);
+    }
+
+    private static InventoryManifest.Locator locator(String key) {
+        InventoryManifest.Locator locator = new InventoryManifest.Locator();
+        locator.setKey(key);
+        locator.setSize(1024);
+        locator.setMD5checksum(key);
+        return locator;
+    }
+}
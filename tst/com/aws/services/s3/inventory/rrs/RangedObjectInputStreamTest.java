@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test on downloading an object with parallel ranged GETs and reassembling it in order.
+ */
+public class RangedObjectInputStreamTest {
+    private final String testBucketName = "testBucketName";
+    private final String testKey = "testKey";
+
+    @Captor
+    ArgumentCaptor<GetObjectRequest> getObjectRequestCaptor;
+
+    @Mock
+    private AmazonS3 mockS3Client;
+
+    private byte[] testContent;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        testContent = new byte[10000];
+        new Random(42).nextBytes(testContent);
+    }
+
+    @Test
+    public void readRangedObjectSuccess() throws Exception {
+        when(mockS3Client.getObject(any(GetObjectRequest.class))).thenAnswer(
+                invocation -> rangeOf(testContent, invocation.getArgument(0)));
+
+        try (RangedObjectInputStream inputStream = new RangedObjectInputStream(mockS3Client, testBucketName, testKey,
+                testContent.length, 1024, 3)) {
+            assertThat(IOUtils.toByteArray(inputStream), is(testContent));
+        }
+
+        // The parts are downloaded concurrently, so the requests may be captured in any order
+        verify(mockS3Client, times(10)).getObject(getObjectRequestCaptor.capture());
+        long lastByte = 0;
+        for (GetObjectRequest request : getObjectRequestCaptor.getAllValues()) {
+            assertThat(request.getBucketName(), is(testBucketName));
+            assertThat(request.getKey(), is(testKey));
+            lastByte = Math.max(lastByte, request.getRange()[1]);
+        }
+        assertThat(lastByte, is(9999L));
+    }
+
+    @Test
+    public void readRangedObjectHoldsAtMostConcurrencyParts() throws Exception {
+        when(mockS3Client.getObject(any(GetObjectRequest.class))).thenAnswer(
+                invocation -> rangeOf(testContent, invocation.getArgument(0)));
+
+        try (RangedObjectInputStream inputStream = new RangedObjectInputStream(mockS3Client, testBucketName, testKey,
+                testContent.length, 1024, 3)) {
+            byte[] firstPart = new byte[1024];
+            assertThat(inputStream.read(firstPart), is(1024));
+            // The first part is consumed but not released yet, so no fourth part is requested
+            verify(mockS3Client, after(200).times(3)).getObject(any(GetObjectRequest.class));
+
+            assertThat(inputStream.read(), is(testContent[1024] & 0xff));
+            verify(mockS3Client, after(200).times(4)).getObject(any(GetObjectRequest.class));
+        }
+    }
+
+    @Test (expected = IOException.class)
+    public void readRangedObjectShortPart() throws Exception {
+        when(mockS3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            long[] range = ((GetObjectRequest) invocation.getArgument(0)).getRange();
+            return s3Object(Arrays.copyOfRange(testContent, (int) range[0], (int) range[1]));
+        });
+
+        try (RangedObjectInputStream inputStream = new RangedObjectInputStream(mockS3Client, testBucketName, testKey,
+                testContent.length, 1024, 3)) {
+            IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    /**
+     * Helper function, which serves the byte range of a GetObjectRequest from the given content
+     * @param content the whole content of the object
+     * @param request GetObjectRequest with or without a range
+     * @return S3Object containing the requested range
+     */
+    static S3Object rangeOf(byte[] content, GetObjectRequest request) {
+        long[] range = request.getRange();
+        if (range == null) {
+            return s3Object(content);
+        }
+        int end = (int) Math.min(range[1] + 1, content.length);
+        return s3Object(Arrays.copyOfRange(content, (int) range[0], end));
+    }
+
+    private static S3Object s3Object(byte[] content) {
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null));
+        return s3Object;
+    }
+}
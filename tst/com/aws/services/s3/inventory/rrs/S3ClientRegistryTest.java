@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test on sharing one S3 client per configuration in a JVM
+ */
+public class S3ClientRegistryTest {
+
+    @After
+    public void tearDown() {
+        S3ClientRegistry.shutdownAll();
+    }
+
+    @Test
+    public void concurrentGetBuildsOneClientPerSettings() throws Exception {
+        AtomicInteger builtClients = new AtomicInteger();
+        Function<S3ClientSettings, AmazonS3> clientBuilder = settings -> {
+            builtClients.incrementAndGet();
+            try {
+                // Widen the window in which the other threads look the client up
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return mock(AmazonS3.class);
+        };
+        S3ClientSettings tunedSettings = new S3ClientSettings();
+        tunedSettings.setMaxConnections(200);
+
+        int threads = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<AmazonS3>> clients = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // Each task gets its own copy of the settings, as each deserialized broadcast does
+                S3ClientSettings settings = new S3ClientSettings();
+                settings.setMaxConnections(i % 2 == 0 ? 200 : S3ClientSettings.DEFAULT_MAX_CONNECTIONS);
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    return S3ClientRegistry.getClient(settings, clientBuilder);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < threads; i++) {
+                assertThat(clients.get(i).get(10, TimeUnit.SECONDS),
+                        sameInstance(clients.get(i % 2).get(10, TimeUnit.SECONDS)));
+            }
+            assertThat(clients.get(0).get(), not(sameInstance(clients.get(1).get())));
+            assertThat(builtClients.get(), is(2));
+            assertThat(S3ClientRegistry.getClient(tunedSettings, clientBuilder), sameInstance(clients.get(0).get()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shutdownAllSuccess() {
+        AmazonS3Client client = mock(AmazonS3Client.class);
+        assertThat(S3ClientRegistry.getClient(new S3ClientSettings(), settings -> client), sameInstance(client));
+        S3ClientRegistry.shutdownAll();
+
+        verify(client).shutdown();
+        assertThat(S3ClientRegistry.getClient(new S3ClientSettings(), settings -> mock(AmazonS3.class)),
+                not(sameInstance((AmazonS3) client)));
+    }
+
+    @Test
+    public void factoryCopiesShareClientSuccess() {
+        S3ClientSettings settings = new S3ClientSettings();
+        settings.setEndpoint("http://localhost:9000");
+        S3ClientSettings copiedSettings = new S3ClientSettings();
+        copiedSettings.setEndpoint("http://localhost:9000");
+        assertThat(new CachedS3ClientFactory(settings).get(),
+                sameInstance(new CachedS3ClientFactory(copiedSettings).get()));
+    }
+}
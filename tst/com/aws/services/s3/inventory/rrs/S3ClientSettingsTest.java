@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ */
+
+package com.aws.services.s3.inventory.rrs;
+
+import com.amazonaws.ClientConfiguration;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test on configuring the S3 clients of the driver and the workers
+ */
+public class S3ClientSettingsTest {
+
+    @Test
+    public void toClientConfigurationSuccess() {
+        S3ClientSettings settings = new S3ClientSettings();
+        settings.setMaxConnections(200);
+        settings.setConnectionTimeout(5000);
+        settings.setSocketTimeout(30000);
+        settings.setMaxErrorRetry(8);
+        settings.setSocketBufferSize(1024 * 1024);
+
+        ClientConfiguration clientConfiguration = settings.toClientConfiguration();
+        assertThat(clientConfiguration.getMaxConnections(), is(200));
+        assertThat(clientConfiguration.getConnectionTimeout(), is(5000));
+        assertThat(clientConfiguration.getSocketTimeout(), is(30000));
+        assertThat(clientConfiguration.getRetryPolicy().getMaxErrorRetry(), is(8));
+        assertThat(clientConfiguration.useTcpKeepAlive(), is(true));
+        assertThat(clientConfiguration.getSocketBufferSizeHints(), is(new int[]{1024 * 1024, 1024 * 1024}));
+    }
+
+    @Test
+    public void toClientConfigurationDefault() {
+        ClientConfiguration clientConfiguration = new S3ClientSettings().toClientConfiguration();
+        assertThat(clientConfiguration.getMaxConnections(), is(ClientConfiguration.DEFAULT_MAX_CONNECTIONS));
+        assertThat(clientConfiguration.getRetryPolicy().getMaxErrorRetry(),
+                is(S3ClientSettings.DEFAULT_MAX_ERROR_RETRY));
+        assertThat(clientConfiguration.getSocketBufferSizeHints(), is(new int[]{0, 0}));
+    }
+
+    @Test
+    public void factoryReusesClientSuccess() {
+        S3ClientSettings settings = new S3ClientSettings();
+        settings.setEndpoint("http://localhost:9000");
+        CachedS3ClientFactory factory = new CachedS3ClientFactory(settings);
+        assertThat(factory.get() == factory.get(), is(true));
+    }
+}